@@ -0,0 +1,128 @@
+package com.mitdbg.modeldb.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mitdbg.modeldb.ExperimentRun;
+import com.mitdbg.modeldb.KeyValue;
+import com.mitdbg.modeldb.ModelDBUtils;
+import com.mitdbg.modeldb.RdbmsUtils;
+import com.mitdbg.modeldb.databaseServices.ProtoCodecProvider;
+import com.mitdbg.modeldb.entities.ExperimentRunEntity;
+import com.mitdbg.modeldb.entities.KeyValueEntity;
+
+/**
+ * Throughput of the conversions between ExperimentRuns and their storage representations: the BSON
+ * codec used by MongoService and the ExperimentRun DAO, the JSON strings of the RDBMS key values
+ * and the Hibernate entity mapping. Run with the GC profiler (the default benchmark.args of the
+ * benchmark profile) to get the allocation rate per operation next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConversionBenchmark {
+
+  private static final int ENTITY_LIST_SIZE = 10;
+
+  @Param({"10", "100"})
+  public int metricCount;
+
+  @Param({"10", "1000"})
+  public int observationCount;
+
+  @Param({"5", "50"})
+  public int artifactCount;
+
+  private Codec<ExperimentRun> experimentRunCodec;
+  private ExperimentRun experimentRun;
+  private BsonDocument experimentRunDocument;
+  private String experimentRunJson;
+  private List<ExperimentRunEntity> experimentRunEntities;
+  private List<KeyValueEntity> metricEntities;
+
+  @Setup
+  public void setup() throws InvalidProtocolBufferException {
+    SyntheticExperimentRuns syntheticExperimentRuns =
+        new SyntheticExperimentRuns(metricCount, observationCount, artifactCount);
+    experimentRunCodec = ProtoCodecProvider.getCodecRegistry().get(ExperimentRun.class);
+    experimentRun = syntheticExperimentRuns.newExperimentRun();
+    experimentRunDocument = encode(experimentRun);
+    experimentRunJson = ModelDBUtils.getStringFromProtoObject(experimentRun);
+
+    experimentRunEntities =
+        syntheticExperimentRuns.toExperimentRunEntities(
+            syntheticExperimentRuns.newExperimentRuns(ENTITY_LIST_SIZE));
+    metricEntities = new ArrayList<>();
+    for (ExperimentRunEntity experimentRunEntity : experimentRunEntities) {
+      metricEntities.addAll(experimentRunEntity.getMetrics());
+    }
+  }
+
+  private BsonDocument encode(ExperimentRun experimentRun) {
+    BsonDocument bsonDocument = new BsonDocument();
+    experimentRunCodec.encode(
+        new BsonDocumentWriter(bsonDocument), experimentRun, EncoderContext.builder().build());
+    return bsonDocument;
+  }
+
+  /** MongoService insertOne and updateOne path, formerly convertObjectToDocument. */
+  @Benchmark
+  public BsonDocument encodeExperimentRun() {
+    return encode(experimentRun);
+  }
+
+  /** ExperimentRunDAOMongoImpl read path, formerly convertExperimentRunFromDocument. */
+  @Benchmark
+  public ExperimentRun decodeExperimentRun() {
+    return experimentRunCodec.decode(
+        new BsonDocumentReader(experimentRunDocument), DecoderContext.builder().build());
+  }
+
+  @Benchmark
+  public String getStringFromProtoObject() throws InvalidProtocolBufferException {
+    return ModelDBUtils.getStringFromProtoObject(experimentRun);
+  }
+
+  @Benchmark
+  public ExperimentRun getProtoObjectFromString() throws InvalidProtocolBufferException {
+    return ((ExperimentRun.Builder)
+            ModelDBUtils.getProtoObjectFromString(experimentRunJson, ExperimentRun.newBuilder()))
+        .build();
+  }
+
+  @Benchmark
+  public List<ExperimentRun> convertFromExperimentRunsToExperimentRunEntityList()
+      throws InvalidProtocolBufferException {
+    return RdbmsUtils.convertFromExperimentRunsToExperimentRunEntityList(experimentRunEntities);
+  }
+
+  @Benchmark
+  public void getProtoKeyValue(Blackhole blackhole) throws InvalidProtocolBufferException {
+    for (KeyValueEntity metricEntity : metricEntities) {
+      KeyValue keyValue = metricEntity.getProtoKeyValue();
+      blackhole.consume(keyValue);
+    }
+  }
+}
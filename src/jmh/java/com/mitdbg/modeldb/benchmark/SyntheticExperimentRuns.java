@@ -0,0 +1,148 @@
+package com.mitdbg.modeldb.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Value;
+import com.mitdbg.modeldb.Artifact;
+import com.mitdbg.modeldb.ArtifactTypeEnum.ArtifactType;
+import com.mitdbg.modeldb.ExperimentRun;
+import com.mitdbg.modeldb.Feature;
+import com.mitdbg.modeldb.KeyValue;
+import com.mitdbg.modeldb.Observation;
+import com.mitdbg.modeldb.RdbmsUtils;
+import com.mitdbg.modeldb.ValueTypeEnum.ValueType;
+import com.mitdbg.modeldb.entities.ExperimentEntity;
+import com.mitdbg.modeldb.entities.ExperimentRunEntity;
+import com.mitdbg.modeldb.entities.ProjectEntity;
+
+/**
+ * Generator of ExperimentRuns with the given number of metrics, observations and artifacts, shaped
+ * like the runs logged by the clients. A fixed seed keeps the values, and therefore the encoded
+ * sizes, identical in every benchmark fork.
+ */
+public class SyntheticExperimentRuns {
+
+  private static final long SEED = 42L;
+
+  private final Random random = new Random(SEED);
+  private final String projectId = UUID.randomUUID().toString();
+  private final String experimentId = UUID.randomUUID().toString();
+  private final int metricCount;
+  private final int observationCount;
+  private final int artifactCount;
+
+  /**
+   * @param int metricCount --> metrics and hyperparameters of each run
+   * @param int observationCount --> observations of each run, half attributes and half artifacts
+   * @param int artifactCount --> artifacts and datasets of each run
+   */
+  public SyntheticExperimentRuns(int metricCount, int observationCount, int artifactCount) {
+    this.metricCount = metricCount;
+    this.observationCount = observationCount;
+    this.artifactCount = artifactCount;
+  }
+
+  public ExperimentRun newExperimentRun() {
+    long now = System.currentTimeMillis();
+    ExperimentRun.Builder experimentRun =
+        ExperimentRun.newBuilder()
+            .setId(UUID.randomUUID().toString())
+            .setProjectId(projectId)
+            .setExperimentId(experimentId)
+            .setName("ExperimentRun_" + random.nextInt())
+            .setDescription("Synthetic experiment run for conversion benchmarks")
+            .setDateCreated(now)
+            .setDateUpdated(now)
+            .setStartTime(now)
+            .setEndTime(now + random.nextInt(3600000))
+            .setCodeVersion("1.0." + random.nextInt(100))
+            .addTags("benchmark")
+            .addTags("synthetic")
+            .addFeatures(Feature.newBuilder().setName("feature_1"))
+            .addFeatures(Feature.newBuilder().setName("feature_2"));
+
+    for (int i = 0; i < metricCount; i++) {
+      experimentRun.addMetrics(numberKeyValue("metric_" + i));
+      String hyperparameterKey = "hyperparameter_" + i;
+      experimentRun.addHyperparameters(
+          i % 2 == 0 ? numberKeyValue(hyperparameterKey) : stringKeyValue(hyperparameterKey));
+    }
+    experimentRun.addAttributes(stringKeyValue("attribute_1"));
+    experimentRun.addAttributes(numberKeyValue("attribute_2"));
+
+    for (int i = 0; i < observationCount; i++) {
+      Observation.Builder observation = Observation.newBuilder().setTimestamp(now + i);
+      if (i % 2 == 0) {
+        observation.setAttribute(numberKeyValue("observation_" + (i % 10)));
+      } else {
+        observation.setArtifact(artifact("observation_artifact_" + i, ArtifactType.DATA));
+      }
+      experimentRun.addObservations(observation);
+    }
+
+    for (int i = 0; i < artifactCount; i++) {
+      experimentRun.addArtifacts(artifact("artifact_" + i, ArtifactType.MODEL));
+      experimentRun.addDatasets(artifact("dataset_" + i, ArtifactType.DATA));
+    }
+    return experimentRun.build();
+  }
+
+  public List<ExperimentRun> newExperimentRuns(int count) {
+    List<ExperimentRun> experimentRuns = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      experimentRuns.add(newExperimentRun());
+    }
+    return experimentRuns;
+  }
+
+  /**
+   * Convert runs to the entities Hibernate would load, attached to one project and experiment.
+   * Observations are not mapped by ExperimentRunEntity and are dropped.
+   *
+   * @param List<ExperimentRun> experimentRuns
+   * @return List<ExperimentRunEntity> experimentRunEntities
+   * @throws InvalidProtocolBufferException
+   */
+  public List<ExperimentRunEntity> toExperimentRunEntities(List<ExperimentRun> experimentRuns)
+      throws InvalidProtocolBufferException {
+    ProjectEntity projectEntity = new ProjectEntity();
+    projectEntity.setId(projectId);
+    ExperimentEntity experimentEntity = new ExperimentEntity();
+    experimentEntity.setId(experimentId);
+
+    List<ExperimentRunEntity> experimentRunEntities = new ArrayList<>(experimentRuns.size());
+    for (ExperimentRun experimentRun : experimentRuns) {
+      experimentRunEntities.add(
+          RdbmsUtils.convertFromExperimentRunToExperimentRunEntity(
+              projectEntity, experimentEntity, experimentRun));
+    }
+    return experimentRunEntities;
+  }
+
+  private KeyValue numberKeyValue(String key) {
+    return KeyValue.newBuilder()
+        .setKey(key)
+        .setValue(Value.newBuilder().setNumberValue(random.nextDouble()))
+        .setValueType(ValueType.NUMBER)
+        .build();
+  }
+
+  private KeyValue stringKeyValue(String key) {
+    return KeyValue.newBuilder()
+        .setKey(key)
+        .setValue(Value.newBuilder().setStringValue("value_" + random.nextInt()))
+        .setValueType(ValueType.STRING)
+        .build();
+  }
+
+  private Artifact artifact(String key, ArtifactType artifactType) {
+    return Artifact.newBuilder()
+        .setKey(key)
+        .setPath("s3://modeldb-benchmark/" + projectId + "/" + key)
+        .setArtifactType(artifactType)
+        .build();
+  }
+}
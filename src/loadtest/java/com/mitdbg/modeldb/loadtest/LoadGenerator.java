@@ -0,0 +1,371 @@
+package com.mitdbg.modeldb.loadtest;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.yaml.snakeyaml.Yaml;
+import com.mitdbg.modeldb.App;
+import com.mitdbg.modeldb.ModelDBUtils;
+import com.mitdbg.modeldb.loadtest.Workload.Operation;
+import com.mitdbg.modeldb.monitoring.LatencyHistogram;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+
+/**
+ * End-to-end load generator: starts the ModelDB services on an in-process gRPC server through
+ * {@link App#initializeServicesBaseOnDataBase}, like the integration tests do, and drives the mixed
+ * {@link Workload} through the generated stubs.
+ *
+ * <p>Two kinds of targets are supported:
+ *
+ * <ul>
+ *   <li>mode=closed: concurrency clients send their next request as soon as the previous one
+ *       returned. Response times are corrected for coordinated omission by back-filling every
+ *       latency longer than the expected interval of the client (its mean service time measured
+ *       during warmup) with the latencies the requests it could not send would have seen.
+ *   <li>mode=open: requests are scheduled at a fixed arrival rate, shared by concurrency clients,
+ *       and response times are measured from the scheduled send time, so a stalled server is
+ *       charged for the whole queue building up behind it.
+ * </ul>
+ *
+ * Arguments are key=value pairs, see {@link #DEFAULT_OPTIONS}. Runs are reproducible for given
+ * options: the workload of every client is drawn from a random generator seeded with seed.
+ */
+public class LoadGenerator {
+
+  private static final Logger LOGGER = Logger.getLogger(LoadGenerator.class.getName());
+
+  private static final Map<String, String> DEFAULT_OPTIONS = new HashMap<>();
+
+  static {
+    // config.yaml to read, VERTA_MODELDB_CONFIG when empty
+    DEFAULT_OPTIONS.put("config", "");
+    // Section of config.yaml with the database settings
+    DEFAULT_OPTIONS.put("database", "database");
+    // Overrides DBType of the database section, empty keeps the configured one
+    DEFAULT_OPTIONS.put("dbType", "inmemory");
+    DEFAULT_OPTIONS.put("mode", "closed");
+    DEFAULT_OPTIONS.put("concurrency", "8");
+    // Requests per second of open mode
+    DEFAULT_OPTIONS.put("rate", "500");
+    DEFAULT_OPTIONS.put("warmupSeconds", "10");
+    DEFAULT_OPTIONS.put("durationSeconds", "60");
+    DEFAULT_OPTIONS.put("projects", "2");
+    DEFAULT_OPTIONS.put("experimentsPerProject", "5");
+    DEFAULT_OPTIONS.put("runsPerExperiment", "20");
+    DEFAULT_OPTIONS.put("seed", "42");
+    DEFAULT_OPTIONS.put(
+        "mix",
+        "createRun=5,logObservation=25,logMetric=15,logHyperparameter=5,getRun=20,find=10,"
+            + "sort=10,topK=10");
+  }
+
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+  /** Latencies and errors of one operation over the measurement phase. */
+  private static class OperationStats {
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final LatencyHistogram responseTime = new LatencyHistogram();
+    private final AtomicLong errorCount = new AtomicLong();
+  }
+
+  private final Map<String, String> options;
+  private final Map<Operation, OperationStats> operationStatsMap = new EnumMap<>(Operation.class);
+  private final OperationStats totalStats = new OperationStats();
+
+  private LoadGenerator(Map<String, String> options) {
+    this.options = options;
+    for (Operation operation : Operation.values()) {
+      operationStatsMap.put(operation, new OperationStats());
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>(DEFAULT_OPTIONS);
+    for (String arg : args) {
+      int separatorIndex = arg.indexOf('=');
+      String key = separatorIndex < 0 ? arg : arg.substring(0, separatorIndex);
+      if (separatorIndex < 0 || !DEFAULT_OPTIONS.containsKey(key)) {
+        throw new IllegalArgumentException(
+            "Unknown load test argument " + arg + ", expected key=value with key in "
+                + DEFAULT_OPTIONS.keySet());
+      }
+      options.put(key, arg.substring(separatorIndex + 1));
+    }
+    new LoadGenerator(options).run();
+  }
+
+  private int getIntOption(String key) {
+    return Integer.parseInt(options.get(key));
+  }
+
+  private Map<String, Object> readProperties() throws IOException {
+    String configFilePath = options.get("config");
+    if (configFilePath.isEmpty()) {
+      return ModelDBUtils.readYamlProperties();
+    }
+    try (InputStream inputStream = new FileInputStream(configFilePath)) {
+      return (Map<String, Object>) new Yaml().load(inputStream);
+    }
+  }
+
+  private Map<Operation, Integer> getOperationMix() {
+    Map<Operation, Integer> operationMix = new EnumMap<>(Operation.class);
+    for (String entry : options.get("mix").split(",")) {
+      String[] keyValue = entry.trim().split("=");
+      Operation operation = null;
+      for (Operation candidate : Operation.values()) {
+        if (candidate.getOptionName().equals(keyValue[0])) {
+          operation = candidate;
+        }
+      }
+      if (operation == null || keyValue.length != 2) {
+        throw new IllegalArgumentException("Invalid operation mix entry " + entry);
+      }
+      operationMix.put(operation, Integer.parseInt(keyValue[1]));
+    }
+    return operationMix;
+  }
+
+  private void run() throws Exception {
+    Map<String, Object> propertiesMap = readProperties();
+    Map<String, Object> databasePropMap =
+        new HashMap<>((Map<String, Object>) propertiesMap.get(options.get("database")));
+    if (!options.get("dbType").isEmpty()) {
+      databasePropMap.put("DBType", options.get("dbType"));
+    }
+
+    String serverName = InProcessServerBuilder.generateName();
+    InProcessServerBuilder serverBuilder =
+        InProcessServerBuilder.forName(serverName).directExecutor();
+    App.initializeServicesBaseOnDataBase(serverBuilder, databasePropMap, propertiesMap);
+    Server server = serverBuilder.build().start();
+    ManagedChannel channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+
+    try {
+      Workload workload = new Workload(channel, getOperationMix());
+      long seed = Long.parseLong(options.get("seed"));
+      workload.setup(
+          getIntOption("projects"),
+          getIntOption("experimentsPerProject"),
+          getIntOption("runsPerExperiment"),
+          new Random(seed));
+      runClients(workload, seed);
+      printReport();
+    } finally {
+      channel.shutdownNow();
+      server.shutdownNow();
+      App.getInstance().getArtifactServerChannel().shutdownNow();
+    }
+  }
+
+  private void runClients(Workload workload, long seed) throws InterruptedException {
+    int concurrency = getIntOption("concurrency");
+    boolean openMode = options.get("mode").equalsIgnoreCase("open");
+    if (!openMode && !options.get("mode").equalsIgnoreCase("closed")) {
+      throw new IllegalArgumentException("Invalid mode " + options.get("mode"));
+    }
+    long warmupNanos = TimeUnit.SECONDS.toNanos(getIntOption("warmupSeconds"));
+    long durationNanos = TimeUnit.SECONDS.toNanos(getIntOption("durationSeconds"));
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / getIntOption("rate");
+
+    long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+    long measurementStartNanos = startNanos + warmupNanos;
+    long endNanos = measurementStartNanos + durationNanos;
+    // Index of the next scheduled request of open mode, shared by all clients
+    AtomicLong nextRequestIndex = new AtomicLong();
+    CountDownLatch doneLatch = new CountDownLatch(concurrency);
+
+    List<Thread> clients = new ArrayList<>();
+    for (int c = 0; c < concurrency; c++) {
+      Random random = new Random(seed + c + 1);
+      Runnable client =
+          () -> {
+            try {
+              if (openMode) {
+                runOpenClient(
+                    workload,
+                    random,
+                    nextRequestIndex,
+                    startNanos,
+                    intervalNanos,
+                    measurementStartNanos,
+                    endNanos);
+              } else {
+                runClosedClient(workload, random, startNanos, measurementStartNanos, endNanos);
+              }
+            } finally {
+              doneLatch.countDown();
+            }
+          };
+      Thread thread = new Thread(client, "load-test-client-" + c);
+      thread.setDaemon(true);
+      clients.add(thread);
+    }
+    LOGGER.info(
+        "Load test started in "
+            + (openMode ? "open mode at " + options.get("rate") + " requests/s" : "closed mode")
+            + " with "
+            + concurrency
+            + " clients");
+    for (Thread thread : clients) {
+      thread.start();
+    }
+    doneLatch.await();
+  }
+
+  private static void parkUntil(long deadlineNanos) {
+    long remainingNanos;
+    while ((remainingNanos = deadlineNanos - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remainingNanos);
+    }
+  }
+
+  private void runClosedClient(
+      Workload workload,
+      Random random,
+      long startNanos,
+      long measurementStartNanos,
+      long endNanos) {
+    parkUntil(startNanos);
+    long warmupCount = 0;
+    while (System.nanoTime() < measurementStartNanos) {
+      execute(workload, random, 0, 0);
+      warmupCount++;
+    }
+    // Mean service time of this client, i.e. how often it would send requests without stalls
+    long expectedIntervalNanos =
+        warmupCount == 0 ? 0 : (System.nanoTime() - startNanos) / warmupCount;
+    while (System.nanoTime() < endNanos) {
+      execute(workload, random, System.nanoTime(), expectedIntervalNanos);
+    }
+  }
+
+  private void runOpenClient(
+      Workload workload,
+      Random random,
+      AtomicLong nextRequestIndex,
+      long startNanos,
+      long intervalNanos,
+      long measurementStartNanos,
+      long endNanos) {
+    while (true) {
+      long scheduledNanos = startNanos + nextRequestIndex.getAndIncrement() * intervalNanos;
+      if (scheduledNanos >= endNanos) {
+        return;
+      }
+      parkUntil(scheduledNanos);
+      // Requests scheduled during warmup are executed but not measured
+      execute(workload, random, scheduledNanos >= measurementStartNanos ? scheduledNanos : 0, 0);
+    }
+  }
+
+  /**
+   * Execute the next operation of the workload and record its latencies.
+   *
+   * @param long intendedNanos --> time the request should have been sent at, 0 during warmup
+   * @param long expectedIntervalNanos --> back-fill interval of closed mode, 0 for none
+   */
+  private void execute(
+      Workload workload,
+      Random random,
+      long intendedNanos,
+      long expectedIntervalNanos) {
+    Operation operation = workload.nextOperation(random);
+    long sendNanos = System.nanoTime();
+    boolean failed = false;
+    try {
+      workload.execute(operation, random);
+    } catch (RuntimeException e) {
+      failed = true;
+      LOGGER.log(Level.FINE, "Load test " + operation + " failed", e);
+    }
+    if (intendedNanos == 0) {
+      return;
+    }
+    long endNanos = System.nanoTime();
+    for (OperationStats operationStats :
+        new OperationStats[] {operationStatsMap.get(operation), totalStats}) {
+      operationStats.serviceTime.record(endNanos - sendNanos);
+      recordCorrected(operationStats.responseTime, endNanos - intendedNanos, expectedIntervalNanos);
+      if (failed) {
+        operationStats.errorCount.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Record a latency, and for a latency longer than the expected interval also the latencies of
+   * the requests which would have been sent during it, as HdrHistogram's
+   * recordValueWithExpectedInterval does.
+   */
+  private static void recordCorrected(
+      LatencyHistogram histogram, long latencyNanos, long expectedIntervalNanos) {
+    histogram.record(latencyNanos);
+    if (expectedIntervalNanos <= 0) {
+      return;
+    }
+    for (long missedNanos = latencyNanos - expectedIntervalNanos;
+        missedNanos >= expectedIntervalNanos;
+        missedNanos -= expectedIntervalNanos) {
+      histogram.record(missedNanos);
+    }
+  }
+
+  private void printReport() {
+    double durationSeconds = getIntOption("durationSeconds");
+    StringBuilder report = new StringBuilder("\nLoad test results, options " + options + "\n");
+    report.append(
+        String.format(
+            "%-18s %10s %8s %10s  %s%n",
+            "operation",
+            "count",
+            "errors",
+            "req/s",
+            "response time ms p50 / p90 / p99 / p99.9 / max (service time p99)"));
+    for (Map.Entry<Operation, OperationStats> entry : operationStatsMap.entrySet()) {
+      appendStats(report, entry.getKey().getOptionName(), entry.getValue(), durationSeconds);
+    }
+    appendStats(report, "total", totalStats, durationSeconds);
+    System.out.println(report);
+  }
+
+  private static void appendStats(
+      StringBuilder report, String name, OperationStats operationStats, double durationSeconds) {
+    long count = operationStats.serviceTime.getCount();
+    if (count == 0) {
+      return;
+    }
+    StringBuilder quantiles = new StringBuilder();
+    for (double quantile : QUANTILES) {
+      if (quantiles.length() > 0) {
+        quantiles.append(" / ");
+      }
+      quantiles.append(
+          String.format("%.3f", operationStats.responseTime.getQuantileSeconds(quantile) * 1000));
+    }
+    report.append(
+        String.format(
+            "%-18s %10d %8d %10.1f  %s (%.3f)%n",
+            name,
+            count,
+            operationStats.errorCount.get(),
+            count / durationSeconds,
+            quantiles,
+            operationStats.serviceTime.getQuantileSeconds(0.99) * 1000));
+  }
+}
@@ -0,0 +1,309 @@
+package com.mitdbg.modeldb.loadtest;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import com.google.protobuf.Value;
+import com.mitdbg.modeldb.CreateExperiment;
+import com.mitdbg.modeldb.CreateExperimentRun;
+import com.mitdbg.modeldb.CreateProject;
+import com.mitdbg.modeldb.ExperimentRun;
+import com.mitdbg.modeldb.ExperimentRunServiceGrpc;
+import com.mitdbg.modeldb.ExperimentRunServiceGrpc.ExperimentRunServiceBlockingStub;
+import com.mitdbg.modeldb.ExperimentServiceGrpc;
+import com.mitdbg.modeldb.ExperimentServiceGrpc.ExperimentServiceBlockingStub;
+import com.mitdbg.modeldb.FindExperimentRuns;
+import com.mitdbg.modeldb.GetExperimentRunById;
+import com.mitdbg.modeldb.KeyValue;
+import com.mitdbg.modeldb.KeyValueQuery;
+import com.mitdbg.modeldb.LogHyperparameter;
+import com.mitdbg.modeldb.LogMetric;
+import com.mitdbg.modeldb.LogObservation;
+import com.mitdbg.modeldb.Observation;
+import com.mitdbg.modeldb.OperatorEnum.Operator;
+import com.mitdbg.modeldb.ProjectServiceGrpc;
+import com.mitdbg.modeldb.ProjectServiceGrpc.ProjectServiceBlockingStub;
+import com.mitdbg.modeldb.SortExperimentRuns;
+import com.mitdbg.modeldb.TopExperimentRunsSelector;
+import com.mitdbg.modeldb.ValueTypeEnum.ValueType;
+import io.grpc.ManagedChannel;
+
+/**
+ * Mixed ModelDB workload driven through the generated blocking stubs: experiment runs are created
+ * in a fixed set of projects and experiments, then trained epoch by epoch (observations, metrics
+ * and hyperparameters logged on random runs) while other clients read them back by id and through
+ * find, sort and top-K queries. Each operation is one RPC, picked at random with the weights of the
+ * operation mix.
+ */
+class Workload {
+
+  private static final Logger LOGGER = Logger.getLogger(Workload.class.getName());
+  private static final String SORT_KEY = "metrics.accuracy";
+  private static final int SORT_RUN_COUNT = 20;
+  private static final int TOP_K = 10;
+
+  enum Operation {
+    CREATE_RUN("createRun"),
+    LOG_OBSERVATION("logObservation"),
+    LOG_METRIC("logMetric"),
+    LOG_HYPERPARAMETER("logHyperparameter"),
+    GET_RUN("getRun"),
+    FIND("find"),
+    SORT("sort"),
+    TOP_K("topK");
+
+    private final String optionName;
+
+    Operation(String optionName) {
+      this.optionName = optionName;
+    }
+
+    String getOptionName() {
+      return optionName;
+    }
+  }
+
+  private static class ExperimentState {
+    private final String projectId;
+    private final String experimentId;
+
+    private ExperimentState(String projectId, String experimentId) {
+      this.projectId = projectId;
+      this.experimentId = experimentId;
+    }
+  }
+
+  private static class RunState {
+    private final String id;
+    private final AtomicInteger epoch = new AtomicInteger();
+    private final AtomicInteger metricCount = new AtomicInteger();
+    private final AtomicInteger hyperparameterCount = new AtomicInteger();
+
+    private RunState(String id) {
+      this.id = id;
+    }
+  }
+
+  private final ProjectServiceBlockingStub projectServiceStub;
+  private final ExperimentServiceBlockingStub experimentServiceStub;
+  private final ExperimentRunServiceBlockingStub experimentRunServiceStub;
+  private final Map<Operation, Integer> operationMix;
+  private final int totalWeight;
+  private final List<ExperimentState> experiments = new ArrayList<>();
+  private final List<RunState> runs = Collections.synchronizedList(new ArrayList<>());
+
+  /**
+   * @param ManagedChannel channel --> channel to the server under test
+   * @param Map<Operation, Integer> operationMix --> relative weight of every operation
+   */
+  Workload(ManagedChannel channel, Map<Operation, Integer> operationMix) {
+    this.projectServiceStub = ProjectServiceGrpc.newBlockingStub(channel);
+    this.experimentServiceStub = ExperimentServiceGrpc.newBlockingStub(channel);
+    this.experimentRunServiceStub = ExperimentRunServiceGrpc.newBlockingStub(channel);
+    this.operationMix = new EnumMap<>(operationMix);
+    int weightSum = 0;
+    for (Integer weight : operationMix.values()) {
+      weightSum += weight;
+    }
+    if (weightSum <= 0) {
+      throw new IllegalArgumentException("Operation mix has no operation with a positive weight");
+    }
+    this.totalWeight = weightSum;
+  }
+
+  /**
+   * Create the projects and experiments of the workload and the runs every read operation starts
+   * with.
+   */
+  void setup(int projectCount, int experimentsPerProject, int runsPerExperiment, Random random) {
+    String prefix = "load_test_" + Calendar.getInstance().getTimeInMillis();
+    for (int p = 0; p < projectCount; p++) {
+      String projectId =
+          projectServiceStub
+              .createProject(
+                  CreateProject.newBuilder()
+                      .setName(prefix + "_project_" + p)
+                      .setDescription("Load test project")
+                      .build())
+              .getProject()
+              .getId();
+      for (int e = 0; e < experimentsPerProject; e++) {
+        String experimentId =
+            experimentServiceStub
+                .createExperiment(
+                    CreateExperiment.newBuilder()
+                        .setProjectId(projectId)
+                        .setName(prefix + "_experiment_" + e)
+                        .setDescription("Load test experiment")
+                        .build())
+                .getExperiment()
+                .getId();
+        ExperimentState experiment = new ExperimentState(projectId, experimentId);
+        experiments.add(experiment);
+        for (int r = 0; r < runsPerExperiment; r++) {
+          createRun(experiment, random);
+        }
+      }
+    }
+    LOGGER.info(
+        "Load test setup created "
+            + experiments.size()
+            + " experiments with "
+            + runs.size()
+            + " experiment runs");
+  }
+
+  Operation nextOperation(Random random) {
+    int choice = random.nextInt(totalWeight);
+    for (Map.Entry<Operation, Integer> operation : operationMix.entrySet()) {
+      choice -= operation.getValue();
+      if (choice < 0) {
+        return operation.getKey();
+      }
+    }
+    throw new IllegalStateException("Operation mix changed while running");
+  }
+
+  void execute(Operation operation, Random random) {
+    switch (operation) {
+      case CREATE_RUN:
+        createRun(experiments.get(random.nextInt(experiments.size())), random);
+        break;
+      case LOG_OBSERVATION:
+        logObservation(getRandomRun(random), random);
+        break;
+      case LOG_METRIC:
+        logMetric(getRandomRun(random), random);
+        break;
+      case LOG_HYPERPARAMETER:
+        logHyperparameter(getRandomRun(random), random);
+        break;
+      case GET_RUN:
+        experimentRunServiceStub.getExperimentRunById(
+            GetExperimentRunById.newBuilder().setId(getRandomRun(random).id).build());
+        break;
+      case FIND:
+        find(experiments.get(random.nextInt(experiments.size())), random);
+        break;
+      case SORT:
+        sort(random);
+        break;
+      case TOP_K:
+        topK(experiments.get(random.nextInt(experiments.size())));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown operation " + operation);
+    }
+  }
+
+  private RunState getRandomRun(Random random) {
+    synchronized (runs) {
+      return runs.get(random.nextInt(runs.size()));
+    }
+  }
+
+  private static KeyValue getNumberKeyValue(String key, double value) {
+    return KeyValue.newBuilder()
+        .setKey(key)
+        .setValue(Value.newBuilder().setNumberValue(value).build())
+        .setValueType(ValueType.NUMBER)
+        .build();
+  }
+
+  private void createRun(ExperimentState experiment, Random random) {
+    long now = Calendar.getInstance().getTimeInMillis();
+    CreateExperimentRun request =
+        CreateExperimentRun.newBuilder()
+            .setProjectId(experiment.projectId)
+            .setExperimentId(experiment.experimentId)
+            .setName("run_" + now + "_" + random.nextInt(Integer.MAX_VALUE))
+            .setDescription("Load test experiment run")
+            .setDateCreated(now)
+            .setDateUpdated(now)
+            .setStartTime(now)
+            .setCodeVersion("1.0")
+            .addTags("load_test")
+            .addHyperparameters(getNumberKeyValue("learning_rate", random.nextDouble() / 10))
+            .addHyperparameters(getNumberKeyValue("batch_size", 32 << random.nextInt(4)))
+            .addMetrics(getNumberKeyValue("accuracy", random.nextDouble()))
+            .addMetrics(getNumberKeyValue("loss", random.nextDouble()))
+            .build();
+    ExperimentRun experimentRun =
+        experimentRunServiceStub.createExperimentRun(request).getExperimentRun();
+    runs.add(new RunState(experimentRun.getId()));
+  }
+
+  /** One training epoch of the run: the loss of the epoch as observation. */
+  private void logObservation(RunState run, Random random) {
+    int epoch = run.epoch.incrementAndGet();
+    Observation observation =
+        Observation.newBuilder()
+            .setAttribute(getNumberKeyValue("loss", random.nextDouble() / epoch))
+            .setTimestamp(Calendar.getInstance().getTimeInMillis())
+            .build();
+    experimentRunServiceStub.logObservation(
+        LogObservation.newBuilder().setId(run.id).setObservation(observation).build());
+  }
+
+  /** Metric keys are unique in a run, each one is suffixed by its index. */
+  private void logMetric(RunState run, Random random) {
+    KeyValue metric =
+        getNumberKeyValue(
+            "val_accuracy_" + run.metricCount.incrementAndGet(), random.nextDouble());
+    experimentRunServiceStub.logMetric(
+        LogMetric.newBuilder().setId(run.id).setMetric(metric).build());
+  }
+
+  private void logHyperparameter(RunState run, Random random) {
+    KeyValue hyperparameter =
+        getNumberKeyValue(
+            "dropout_" + run.hyperparameterCount.incrementAndGet(), random.nextDouble() / 2);
+    experimentRunServiceStub.logHyperparameter(
+        LogHyperparameter.newBuilder().setId(run.id).setHyperparameter(hyperparameter).build());
+  }
+
+  private void find(ExperimentState experiment, Random random) {
+    KeyValueQuery predicate =
+        KeyValueQuery.newBuilder()
+            .setKey(SORT_KEY)
+            .setValue(Value.newBuilder().setNumberValue(random.nextDouble()).build())
+            .setOperator(Operator.GTE)
+            .build();
+    experimentRunServiceStub.findExperimentRuns(
+        FindExperimentRuns.newBuilder()
+            .setProjectId(experiment.projectId)
+            .setExperimentId(experiment.experimentId)
+            .addPredicates(predicate)
+            .build());
+  }
+
+  private void sort(Random random) {
+    List<String> experimentRunIds = new ArrayList<>();
+    for (int i = 0; i < SORT_RUN_COUNT; i++) {
+      experimentRunIds.add(getRandomRun(random).id);
+    }
+    experimentRunServiceStub.sortExperimentRuns(
+        SortExperimentRuns.newBuilder()
+            .addAllExperimentRunIds(experimentRunIds)
+            .setSortKey(SORT_KEY)
+            .setAscending(false)
+            .build());
+  }
+
+  private void topK(ExperimentState experiment) {
+    experimentRunServiceStub.getTopExperimentRuns(
+        TopExperimentRunsSelector.newBuilder()
+            .setProjectId(experiment.projectId)
+            .setExperimentId(experiment.experimentId)
+            .setSortKey(SORT_KEY)
+            .setTopK(TOP_K)
+            .setAscending(false)
+            .build());
+  }
+}
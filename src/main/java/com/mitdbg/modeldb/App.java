@@ -4,26 +4,48 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.bson.Document;
 import com.mitdbg.modeldb.artifactStore.ArtifactStoreDAO;
 import com.mitdbg.modeldb.artifactStore.ArtifactStoreDAOMongoImpl;
 import com.mitdbg.modeldb.artifactStore.ArtifactStoreDAORdbImpl;
+import com.mitdbg.modeldb.cache.CacheMetrics;
+import com.mitdbg.modeldb.cache.ChangeStreamInvalidator;
+import com.mitdbg.modeldb.cache.EntityCache;
+import com.mitdbg.modeldb.cache.ExperimentRunCreationCache;
 import com.mitdbg.modeldb.databaseServices.DocumentService;
+import com.mitdbg.modeldb.databaseServices.InMemoryDatabase;
+import com.mitdbg.modeldb.databaseServices.InMemoryDocumentService;
+import com.mitdbg.modeldb.databaseServices.MongoIndexManager;
 import com.mitdbg.modeldb.databaseServices.MongoService;
+import com.mitdbg.modeldb.databaseServices.TimedDocumentService;
+import com.mitdbg.modeldb.experiment.CachedExperimentDAO;
 import com.mitdbg.modeldb.experiment.ExperimentDAO;
 import com.mitdbg.modeldb.experiment.ExperimentDAOMongoImpl;
 import com.mitdbg.modeldb.experiment.ExperimentDAORdbImpl;
 import com.mitdbg.modeldb.experiment.ExperimentServiceImpl;
+import com.mitdbg.modeldb.experimentRun.CachedExperimentRunDAO;
+import com.mitdbg.modeldb.experimentRun.ExperimentRunBatchLogService;
 import com.mitdbg.modeldb.experimentRun.ExperimentRunDAO;
 import com.mitdbg.modeldb.experimentRun.ExperimentRunDAOMongoImpl;
 import com.mitdbg.modeldb.experimentRun.ExperimentRunDAORdbImpl;
 import com.mitdbg.modeldb.experimentRun.ExperimentRunServiceImpl;
+import com.mitdbg.modeldb.experimentRun.ExperimentRunStreamingService;
+import com.mitdbg.modeldb.experimentRun.ExperimentRunWriteBuffer;
+import com.mitdbg.modeldb.experimentRun.ObservationBucketStore;
 import com.mitdbg.modeldb.job.JobDAO;
 import com.mitdbg.modeldb.job.JobDAOMongoImpl;
 import com.mitdbg.modeldb.job.JobDAORdbImpl;
 import com.mitdbg.modeldb.job.JobServiceImpl;
+import com.mitdbg.modeldb.monitoring.ConnectionPoolMetrics;
+import com.mitdbg.modeldb.monitoring.DatabaseMetrics;
+import com.mitdbg.modeldb.monitoring.GrpcMetricsInterceptor;
+import com.mitdbg.modeldb.monitoring.MetricsHttpServer;
+import com.mitdbg.modeldb.monitoring.SlowOperationLog;
+import com.mitdbg.modeldb.monitoring.SlowOperationService;
+import com.mitdbg.modeldb.project.CachedProjectDAO;
 import com.mitdbg.modeldb.project.ProjectDAO;
 import com.mitdbg.modeldb.project.ProjectDAOMongoImpl;
 import com.mitdbg.modeldb.project.ProjectDAORdbImpl;
@@ -50,6 +72,16 @@ public class App {
   private ManagedChannel artifactServerChannel = null;
   private String collaboratorEntity = null;
   private String jobEntity = null;
+  private String observationBucketEntity = null;
+  private String migrationEntity = null;
+  private Map<String, Object> experimentRunWriteBufferPropMap = null;
+  private Map<String, Object> observationBucketPropMap = null;
+  private EntityCache<Project> projectCache = null;
+  private EntityCache<Experiment> experimentCache = null;
+  private EntityCache<ExperimentRun> experimentRunCache = null;
+  private ExperimentRunCreationCache experimentRunCreationCache = null;
+  private IdGenerator idGenerator = new IdGenerator.RandomIdGenerator();
+  private final GrpcMetricsInterceptor grpcMetricsInterceptor = new GrpcMetricsInterceptor();
   private static App app = null;
 
   public static App getInstance() {
@@ -73,7 +105,8 @@ public class App {
 
     Integer grpcServerPort = (Integer) grpcServerMap.get("port");
     LOGGER.info("grpc server port number founded. ");
-    ServerBuilder<?> serverBuilder = ServerBuilder.forPort(grpcServerPort);
+    GrpcServerExecutor grpcServerExecutor = new GrpcServerExecutor(grpcServerMap);
+    ServerBuilder<?> serverBuilder = grpcServerExecutor.newServerBuilder(grpcServerPort);
 
     Map<String, Object> databasePropMap = (Map<String, Object>) propertiesMap.get("database");
 
@@ -84,12 +117,33 @@ public class App {
     Server server = serverBuilder.build();
     // --------------- Finish Initialize modelDB gRPC server --------------------------
 
+    // --------------- Start metrics endpoint --------------------------
+    MetricsHttpServer metricsHttpServer = null;
+    Map<String, Object> metricsPropMap = (Map<String, Object>) propertiesMap.get("metrics");
+    if (metricsPropMap != null && (Boolean) metricsPropMap.getOrDefault("enabled", false)) {
+      metricsHttpServer =
+          new MetricsHttpServer(
+              (String) metricsPropMap.getOrDefault("host", "localhost"),
+              (Integer) metricsPropMap.get("port"));
+      metricsHttpServer.addMetricsSource(App.getInstance().getGrpcMetricsInterceptor());
+      metricsHttpServer.addMetricsSource(DatabaseMetrics.getInstance());
+      metricsHttpServer.addMetricsSource(CacheMetrics.getInstance());
+      metricsHttpServer.addMetricsSource(ConnectionPoolMetrics.getInstance());
+      metricsHttpServer.addMetricsSource(grpcServerExecutor);
+      metricsHttpServer.start();
+    }
+    // --------------- Finish metrics endpoint --------------------------
+
     // --------------- Start modelDB gRPC server --------------------------
     server.start();
     LOGGER.log(Level.SEVERE, "Server started, listening on : {0} ", grpcServerPort);
 
     // ----------- Don't exit the main thread. Wait until server is terminated -----------
     server.awaitTermination();
+    grpcServerExecutor.shutdown();
+    if (metricsHttpServer != null) {
+      metricsHttpServer.stop();
+    }
   }
 
   public static void initializeServicesBaseOnDataBase(
@@ -113,6 +167,11 @@ public class App {
     app.setArtifactStoreMappingEntity(artifactStoreMappingEntity);
     String jobEntityString = (String) entityNameMap.get("jobEntity");
     app.setJobEntity(jobEntityString);
+    String observationBucketEntity =
+        (String) entityNameMap.getOrDefault("observationBucketEntity", "ObservationBucket");
+    app.setObservationBucketEntity(observationBucketEntity);
+    String migrationEntity = (String) entityNameMap.getOrDefault("migrationEntity", "Migration");
+    app.setMigrationEntity(migrationEntity);
     // --------------- Finish Initialize Entity name from configuration --------------------------
 
     // --------------- Start Initialize Artifact Store server and Create channel -----------------
@@ -130,6 +189,42 @@ public class App {
 
     // --------------- Finish Initialize Artifact Store server and Create channel ----------------
 
+    // --------------- Start Initialize slow operation log ------------------------------------
+    SlowOperationLog.getInstance()
+        .configure((Map<String, Object>) propertiesMap.get("slowOperationLog"));
+    serverBuilder.addService(new SlowOperationService());
+    // --------------- Finish Initialize slow operation log -----------------------------------
+
+    // Write-behind buffer of LogObservation and LogMetric, null section leaves it disabled
+    app.setExperimentRunWriteBufferPropMap(
+        (Map<String, Object>) propertiesMap.get("experimentRunWriteBuffer"));
+    // Ids of new entities, null section keeps random UUIDs
+    app.setIdGenerator(IdGenerator.create((Map<String, Object>) propertiesMap.get("idGenerator")));
+    // Time buckets of the observations of document databases, null section keeps the defaults
+    app.setObservationBucketPropMap((Map<String, Object>) propertiesMap.get("observationBuckets"));
+
+    // --------------- Start Initialize entity caches ------------------------------------------
+    Map<String, Object> entityCachePropMap =
+        (Map<String, Object>) propertiesMap.getOrDefault("entityCache", Collections.emptyMap());
+    app.setProjectCache(
+        EntityCache.create(
+            "project", (Map<String, Object>) entityCachePropMap.get("project"), Project.parser()));
+    app.setExperimentCache(
+        EntityCache.create(
+            "experiment",
+            (Map<String, Object>) entityCachePropMap.get("experiment"),
+            Experiment.parser()));
+    app.setExperimentRunCache(
+        EntityCache.create(
+            "experimentRun",
+            (Map<String, Object>) entityCachePropMap.get("experimentRun"),
+            ExperimentRun.parser()));
+    // Validated parents and run name filters of CreateExperimentRun, null section leaves it off
+    app.setExperimentRunCreationCache(
+        ExperimentRunCreationCache.create(
+            (Map<String, Object>) propertiesMap.get("experimentRunCreation")));
+    // --------------- Finish Initialize entity caches -----------------------------------------
+
     // --------------- Start Initialize Database base on configuration --------------------------
     if (databasePropMap.isEmpty()) {
       throw new ModelDBException("database properties not found in config.");
@@ -196,7 +291,7 @@ public class App {
         // --------------- Finish Initialize MongoDB Database base on configuration --------------
 
         // --------------- Start Initialize MongoDB Service and modelDB services -----------------
-        initializeMongoService(serverBuilder, database);
+        initializeMongoService(serverBuilder, database, mongoDBPropMap);
         // --------------- Start Initialize MongoDB Service and modelDB services -----------------
         break;
       case "rdbms":
@@ -213,6 +308,18 @@ public class App {
         // --------------- Start Initialize mySQL Service and modelDB services -----------------
         break;
 
+      case "inmemory":
+
+        // --------------- Start Initialize in-memory Database and modelDB services -------------
+        // Nothing is persisted, meant for offline load testing and benchmarks
+        InMemoryDatabase inMemoryDatabase = new InMemoryDatabase();
+        initializeDocumentServices(
+            serverBuilder,
+            () -> new TimedDocumentService(new InMemoryDocumentService(inMemoryDatabase)));
+        LOGGER.info("In-memory database configured with server");
+        // --------------- Finish Initialize in-memory Database and modelDB services ------------
+        break;
+
       default:
         throw new ModelDBException(
             "Please enter valid database name (DBType) in config.yaml file.");
@@ -266,58 +373,169 @@ public class App {
   }
 
   private static void initializeMongoService(
-      ServerBuilder<?> serverBuilder, MongoDatabase database) {
-    DocumentService documentService = new MongoService(database);
+      ServerBuilder<?> serverBuilder, MongoDatabase database, Map<String, Object> mongoDBPropMap) {
+    ExperimentRunDAOMongoImpl experimentRunDAO =
+        initializeDocumentServices(
+            serverBuilder, () -> new TimedDocumentService(new MongoService(database)));
+
+    // --------------- Start Reconcile MongoDB indexes with index registry -----------------------
+    Boolean reconcileIndexes = (Boolean) mongoDBPropMap.getOrDefault("reconcileIndexes", true);
+    Boolean reconcileIndexesInBackground =
+        (Boolean) mongoDBPropMap.getOrDefault("reconcileIndexesInBackground", false);
+    MongoIndexManager backgroundIndexManager = null;
+    if (reconcileIndexes) {
+      MongoIndexManager indexManager =
+          new MongoIndexManager(database, reconcileIndexesInBackground);
+      if (reconcileIndexesInBackground) {
+        backgroundIndexManager = indexManager;
+        LOGGER.info("MongoDB indexes reconciliation started in background");
+      } else {
+        indexManager.reconcileIndexes();
+        LOGGER.info("MongoDB indexes reconciled");
+      }
+    }
+    // --------------- Finish Reconcile MongoDB indexes with index registry ----------------------
+
+    // --------------- Start Migrate data of earlier versions in background ----------------------
+    // The migrations scan the ExperimentRuns, so they run once the indexes are reconciled, on the
+    // same thread as a background reconciliation, and the server starts without waiting for them
+    DocumentService migrationService = new TimedDocumentService(new MongoService(database));
+    migrationService.checkCollectionAvailability(App.getInstance().getMigrationEntity());
+    MongoIndexManager indexManagerToReconcile = backgroundIndexManager;
+    Thread backgroundThread =
+        new Thread(
+            () -> {
+              if (indexManagerToReconcile != null) {
+                indexManagerToReconcile.reconcileIndexes();
+                LOGGER.info("MongoDB indexes reconciled");
+              }
+              experimentRunDAO.migrate(migrationService);
+            },
+            "mongo-index-reconciliation-and-migration");
+    backgroundThread.setDaemon(true);
+    backgroundThread.start();
+    // --------------- Finish Migrate data of earlier versions in background ---------------------
+
+    // --------------- Start Invalidate entity caches on the writes of every node ----------------
+    ChangeStreamInvalidator changeStreamInvalidator =
+        ChangeStreamInvalidator.create(
+            database, (Map<String, Object>) mongoDBPropMap.get("changeStreamInvalidation"));
+    if (changeStreamInvalidator != null) {
+      App app = App.getInstance();
+      changeStreamInvalidator.addCache(app.getProjectEntity(), app.getProjectCache());
+      changeStreamInvalidator.addCache(app.getExperimentEntity(), app.getExperimentCache());
+      changeStreamInvalidator.addCache(app.getExperimentRunEntity(), app.getExperimentRunCache());
+      changeStreamInvalidator.start();
+    }
+    // --------------- Finish Invalidate entity caches on the writes of every node ---------------
 
-    // --------------- Start Initialize Project ServiceImpl & DAO --------------------------
+    LOGGER.info("All services initialized and resolved dependency before server start");
+  }
+
+  /**
+   * Initialize the DAOs and services of the document databases (MongoDB and in-memory), each DAO
+   * gets its own DocumentService from given supplier since a DocumentService is bound to the
+   * collection of its DAO.
+   *
+   * @param ServerBuilder<?> serverBuilder
+   * @param Supplier<DocumentService> documentServiceSupplier --> new DocumentService of a DAO
+   * @return ExperimentRunDAOMongoImpl --> ExperimentRun DAO, for the migrations of its data
+   */
+  private static ExperimentRunDAOMongoImpl initializeDocumentServices(
+      ServerBuilder<?> serverBuilder, Supplier<DocumentService> documentServiceSupplier) {
+    serverBuilder.intercept(App.getInstance().getGrpcMetricsInterceptor());
 
-    documentService = new MongoService(database);
-    ProjectDAO projectDAO = new ProjectDAOMongoImpl(documentService);
+    // --------------- Start Initialize Project ServiceImpl & DAO --------------------------
+    ProjectDAO projectDAO =
+        withProjectCache(new ProjectDAOMongoImpl(documentServiceSupplier.get()));
     serverBuilder.addService(new ProjectServiceImpl(projectDAO));
     LOGGER.info("Project serviceImpl & DAO initialized");
     // --------------- Finish Initialize Project ServiceImpl & DAO --------------------------
 
     // --------------- Start Initialize Experiment ServiceImpl & DAO --------------------------
-    documentService = new MongoService(database);
-    ExperimentDAO experimentDAO = new ExperimentDAOMongoImpl(documentService);
+    ExperimentDAO experimentDAO =
+        withExperimentCache(new ExperimentDAOMongoImpl(documentServiceSupplier.get()));
     serverBuilder.addService(new ExperimentServiceImpl(experimentDAO, projectDAO));
     LOGGER.info("Experiment serviceImpl & DAO initialized");
     // --------------- Finish Initialize Experiment ServiceImpl & DAO --------------------------
 
     // --------------- Start Initialize ExperimentRun ServiceImpl & DAO with ArtifactStoreMapping
     // DAO --------------------------
-    documentService = new MongoService(database);
-    ExperimentRunDAO experimentRunDAO = new ExperimentRunDAOMongoImpl(documentService);
-
-    documentService = new MongoService(database);
-    ArtifactStoreDAO artifactStoreDAO = new ArtifactStoreDAOMongoImpl(documentService);
+    ExperimentRunDAOMongoImpl experimentRunDAOMongoImpl =
+        new ExperimentRunDAOMongoImpl(
+            documentServiceSupplier.get(),
+            new ObservationBucketStore(
+                documentServiceSupplier.get(), App.getInstance().getObservationBucketPropMap()));
+    ExperimentRunDAO experimentRunDAO = withExperimentRunCache(experimentRunDAOMongoImpl);
+    ArtifactStoreDAO artifactStoreDAO =
+        new ArtifactStoreDAOMongoImpl(documentServiceSupplier.get());
+    ExperimentRunWriteBuffer writeBuffer =
+        ExperimentRunWriteBuffer.create(
+            experimentRunDAO, App.getInstance().getExperimentRunWriteBufferPropMap());
     serverBuilder.addService(
         new ExperimentRunServiceImpl(
-            experimentRunDAO, projectDAO, experimentDAO, artifactStoreDAO));
+            experimentRunDAO, projectDAO, experimentDAO, artifactStoreDAO, writeBuffer));
+    serverBuilder.addService(
+        new ExperimentRunStreamingService(experimentRunDAO, writeBuffer, true));
+    serverBuilder.addService(new ExperimentRunBatchLogService(experimentRunDAO, writeBuffer));
+    serverBuilder.addService(
+        new PagedListingService(projectDAO, experimentDAO, experimentRunDAO, writeBuffer));
 
     LOGGER.info("ExperimentRun serviceImpl & DAO initialized");
     // --------------- Finish Initialize ExperimentRun ServiceImpl & DAO with ArtifactStoreMapping
     // DAO --------------------------
 
     // --------------- Start Initialize Job ServiceImpl --------------------------
-    documentService = new MongoService(database);
-    JobDAO jobDAO = new JobDAOMongoImpl(documentService);
+    JobDAO jobDAO = new JobDAOMongoImpl(documentServiceSupplier.get());
     serverBuilder.addService(new JobServiceImpl(jobDAO));
     // --------------- Stop Initialize Job ServiceImpl --------------------------
+    return experimentRunDAOMongoImpl;
+  }
 
-    LOGGER.info("All services initialized and resolved dependency before server start");
+  /** Put the project cache in front of given DAO of any backend, if it is enabled. */
+  private static ProjectDAO withProjectCache(ProjectDAO projectDAO) {
+    App app = App.getInstance();
+    if (app.getProjectCache() == null) {
+      return projectDAO;
+    }
+    return new CachedProjectDAO(
+        projectDAO, app.getProjectCache(), app.getExperimentCache(), app.getExperimentRunCache());
+  }
+
+  /** Put the experiment cache in front of given DAO of any backend, if it is enabled. */
+  private static ExperimentDAO withExperimentCache(ExperimentDAO experimentDAO) {
+    App app = App.getInstance();
+    if (app.getExperimentCache() == null) {
+      return experimentDAO;
+    }
+    return new CachedExperimentDAO(
+        experimentDAO, app.getExperimentCache(), app.getExperimentRunCache());
+  }
+
+  /**
+   * Put the experimentRun cache in front of given DAO of the document databases, if it is enabled.
+   * The RDBMS DAO only implements the reads of whole ExperimentRuns, caching it would answer the
+   * field getters it does not implement.
+   */
+  private static ExperimentRunDAO withExperimentRunCache(ExperimentRunDAO experimentRunDAO) {
+    App app = App.getInstance();
+    if (app.getExperimentRunCache() == null) {
+      return experimentRunDAO;
+    }
+    return new CachedExperimentRunDAO(experimentRunDAO, app.getExperimentRunCache());
   }
 
   private static void initializeRDBMSServices(ServerBuilder<?> serverBuilder) {
+    serverBuilder.intercept(App.getInstance().getGrpcMetricsInterceptor());
 
     // --------------- Start Initialize Project ServiceImpl & DAO --------------------------
-    ProjectDAO projectDAO = new ProjectDAORdbImpl();
+    ProjectDAO projectDAO = withProjectCache(new ProjectDAORdbImpl());
     serverBuilder.addService(new ProjectServiceImpl(projectDAO));
     LOGGER.info("Project serviceImpl & DAO initialized");
     // --------------- Finish Initialize Project ServiceImpl & DAO --------------------------
 
     // --------------- Start Initialize Experiment ServiceImpl & DAO --------------------------
-    ExperimentDAO experimentDAO = new ExperimentDAORdbImpl();
+    ExperimentDAO experimentDAO = withExperimentCache(new ExperimentDAORdbImpl());
     serverBuilder.addService(new ExperimentServiceImpl(experimentDAO, projectDAO));
     LOGGER.info("Experiment serviceImpl & DAO initialized");
     // --------------- Finish Initialize Experiment ServiceImpl & DAO --------------------------
@@ -327,9 +545,18 @@ public class App {
     ExperimentRunDAO experimentRunDAO = new ExperimentRunDAORdbImpl();
 
     ArtifactStoreDAO artifactStoreDAO = new ArtifactStoreDAORdbImpl();
+    ExperimentRunWriteBuffer writeBuffer =
+        ExperimentRunWriteBuffer.create(
+            experimentRunDAO, App.getInstance().getExperimentRunWriteBufferPropMap());
     serverBuilder.addService(
         new ExperimentRunServiceImpl(
-            experimentRunDAO, projectDAO, experimentDAO, artifactStoreDAO));
+            experimentRunDAO, projectDAO, experimentDAO, artifactStoreDAO, writeBuffer));
+    // findExperimentRuns is not supported on RDBMS, neither is its streaming variant
+    serverBuilder.addService(
+        new ExperimentRunStreamingService(experimentRunDAO, writeBuffer, false));
+    serverBuilder.addService(new ExperimentRunBatchLogService(experimentRunDAO, writeBuffer));
+    serverBuilder.addService(
+        new PagedListingService(projectDAO, experimentDAO, experimentRunDAO, writeBuffer));
 
     LOGGER.info("ExperimentRun serviceImpl & DAO initialized");
     // --------------- Finish Initialize ExperimentRun ServiceImpl & DAO with ArtifactStoreMapping
@@ -375,6 +602,10 @@ public class App {
     this.artifactStoreMappingEntity = artifactStoreMappingEntity;
   }
 
+  public GrpcMetricsInterceptor getGrpcMetricsInterceptor() {
+    return grpcMetricsInterceptor;
+  }
+
   public ManagedChannel getArtifactServerChannel() {
     return artifactServerChannel;
   }
@@ -390,4 +621,78 @@ public class App {
   public void setJobEntity(String jobEntity) {
     this.jobEntity = jobEntity;
   }
+
+  public String getObservationBucketEntity() {
+    return observationBucketEntity;
+  }
+
+  public void setObservationBucketEntity(String observationBucketEntity) {
+    this.observationBucketEntity = observationBucketEntity;
+  }
+
+  public String getMigrationEntity() {
+    return migrationEntity;
+  }
+
+  public void setMigrationEntity(String migrationEntity) {
+    this.migrationEntity = migrationEntity;
+  }
+
+  public Map<String, Object> getExperimentRunWriteBufferPropMap() {
+    return experimentRunWriteBufferPropMap;
+  }
+
+  public void setExperimentRunWriteBufferPropMap(
+      Map<String, Object> experimentRunWriteBufferPropMap) {
+    this.experimentRunWriteBufferPropMap = experimentRunWriteBufferPropMap;
+  }
+
+  public Map<String, Object> getObservationBucketPropMap() {
+    return observationBucketPropMap;
+  }
+
+  public void setObservationBucketPropMap(Map<String, Object> observationBucketPropMap) {
+    this.observationBucketPropMap = observationBucketPropMap;
+  }
+
+  public EntityCache<Project> getProjectCache() {
+    return projectCache;
+  }
+
+  public void setProjectCache(EntityCache<Project> projectCache) {
+    this.projectCache = projectCache;
+  }
+
+  public EntityCache<Experiment> getExperimentCache() {
+    return experimentCache;
+  }
+
+  public void setExperimentCache(EntityCache<Experiment> experimentCache) {
+    this.experimentCache = experimentCache;
+  }
+
+  public EntityCache<ExperimentRun> getExperimentRunCache() {
+    return experimentRunCache;
+  }
+
+  public void setExperimentRunCache(EntityCache<ExperimentRun> experimentRunCache) {
+    this.experimentRunCache = experimentRunCache;
+  }
+
+  public IdGenerator getIdGenerator() {
+    return idGenerator;
+  }
+
+  public void setIdGenerator(IdGenerator idGenerator) {
+    this.idGenerator = idGenerator;
+  }
+
+  public ExperimentRunCreationCache getExperimentRunCreationCache() {
+    return experimentRunCreationCache;
+  }
+
+  public void setExperimentRunCreationCache(
+      ExperimentRunCreationCache experimentRunCreationCache) {
+    this.experimentRunCreationCache = experimentRunCreationCache;
+  }
 }
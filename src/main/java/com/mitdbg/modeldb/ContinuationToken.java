@@ -0,0 +1,215 @@
+package com.mitdbg.modeldb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.bson.Document;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import com.google.rpc.Code;
+import com.google.rpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.protobuf.StatusProto;
+
+/**
+ * Opaque continuation token of keyset pagination. It carries the sort of the listing and the sort
+ * value and id of the last entity returned, so the next page is read with a range query on (sortBy,
+ * id) bound to these values, instead of skipping all the previous records.
+ *
+ * <p>The token comes back from the client, so nothing read from it is trusted: the sort field must
+ * be a sortable field of the listing, the sort field and order must be the ones of the request and
+ * the last sort value must have the type of the sort field. The sort field is the only part which
+ * ends up in a query text, the values are always bound as parameters.
+ */
+public class ContinuationToken {
+
+  public static final Set<String> PROJECT_SORT_FIELDS =
+      unmodifiableSet(
+          ModelDBConstants.NAME, ModelDBConstants.DATE_CREATED, ModelDBConstants.DATE_UPDATED);
+  public static final Set<String> EXPERIMENT_SORT_FIELDS = PROJECT_SORT_FIELDS;
+  public static final Set<String> EXPERIMENT_RUN_SORT_FIELDS =
+      unmodifiableSet(
+          ModelDBConstants.NAME,
+          ModelDBConstants.DATE_CREATED,
+          ModelDBConstants.DATE_UPDATED,
+          ModelDBConstants.START_TIME,
+          ModelDBConstants.END_TIME);
+
+  private static final String SORT_BY = "sort_by";
+  private static final String ORDER = "order";
+  private static final String LAST_VALUE = "last_value";
+  private static final String LAST_ID = "last_id";
+
+  private final String sortBy;
+  private final String order;
+  private final FieldDescriptor sortField;
+  private final Object lastSortValue;
+  private final String lastId;
+
+  private ContinuationToken(
+      String sortBy, String order, FieldDescriptor sortField, Object lastSortValue, String lastId) {
+    this.sortBy = sortBy;
+    this.order = order;
+    this.sortField = sortField;
+    this.lastSortValue = lastSortValue;
+    this.lastId = lastId;
+  }
+
+  private static Set<String> unmodifiableSet(String... fields) {
+    return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(fields)));
+  }
+
+  public String getSortBy() {
+    return sortBy;
+  }
+
+  public String getOrder() {
+    return order;
+  }
+
+  /** @return Object --> sort value of the last entity (Long or String), null for first page */
+  public Object getLastSortValue() {
+    return lastSortValue;
+  }
+
+  /**
+   * @return Object --> sort value of the last entity as stored by ProtoCodec in MongoDB: int64 as
+   *     a string and a default value as a missing field, i.e. null
+   */
+  public Object getLastStoredSortValue() {
+    if (lastSortValue == null || lastSortValue.equals(sortField.getDefaultValue())) {
+      return null;
+    }
+    return lastSortValue instanceof Long ? lastSortValue.toString() : lastSortValue;
+  }
+
+  /** @return String --> id of the last entity, null for first page */
+  public String getLastId() {
+    return lastId;
+  }
+
+  public Boolean isAscending() {
+    return order.equals(ModelDBConstants.ORDER_ASC);
+  }
+
+  /**
+   * Encode token in URL safe base64 string which is handed to the client.
+   *
+   * @return String token
+   */
+  public String encode() {
+    Document tokenDocument = new Document();
+    tokenDocument.append(SORT_BY, sortBy);
+    tokenDocument.append(ORDER, order);
+    tokenDocument.append(LAST_VALUE, lastSortValue);
+    tokenDocument.append(LAST_ID, lastId);
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(tokenDocument.toJson().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Validate the sort of a listing request and decode the token received from client. Empty token
+   * means first page, so there is no last entity.
+   *
+   * @param String token --> token returned with the previous page, may be null or empty
+   * @param String sortBy --> sort field of the request, date_created if empty
+   * @param String order --> sort order of the request, asc or desc, desc if empty
+   * @param Descriptor descriptor --> descriptor of the listed entity, e.g. Project.getDescriptor()
+   * @param Set<String> sortableFields --> fields the listing can be sorted on
+   * @return ContinuationToken token
+   */
+  public static ContinuationToken decode(
+      String token,
+      String sortBy,
+      String order,
+      Descriptor descriptor,
+      Set<String> sortableFields) {
+    sortBy = (sortBy == null || sortBy.isEmpty()) ? ModelDBConstants.DATE_CREATED : sortBy;
+    order = (order == null || order.isEmpty()) ? ModelDBConstants.ORDER_DESC : order.toLowerCase();
+    FieldDescriptor sortField = descriptor.findFieldByName(sortBy);
+    if (!sortableFields.contains(sortBy) || sortField == null) {
+      throw getInvalidArgumentException("Listing can not be sorted on " + sortBy);
+    }
+    if (!order.equals(ModelDBConstants.ORDER_ASC) && !order.equals(ModelDBConstants.ORDER_DESC)) {
+      throw getInvalidArgumentException("Invalid sort order " + order);
+    }
+    if (token == null || token.isEmpty()) {
+      return new ContinuationToken(sortBy, order, sortField, null, null);
+    }
+
+    Document tokenDocument;
+    try {
+      tokenDocument =
+          Document.parse(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+    } catch (RuntimeException e) {
+      throw getInvalidArgumentException("Invalid continuation token");
+    }
+    if (!sortBy.equals(tokenDocument.get(SORT_BY)) || !order.equals(tokenDocument.get(ORDER))) {
+      throw getInvalidArgumentException(
+          "Continuation token does not match the sort of the request");
+    }
+    Object lastId = tokenDocument.get(LAST_ID);
+    if (!(lastId instanceof String) || ((String) lastId).isEmpty()) {
+      throw getInvalidArgumentException("Invalid continuation token");
+    }
+    return new ContinuationToken(
+        sortBy,
+        order,
+        sortField,
+        getSortValue(sortField, tokenDocument.get(LAST_VALUE)),
+        (String) lastId);
+  }
+
+  /** Check that given value of the token has the type of the sort field. */
+  private static Object getSortValue(FieldDescriptor sortField, Object value) {
+    switch (sortField.getJavaType()) {
+      case LONG:
+        if (value instanceof Long || value instanceof Integer) {
+          return ((Number) value).longValue();
+        }
+        break;
+      case STRING:
+        if (value instanceof String) {
+          return value;
+        }
+        break;
+      default:
+        break;
+    }
+    throw getInvalidArgumentException("Invalid continuation token");
+  }
+
+  private static StatusRuntimeException getInvalidArgumentException(String errorMessage) {
+    Status status =
+        Status.newBuilder().setCode(Code.INVALID_ARGUMENT_VALUE).setMessage(errorMessage).build();
+    return StatusProto.toStatusRuntimeException(status);
+  }
+
+  /**
+   * Build the token of the page following given page.
+   *
+   * @param List<T> page --> entities returned for the current page
+   * @param Integer pageLimit --> requested page size, 0 or null returned all the remaining entities
+   * @return String next token, empty if given page is the last one
+   */
+  public <T extends Message> String next(List<T> page, Integer pageLimit) {
+    if (page.isEmpty() || pageLimit == null || pageLimit <= 0 || page.size() < pageLimit) {
+      return "";
+    }
+    T lastEntity = page.get(page.size() - 1);
+    Descriptor descriptor = lastEntity.getDescriptorForType();
+    return new ContinuationToken(
+            sortBy,
+            order,
+            sortField,
+            lastEntity.getField(sortField),
+            (String) lastEntity.getField(descriptor.findFieldByName(ModelDBConstants.ID)))
+        .encode();
+  }
+}
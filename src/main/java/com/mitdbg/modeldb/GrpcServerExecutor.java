@@ -0,0 +1,366 @@
+package com.mitdbg.modeldb;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.google.rpc.Code;
+import com.google.rpc.Status;
+import com.mitdbg.modeldb.monitoring.MetricsSource;
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.protobuf.StatusProto;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+/**
+ * Build the modelDB gRPC server from the grpcServer section of config.yaml, with the executor which
+ * runs the service handlers and the netty event loops. Without an executor gRPC uses an unbounded
+ * cached thread pool, and as every handler blocks on MongoDB or Hibernate, a burst of requests
+ * creates one thread per request.
+ *
+ * <p>Executor types:
+ *
+ * <ul>
+ *   <li>bounded --> fixed pool of poolSize threads with a queue of queueSize calls. Once the queue
+ *       is full new work of a call is rejected and the call is closed with RESOURCE_EXHAUSTED, so
+ *       clients back off instead of waiting on a growing queue. The call is closed on the transport
+ *       thread which submitted the work, no service handler ever runs there.
+ *   <li>forkJoin --> ForkJoinPool of poolSize parallelism in async mode.
+ *   <li>virtual --> one virtual thread per call, on JDKs providing virtual threads. Falls back to
+ *       bounded on older JDKs.
+ *   <li>default --> gRPC default cached thread pool.
+ * </ul>
+ *
+ * <p>The load of the executor is served on the metrics endpoint: active threads, pool size, queued
+ * calls and rejected calls.
+ */
+public class GrpcServerExecutor implements MetricsSource {
+
+  private static final Logger LOGGER = Logger.getLogger(GrpcServerExecutor.class.getName());
+
+  private static final String EXECUTOR = "executor";
+  private static final String TYPE = "type";
+  private static final String POOL_SIZE = "poolSize";
+  private static final String QUEUE_SIZE = "queueSize";
+  private static final String SATURATION_REPORT_INTERVAL = "saturationReportInterval";
+  private static final String BOSS_EVENT_LOOP_THREADS = "bossEventLoopThreads";
+  private static final String WORKER_EVENT_LOOP_THREADS = "workerEventLoopThreads";
+
+  private static final String BOUNDED = "bounded";
+  private static final String FORK_JOIN = "forkJoin";
+  private static final String VIRTUAL = "virtual";
+  private static final String DEFAULT = "default";
+
+  private static final int DEFAULT_QUEUE_SIZE = 1000;
+  private static final int DEFAULT_SATURATION_REPORT_INTERVAL = 60;
+
+  private static final String ACTIVE_THREADS_METRIC_NAME = "modeldb_grpc_executor_active_threads";
+  private static final String POOL_SIZE_METRIC_NAME = "modeldb_grpc_executor_pool_size";
+  private static final String QUEUED_CALLS_METRIC_NAME = "modeldb_grpc_executor_queued_calls";
+  private static final String REJECTED_CALLS_METRIC_NAME =
+      "modeldb_grpc_executor_rejected_calls_total";
+
+  /** True while the transport thread runs work rejected by the executor. */
+  private static final ThreadLocal<Boolean> REJECTED_WORK = ThreadLocal.withInitial(() -> false);
+
+  private final Map<String, Object> grpcServerMap;
+  private final Map<String, Object> executorMap;
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private ExecutorService executor = null;
+  private ScheduledExecutorService saturationReporter = null;
+  private EventLoopGroup bossEventLoopGroup = null;
+  private EventLoopGroup workerEventLoopGroup = null;
+
+  @SuppressWarnings("unchecked")
+  public GrpcServerExecutor(Map<String, Object> grpcServerMap) {
+    this.grpcServerMap = grpcServerMap;
+    Map<String, Object> configuredExecutorMap = (Map<String, Object>) grpcServerMap.get(EXECUTOR);
+    this.executorMap =
+        configuredExecutorMap == null ? Collections.emptyMap() : configuredExecutorMap;
+  }
+
+  /**
+   * Create the server builder of given port with the configured executor and event loops.
+   *
+   * @param Integer port
+   * @return ServerBuilder serverBuilder
+   */
+  public ServerBuilder<?> newServerBuilder(Integer port) {
+    NettyServerBuilder serverBuilder = NettyServerBuilder.forPort(port);
+
+    Integer bossThreads = (Integer) grpcServerMap.get(BOSS_EVENT_LOOP_THREADS);
+    Integer workerThreads = (Integer) grpcServerMap.get(WORKER_EVENT_LOOP_THREADS);
+    if (bossThreads != null || workerThreads != null) {
+      // Netty needs both groups and the channel type once one of the groups is customized, 0
+      // threads means the netty default of twice the number of cores
+      bossEventLoopGroup =
+          new NioEventLoopGroup(
+              bossThreads == null ? 1 : bossThreads, newThreadFactory("grpc-boss", true));
+      workerEventLoopGroup =
+          new NioEventLoopGroup(
+              workerThreads == null ? 0 : workerThreads, newThreadFactory("grpc-worker", true));
+      serverBuilder
+          .bossEventLoopGroup(bossEventLoopGroup)
+          .workerEventLoopGroup(workerEventLoopGroup)
+          .channelType(NioServerSocketChannel.class);
+    }
+
+    String executorType = (String) executorMap.getOrDefault(TYPE, DEFAULT);
+    Integer poolSize =
+        (Integer)
+            executorMap.getOrDefault(POOL_SIZE, Runtime.getRuntime().availableProcessors() * 8);
+    Integer queueSize = (Integer) executorMap.getOrDefault(QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+
+    if (executorType.equals(VIRTUAL)) {
+      executor = newVirtualThreadExecutor();
+      if (executor == null) {
+        LOGGER.warning("Virtual threads are not supported by this JDK, using bounded executor");
+        executorType = BOUNDED;
+      }
+    }
+    if (executorType.equals(BOUNDED)) {
+      executor = newBoundedExecutor(poolSize, queueSize);
+    } else if (executorType.equals(FORK_JOIN)) {
+      executor =
+          new ForkJoinPool(poolSize, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    } else if (!executorType.equals(VIRTUAL) && !executorType.equals(DEFAULT)) {
+      throw new IllegalArgumentException("Unknown grpcServer executor type : " + executorType);
+    }
+
+    if (executor != null) {
+      serverBuilder.executor(executor);
+      // First interceptor, so it is the innermost one and the other interceptors still see the
+      // rejected calls
+      serverBuilder.intercept(new RejectedCallInterceptor());
+      startSaturationReporter(
+          (Integer)
+              executorMap.getOrDefault(
+                  SATURATION_REPORT_INTERVAL, DEFAULT_SATURATION_REPORT_INTERVAL));
+    }
+    LOGGER.info("grpc server executor : " + executorType);
+    return serverBuilder;
+  }
+
+  /**
+   * The rejected work is run on the submitting transport thread marked as rejected: the {@link
+   * RejectedCallInterceptor} then closes its call with RESOURCE_EXHAUSTED instead of running the
+   * service handler, so the transport thread never blocks on a handler.
+   */
+  private ExecutorService newBoundedExecutor(Integer poolSize, Integer queueSize) {
+    return new ThreadPoolExecutor(
+        poolSize,
+        poolSize,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        newThreadFactory("grpc-executor", true),
+        (runnable, threadPoolExecutor) -> {
+          rejectedCount.incrementAndGet();
+          REJECTED_WORK.set(true);
+          try {
+            runnable.run();
+          } finally {
+            REJECTED_WORK.set(false);
+          }
+        });
+  }
+
+  /**
+   * Close the calls whose work was rejected by the executor with RESOURCE_EXHAUSTED. Starting a
+   * call, a message, the half close and the readiness of a call run the service handler and are
+   * replaced by the close when rejected. Completion and cancellation only release the resources of
+   * the call and are always delivered.
+   */
+  private static class RejectedCallInterceptor implements ServerInterceptor {
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+        ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+      AtomicBoolean closed = new AtomicBoolean(false);
+      if (REJECTED_WORK.get()) {
+        closeRejectedCall(call, closed);
+        return new ServerCall.Listener<ReqT>() {};
+      }
+      return new SimpleForwardingServerCallListener<ReqT>(next.startCall(call, headers)) {
+        @Override
+        public void onMessage(ReqT message) {
+          if (REJECTED_WORK.get()) {
+            closeRejectedCall(call, closed);
+          } else {
+            super.onMessage(message);
+          }
+        }
+
+        @Override
+        public void onHalfClose() {
+          if (REJECTED_WORK.get()) {
+            closeRejectedCall(call, closed);
+          } else {
+            super.onHalfClose();
+          }
+        }
+
+        @Override
+        public void onReady() {
+          if (REJECTED_WORK.get()) {
+            closeRejectedCall(call, closed);
+          } else {
+            super.onReady();
+          }
+        }
+      };
+    }
+
+    private static void closeRejectedCall(ServerCall<?, ?> call, AtomicBoolean closed) {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      String errorMessage = "Server is overloaded, retry later";
+      LOGGER.log(Level.FINE, errorMessage + " : " + call.getMethodDescriptor().getFullMethodName());
+      Status status =
+          Status.newBuilder()
+              .setCode(Code.RESOURCE_EXHAUSTED_VALUE)
+              .setMessage(errorMessage)
+              .build();
+      StatusRuntimeException statusRuntimeException =
+          StatusProto.toStatusRuntimeException(status);
+      try {
+        call.close(statusRuntimeException.getStatus(), statusRuntimeException.getTrailers());
+      } catch (IllegalStateException e) {
+        // The handler already closed the call
+      }
+    }
+  }
+
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  private static ThreadFactory newThreadFactory(String namePrefix, Boolean daemon) {
+    AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, namePrefix + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(daemon);
+      return thread;
+    };
+  }
+
+  /**
+   * Log the load of the executor every interval seconds while it is saturated, i.e. all threads are
+   * busy and calls are waiting in the queue or were rejected.
+   */
+  private void startSaturationReporter(Integer intervalSeconds) {
+    if (intervalSeconds == null || intervalSeconds <= 0) {
+      return;
+    }
+    saturationReporter =
+        Executors.newSingleThreadScheduledExecutor(
+            newThreadFactory("grpc-executor-saturation", true));
+    AtomicLong lastRejectedCount = new AtomicLong();
+    saturationReporter.scheduleAtFixedRate(
+        () -> {
+          try {
+            if (executor instanceof ThreadPoolExecutor) {
+              ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) executor;
+              long rejected = rejectedCount.get();
+              long newlyRejected = rejected - lastRejectedCount.getAndSet(rejected);
+              if (newlyRejected > 0 || threadPoolExecutor.getQueue().remainingCapacity() == 0) {
+                LOGGER.warning(
+                    "grpc executor saturated, active threads : "
+                        + threadPoolExecutor.getActiveCount()
+                        + "/"
+                        + threadPoolExecutor.getMaximumPoolSize()
+                        + ", queued calls : "
+                        + threadPoolExecutor.getQueue().size()
+                        + ", rejected calls : "
+                        + newlyRejected);
+              }
+            } else if (executor instanceof ForkJoinPool) {
+              ForkJoinPool forkJoinPool = (ForkJoinPool) executor;
+              if (forkJoinPool.getQueuedSubmissionCount() > 0
+                  && forkJoinPool.getActiveThreadCount() >= forkJoinPool.getParallelism()) {
+                LOGGER.warning(
+                    "grpc executor saturated, active threads : "
+                        + forkJoinPool.getActiveThreadCount()
+                        + "/"
+                        + forkJoinPool.getParallelism()
+                        + ", queued calls : "
+                        + forkJoinPool.getQueuedSubmissionCount());
+              }
+            }
+          } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "grpc executor saturation report failed", e);
+          }
+        },
+        intervalSeconds,
+        intervalSeconds,
+        TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void writeMetrics(StringBuilder builder) {
+    if (executor instanceof ThreadPoolExecutor) {
+      ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) executor;
+      writeMetric(
+          builder, ACTIVE_THREADS_METRIC_NAME, "gauge", threadPoolExecutor.getActiveCount());
+      writeMetric(
+          builder, POOL_SIZE_METRIC_NAME, "gauge", threadPoolExecutor.getMaximumPoolSize());
+      writeMetric(
+          builder, QUEUED_CALLS_METRIC_NAME, "gauge", threadPoolExecutor.getQueue().size());
+      writeMetric(builder, REJECTED_CALLS_METRIC_NAME, "counter", rejectedCount.get());
+    } else if (executor instanceof ForkJoinPool) {
+      ForkJoinPool forkJoinPool = (ForkJoinPool) executor;
+      writeMetric(
+          builder, ACTIVE_THREADS_METRIC_NAME, "gauge", forkJoinPool.getActiveThreadCount());
+      writeMetric(builder, POOL_SIZE_METRIC_NAME, "gauge", forkJoinPool.getParallelism());
+      writeMetric(
+          builder, QUEUED_CALLS_METRIC_NAME, "gauge", forkJoinPool.getQueuedSubmissionCount());
+    }
+  }
+
+  private static void writeMetric(
+      StringBuilder builder, String metricName, String metricType, long value) {
+    builder.append("# TYPE ").append(metricName).append(' ').append(metricType).append('\n');
+    builder.append(metricName).append(' ').append(value).append('\n');
+  }
+
+  /** Stop the executor and event loops once the server is terminated. */
+  public void shutdown() {
+    if (saturationReporter != null) {
+      saturationReporter.shutdownNow();
+    }
+    if (executor != null) {
+      executor.shutdown();
+    }
+    if (bossEventLoopGroup != null) {
+      bossEventLoopGroup.shutdownGracefully();
+    }
+    if (workerEventLoopGroup != null) {
+      workerEventLoopGroup.shutdownGracefully();
+    }
+  }
+}
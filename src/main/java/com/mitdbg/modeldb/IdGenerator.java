@@ -0,0 +1,89 @@
+package com.mitdbg.modeldb;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Generator of the ids of new Projects, Experiments, ExperimentRuns and Jobs. Both types generate
+ * the usual 36 character UUID strings, so ids of either type live side by side with existing ids.
+ *
+ * <ul>
+ *   <li>random : random UUID (version 4), inserts land anywhere in the id indexes.
+ *   <li>timeOrdered : UUID version 7 layout, 48 bits of Unix milliseconds, a 12 bit sequence and 62
+ *       random bits. Ids of a node increase strictly, across nodes they increase with time, so
+ *       inserts append to the right edge of the id indexes and the recently created entities share
+ *       the same index pages.
+ * </ul>
+ */
+public abstract class IdGenerator {
+
+  private static final Logger LOGGER = Logger.getLogger(IdGenerator.class.getName());
+
+  private static final String TYPE = "type";
+  private static final String RANDOM = "random";
+  private static final String TIME_ORDERED = "timeOrdered";
+
+  /** @return String id --> new unique id */
+  public abstract String generateId();
+
+  /**
+   * Create the generator configured by the idGenerator section of config.yaml.
+   *
+   * @param Map<String, Object> idGeneratorPropMap --> type, may be null for random
+   * @return IdGenerator
+   */
+  public static IdGenerator create(Map<String, Object> idGeneratorPropMap)
+      throws ModelDBException {
+    String type =
+        idGeneratorPropMap == null
+            ? RANDOM
+            : (String) idGeneratorPropMap.getOrDefault(TYPE, RANDOM);
+    LOGGER.info("Id generator type " + type);
+    switch (type) {
+      case RANDOM:
+        return new RandomIdGenerator();
+      case TIME_ORDERED:
+        return new TimeOrderedIdGenerator();
+      default:
+        throw new ModelDBException("Unknown id generator type " + type);
+    }
+  }
+
+  static class RandomIdGenerator extends IdGenerator {
+
+    @Override
+    public String generateId() {
+      return UUID.randomUUID().toString();
+    }
+  }
+
+  /**
+   * The timestamp and sequence are one 60 bit counter, advanced by compare and set without locking:
+   * each id takes max(last + 1, now << 12), so more than 4096 ids in one millisecond borrow the
+   * next milliseconds instead of repeating or going back, as does a clock moving backwards.
+   */
+  static class TimeOrderedIdGenerator extends IdGenerator {
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final long VERSION = 7L << SEQUENCE_BITS;
+    private static final long VARIANT = 0x8000000000000000L;
+    private static final long RANDOM_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    private final AtomicLong lastTimestampSequence = new AtomicLong();
+
+    @Override
+    public String generateId() {
+      long nowTimestampSequence = System.currentTimeMillis() << SEQUENCE_BITS;
+      long timestampSequence =
+          lastTimestampSequence.updateAndGet(last -> Math.max(last + 1, nowTimestampSequence));
+      long timestamp = timestampSequence >>> SEQUENCE_BITS;
+      long sequence = timestampSequence & ((1L << SEQUENCE_BITS) - 1);
+      long mostSigBits = (timestamp << 16) | VERSION | sequence;
+      long leastSigBits = VARIANT | (ThreadLocalRandom.current().nextLong() & RANDOM_MASK);
+      return new UUID(mostSigBits, leastSigBits).toString();
+    }
+  }
+}
@@ -33,6 +33,16 @@ public interface ModelDBConstants {
   String HYPERPARAMETERS = "hyperparameters";
   String CLOUD_ARTIFACTS = "cloud_artifacts";
   String DATE_CREATED = "date_created";
+  String DATE_UPDATED = "date_updated";
+  String START_TIME = "start_time";
+  String METRIC_VALUES = "metric_values";
+  String HYPERPARAMETER_VALUES = "hyperparameter_values";
+  String OBSERVATIONS_UPDATED = "observations_updated";
+
+  // ObservationBucket Entity constants
+  String EXPERIMENT_RUN_ID = "experiment_run_id";
+  String BUCKET_START = "bucket_start";
+  String COUNT = "count";
 
   // Common constants
   String ORDER_ASC = "asc";
@@ -44,4 +54,6 @@ public interface ModelDBConstants {
 
   // job entity
   String JOB_ID = "job_id";
+  String JOB_STATUS = "job_status";
+  String END_TIME = "end_time";
 }
@@ -1,14 +1,24 @@
 package com.mitdbg.modeldb;
 
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Environment;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
 import com.google.rpc.Code;
 import com.google.rpc.Status;
 import com.mitdbg.modeldb.entities.ArtifactEntity;
@@ -16,12 +26,17 @@ import com.mitdbg.modeldb.entities.ExperimentEntity;
 import com.mitdbg.modeldb.entities.ExperimentRunEntity;
 import com.mitdbg.modeldb.entities.FeatureEntity;
 import com.mitdbg.modeldb.entities.KeyValueEntity;
+import com.mitdbg.modeldb.entities.ObservationEntity;
 import com.mitdbg.modeldb.entities.ProjectEntity;
 import com.mitdbg.modeldb.entities.TagsMapping;
+import com.mitdbg.modeldb.monitoring.HibernateMetricsListener;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import io.grpc.protobuf.StatusProto;
 
 public class ModelDBHibernateUtil {
   private static final Logger LOGGER = Logger.getLogger(ModelDBHibernateUtil.class.getName());
+  private static final String KEY_VALUE_UNIQUE_KEY = "uk_keyvalue_experiment_run_field_key";
   private static StandardServiceRegistry registry;
   private static SessionFactory sessionFactory;
   public static Map<String, Object> databasePropMap;
@@ -59,6 +74,10 @@ public class ModelDBHibernateUtil {
         settings.put(Environment.DIALECT, rDBDialect);
         settings.put(Environment.HBM2DDL_AUTO, "update");
         settings.put(Environment.SHOW_SQL, "false");
+        applyConnectionPoolSettings(settings, rDBPropMap);
+        // Time JDBC statements, flushes and sessions of every session for the metrics endpoint
+        settings.put(
+            Environment.AUTO_SESSION_EVENTS_LISTENER, HibernateMetricsListener.class.getName());
         configuration.setProperties(settings);
 
         configuration.addAnnotatedClass(ProjectEntity.class);
@@ -68,6 +87,7 @@ public class ModelDBHibernateUtil {
         configuration.addAnnotatedClass(ArtifactEntity.class);
         configuration.addAnnotatedClass(FeatureEntity.class);
         configuration.addAnnotatedClass(TagsMapping.class);
+        configuration.addAnnotatedClass(ObservationEntity.class);
 
         // Create registry builder
         StandardServiceRegistryBuilder registryBuilder =
@@ -76,6 +96,7 @@ public class ModelDBHibernateUtil {
         // Create registry
         registry = registryBuilder.build();
         sessionFactory = configuration.buildSessionFactory(registry);
+        migrateKeyValueSchema(sessionFactory);
       } catch (Exception e) {
         e.printStackTrace();
         LOGGER.log(Level.WARNING, "ModelDBHibernateUtil getSessionFactory() getting error ", e);
@@ -90,6 +111,140 @@ public class ModelDBHibernateUtil {
     return sessionFactory;
   }
 
+  /**
+   * Configure the HikariCP connection pool, the JDBC driver properties and the JDBC batching from
+   * the RdbConfiguration section of config.yaml, every setting has a default.
+   *
+   * @param Properties settings --> Hibernate settings
+   * @param Map<String, Object> rDBPropMap --> RdbConfiguration section
+   */
+  private static void applyConnectionPoolSettings(
+      Properties settings, Map<String, Object> rDBPropMap) {
+    Map<String, Object> poolPropMap =
+        (Map<String, Object>) rDBPropMap.getOrDefault("connectionPool", Collections.emptyMap());
+    settings.put(Environment.CONNECTION_PROVIDER, HikariCPConnectionProvider.class.getName());
+    settings.put("hibernate.hikari.poolName", "modeldb");
+    settings.put(
+        "hibernate.hikari.maximumPoolSize",
+        String.valueOf(poolPropMap.getOrDefault("maximumPoolSize", 20)));
+    settings.put(
+        "hibernate.hikari.minimumIdle", String.valueOf(poolPropMap.getOrDefault("minimumIdle", 5)));
+    settings.put(
+        "hibernate.hikari.connectionTimeout",
+        String.valueOf(poolPropMap.getOrDefault("connectionTimeout", 30000)));
+    settings.put(
+        "hibernate.hikari.idleTimeout",
+        String.valueOf(poolPropMap.getOrDefault("idleTimeout", 600000)));
+    settings.put(
+        "hibernate.hikari.maxLifetime",
+        String.valueOf(poolPropMap.getOrDefault("maxLifetime", 1800000)));
+    settings.put(
+        "hibernate.hikari.leakDetectionThreshold",
+        String.valueOf(poolPropMap.getOrDefault("leakDetectionThreshold", 60000)));
+
+    // Passed to the driver with every new connection
+    Map<String, Object> jdbcPropMap =
+        (Map<String, Object>) rDBPropMap.getOrDefault("jdbcProperties", Collections.emptyMap());
+    for (Map.Entry<String, Object> jdbcProperty : jdbcPropMap.entrySet()) {
+      settings.put(
+          "hibernate.hikari.dataSource." + jdbcProperty.getKey(),
+          String.valueOf(jdbcProperty.getValue()));
+    }
+
+    settings.put(
+        Environment.STATEMENT_BATCH_SIZE,
+        String.valueOf(rDBPropMap.getOrDefault("jdbcBatchSize", 50)));
+    settings.put(
+        Environment.ORDER_INSERTS, String.valueOf(rDBPropMap.getOrDefault("orderInserts", true)));
+    settings.put(
+        Environment.ORDER_UPDATES, String.valueOf(rDBPropMap.getOrDefault("orderUpdates", true)));
+    settings.put(Environment.BATCH_VERSIONED_DATA, "true");
+    settings.put(
+        Environment.DEFAULT_BATCH_FETCH_SIZE,
+        String.valueOf(rDBPropMap.getOrDefault("batchFetchSize", 100)));
+  }
+
+  /**
+   * hbm2ddl update neither changes the type of an existing column nor creates a unique constraint
+   * over a TEXT column, so the keyvalue tables created before kv_key was bounded are migrated here:
+   * kv_key becomes VARCHAR(255) and the unique constraint over (experiment_run_id, field_type,
+   * kv_key) is added. A failure, e.g. a longer key or duplicate keys already stored, is only
+   * logged: ExperimentRunDAORdbImpl still checks the existing keys under the lock of the
+   * experimentRun row.
+   *
+   * @param SessionFactory sessionFactory
+   */
+  private static void migrateKeyValueSchema(SessionFactory sessionFactory) {
+    try (Session session = sessionFactory.openSession()) {
+      session.doWork(
+          connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String productName = metaData.getDatabaseProductName();
+            String alterKeyColumn;
+            if (productName.equalsIgnoreCase("MySQL")) {
+              alterKeyColumn = "ALTER TABLE keyvalue MODIFY kv_key VARCHAR(255)";
+            } else if (productName.equalsIgnoreCase("PostgreSQL")) {
+              alterKeyColumn = "ALTER TABLE keyvalue ALTER COLUMN kv_key TYPE VARCHAR(255)";
+            } else {
+              LOGGER.log(
+                  Level.INFO, "keyvalue schema migration not supported for {0}", productName);
+              return;
+            }
+
+            boolean keyColumnIsVarchar = true;
+            try (ResultSet columns =
+                metaData.getColumns(connection.getCatalog(), null, "keyvalue", "kv_key")) {
+              if (columns.next()) {
+                keyColumnIsVarchar = columns.getInt("DATA_TYPE") == Types.VARCHAR;
+              }
+            }
+            boolean uniqueKeyExists = false;
+            try (ResultSet indexes =
+                metaData.getIndexInfo(connection.getCatalog(), null, "keyvalue", true, false)) {
+              while (indexes.next()) {
+                if (KEY_VALUE_UNIQUE_KEY.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                  uniqueKeyExists = true;
+                }
+              }
+            }
+
+            try (Statement statement = connection.createStatement()) {
+              if (!keyColumnIsVarchar) {
+                LOGGER.info("Migrating keyvalue.kv_key to VARCHAR(255)");
+                statement.executeUpdate(alterKeyColumn);
+              }
+              if (!uniqueKeyExists) {
+                LOGGER.info("Adding unique constraint " + KEY_VALUE_UNIQUE_KEY);
+                statement.executeUpdate(
+                    "ALTER TABLE keyvalue ADD CONSTRAINT "
+                        + KEY_VALUE_UNIQUE_KEY
+                        + " UNIQUE (experiment_run_id, field_type, kv_key)");
+              }
+            } catch (SQLException e) {
+              LOGGER.log(Level.WARNING, "keyvalue schema migration failed", e);
+            }
+          });
+    }
+  }
+
+  /**
+   * @return HikariPoolMXBean --> counters of the connection pool, null until the SessionFactory of
+   *     the RDBMS is built
+   */
+  public static HikariPoolMXBean getConnectionPoolMXBean() {
+    if (sessionFactory == null) {
+      return null;
+    }
+    ConnectionProvider connectionProvider =
+        ((SessionFactoryImplementor) sessionFactory)
+            .getServiceRegistry()
+            .getService(ConnectionProvider.class);
+    if (connectionProvider == null || !connectionProvider.isUnwrappableAs(HikariDataSource.class)) {
+      return null;
+    }
+    return connectionProvider.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+  }
+
   public static void shutdown() {
     if (registry != null) {
       StandardServiceRegistryBuilder.destroy(registry);
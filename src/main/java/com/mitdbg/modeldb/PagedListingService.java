@@ -0,0 +1,356 @@
+package com.mitdbg.modeldb;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.google.protobuf.Any;
+import com.google.protobuf.Message;
+import com.google.rpc.Code;
+import com.google.rpc.Status;
+import com.mitdbg.modeldb.experiment.ExperimentDAO;
+import com.mitdbg.modeldb.experimentRun.ExperimentRunDAO;
+import com.mitdbg.modeldb.experimentRun.ExperimentRunWriteBuffer;
+import com.mitdbg.modeldb.project.ProjectDAO;
+import io.grpc.BindableService;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.StatusRuntimeException;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.protobuf.StatusProto;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Keyset paginated variants of the Project, Experiment and ExperimentRun listings, read through the
+ * getProjectsAfter, getExperimentsInProjectAfter and getExperimentRunsFromEntityAfter DAO methods.
+ * They take the request and return the response of the unary listings, page_number is ignored.
+ *
+ * <p>The listing messages are defined in the protos-modeldb submodule and have no continuation
+ * token field, so the token travels in the call metadata: the client sends the token of the
+ * previous page in the continuation-token header, and gets the token of the next page in the
+ * next-continuation-token trailer, absent after the last page. GetProjects has no paging fields,
+ * its page-limit, sort-by and sort-order are headers too.
+ */
+public class PagedListingService implements BindableService {
+
+  private static final Logger LOGGER = Logger.getLogger(PagedListingService.class.getName());
+  public static final String SERVICE_NAME = "modeldb.PagedListingService";
+
+  public static final Metadata.Key<String> CONTINUATION_TOKEN_HEADER =
+      Metadata.Key.of("continuation-token", Metadata.ASCII_STRING_MARSHALLER);
+  public static final Metadata.Key<String> NEXT_CONTINUATION_TOKEN_TRAILER =
+      Metadata.Key.of("next-continuation-token", Metadata.ASCII_STRING_MARSHALLER);
+  public static final Metadata.Key<String> PAGE_LIMIT_HEADER =
+      Metadata.Key.of("page-limit", Metadata.ASCII_STRING_MARSHALLER);
+  public static final Metadata.Key<String> SORT_BY_HEADER =
+      Metadata.Key.of("sort-by", Metadata.ASCII_STRING_MARSHALLER);
+  public static final Metadata.Key<String> SORT_ORDER_HEADER =
+      Metadata.Key.of("sort-order", Metadata.ASCII_STRING_MARSHALLER);
+
+  // Headers of the current call, and trailers added to its close
+  private static final Context.Key<Metadata> REQUEST_HEADERS = Context.key("requestHeaders");
+  private static final Context.Key<Metadata> RESPONSE_TRAILERS = Context.key("responseTrailers");
+
+  private static final MethodDescriptor<GetProjects, GetProjects.Response> GET_PROJECTS_METHOD =
+      unaryMethod(
+          "getProjects",
+          GetProjects.getDefaultInstance(),
+          GetProjects.Response.getDefaultInstance());
+
+  private static final MethodDescriptor<GetExperimentsInProject, GetExperimentsInProject.Response>
+      GET_EXPERIMENTS_IN_PROJECT_METHOD =
+          unaryMethod(
+              "getExperimentsInProject",
+              GetExperimentsInProject.getDefaultInstance(),
+              GetExperimentsInProject.Response.getDefaultInstance());
+
+  private static final MethodDescriptor<
+          GetExperimentRunsInProject, GetExperimentRunsInProject.Response>
+      GET_EXPERIMENT_RUNS_IN_PROJECT_METHOD =
+          unaryMethod(
+              "getExperimentRunsInProject",
+              GetExperimentRunsInProject.getDefaultInstance(),
+              GetExperimentRunsInProject.Response.getDefaultInstance());
+
+  private static final MethodDescriptor<
+          GetExperimentRunsInExperiment, GetExperimentRunsInExperiment.Response>
+      GET_EXPERIMENT_RUNS_IN_EXPERIMENT_METHOD =
+          unaryMethod(
+              "getExperimentRunsInExperiment",
+              GetExperimentRunsInExperiment.getDefaultInstance(),
+              GetExperimentRunsInExperiment.Response.getDefaultInstance());
+
+  /** Expose the call metadata to the handlers through the gRPC Context. */
+  private static final ServerInterceptor METADATA_INTERCEPTOR =
+      new ServerInterceptor() {
+        @Override
+        public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+          Metadata responseTrailers = new Metadata();
+          ServerCall<ReqT, RespT> trailersCall =
+              new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+                @Override
+                public void close(io.grpc.Status status, Metadata trailers) {
+                  trailers.merge(responseTrailers);
+                  super.close(status, trailers);
+                }
+              };
+          Context context =
+              Context.current()
+                  .withValues(REQUEST_HEADERS, headers, RESPONSE_TRAILERS, responseTrailers);
+          return Contexts.interceptCall(context, trailersCall, headers, next);
+        }
+      };
+
+  private final ProjectDAO projectDAO;
+  private final ExperimentDAO experimentDAO;
+  private final ExperimentRunDAO experimentRunDAO;
+  private final ExperimentRunWriteBuffer writeBuffer;
+
+  /**
+   * @param ProjectDAO projectDAO
+   * @param ExperimentDAO experimentDAO
+   * @param ExperimentRunDAO experimentRunDAO
+   * @param ExperimentRunWriteBuffer writeBuffer --> buffer flushed before listing runs, may be null
+   */
+  public PagedListingService(
+      ProjectDAO projectDAO,
+      ExperimentDAO experimentDAO,
+      ExperimentRunDAO experimentRunDAO,
+      ExperimentRunWriteBuffer writeBuffer) {
+    this.projectDAO = projectDAO;
+    this.experimentDAO = experimentDAO;
+    this.experimentRunDAO = experimentRunDAO;
+    this.writeBuffer = writeBuffer;
+  }
+
+  private static <ReqT extends Message, RespT extends Message>
+      MethodDescriptor<ReqT, RespT> unaryMethod(
+          String methodName, ReqT defaultRequest, RespT defaultResponse) {
+    return MethodDescriptor.<ReqT, RespT>newBuilder()
+        .setType(MethodType.UNARY)
+        .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, methodName))
+        .setRequestMarshaller(ProtoUtils.marshaller(defaultRequest))
+        .setResponseMarshaller(ProtoUtils.marshaller(defaultResponse))
+        .build();
+  }
+
+  @Override
+  public ServerServiceDefinition bindService() {
+    return ServerInterceptors.intercept(
+        ServerServiceDefinition.builder(SERVICE_NAME)
+            .addMethod(GET_PROJECTS_METHOD, ServerCalls.asyncUnaryCall(this::getProjects))
+            .addMethod(
+                GET_EXPERIMENTS_IN_PROJECT_METHOD,
+                ServerCalls.asyncUnaryCall(this::getExperimentsInProject))
+            .addMethod(
+                GET_EXPERIMENT_RUNS_IN_PROJECT_METHOD,
+                ServerCalls.asyncUnaryCall(this::getExperimentRunsInProject))
+            .addMethod(
+                GET_EXPERIMENT_RUNS_IN_EXPERIMENT_METHOD,
+                ServerCalls.asyncUnaryCall(this::getExperimentRunsInExperiment))
+            .build(),
+        METADATA_INTERCEPTOR);
+  }
+
+  public void getProjects(
+      GetProjects request, StreamObserver<GetProjects.Response> responseObserver) {
+    try {
+      Integer pageLimit = getPageLimitHeader(GetProjects.Response.getDefaultInstance());
+      ContinuationToken continuationToken =
+          ContinuationToken.decode(
+              getRequestHeader(CONTINUATION_TOKEN_HEADER),
+              getRequestHeader(SORT_BY_HEADER),
+              getRequestHeader(SORT_ORDER_HEADER),
+              Project.getDescriptor(),
+              ContinuationToken.PROJECT_SORT_FIELDS);
+
+      List<Project> projects = projectDAO.getProjectsAfter(pageLimit, continuationToken);
+      setNextContinuationToken(continuationToken.next(projects, pageLimit));
+      responseObserver.onNext(GetProjects.Response.newBuilder().addAllProjects(projects).build());
+      responseObserver.onCompleted();
+    } catch (StatusRuntimeException e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(e);
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(
+          getInternalErrorException(GetProjects.Response.getDefaultInstance()));
+    }
+  }
+
+  public void getExperimentsInProject(
+      GetExperimentsInProject request,
+      StreamObserver<GetExperimentsInProject.Response> responseObserver) {
+    try {
+      if (request.getProjectId().isEmpty()) {
+        throw getInvalidArgumentException(
+            "Project ID is not found in GetExperimentsInProject request.",
+            GetExperimentsInProject.Response.getDefaultInstance());
+      }
+      ContinuationToken continuationToken =
+          ContinuationToken.decode(
+              getRequestHeader(CONTINUATION_TOKEN_HEADER),
+              request.getSortBy(),
+              request.getSortOrder(),
+              Experiment.getDescriptor(),
+              ContinuationToken.EXPERIMENT_SORT_FIELDS);
+
+      List<Experiment> experiments =
+          experimentDAO.getExperimentsInProjectAfter(
+              request.getProjectId(), request.getPageLimit(), continuationToken);
+      setNextContinuationToken(continuationToken.next(experiments, request.getPageLimit()));
+      responseObserver.onNext(
+          GetExperimentsInProject.Response.newBuilder().addAllExperiments(experiments).build());
+      responseObserver.onCompleted();
+    } catch (StatusRuntimeException e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(e);
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(
+          getInternalErrorException(GetExperimentsInProject.Response.getDefaultInstance()));
+    }
+  }
+
+  public void getExperimentRunsInProject(
+      GetExperimentRunsInProject request,
+      StreamObserver<GetExperimentRunsInProject.Response> responseObserver) {
+    try {
+      if (request.getProjectId().isEmpty()) {
+        throw getInvalidArgumentException(
+            "Project ID is not found in GetExperimentRunsInProject request.",
+            GetExperimentRunsInProject.Response.getDefaultInstance());
+      }
+      ContinuationToken continuationToken =
+          ContinuationToken.decode(
+              getRequestHeader(CONTINUATION_TOKEN_HEADER),
+              request.getSortBy(),
+              request.getSortOrder(),
+              ExperimentRun.getDescriptor(),
+              ContinuationToken.EXPERIMENT_RUN_SORT_FIELDS);
+
+      if (writeBuffer != null) {
+        writeBuffer.flushListing(request.getProjectId(), "", Collections.emptyList());
+      }
+      List<ExperimentRun> experimentRuns =
+          experimentRunDAO.getExperimentRunsFromEntityAfter(
+              ModelDBConstants.PROJECT_ID,
+              request.getProjectId(),
+              request.getPageLimit(),
+              continuationToken);
+      setNextContinuationToken(continuationToken.next(experimentRuns, request.getPageLimit()));
+      responseObserver.onNext(
+          GetExperimentRunsInProject.Response.newBuilder()
+              .addAllExperimentRuns(experimentRuns)
+              .build());
+      responseObserver.onCompleted();
+    } catch (StatusRuntimeException e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(e);
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(
+          getInternalErrorException(GetExperimentRunsInProject.Response.getDefaultInstance()));
+    }
+  }
+
+  public void getExperimentRunsInExperiment(
+      GetExperimentRunsInExperiment request,
+      StreamObserver<GetExperimentRunsInExperiment.Response> responseObserver) {
+    try {
+      if (request.getExperimentId().isEmpty()) {
+        throw getInvalidArgumentException(
+            "Experiment ID is not found in GetExperimentRunsInExperiment request.",
+            GetExperimentRunsInExperiment.Response.getDefaultInstance());
+      }
+      ContinuationToken continuationToken =
+          ContinuationToken.decode(
+              getRequestHeader(CONTINUATION_TOKEN_HEADER),
+              request.getSortBy(),
+              request.getSortOrder(),
+              ExperimentRun.getDescriptor(),
+              ContinuationToken.EXPERIMENT_RUN_SORT_FIELDS);
+
+      if (writeBuffer != null) {
+        writeBuffer.flushListing("", request.getExperimentId(), Collections.emptyList());
+      }
+      List<ExperimentRun> experimentRuns =
+          experimentRunDAO.getExperimentRunsFromEntityAfter(
+              ModelDBConstants.EXPERIMENT_ID,
+              request.getExperimentId(),
+              request.getPageLimit(),
+              continuationToken);
+      setNextContinuationToken(continuationToken.next(experimentRuns, request.getPageLimit()));
+      responseObserver.onNext(
+          GetExperimentRunsInExperiment.Response.newBuilder()
+              .addAllExperimentRuns(experimentRuns)
+              .build());
+      responseObserver.onCompleted();
+    } catch (StatusRuntimeException e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(e);
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(
+          getInternalErrorException(GetExperimentRunsInExperiment.Response.getDefaultInstance()));
+    }
+  }
+
+  private static String getRequestHeader(Metadata.Key<String> key) {
+    Metadata headers = REQUEST_HEADERS.get();
+    return headers == null ? null : headers.get(key);
+  }
+
+  /** @return Integer --> page-limit header, null if absent */
+  private static Integer getPageLimitHeader(Message defaultResponse) {
+    String pageLimit = getRequestHeader(PAGE_LIMIT_HEADER);
+    if (pageLimit == null || pageLimit.isEmpty()) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(pageLimit);
+    } catch (NumberFormatException e) {
+      throw getInvalidArgumentException("Invalid page-limit header " + pageLimit, defaultResponse);
+    }
+  }
+
+  private static void setNextContinuationToken(String nextToken) {
+    Metadata responseTrailers = RESPONSE_TRAILERS.get();
+    if (responseTrailers != null && !nextToken.isEmpty()) {
+      responseTrailers.put(NEXT_CONTINUATION_TOKEN_TRAILER, nextToken);
+    }
+  }
+
+  private static StatusRuntimeException getInvalidArgumentException(
+      String errorMessage, Message defaultResponse) {
+    LOGGER.log(Level.WARNING, errorMessage);
+    Status status =
+        Status.newBuilder()
+            .setCode(Code.INVALID_ARGUMENT_VALUE)
+            .setMessage(errorMessage)
+            .addDetails(Any.pack(defaultResponse))
+            .build();
+    return StatusProto.toStatusRuntimeException(status);
+  }
+
+  private static StatusRuntimeException getInternalErrorException(Message defaultResponse) {
+    Status status =
+        Status.newBuilder()
+            .setCode(Code.INTERNAL.getNumber())
+            .setMessage("Internal server error.")
+            .addDetails(Any.pack(defaultResponse))
+            .build();
+    return StatusProto.toStatusRuntimeException(status);
+  }
+}
@@ -2,19 +2,155 @@ package com.mitdbg.modeldb;
 
 import java.util.ArrayList;
 import java.util.List;
+import org.hibernate.query.Query;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.mitdbg.modeldb.entities.ArtifactEntity;
 import com.mitdbg.modeldb.entities.ExperimentEntity;
 import com.mitdbg.modeldb.entities.ExperimentRunEntity;
 import com.mitdbg.modeldb.entities.FeatureEntity;
 import com.mitdbg.modeldb.entities.KeyValueEntity;
+import com.mitdbg.modeldb.entities.ObservationEntity;
 import com.mitdbg.modeldb.entities.ProjectEntity;
 import com.mitdbg.modeldb.entities.TagsMapping;
+import com.mitdbg.modeldb.monitoring.DatabaseMetrics;
+import com.mitdbg.modeldb.monitoring.SlowOperationLog;
 
 public class RdbmsUtils {
 
   private RdbmsUtils() {}
 
+  /**
+   * HQL predicate of keyset pagination selecting the rows sorted after the last row of the
+   * previous page, on the (sortBy, id) sort of given continuationToken. The sort field was
+   * validated against the sortable fields when the token was decoded, the last sort value and id
+   * are bound by {@link #setKeysetParameters(Query, ContinuationToken)}.
+   *
+   * @param String alias --> alias of the entity in the query, e.g. ee
+   * @param ContinuationToken continuationToken --> token with a last id
+   * @return String predicate
+   */
+  public static String getKeysetPredicate(String alias, ContinuationToken continuationToken) {
+    String sortField = alias + "." + continuationToken.getSortBy();
+    String idField = alias + "." + ModelDBConstants.ID;
+    String rangeOperator = continuationToken.isAscending() ? " > " : " < ";
+    return " ("
+        + sortField
+        + rangeOperator
+        + ":lastSortValue OR ("
+        + sortField
+        + " = :lastSortValue AND "
+        + idField
+        + rangeOperator
+        + ":lastId)) ";
+  }
+
+  /**
+   * HQL order by clause of keyset pagination, on the sort field then the id as tie breaker.
+   *
+   * @param String alias --> alias of the entity in the query, e.g. ee
+   * @param ContinuationToken continuationToken
+   * @return String order by clause
+   */
+  public static String getKeysetOrderBy(String alias, ContinuationToken continuationToken) {
+    String direction =
+        continuationToken.isAscending() ? ModelDBConstants.ORDER_ASC : ModelDBConstants.ORDER_DESC;
+    return " ORDER BY "
+        + alias
+        + "."
+        + continuationToken.getSortBy()
+        + " "
+        + direction
+        + ", "
+        + alias
+        + "."
+        + ModelDBConstants.ID
+        + " "
+        + direction;
+  }
+
+  /**
+   * Bind the parameters of {@link #getKeysetPredicate(String, ContinuationToken)}.
+   *
+   * @param Query<?> query
+   * @param ContinuationToken continuationToken --> token with a last id
+   */
+  public static void setKeysetParameters(Query<?> query, ContinuationToken continuationToken) {
+    query.setParameter("lastSortValue", continuationToken.getLastSortValue());
+    query.setParameter("lastId", continuationToken.getLastId());
+  }
+
+  /**
+   * Run given select query and record it in {@link SlowOperationLog} if it is slow.
+   *
+   * @param Query<T> query
+   * @param String entity --> queried entity, e.g. ProjectEntity
+   * @param String operation --> DAO method, e.g. getProjects
+   * @return List<T> rows
+   */
+  public static <T> List<T> listWithSlowOperationLog(
+      Query<T> query, String entity, String operation) {
+    long startNanos = System.nanoTime();
+    List<T> rows = query.list();
+    SlowOperationLog.getInstance()
+        .record(
+            DatabaseMetrics.HIBERNATE,
+            entity,
+            operation,
+            query.getQueryString(),
+            System.nanoTime() - startNanos,
+            rows.size(),
+            null);
+    return rows;
+  }
+
+  /**
+   * Run given query of at most one row and record it in {@link SlowOperationLog} if it is slow.
+   *
+   * @param Query<T> query
+   * @param String entity --> queried entity, e.g. ProjectEntity
+   * @param String operation --> DAO method, e.g. checkIfEntityAlreadyExists
+   * @return T row, null if none
+   */
+  public static <T> T uniqueResultWithSlowOperationLog(
+      Query<T> query, String entity, String operation) {
+    long startNanos = System.nanoTime();
+    T row = query.uniqueResult();
+    SlowOperationLog.getInstance()
+        .record(
+            DatabaseMetrics.HIBERNATE,
+            entity,
+            operation,
+            query.getQueryString(),
+            System.nanoTime() - startNanos,
+            row == null ? 0 : 1,
+            null);
+    return row;
+  }
+
+  /**
+   * Run given update or delete query and record it in {@link SlowOperationLog} if it is slow.
+   *
+   * @param Query<?> query
+   * @param String entity --> updated entity, e.g. TagsMapping
+   * @param String operation --> DAO method, e.g. deleteProjectTags
+   * @return int number of updated or deleted rows
+   */
+  public static int executeUpdateWithSlowOperationLog(
+      Query<?> query, String entity, String operation) {
+    long startNanos = System.nanoTime();
+    int rowCount = query.executeUpdate();
+    SlowOperationLog.getInstance()
+        .record(
+            DatabaseMetrics.HIBERNATE,
+            entity,
+            operation,
+            query.getQueryString(),
+            System.nanoTime() - startNanos,
+            rowCount,
+            null);
+    return rowCount;
+  }
+
   public static ProjectEntity convertFromProjectToProjectEntity(Project project)
       throws InvalidProtocolBufferException {
     return new ProjectEntity(project);
@@ -123,6 +259,29 @@ public class RdbmsUtils {
     return artifactList;
   }
 
+  public static List<ObservationEntity> convertFromObservationsToObservationEntityList(
+      ExperimentRunEntity experimentRunEntity, List<Observation> observationList)
+      throws InvalidProtocolBufferException {
+    List<ObservationEntity> observationEntityList = new ArrayList<>();
+    if (observationList != null) {
+      for (Observation observation : observationList) {
+        observationEntityList.add(new ObservationEntity(experimentRunEntity, observation));
+      }
+    }
+    return observationEntityList;
+  }
+
+  public static List<Observation> convertFromObservationEntityListToObservations(
+      List<ObservationEntity> observationEntityList) throws InvalidProtocolBufferException {
+    List<Observation> observationList = new ArrayList<>();
+    if (observationEntityList != null) {
+      for (ObservationEntity observationEntity : observationEntityList) {
+        observationList.add(observationEntity.getProtoObservation());
+      }
+    }
+    return observationList;
+  }
+
   public static List<TagsMapping> convertFromTagListToTagMappingList(
       Object entity, List<String> tagsList) {
     List<TagsMapping> tagsMappings = new ArrayList<>();
@@ -0,0 +1,64 @@
+package com.mitdbg.modeldb.cache;
+
+/**
+ * Bloom filter of strings: {@link #mightContain(String)} is false only for a string which was never
+ * added, and true for a string which was not added with about the falsePositiveRate it was sized
+ * for. The bit indexes are derived from two independent hashes of the string by double hashing. Not
+ * thread safe.
+ */
+class BloomFilter {
+
+  private final long[] bits;
+  private final int bitCount;
+  private final int hashCount;
+
+  /**
+   * @param int expectedInsertions --> number of strings the filter is sized for
+   * @param double falsePositiveRate --> false positive rate once expectedInsertions were added
+   */
+  BloomFilter(int expectedInsertions, double falsePositiveRate) {
+    int insertions = Math.max(1, expectedInsertions);
+    double ln2 = Math.log(2);
+    long optimalBitCount =
+        (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+    this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBitCount));
+    this.hashCount = Math.max(1, (int) Math.round((double) bitCount / insertions * ln2));
+    this.bits = new long[(bitCount + 63) / 64];
+  }
+
+  void add(String value) {
+    int hash1 = hash1(value);
+    int hash2 = hash2(value);
+    for (int i = 0; i < hashCount; i++) {
+      int index = Math.floorMod(hash1 + i * hash2, bitCount);
+      bits[index >>> 6] |= 1L << index;
+    }
+  }
+
+  boolean mightContain(String value) {
+    int hash1 = hash1(value);
+    int hash2 = hash2(value);
+    for (int i = 0; i < hashCount; i++) {
+      int index = Math.floorMod(hash1 + i * hash2, bitCount);
+      if ((bits[index >>> 6] & (1L << index)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash1(String value) {
+    int hash = value.hashCode() * 0x9e3779b9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /** FNV-1a of the characters, never 0 so that the double hashing steps move. */
+  private static int hash2(String value) {
+    int hash = 0x811c9dc5;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x01000193;
+    }
+    return hash | 1;
+  }
+}
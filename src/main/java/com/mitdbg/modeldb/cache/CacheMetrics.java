@@ -0,0 +1,61 @@
+package com.mitdbg.modeldb.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import com.mitdbg.modeldb.monitoring.MetricsSource;
+
+/** Hit, miss, eviction and admission rejection counters and size of every {@link EntityCache}. */
+public class CacheMetrics implements MetricsSource {
+
+  private static final String REQUESTS_METRIC_NAME = "modeldb_cache_requests_total";
+  private static final String EVICTIONS_METRIC_NAME = "modeldb_cache_evictions_total";
+  private static final String REJECTIONS_METRIC_NAME = "modeldb_cache_rejections_total";
+  private static final String SIZE_METRIC_NAME = "modeldb_cache_size";
+  private static final CacheMetrics INSTANCE = new CacheMetrics();
+
+  private final List<EntityCache<?>> caches = new CopyOnWriteArrayList<>();
+
+  private CacheMetrics() {}
+
+  public static CacheMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  void addCache(EntityCache<?> cache) {
+    caches.add(cache);
+  }
+
+  @Override
+  public void writeMetrics(StringBuilder builder) {
+    builder.append("# TYPE ").append(REQUESTS_METRIC_NAME).append(" counter\n");
+    for (EntityCache<?> cache : caches) {
+      writeSample(builder, REQUESTS_METRIC_NAME, cache, ",result=\"hit\"", cache.getHitCount());
+      writeSample(builder, REQUESTS_METRIC_NAME, cache, ",result=\"miss\"", cache.getMissCount());
+    }
+    builder.append("# TYPE ").append(EVICTIONS_METRIC_NAME).append(" counter\n");
+    for (EntityCache<?> cache : caches) {
+      writeSample(builder, EVICTIONS_METRIC_NAME, cache, "", cache.getEvictionCount());
+    }
+    builder.append("# TYPE ").append(REJECTIONS_METRIC_NAME).append(" counter\n");
+    for (EntityCache<?> cache : caches) {
+      writeSample(builder, REJECTIONS_METRIC_NAME, cache, "", cache.getRejectionCount());
+    }
+    builder.append("# TYPE ").append(SIZE_METRIC_NAME).append(" gauge\n");
+    for (EntityCache<?> cache : caches) {
+      writeSample(builder, SIZE_METRIC_NAME, cache, "", cache.getSize());
+    }
+  }
+
+  private static void writeSample(
+      StringBuilder builder, String metricName, EntityCache<?> cache, String labels, long value) {
+    builder
+        .append(metricName)
+        .append("{cache=\"")
+        .append(cache.getName())
+        .append('"')
+        .append(labels)
+        .append("} ")
+        .append(value)
+        .append('\n');
+  }
+}
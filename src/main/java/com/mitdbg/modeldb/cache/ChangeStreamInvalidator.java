@@ -0,0 +1,276 @@
+package com.mitdbg.modeldb.cache;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.Document;
+import com.mitdbg.modeldb.ModelDBConstants;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+
+/**
+ * Keeps the {@link EntityCache}s of this node coherent with the writes of the other modelDB nodes
+ * sharing the MongoDB database, from a change stream of the database (MongoDB 4.0 replica set or
+ * sharded cluster). An update or replace of an entity invalidates it by id. A delete only carries
+ * the MongoDB _id of the document, so it invalidates the whole cache of its collection, as do drops
+ * and renames.
+ *
+ * <p>The resume token of the last event is saved per node in the resumeTokenCollection, at most
+ * every resumeTokenSaveIntervalMillis, and the stream resumes from it after errors and restarts. If
+ * the stream can not be resumed, the caches are cleared and the stream restarts from now, events
+ * missed in between can not have stale entries left behind.
+ *
+ * <p>Invalidation is asynchronous: a read on this node right after a write on another node can
+ * still see the cached entity until the event arrives, usually within milliseconds.
+ */
+public class ChangeStreamInvalidator {
+
+  private static final Logger LOGGER = Logger.getLogger(ChangeStreamInvalidator.class.getName());
+  private static final String RESUME_TOKEN = "resume_token";
+  private static final String UPDATED_AT = "updated_at";
+  private static final long RETRY_DELAY_MILLIS = 1000;
+
+  private final MongoDatabase database;
+  private final MongoCollection<BsonDocument> resumeTokenCollection;
+  private final String nodeId;
+  private final long resumeTokenSaveIntervalMillis;
+  private final Map<String, List<EntityCache<?>>> collectionCacheMap = new ConcurrentHashMap<>();
+  private volatile BsonDocument resumeToken;
+  private long resumeTokenSavedAtMillis = 0;
+
+  /**
+   * @param MongoDatabase database --> database shared by the modelDB nodes
+   * @param String resumeTokenCollection --> collection of the resume tokens of the nodes
+   * @param String nodeId --> key of the resume token of this node
+   * @param long resumeTokenSaveIntervalMillis --> minimum time between two saves of the token
+   */
+  public ChangeStreamInvalidator(
+      MongoDatabase database,
+      String resumeTokenCollection,
+      String nodeId,
+      long resumeTokenSaveIntervalMillis) {
+    this.database = database;
+    this.resumeTokenCollection = database.getCollection(resumeTokenCollection, BsonDocument.class);
+    this.nodeId = nodeId;
+    this.resumeTokenSaveIntervalMillis = resumeTokenSaveIntervalMillis;
+  }
+
+  /**
+   * Create the invalidator configured by the changeStreamInvalidation section of the MongoDB
+   * configuration in config.yaml.
+   *
+   * @param MongoDatabase database
+   * @param Map<String, Object> invalidationPropMap --> enabled, nodeId, resumeTokenCollection and
+   *     resumeTokenSaveIntervalMillis, may be null
+   * @return ChangeStreamInvalidator --> null if change stream invalidation is not enabled
+   */
+  public static ChangeStreamInvalidator create(
+      MongoDatabase database, Map<String, Object> invalidationPropMap) {
+    if (invalidationPropMap == null
+        || !(Boolean) invalidationPropMap.getOrDefault("enabled", false)) {
+      return null;
+    }
+    String nodeId = (String) invalidationPropMap.get("nodeId");
+    if (nodeId == null || nodeId.isEmpty()) {
+      try {
+        nodeId = InetAddress.getLocalHost().getHostName();
+      } catch (UnknownHostException e) {
+        LOGGER.log(Level.WARNING, e.getMessage(), e);
+        nodeId = "modeldb-backend";
+      }
+    }
+    String resumeTokenCollection =
+        (String) invalidationPropMap.getOrDefault("resumeTokenCollection", "CacheResumeToken");
+    int resumeTokenSaveIntervalMillis =
+        (Integer) invalidationPropMap.getOrDefault("resumeTokenSaveIntervalMillis", 1000);
+    LOGGER.info(
+        "Change stream cache invalidation enabled, nodeId "
+            + nodeId
+            + ", resumeTokenCollection "
+            + resumeTokenCollection);
+    return new ChangeStreamInvalidator(
+        database, resumeTokenCollection, nodeId, resumeTokenSaveIntervalMillis);
+  }
+
+  /**
+   * Invalidate given cache on the changes of the entities of given collection.
+   *
+   * @param String collectionName --> collection of the cached entities, e.g. Project
+   * @param EntityCache<?> cache --> cache of the entities, nothing is registered if null
+   */
+  public void addCache(String collectionName, EntityCache<?> cache) {
+    if (cache != null) {
+      collectionCacheMap
+          .computeIfAbsent(collectionName, name -> new CopyOnWriteArrayList<>())
+          .add(cache);
+    }
+  }
+
+  /** Start watching the database on a daemon thread, if any cache was added. */
+  public void start() {
+    if (collectionCacheMap.isEmpty()) {
+      LOGGER.info("No entity cache enabled, change stream cache invalidation not started");
+      return;
+    }
+    Thread thread = new Thread(this::watch, "cache-invalidation-change-stream");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void watch() {
+    try {
+      BsonDocument savedToken =
+          resumeTokenCollection.find(new BsonDocument("_id", new BsonString(nodeId))).first();
+      resumeToken = savedToken != null ? savedToken.getDocument(RESUME_TOKEN, null) : null;
+    } catch (MongoException e) {
+      LOGGER.log(Level.WARNING, "Resume token not read: " + e.getMessage(), e);
+    }
+
+    while (!Thread.currentThread().isInterrupted()) {
+      ChangeStreamIterable<Document> changeStream =
+          database.watch(getPipeline()).fullDocument(FullDocument.UPDATE_LOOKUP);
+      if (resumeToken != null) {
+        changeStream = changeStream.resumeAfter(resumeToken);
+      }
+      try (MongoCursor<ChangeStreamDocument<Document>> cursor = changeStream.iterator()) {
+        LOGGER.info("Change stream cache invalidation watching " + collectionCacheMap.keySet());
+        while (cursor.hasNext()) {
+          ChangeStreamDocument<Document> change = cursor.next();
+          if (!invalidate(change)) {
+            // The stream is invalidated and can not be resumed after this event
+            resumeToken = null;
+            break;
+          }
+          resumeToken = change.getResumeToken();
+          saveResumeToken(false);
+        }
+      } catch (MongoCommandException e) {
+        // The server can not resume from the token, e.g. it fell off the oplog
+        LOGGER.log(Level.WARNING, "Change stream can not be resumed: " + e.getMessage(), e);
+        resumeToken = null;
+      } catch (MongoException e) {
+        LOGGER.log(Level.WARNING, "Change stream failed: " + e.getMessage(), e);
+      }
+      // Changes may have been missed until the stream is open again
+      invalidateAll();
+      saveResumeToken(true);
+      try {
+        TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Watch the changes of the cached collections, except inserts which can not make a cached entity
+   * stale, and keep only the fields the invalidation reads.
+   */
+  private List<Document> getPipeline() {
+    List<String> collectionNames = new ArrayList<>(collectionCacheMap.keySet());
+    Document matchDoc =
+        new Document(
+            "$or",
+            Arrays.asList(
+                new Document("ns.coll", new Document("$in", collectionNames))
+                    .append("operationType", new Document("$ne", "insert")),
+                new Document(
+                    "operationType",
+                    new Document("$in", Arrays.asList("dropDatabase", "invalidate")))));
+    Document projectDoc =
+        new Document("operationType", 1)
+            .append("ns", 1)
+            .append("documentKey", 1)
+            .append("fullDocument." + ModelDBConstants.ID, 1);
+    return Arrays.asList(new Document("$match", matchDoc), new Document("$project", projectDoc));
+  }
+
+  /**
+   * Invalidate the cached entities changed by given event.
+   *
+   * @param ChangeStreamDocument<Document> change
+   * @return boolean --> false if the event invalidates the change stream itself
+   */
+  private boolean invalidate(ChangeStreamDocument<Document> change) {
+    OperationType operationType = change.getOperationType();
+    if (operationType == OperationType.INVALIDATE) {
+      invalidateAll();
+      return false;
+    }
+    List<EntityCache<?>> caches =
+        change.getNamespace() != null
+            ? collectionCacheMap.get(change.getNamespace().getCollectionName())
+            : null;
+    if (caches == null) {
+      invalidateAll();
+      return true;
+    }
+    Document fullDocument = change.getFullDocument();
+    String entityId = fullDocument != null ? fullDocument.getString(ModelDBConstants.ID) : null;
+    boolean byId =
+        (operationType == OperationType.UPDATE || operationType == OperationType.REPLACE)
+            && entityId != null;
+    for (EntityCache<?> cache : caches) {
+      if (byId) {
+        cache.invalidate(entityId);
+      } else {
+        cache.invalidateAll();
+      }
+    }
+    return true;
+  }
+
+  private void invalidateAll() {
+    for (List<EntityCache<?>> caches : collectionCacheMap.values()) {
+      for (EntityCache<?> cache : caches) {
+        cache.invalidateAll();
+      }
+    }
+  }
+
+  /**
+   * Save the resume token of this node, unless it was saved less than resumeTokenSaveIntervalMillis
+   * ago and given force is false. A null token is saved too, so a restart does not resume from a
+   * token which can not be resumed.
+   */
+  private void saveResumeToken(boolean force) {
+    long nowMillis = System.currentTimeMillis();
+    if (!force && nowMillis - resumeTokenSavedAtMillis < resumeTokenSaveIntervalMillis) {
+      return;
+    }
+    BsonDocument tokenDoc =
+        new BsonDocument("_id", new BsonString(nodeId))
+            .append(UPDATED_AT, new BsonInt64(nowMillis));
+    if (resumeToken != null) {
+      tokenDoc.append(RESUME_TOKEN, resumeToken);
+    }
+    try {
+      resumeTokenCollection.replaceOne(
+          new BsonDocument("_id", new BsonString(nodeId)),
+          tokenDoc,
+          new ReplaceOptions().upsert(true));
+      resumeTokenSavedAtMillis = nowMillis;
+    } catch (MongoException e) {
+      LOGGER.log(Level.WARNING, "Resume token not saved: " + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,285 @@
+package com.mitdbg.modeldb.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+
+/**
+ * Bounded read-through cache of entities by id, in front of a DAO. Entries expire ttlSeconds after
+ * they were loaded and the least recently used ones are evicted beyond maxSize. The cache is split
+ * in segments, each one an access-ordered map under its own lock, so concurrent lookups of
+ * different entities rarely wait on each other.
+ *
+ * <p>Writers invalidate the entity after writing it. A load which overlaps an invalidation of its
+ * segment is returned but not cached, so a value read before a concurrent update is never cached
+ * after the invalidation of that update.
+ *
+ * <p>With frequencyAdmission a full segment only admits an entity accessed more often than its
+ * least recently used entry, after TinyLFU, so a scan of rarely read entities does not flush the
+ * hot ones. With storeSerialized entities are kept as their serialized bytes, which take a
+ * fraction of the heap of the decoded ProtocolBuffer, and are parsed again on every hit.
+ *
+ * @param <V> cached entity, e.g. Project, Experiment or ExperimentRun
+ */
+public class EntityCache<V extends Message> {
+
+  private static final Logger LOGGER = Logger.getLogger(EntityCache.class.getName());
+  private static final int SEGMENT_COUNT = 16;
+
+  /** Read of an entity from the database, null if it does not exist. */
+  @FunctionalInterface
+  public interface Loader<V> {
+    V load() throws InvalidProtocolBufferException;
+  }
+
+  private static class CacheEntry {
+    // Decoded entity, or its serialized bytes with storeSerialized
+    private final Object value;
+    private final long expiresAtNanos;
+
+    private CacheEntry(Object value, long expiresAtNanos) {
+      this.value = value;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+
+  private class Segment extends LinkedHashMap<String, CacheEntry> {
+    private final int maxSize;
+    // Access frequencies of the admission filter, null without frequencyAdmission
+    private final FrequencySketch sketch;
+    // Incremented by every invalidation, a load only caches its value if it did not change
+    private long invalidationCount = 0;
+
+    private Segment(int maxSize, boolean frequencyAdmission) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+      this.sketch = frequencyAdmission ? new FrequencySketch(maxSize) : null;
+    }
+
+    /** Cache an entity, unless the admission filter prefers the entry it would evict. */
+    private void admit(String id, CacheEntry entry) {
+      if (sketch != null && size() >= maxSize && !containsKey(id)) {
+        String victimId = keySet().iterator().next();
+        if (sketch.frequency(id) <= sketch.frequency(victimId)) {
+          rejectionCount.increment();
+          return;
+        }
+      }
+      put(id, entry);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+      if (size() > maxSize) {
+        evictionCount.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  private final String name;
+  private final long ttlNanos;
+  private final Parser<V> parser;
+  private final List<Segment> segments = new ArrayList<>(SEGMENT_COUNT);
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+  private final LongAdder rejectionCount = new LongAdder();
+
+  /**
+   * @param String name --> name of the cache in logs and metrics, e.g. project
+   * @param int maxSize --> maximum number of cached entities
+   * @param long ttlSeconds --> time an entity stays cached after it was loaded
+   * @param boolean frequencyAdmission --> admit entities in a full segment by access frequency
+   * @param Parser<V> parser --> parser of entities stored serialized, null stores them decoded
+   */
+  public EntityCache(
+      String name, int maxSize, long ttlSeconds, boolean frequencyAdmission, Parser<V> parser) {
+    this.name = name;
+    this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    this.parser = parser;
+    int segmentMaxSize = Math.max(1, (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments.add(new Segment(segmentMaxSize, frequencyAdmission));
+    }
+    CacheMetrics.getInstance().addCache(this);
+  }
+
+  /**
+   * Create the cache configured by its section of the entityCache section of config.yaml.
+   *
+   * @param String name --> name of the cache, e.g. project
+   * @param Map<String, Object> cachePropMap --> enabled, maxSize, ttlSeconds, frequencyAdmission
+   *     and storeSerialized, may be null
+   * @param Parser<V> parser --> parser of the entity, e.g. Project.parser()
+   * @return EntityCache<V> --> null if the cache is not enabled
+   */
+  public static <V extends Message> EntityCache<V> create(
+      String name, Map<String, Object> cachePropMap, Parser<V> parser) {
+    if (cachePropMap == null || !(Boolean) cachePropMap.getOrDefault("enabled", false)) {
+      return null;
+    }
+    int maxSize = (Integer) cachePropMap.getOrDefault("maxSize", 10000);
+    int ttlSeconds = (Integer) cachePropMap.getOrDefault("ttlSeconds", 300);
+    boolean frequencyAdmission = (Boolean) cachePropMap.getOrDefault("frequencyAdmission", false);
+    boolean storeSerialized = (Boolean) cachePropMap.getOrDefault("storeSerialized", false);
+    LOGGER.info(
+        "Entity cache "
+            + name
+            + " enabled, maxSize "
+            + maxSize
+            + ", ttlSeconds "
+            + ttlSeconds
+            + ", frequencyAdmission "
+            + frequencyAdmission
+            + ", storeSerialized "
+            + storeSerialized);
+    return new EntityCache<>(
+        name, maxSize, ttlSeconds, frequencyAdmission, storeSerialized ? parser : null);
+  }
+
+  private Segment getSegment(String id) {
+    int hash = id.hashCode();
+    return segments.get((hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1));
+  }
+
+  @SuppressWarnings("unchecked")
+  private V decode(Object value) throws InvalidProtocolBufferException {
+    return parser == null ? (V) value : parser.parseFrom((byte[]) value);
+  }
+
+  /**
+   * Return the cached entity of given id, or load and cache it.
+   *
+   * @param String id --> entity id
+   * @param Loader<V> loader --> read of the entity from the database
+   * @return V entity --> null if the loader found nothing, which is not cached
+   */
+  public V get(String id, Loader<V> loader) throws InvalidProtocolBufferException {
+    Segment segment = getSegment(id);
+    long invalidationCount;
+    Object cachedValue = null;
+    synchronized (segment) {
+      if (segment.sketch != null) {
+        segment.sketch.increment(id);
+      }
+      CacheEntry entry = segment.get(id);
+      if (entry != null) {
+        if (entry.expiresAtNanos - System.nanoTime() > 0) {
+          cachedValue = entry.value;
+        } else {
+          segment.remove(id);
+        }
+      }
+      invalidationCount = segment.invalidationCount;
+    }
+    if (cachedValue != null) {
+      hitCount.increment();
+      return decode(cachedValue);
+    }
+
+    missCount.increment();
+    V value = loader.load();
+    if (value != null) {
+      // Serialize outside of the lock
+      Object storedValue = parser == null ? value : value.toByteArray();
+      synchronized (segment) {
+        if (segment.invalidationCount == invalidationCount) {
+          segment.admit(id, new CacheEntry(storedValue, System.nanoTime() + ttlNanos));
+        }
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Remove the entity of given id, called after every write of it.
+   *
+   * @param String id --> entity id
+   */
+  public void invalidate(String id) {
+    Segment segment = getSegment(id);
+    synchronized (segment) {
+      segment.invalidationCount++;
+      segment.remove(id);
+    }
+  }
+
+  /**
+   * Remove every cached entity matching given condition, like the experiments of a deleted project.
+   *
+   * @param Predicate<V> condition
+   */
+  public void invalidateIf(Predicate<V> condition) {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.invalidationCount++;
+        Iterator<CacheEntry> iterator = segment.values().iterator();
+        while (iterator.hasNext()) {
+          if (matches(condition, iterator.next().value)) {
+            iterator.remove();
+          }
+        }
+      }
+    }
+  }
+
+  /** Remove every cached entity, when the writes which changed them are not known. */
+  public void invalidateAll() {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.invalidationCount++;
+        segment.clear();
+      }
+    }
+  }
+
+  private boolean matches(Predicate<V> condition, Object value) {
+    try {
+      return condition.test(decode(value));
+    } catch (InvalidProtocolBufferException e) {
+      // Unreadable entries are invalidated too
+      return true;
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  public long getRejectionCount() {
+    return rejectionCount.sum();
+  }
+
+  public long getSize() {
+    long size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+}
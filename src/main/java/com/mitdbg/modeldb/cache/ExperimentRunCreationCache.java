@@ -0,0 +1,236 @@
+package com.mitdbg.modeldb.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * What ExperimentRun creation has to know about the parents of a run without reading them again
+ * for every run of a sweep:
+ *
+ * <ul>
+ *   <li>the (project_id, experiment_id) pairs whose Project and Experiment were found to exist,
+ *   <li>per (project_id, experiment_id), a {@link BloomFilter} of the names of its ExperimentRuns.
+ *       A name the filter does not contain is not used by any run of the pair, so the run can be
+ *       inserted without the duplicate name lookup. Only a name the filter might contain is
+ *       looked up in the database.
+ * </ul>
+ *
+ * <p>The filter of a pair is built from one read of the names of its runs the first time a run is
+ * created under it, and every created name is added. A name created by another modelDB node is not
+ * in the filter, the unique index of the database on (project_id, experiment_id, name) rejects its
+ * duplicate with ALREADY_EXISTS instead. Entries expire ttlSeconds after they were built, which
+ * bounds how long parents deleted by another node go unnoticed, and the least recently used pairs
+ * are dropped beyond maxParents. Deleting a Project or an Experiment through this node drops its
+ * entries. Deleted run names stay in the filters until they expire, they only cost a lookup.
+ */
+public class ExperimentRunCreationCache {
+
+  private static final Logger LOGGER = Logger.getLogger(ExperimentRunCreationCache.class.getName());
+
+  /** Read of the names of the ExperimentRuns of a (project_id, experiment_id) pair. */
+  @FunctionalInterface
+  public interface NameLoader {
+    List<String> load() throws InvalidProtocolBufferException;
+  }
+
+  private static class ParentEntry {
+    private final String projectId;
+    private final String experimentId;
+    private final long expiresAtNanos;
+    private boolean validated = false;
+    // Guarded by the entry itself, so the names of one pair are loaded without holding the cache
+    private BloomFilter nameFilter = null;
+
+    private ParentEntry(String projectId, String experimentId, long expiresAtNanos) {
+      this.projectId = projectId;
+      this.experimentId = experimentId;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+
+  private final int expectedRunsPerExperiment;
+  private final double falsePositiveRate;
+  private final long ttlNanos;
+  private final Map<String, ParentEntry> parentEntryMap;
+
+  /**
+   * @param int maxParents --> maximum number of (project_id, experiment_id) pairs kept
+   * @param int expectedRunsPerExperiment --> minimum number of names a filter is sized for
+   * @param double falsePositiveRate --> false positive rate of a filter at its size
+   * @param long ttlSeconds --> time an entry is kept after it was built
+   */
+  public ExperimentRunCreationCache(
+      int maxParents, int expectedRunsPerExperiment, double falsePositiveRate, long ttlSeconds) {
+    this.expectedRunsPerExperiment = expectedRunsPerExperiment;
+    this.falsePositiveRate = falsePositiveRate;
+    this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    this.parentEntryMap =
+        new LinkedHashMap<String, ParentEntry>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, ParentEntry> eldest) {
+            return size() > maxParents;
+          }
+        };
+  }
+
+  /**
+   * Create the cache configured by the experimentRunCreation section of config.yaml.
+   *
+   * @param Map<String, Object> creationPropMap --> enabled, maxParents, expectedRunsPerExperiment,
+   *     falsePositiveRate and ttlSeconds, may be null
+   * @return ExperimentRunCreationCache --> null if the cache is not enabled
+   */
+  public static ExperimentRunCreationCache create(Map<String, Object> creationPropMap) {
+    if (creationPropMap == null || !(Boolean) creationPropMap.getOrDefault("enabled", false)) {
+      return null;
+    }
+    int maxParents = (Integer) creationPropMap.getOrDefault("maxParents", 1000);
+    int expectedRunsPerExperiment =
+        (Integer) creationPropMap.getOrDefault("expectedRunsPerExperiment", 10000);
+    double falsePositiveRate =
+        ((Number) creationPropMap.getOrDefault("falsePositiveRate", 0.01)).doubleValue();
+    int ttlSeconds = (Integer) creationPropMap.getOrDefault("ttlSeconds", 60);
+    LOGGER.info(
+        "ExperimentRun creation cache enabled, maxParents "
+            + maxParents
+            + ", expectedRunsPerExperiment "
+            + expectedRunsPerExperiment
+            + ", falsePositiveRate "
+            + falsePositiveRate
+            + ", ttlSeconds "
+            + ttlSeconds);
+    return new ExperimentRunCreationCache(
+        maxParents, expectedRunsPerExperiment, falsePositiveRate, ttlSeconds);
+  }
+
+  private static String getParentKey(String projectId, String experimentId) {
+    return projectId + "/" + experimentId;
+  }
+
+  /** Return the live entry of given pair, or a new one replacing the expired one. */
+  private ParentEntry getParentEntry(String projectId, String experimentId) {
+    String parentKey = getParentKey(projectId, experimentId);
+    ParentEntry parentEntry = parentEntryMap.get(parentKey);
+    if (parentEntry == null || parentEntry.expiresAtNanos - System.nanoTime() <= 0) {
+      parentEntry = new ParentEntry(projectId, experimentId, System.nanoTime() + ttlNanos);
+      parentEntryMap.put(parentKey, parentEntry);
+    }
+    return parentEntry;
+  }
+
+  /**
+   * @param String projectId
+   * @param String experimentId
+   * @return boolean --> true if the Project and the Experiment were found to exist
+   */
+  public synchronized boolean isParentValidated(String projectId, String experimentId) {
+    ParentEntry parentEntry = parentEntryMap.get(getParentKey(projectId, experimentId));
+    return parentEntry != null
+        && parentEntry.validated
+        && parentEntry.expiresAtNanos - System.nanoTime() > 0;
+  }
+
+  /**
+   * Record that the Project and the Experiment of given ids exist.
+   *
+   * @param String projectId
+   * @param String experimentId
+   */
+  public synchronized void setParentValidated(String projectId, String experimentId) {
+    getParentEntry(projectId, experimentId).validated = true;
+  }
+
+  /**
+   * Reserve the name of a run to be created, if the filter of its pair tells it is not used. If the
+   * pair has no filter yet it is built with given loader under the lock of the pair, a filter built
+   * outside of it could miss a name reserved in the meantime. The loader does not hold the lock of
+   * the whole cache, so the runs of the other pairs are created meanwhile.
+   *
+   * @param String projectId
+   * @param String experimentId
+   * @param String name --> name of the ExperimentRun to be created
+   * @param NameLoader nameLoader --> read of the names of the runs of the pair
+   * @return boolean --> true if the name is not used and was added to the filter, false if it must
+   *     be looked up in the database
+   */
+  public boolean reserveName(
+      String projectId, String experimentId, String name, NameLoader nameLoader)
+      throws InvalidProtocolBufferException {
+    ParentEntry parentEntry;
+    synchronized (this) {
+      parentEntry = getParentEntry(projectId, experimentId);
+    }
+    synchronized (parentEntry) {
+      if (parentEntry.nameFilter == null) {
+        List<String> names = nameLoader.load();
+        BloomFilter nameFilter =
+            new BloomFilter(
+                Math.max(expectedRunsPerExperiment, names.size() * 2), falsePositiveRate);
+        for (String existingName : names) {
+          nameFilter.add(existingName);
+        }
+        parentEntry.nameFilter = nameFilter;
+      }
+      if (parentEntry.nameFilter.mightContain(name)) {
+        return false;
+      }
+      parentEntry.nameFilter.add(name);
+      return true;
+    }
+  }
+
+  /**
+   * Add the name of a run created after a database lookup, so the next creation of the same name
+   * is looked up too.
+   *
+   * @param String projectId
+   * @param String experimentId
+   * @param String name
+   */
+  public void addName(String projectId, String experimentId, String name) {
+    ParentEntry parentEntry;
+    synchronized (this) {
+      parentEntry = parentEntryMap.get(getParentKey(projectId, experimentId));
+    }
+    if (parentEntry != null) {
+      synchronized (parentEntry) {
+        if (parentEntry.nameFilter != null) {
+          parentEntry.nameFilter.add(name);
+        }
+      }
+    }
+  }
+
+  /**
+   * Drop the entries of a deleted Project.
+   *
+   * @param String projectId
+   */
+  public synchronized void invalidateProject(String projectId) {
+    Iterator<ParentEntry> iterator = parentEntryMap.values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().projectId.equals(projectId)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Drop the entries of a deleted Experiment.
+   *
+   * @param String experimentId
+   */
+  public synchronized void invalidateExperiment(String experimentId) {
+    Iterator<ParentEntry> iterator = parentEntryMap.values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().experimentId.equals(experimentId)) {
+        iterator.remove();
+      }
+    }
+  }
+}
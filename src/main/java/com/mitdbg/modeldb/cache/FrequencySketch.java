@@ -0,0 +1,66 @@
+package com.mitdbg.modeldb.cache;
+
+/**
+ * Count-min sketch of the access frequency of cache keys, the admission filter of TinyLFU: a key
+ * is only admitted in a full cache if it was accessed more often than the entry it would evict.
+ * Counters saturate at 15 and are all halved once sampleSize accesses were recorded, so the
+ * frequencies follow the recent workload instead of growing forever. Not thread safe, it is used
+ * under the lock of its cache segment.
+ */
+class FrequencySketch {
+
+  private static final int HASH_COUNT = 4;
+  private static final int MAX_COUNT = 15;
+  private static final int[] SEEDS = {0x97cb3127, 0xb2a8f7a3, 0x5e1e4a9b, 0x2d3f8c71};
+
+  private final byte[][] counters = new byte[HASH_COUNT][];
+  private final int mask;
+  private final int sampleSize;
+  private int accessCount = 0;
+
+  /** @param int maxSize --> number of entries of the cache segment */
+  FrequencySketch(int maxSize) {
+    int width = Integer.highestOneBit(Math.max(16, maxSize * 2 - 1) << 1);
+    for (int i = 0; i < HASH_COUNT; i++) {
+      counters[i] = new byte[width];
+    }
+    this.mask = width - 1;
+    this.sampleSize = Math.max(16, maxSize * 10);
+  }
+
+  private int index(int hash, int row) {
+    int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  void increment(Object key) {
+    int hash = key.hashCode();
+    for (int row = 0; row < HASH_COUNT; row++) {
+      int index = index(hash, row);
+      if (counters[row][index] < MAX_COUNT) {
+        counters[row][index]++;
+      }
+    }
+    if (++accessCount >= sampleSize) {
+      reset();
+    }
+  }
+
+  int frequency(Object key) {
+    int hash = key.hashCode();
+    int frequency = MAX_COUNT;
+    for (int row = 0; row < HASH_COUNT; row++) {
+      frequency = Math.min(frequency, counters[row][index(hash, row)]);
+    }
+    return frequency;
+  }
+
+  private void reset() {
+    for (byte[] row : counters) {
+      for (int i = 0; i < row.length; i++) {
+        row[i] >>= 1;
+      }
+    }
+    accessCount /= 2;
+  }
+}
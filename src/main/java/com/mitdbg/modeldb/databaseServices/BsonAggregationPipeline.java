@@ -0,0 +1,438 @@
+package com.mitdbg.modeldb.databaseServices;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonNull;
+import org.bson.BsonValue;
+
+/**
+ * Evaluation of MongoDB aggregation pipelines for {@link InMemoryDocumentService}. Supports the
+ * stages $match, $unwind, $sort, $skip, $limit, $project and $addFields, and the expressions used
+ * by the DAOs to sort on nested key values and filter embedded lists ($filter, $map, $arrayElemAt,
+ * $in and comparisons).
+ */
+final class BsonAggregationPipeline {
+
+  private static final String CURRENT_VARIABLE = "CURRENT";
+  private static final String ROOT_VARIABLE = "ROOT";
+
+  private BsonAggregationPipeline() {}
+
+  /**
+   * @param List<BsonDocument> documents --> input of the first stage, left unchanged
+   * @param List<BsonDocument> pipeline --> stages
+   * @return List<BsonDocument> documents --> output of the last stage
+   */
+  static List<BsonDocument> aggregate(List<BsonDocument> documents, List<BsonDocument> pipeline) {
+    for (BsonDocument stage : pipeline) {
+      String stageName = stage.getFirstKey();
+      BsonValue specification = stage.get(stageName);
+      switch (stageName) {
+        case "$match":
+          documents = match(documents, specification.asDocument());
+          break;
+        case "$unwind":
+          documents = unwind(documents, specification);
+          break;
+        case "$sort":
+          documents = BsonQueryMatcher.sort(documents, specification.asDocument());
+          break;
+        case "$skip":
+          int skip = Math.min(specification.asNumber().intValue(), documents.size());
+          documents = documents.subList(skip, documents.size());
+          break;
+        case "$limit":
+          int limit = Math.min(specification.asNumber().intValue(), documents.size());
+          documents = documents.subList(0, limit);
+          break;
+        case "$project":
+          documents = project(documents, specification.asDocument());
+          break;
+        case "$addFields":
+        case "$set":
+          documents = addFields(documents, specification.asDocument());
+          break;
+        default:
+          throw BsonQueryMatcher.getUnsupportedOperatorException(stageName);
+      }
+    }
+    return documents;
+  }
+
+  private static List<BsonDocument> match(List<BsonDocument> documents, BsonDocument filter) {
+    List<BsonDocument> matchedDocuments = new ArrayList<>();
+    for (BsonDocument document : documents) {
+      if (BsonQueryMatcher.matches(document, filter)) {
+        matchedDocuments.add(document);
+      }
+    }
+    return matchedDocuments;
+  }
+
+  /** One output document per array element, documents without elements are dropped by default. */
+  private static List<BsonDocument> unwind(List<BsonDocument> documents, BsonValue specification) {
+    String path;
+    boolean preserveNullAndEmptyArrays = false;
+    if (specification.isDocument()) {
+      path = specification.asDocument().getString("path").getValue();
+      preserveNullAndEmptyArrays =
+          BsonQueryMatcher.isTruthy(
+              specification.asDocument().get("preserveNullAndEmptyArrays", BsonBoolean.FALSE));
+    } else {
+      path = specification.asString().getValue();
+    }
+    path = path.substring(1);
+
+    List<BsonDocument> unwoundDocuments = new ArrayList<>();
+    for (BsonDocument document : documents) {
+      BsonValue value = BsonQueryMatcher.getPathValue(document, path);
+      if (value != null && value.isArray() && !value.asArray().isEmpty()) {
+        for (BsonValue element : value.asArray()) {
+          BsonDocument unwoundDocument = document.clone();
+          BsonQueryMatcher.setPathValue(unwoundDocument, path, element);
+          unwoundDocuments.add(unwoundDocument);
+        }
+      } else if (value != null && !value.isArray() && !value.isNull()) {
+        unwoundDocuments.add(document);
+      } else if (preserveNullAndEmptyArrays) {
+        BsonDocument unwoundDocument = document;
+        if (value != null && value.isArray()) {
+          unwoundDocument = document.clone();
+          BsonQueryMatcher.removePathValue(unwoundDocument, path);
+        }
+        unwoundDocuments.add(unwoundDocument);
+      }
+    }
+    return unwoundDocuments;
+  }
+
+  /**
+   * Exclusion projections like {_sort_value: 0} remove fields, inclusion projections keep the
+   * fields set to 1 and add the computed ones, _id is kept unless excluded.
+   */
+  private static List<BsonDocument> project(
+      List<BsonDocument> documents, BsonDocument specification) {
+    boolean exclusion = true;
+    for (Map.Entry<String, BsonValue> field : specification.entrySet()) {
+      if (!field.getKey().equals(BsonQueryMatcher.ID_FIELD) && !isExcluded(field.getValue())) {
+        exclusion = false;
+      }
+    }
+
+    List<BsonDocument> projectedDocuments = new ArrayList<>(documents.size());
+    for (BsonDocument document : documents) {
+      if (exclusion) {
+        projectedDocuments.add(BsonQueryMatcher.project(document, specification));
+        continue;
+      }
+      BsonDocument projectedDocument = new BsonDocument();
+      BsonValue id = document.get(BsonQueryMatcher.ID_FIELD);
+      BsonValue idSpecification = specification.get(BsonQueryMatcher.ID_FIELD);
+      if (id != null && (idSpecification == null || !isExcluded(idSpecification))) {
+        projectedDocument.put(BsonQueryMatcher.ID_FIELD, id);
+      }
+      for (Map.Entry<String, BsonValue> field : specification.entrySet()) {
+        String path = field.getKey();
+        BsonValue fieldSpecification = field.getValue();
+        if (path.equals(BsonQueryMatcher.ID_FIELD) && isExcluded(fieldSpecification)) {
+          continue;
+        }
+        if (isIncluded(fieldSpecification)) {
+          BsonValue value = BsonQueryMatcher.getPathValue(document, path);
+          if (value != null) {
+            BsonQueryMatcher.setPathValue(projectedDocument, path, value);
+          }
+        } else {
+          BsonValue value = evaluate(fieldSpecification, document, getVariables(document));
+          if (value != null) {
+            BsonQueryMatcher.setPathValue(projectedDocument, path, value);
+          }
+        }
+      }
+      projectedDocuments.add(projectedDocument);
+    }
+    return projectedDocuments;
+  }
+
+  private static boolean isExcluded(BsonValue specification) {
+    return (specification.isNumber() || specification.isBoolean())
+        && !BsonQueryMatcher.isTruthy(specification);
+  }
+
+  private static boolean isIncluded(BsonValue specification) {
+    return (specification.isNumber() || specification.isBoolean())
+        && BsonQueryMatcher.isTruthy(specification);
+  }
+
+  private static List<BsonDocument> addFields(
+      List<BsonDocument> documents, BsonDocument specification) {
+    // Documents are shared with the stored ones, top-level fields only need a shallow copy
+    boolean topLevelFields = true;
+    for (String path : specification.keySet()) {
+      topLevelFields &= path.indexOf('.') < 0;
+    }
+    List<BsonDocument> updatedDocuments = new ArrayList<>(documents.size());
+    for (BsonDocument document : documents) {
+      BsonDocument updatedDocument = topLevelFields ? shallowCopy(document) : document.clone();
+      Map<String, BsonValue> variables = getVariables(document);
+      for (Map.Entry<String, BsonValue> field : specification.entrySet()) {
+        BsonValue value = evaluate(field.getValue(), document, variables);
+        if (value == null) {
+          BsonQueryMatcher.removePathValue(updatedDocument, field.getKey());
+        } else {
+          BsonQueryMatcher.setPathValue(updatedDocument, field.getKey(), value);
+        }
+      }
+      updatedDocuments.add(updatedDocument);
+    }
+    return updatedDocuments;
+  }
+
+  private static BsonDocument shallowCopy(BsonDocument document) {
+    BsonDocument copy = new BsonDocument();
+    for (Map.Entry<String, BsonValue> field : document.entrySet()) {
+      copy.put(field.getKey(), field.getValue());
+    }
+    return copy;
+  }
+
+  private static Map<String, BsonValue> getVariables(BsonDocument document) {
+    Map<String, BsonValue> variables = new HashMap<>();
+    variables.put(CURRENT_VARIABLE, document);
+    variables.put(ROOT_VARIABLE, document);
+    return variables;
+  }
+
+  /*
+   * ----------------------------- Expressions -----------------------------
+   */
+
+  /**
+   * @param BsonValue expression --> "$field.path", "$$variable.path", operator document or literal
+   * @param BsonDocument document --> current document
+   * @param Map<String, BsonValue> variables --> variables bound by $map and $filter
+   * @return BsonValue value --> null if the expression evaluates to a missing value
+   */
+  private static BsonValue evaluate(
+      BsonValue expression, BsonDocument document, Map<String, BsonValue> variables) {
+    if (expression.isString()) {
+      String stringExpression = expression.asString().getValue();
+      if (stringExpression.startsWith("$$")) {
+        String[] path = stringExpression.substring(2).split("\\.");
+        BsonValue variable = variables.get(path[0]);
+        if (variable == null) {
+          throw BsonQueryMatcher.getUnsupportedOperatorException("variable $$" + path[0]);
+        }
+        return resolvePath(variable, path, 1);
+      }
+      if (stringExpression.startsWith("$")) {
+        return resolvePath(document, stringExpression.substring(1).split("\\."), 0);
+      }
+      return expression;
+    }
+    if (expression.isArray()) {
+      BsonArray values = new BsonArray();
+      for (BsonValue element : expression.asArray()) {
+        values.add(nullIfMissing(evaluate(element, document, variables)));
+      }
+      return values;
+    }
+    if (BsonQueryMatcher.isOperatorDocument(expression)) {
+      String operator = expression.asDocument().getFirstKey();
+      return evaluateOperator(
+          operator, expression.asDocument().get(operator), document, variables);
+    }
+    if (expression.isDocument()) {
+      BsonDocument values = new BsonDocument();
+      for (Map.Entry<String, BsonValue> field : expression.asDocument().entrySet()) {
+        BsonValue value = evaluate(field.getValue(), document, variables);
+        if (value != null) {
+          values.put(field.getKey(), value);
+        }
+      }
+      return values;
+    }
+    return expression;
+  }
+
+  /** Path of an expression, traversing an array returns the array of the elements' values. */
+  private static BsonValue resolvePath(BsonValue value, String[] path, int index) {
+    if (index == path.length) {
+      return value;
+    }
+    if (value.isDocument()) {
+      BsonValue child = value.asDocument().get(path[index]);
+      return child == null ? null : resolvePath(child, path, index + 1);
+    }
+    if (value.isArray()) {
+      BsonArray values = new BsonArray();
+      for (BsonValue element : value.asArray()) {
+        BsonValue elementValue = resolvePath(element, path, index);
+        if (elementValue != null && element.isDocument()) {
+          values.add(elementValue);
+        }
+      }
+      return values;
+    }
+    return null;
+  }
+
+  private static BsonValue nullIfMissing(BsonValue value) {
+    return value == null ? BsonNull.VALUE : value;
+  }
+
+  private static BsonValue evaluateOperator(
+      String operator,
+      BsonValue arguments,
+      BsonDocument document,
+      Map<String, BsonValue> variables) {
+    switch (operator) {
+      case "$literal":
+        return arguments;
+      case "$arrayElemAt":
+        {
+          List<BsonValue> values = evaluateArguments(arguments, 2, document, variables);
+          if (values.get(0).isNull() || values.get(1).isNull()) {
+            return BsonNull.VALUE;
+          }
+          BsonArray array = values.get(0).asArray();
+          int position = values.get(1).asNumber().intValue();
+          if (position < 0) {
+            position += array.size();
+          }
+          return position >= 0 && position < array.size() ? array.get(position) : null;
+        }
+      case "$size":
+        {
+          BsonValue value = nullIfMissing(evaluate(arguments, document, variables));
+          return new BsonInt32(value.asArray().size());
+        }
+      case "$map":
+      case "$filter":
+        return evaluateArrayOperator(operator, arguments.asDocument(), document, variables);
+      case "$eq":
+      case "$ne":
+      case "$gt":
+      case "$gte":
+      case "$lt":
+      case "$lte":
+        {
+          List<BsonValue> values = evaluateArguments(arguments, 2, document, variables);
+          int comparison = BsonQueryMatcher.compareValues(values.get(0), values.get(1));
+          return BsonBoolean.valueOf(isComparisonTrue(operator, comparison));
+        }
+      case "$in":
+        {
+          List<BsonValue> values = evaluateArguments(arguments, 2, document, variables);
+          if (!values.get(1).isArray()) {
+            throw BsonQueryMatcher.getUnsupportedOperatorException("$in without an array");
+          }
+          for (BsonValue element : values.get(1).asArray()) {
+            if (BsonQueryMatcher.equalValues(values.get(0), element)) {
+              return BsonBoolean.TRUE;
+            }
+          }
+          return BsonBoolean.FALSE;
+        }
+      case "$and":
+        for (BsonValue value : evaluateArguments(arguments, -1, document, variables)) {
+          if (!BsonQueryMatcher.isTruthy(value)) {
+            return BsonBoolean.FALSE;
+          }
+        }
+        return BsonBoolean.TRUE;
+      case "$or":
+        for (BsonValue value : evaluateArguments(arguments, -1, document, variables)) {
+          if (BsonQueryMatcher.isTruthy(value)) {
+            return BsonBoolean.TRUE;
+          }
+        }
+        return BsonBoolean.FALSE;
+      case "$not":
+        {
+          List<BsonValue> values = evaluateArguments(arguments, 1, document, variables);
+          return BsonBoolean.valueOf(!BsonQueryMatcher.isTruthy(values.get(0)));
+        }
+      case "$ifNull":
+        {
+          List<BsonValue> values = evaluateArguments(arguments, 2, document, variables);
+          return values.get(0).isNull() ? values.get(1) : values.get(0);
+        }
+      default:
+        throw BsonQueryMatcher.getUnsupportedOperatorException(operator);
+    }
+  }
+
+  private static boolean isComparisonTrue(String operator, int comparison) {
+    switch (operator) {
+      case "$eq":
+        return comparison == 0;
+      case "$ne":
+        return comparison != 0;
+      case "$gt":
+        return comparison > 0;
+      case "$gte":
+        return comparison >= 0;
+      case "$lt":
+        return comparison < 0;
+      default:
+        return comparison <= 0;
+    }
+  }
+
+  /**
+   * Evaluate the arguments of an operator, missing values being replaced by null.
+   *
+   * @param int count --> expected number of arguments, -1 for any number
+   */
+  private static List<BsonValue> evaluateArguments(
+      BsonValue arguments, int count, BsonDocument document, Map<String, BsonValue> variables) {
+    List<BsonValue> argumentList =
+        arguments.isArray()
+            ? arguments.asArray().getValues()
+            : Collections.singletonList(arguments);
+    if (count >= 0 && argumentList.size() != count) {
+      throw BsonQueryMatcher.getUnsupportedOperatorException(
+          "with " + argumentList.size() + " arguments instead of " + count);
+    }
+    List<BsonValue> values = new ArrayList<>(argumentList.size());
+    for (BsonValue argument : argumentList) {
+      values.add(nullIfMissing(evaluate(argument, document, variables)));
+    }
+    return values;
+  }
+
+  /** $map {input, as, in} and $filter {input, as, cond}, the element variable defaults to this. */
+  private static BsonValue evaluateArrayOperator(
+      String operator,
+      BsonDocument arguments,
+      BsonDocument document,
+      Map<String, BsonValue> variables) {
+    BsonValue input = nullIfMissing(evaluate(arguments.get("input"), document, variables));
+    if (input.isNull()) {
+      return BsonNull.VALUE;
+    }
+    String variableName =
+        arguments.containsKey("as") ? arguments.getString("as").getValue() : "this";
+    Map<String, BsonValue> elementVariables = new HashMap<>(variables);
+
+    BsonArray values = new BsonArray();
+    for (BsonValue element : input.asArray()) {
+      elementVariables.put(variableName, element);
+      if (operator.equals("$map")) {
+        values.add(nullIfMissing(evaluate(arguments.get("in"), document, elementVariables)));
+      } else if (BsonQueryMatcher.isTruthy(
+          evaluate(arguments.get("cond"), document, elementVariables))) {
+        values.add(element);
+      }
+    }
+    return values;
+  }
+}
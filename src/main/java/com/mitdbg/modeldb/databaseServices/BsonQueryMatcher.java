@@ -0,0 +1,632 @@
+package com.mitdbg.modeldb.databaseServices;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonNull;
+import org.bson.BsonValue;
+import com.google.rpc.Code;
+import com.google.rpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.protobuf.StatusProto;
+
+/**
+ * Evaluation of MongoDB query filters, sort specifications and projections on BSON documents for
+ * {@link InMemoryDocumentService}. Dotted paths traverse embedded documents and arrays of embedded
+ * documents, and values compare in the BSON type order, like the MongoDB server. Only the operators
+ * used by the DAOs are supported, any other operator fails with UNIMPLEMENTED instead of silently
+ * matching.
+ */
+final class BsonQueryMatcher {
+
+  static final String ID_FIELD = "_id";
+
+  private BsonQueryMatcher() {}
+
+  static StatusRuntimeException getUnsupportedOperatorException(String operator) {
+    Status status =
+        Status.newBuilder()
+            .setCode(Code.UNIMPLEMENTED_VALUE)
+            .setMessage("Operator " + operator + " is not supported by the in-memory database")
+            .build();
+    return StatusProto.toStatusRuntimeException(status);
+  }
+
+  /*
+   * ----------------------------- Filters -----------------------------
+   */
+
+  static boolean matches(BsonDocument document, BsonDocument filter) {
+    for (Map.Entry<String, BsonValue> entry : filter.entrySet()) {
+      String key = entry.getKey();
+      BsonValue condition = entry.getValue();
+      switch (key) {
+        case "$and":
+          for (BsonValue subFilter : condition.asArray()) {
+            if (!matches(document, subFilter.asDocument())) {
+              return false;
+            }
+          }
+          break;
+        case "$or":
+          if (!matchesAny(document, condition.asArray())) {
+            return false;
+          }
+          break;
+        case "$nor":
+          if (matchesAny(document, condition.asArray())) {
+            return false;
+          }
+          break;
+        default:
+          if (key.startsWith("$")) {
+            throw getUnsupportedOperatorException(key);
+          }
+          if (!matchesField(getPathValues(document, key), condition)) {
+            return false;
+          }
+      }
+    }
+    return true;
+  }
+
+  private static boolean matchesAny(BsonDocument document, BsonArray filters) {
+    for (BsonValue subFilter : filters) {
+      if (matches(document, subFilter.asDocument())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static boolean isOperatorDocument(BsonValue value) {
+    return value.isDocument()
+        && !value.asDocument().isEmpty()
+        && value.asDocument().getFirstKey().startsWith("$");
+  }
+
+  /**
+   * @param List<BsonValue> values --> values found at the path of the condition, empty if missing
+   * @param BsonValue condition --> literal value or document of operators like {$in: [...]}
+   */
+  static boolean matchesField(List<BsonValue> values, BsonValue condition) {
+    if (!isOperatorDocument(condition)) {
+      return matchesEquality(values, condition);
+    }
+    for (Map.Entry<String, BsonValue> operator : condition.asDocument().entrySet()) {
+      if (!matchesOperator(values, operator.getKey(), operator.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean matchesOperator(
+      List<BsonValue> values, String operator, BsonValue operand) {
+    switch (operator) {
+      case "$eq":
+        return matchesEquality(values, operand);
+      case "$ne":
+        return !matchesEquality(values, operand);
+      case "$gt":
+        return matchesComparison(values, operand, 1, 1);
+      case "$gte":
+        return matchesComparison(values, operand, 0, 1);
+      case "$lt":
+        return matchesComparison(values, operand, -1, -1);
+      case "$lte":
+        return matchesComparison(values, operand, -1, 0);
+      case "$in":
+        return matchesIn(values, operand.asArray());
+      case "$nin":
+        return !matchesIn(values, operand.asArray());
+      case "$exists":
+        return !values.isEmpty() == isTruthy(operand);
+      case "$all":
+        if (operand.asArray().isEmpty()) {
+          return false;
+        }
+        for (BsonValue expected : operand.asArray()) {
+          if (!matchesEquality(values, expected)) {
+            return false;
+          }
+        }
+        return true;
+      case "$not":
+        return !matchesField(values, operand);
+      case "$elemMatch":
+        return matchesElement(values, operand);
+      case "$size":
+        for (BsonValue value : values) {
+          if (value.isArray() && value.asArray().size() == operand.asNumber().intValue()) {
+            return true;
+          }
+        }
+        return false;
+      default:
+        throw getUnsupportedOperatorException(operator);
+    }
+  }
+
+  /** A missing field equals null, an array equals a value if it or one of its elements does. */
+  private static boolean matchesEquality(List<BsonValue> values, BsonValue expected) {
+    if (values.isEmpty()) {
+      return expected.isNull();
+    }
+    for (BsonValue value : values) {
+      if (equalValues(value, expected)) {
+        return true;
+      }
+      if (value.isArray()) {
+        for (BsonValue element : value.asArray()) {
+          if (equalValues(element, expected)) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean matchesIn(List<BsonValue> values, BsonArray expectedValues) {
+    for (BsonValue expected : expectedValues) {
+      if (matchesEquality(values, expected)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Range operators only match values of the same type bracket as the operand, e.g. numbers are
+   * never greater than strings.
+   */
+  private static boolean matchesComparison(
+      List<BsonValue> values, BsonValue operand, int lowest, int highest) {
+    for (BsonValue value : expandArrays(values)) {
+      if (getTypeOrder(value) == getTypeOrder(operand)) {
+        int comparison = Integer.signum(compareValues(value, operand));
+        if (comparison >= lowest && comparison <= highest) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean matchesElement(List<BsonValue> values, BsonValue condition) {
+    boolean operatorCondition = isOperatorDocument(condition);
+    for (BsonValue value : values) {
+      if (!value.isArray()) {
+        continue;
+      }
+      for (BsonValue element : value.asArray()) {
+        if (operatorCondition) {
+          if (matchesField(Collections.singletonList(element), condition)) {
+            return true;
+          }
+        } else if (element.isDocument() && matches(element.asDocument(), condition.asDocument())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static List<BsonValue> expandArrays(List<BsonValue> values) {
+    List<BsonValue> expandedValues = new ArrayList<>();
+    for (BsonValue value : values) {
+      expandedValues.add(value);
+      if (value.isArray()) {
+        expandedValues.addAll(value.asArray());
+      }
+    }
+    return expandedValues;
+  }
+
+  /** false, null, missing and zero are false, every other value is true. */
+  static boolean isTruthy(BsonValue value) {
+    if (value == null || value.isNull()) {
+      return false;
+    }
+    if (value.isBoolean()) {
+      return value.asBoolean().getValue();
+    }
+    if (value.isNumber()) {
+      return value.asNumber().doubleValue() != 0;
+    }
+    return true;
+  }
+
+  /*
+   * ----------------------------- Paths -----------------------------
+   */
+
+  /**
+   * Collect the values at a dotted path. Arrays of embedded documents are traversed, so the path
+   * attributes.key returns the key of every attribute. Arrays found at the end of the path are
+   * returned as is.
+   *
+   * @param BsonValue root --> document or value to start from
+   * @param String path --> dotted path like metrics.key or metric_values.accuracy
+   * @return List<BsonValue> values --> empty if the path is missing
+   */
+  static List<BsonValue> getPathValues(BsonValue root, String path) {
+    List<BsonValue> values = new ArrayList<>();
+    collectPathValues(root, path.split("\\."), 0, values);
+    return values;
+  }
+
+  private static void collectPathValues(
+      BsonValue value, String[] path, int index, List<BsonValue> values) {
+    if (index == path.length) {
+      values.add(value);
+    } else if (value.isDocument()) {
+      BsonValue child = value.asDocument().get(path[index]);
+      if (child != null) {
+        collectPathValues(child, path, index + 1, values);
+      }
+    } else if (value.isArray()) {
+      BsonArray array = value.asArray();
+      Integer position = getArrayPosition(path[index]);
+      if (position != null) {
+        if (position < array.size()) {
+          collectPathValues(array.get(position), path, index + 1, values);
+        }
+      } else {
+        for (BsonValue element : array) {
+          if (element.isDocument()) {
+            collectPathValues(element, path, index, values);
+          }
+        }
+      }
+    }
+  }
+
+  static Integer getArrayPosition(String segment) {
+    if (segment.isEmpty() || segment.length() > 9) {
+      return null;
+    }
+    for (int i = 0; i < segment.length(); i++) {
+      if (!Character.isDigit(segment.charAt(i))) {
+        return null;
+      }
+    }
+    return Integer.valueOf(segment);
+  }
+
+  /**
+   * Value at a dotted path of embedded documents or array positions, without traversing arrays.
+   *
+   * @return BsonValue value --> null if the path is missing
+   */
+  static BsonValue getPathValue(BsonDocument document, String path) {
+    BsonValue value = document;
+    for (String segment : path.split("\\.")) {
+      if (value.isDocument()) {
+        value = value.asDocument().get(segment);
+      } else if (value.isArray() && getArrayPosition(segment) != null) {
+        int position = getArrayPosition(segment);
+        value = position < value.asArray().size() ? value.asArray().get(position) : null;
+      } else {
+        value = null;
+      }
+      if (value == null) {
+        return null;
+      }
+    }
+    return value;
+  }
+
+  /** Set the value at a dotted path, creating the missing embedded documents. */
+  static void setPathValue(BsonDocument document, String path, BsonValue newValue) {
+    String[] segments = path.split("\\.");
+    BsonValue parent = document;
+    for (int i = 0; i < segments.length - 1; i++) {
+      BsonValue child = getChild(parent, segments[i]);
+      if (child == null || !(child.isDocument() || child.isArray())) {
+        child = new BsonDocument();
+        putChild(parent, segments[i], child);
+      }
+      parent = child;
+    }
+    putChild(parent, segments[segments.length - 1], newValue);
+  }
+
+  /** Remove the value at a dotted path, nothing happens if the path is missing. */
+  static void removePathValue(BsonDocument document, String path) {
+    int separatorIndex = path.lastIndexOf('.');
+    BsonValue parent =
+        separatorIndex < 0 ? document : getPathValue(document, path.substring(0, separatorIndex));
+    if (parent != null && parent.isDocument()) {
+      parent.asDocument().remove(path.substring(separatorIndex + 1));
+    }
+  }
+
+  private static BsonValue getChild(BsonValue parent, String segment) {
+    if (parent.isDocument()) {
+      return parent.asDocument().get(segment);
+    }
+    Integer position = getArrayPosition(segment);
+    if (position == null) {
+      throw getUnsupportedOperatorException("path " + segment + " in array");
+    }
+    return position < parent.asArray().size() ? parent.asArray().get(position) : null;
+  }
+
+  private static void putChild(BsonValue parent, String segment, BsonValue child) {
+    if (parent.isDocument()) {
+      parent.asDocument().put(segment, child);
+      return;
+    }
+    Integer position = getArrayPosition(segment);
+    if (position == null) {
+      throw getUnsupportedOperatorException("path " + segment + " in array");
+    }
+    BsonArray array = parent.asArray();
+    while (array.size() <= position) {
+      array.add(BsonNull.VALUE);
+    }
+    array.set(position, child);
+  }
+
+  /*
+   * ----------------------------- Comparison -----------------------------
+   */
+
+  private static int getTypeOrder(BsonValue value) {
+    switch (value.getBsonType()) {
+      case MIN_KEY:
+        return 0;
+      case NULL:
+      case UNDEFINED:
+        return 1;
+      case INT32:
+      case INT64:
+      case DOUBLE:
+      case DECIMAL128:
+        return 2;
+      case STRING:
+        return 3;
+      case DOCUMENT:
+        return 4;
+      case ARRAY:
+        return 5;
+      case BINARY:
+        return 6;
+      case OBJECT_ID:
+        return 7;
+      case BOOLEAN:
+        return 8;
+      case DATE_TIME:
+        return 9;
+      case TIMESTAMP:
+        return 10;
+      case MAX_KEY:
+        return 12;
+      default:
+        return 11;
+    }
+  }
+
+  static boolean equalValues(BsonValue left, BsonValue right) {
+    return compareValues(left, right) == 0;
+  }
+
+  /** Compare values in BSON type order, numbers of different types compare by value. */
+  static int compareValues(BsonValue left, BsonValue right) {
+    int typeComparison = Integer.compare(getTypeOrder(left), getTypeOrder(right));
+    if (typeComparison != 0) {
+      return typeComparison;
+    }
+    switch (left.getBsonType()) {
+      case INT32:
+      case INT64:
+      case DOUBLE:
+      case DECIMAL128:
+        return compareNumbers(left, right);
+      case STRING:
+        return left.asString().getValue().compareTo(right.asString().getValue());
+      case DOCUMENT:
+        return compareDocuments(left.asDocument(), right.asDocument());
+      case ARRAY:
+        return compareArrays(left.asArray(), right.asArray());
+      case OBJECT_ID:
+        return left.asObjectId().compareTo(right.asObjectId());
+      case BOOLEAN:
+        return left.asBoolean().compareTo(right.asBoolean());
+      case DATE_TIME:
+        return left.asDateTime().compareTo(right.asDateTime());
+      case TIMESTAMP:
+        return left.asTimestamp().compareTo(right.asTimestamp());
+      case NULL:
+      case UNDEFINED:
+      case MIN_KEY:
+      case MAX_KEY:
+        return 0;
+      default:
+        return left.equals(right) ? 0 : left.toString().compareTo(right.toString());
+    }
+  }
+
+  private static int compareNumbers(BsonValue left, BsonValue right) {
+    if ((left.isInt32() || left.isInt64()) && (right.isInt32() || right.isInt64())) {
+      return Long.compare(left.asNumber().longValue(), right.asNumber().longValue());
+    }
+    double leftValue = left.asNumber().doubleValue();
+    double rightValue = right.asNumber().doubleValue();
+    return leftValue < rightValue ? -1 : (leftValue > rightValue ? 1 : 0);
+  }
+
+  private static int compareDocuments(BsonDocument left, BsonDocument right) {
+    List<Map.Entry<String, BsonValue>> leftEntries = new ArrayList<>(left.entrySet());
+    List<Map.Entry<String, BsonValue>> rightEntries = new ArrayList<>(right.entrySet());
+    for (int i = 0; i < Math.min(leftEntries.size(), rightEntries.size()); i++) {
+      int comparison = leftEntries.get(i).getKey().compareTo(rightEntries.get(i).getKey());
+      if (comparison == 0) {
+        comparison = compareValues(leftEntries.get(i).getValue(), rightEntries.get(i).getValue());
+      }
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return Integer.compare(leftEntries.size(), rightEntries.size());
+  }
+
+  private static int compareArrays(BsonArray left, BsonArray right) {
+    for (int i = 0; i < Math.min(left.size(), right.size()); i++) {
+      int comparison = compareValues(left.get(i), right.get(i));
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return Integer.compare(left.size(), right.size());
+  }
+
+  /*
+   * ----------------------------- Sort -----------------------------
+   */
+
+  /**
+   * Stable sort of documents on a sort specification like {date_created: -1, id: -1}. An array
+   * sorts on its smallest element in ascending order and on its largest one in descending order, a
+   * missing field sorts like null.
+   */
+  static List<BsonDocument> sort(List<BsonDocument> documents, BsonDocument sort) {
+    if (sort == null || sort.isEmpty() || documents.size() < 2) {
+      return documents;
+    }
+    String[] paths = sort.keySet().toArray(new String[0]);
+    boolean[] ascending = new boolean[paths.length];
+    for (int i = 0; i < paths.length; i++) {
+      BsonValue direction = sort.get(paths[i]);
+      ascending[i] = !direction.isNumber() || direction.asNumber().intValue() >= 0;
+    }
+
+    List<SortEntry> sortEntries = new ArrayList<>(documents.size());
+    for (BsonDocument document : documents) {
+      BsonValue[] sortKeys = new BsonValue[paths.length];
+      for (int i = 0; i < paths.length; i++) {
+        sortKeys[i] = getSortKey(document, paths[i], ascending[i]);
+      }
+      sortEntries.add(new SortEntry(sortKeys, document));
+    }
+    sortEntries.sort(
+        (left, right) -> {
+          for (int i = 0; i < paths.length; i++) {
+            int comparison = compareValues(left.sortKeys[i], right.sortKeys[i]);
+            if (comparison != 0) {
+              return ascending[i] ? comparison : -comparison;
+            }
+          }
+          return 0;
+        });
+
+    List<BsonDocument> sortedDocuments = new ArrayList<>(documents.size());
+    for (SortEntry sortEntry : sortEntries) {
+      sortedDocuments.add(sortEntry.document);
+    }
+    return sortedDocuments;
+  }
+
+  private static BsonValue getSortKey(BsonDocument document, String path, boolean ascending) {
+    BsonValue sortKey = null;
+    for (BsonValue value : getPathValues(document, path)) {
+      List<BsonValue> candidates =
+          value.isArray() ? value.asArray().getValues() : Collections.singletonList(value);
+      for (BsonValue candidate : candidates) {
+        int comparison = sortKey == null ? 0 : compareValues(candidate, sortKey);
+        if (sortKey == null || (ascending ? comparison < 0 : comparison > 0)) {
+          sortKey = candidate;
+        }
+      }
+    }
+    return sortKey == null ? BsonNull.VALUE : sortKey;
+  }
+
+  private static class SortEntry {
+    private final BsonValue[] sortKeys;
+    private final BsonDocument document;
+
+    private SortEntry(BsonValue[] sortKeys, BsonDocument document) {
+      this.sortKeys = sortKeys;
+      this.document = document;
+    }
+  }
+
+  /*
+   * ----------------------------- Projection -----------------------------
+   */
+
+  /**
+   * Apply a find projection like {id: 1} or {attributes: 0}. Inclusion projections keep _id
+   * unless it is excluded explicitly.
+   */
+  static BsonDocument project(BsonDocument document, BsonDocument projection) {
+    if (projection == null || projection.isEmpty()) {
+      return document;
+    }
+    boolean includeId = true;
+    boolean inclusion = false;
+    for (Map.Entry<String, BsonValue> entry : projection.entrySet()) {
+      if (entry.getValue().isDocument()) {
+        throw getUnsupportedOperatorException(entry.getValue().asDocument().getFirstKey());
+      }
+      if (entry.getKey().equals(ID_FIELD)) {
+        includeId = isTruthy(entry.getValue());
+      } else if (isTruthy(entry.getValue())) {
+        inclusion = true;
+      }
+    }
+
+    if (!inclusion) {
+      BsonDocument projectedDocument = document.clone();
+      for (Map.Entry<String, BsonValue> entry : projection.entrySet()) {
+        removePathValue(projectedDocument, entry.getKey());
+      }
+      return projectedDocument;
+    }
+
+    BsonDocument projectedDocument = new BsonDocument();
+    if (includeId && document.containsKey(ID_FIELD)) {
+      projectedDocument.put(ID_FIELD, document.get(ID_FIELD));
+    }
+    for (Map.Entry<String, BsonValue> entry : projection.entrySet()) {
+      if (!entry.getKey().equals(ID_FIELD) && isTruthy(entry.getValue())) {
+        includePath(document, projectedDocument, entry.getKey().split("\\."), 0);
+      }
+    }
+    return projectedDocument;
+  }
+
+  private static void includePath(
+      BsonDocument source, BsonDocument target, String[] path, int index) {
+    BsonValue value = source.get(path[index]);
+    if (value == null) {
+      return;
+    }
+    if (index == path.length - 1) {
+      target.put(path[index], value);
+    } else if (value.isDocument()) {
+      BsonValue existing = target.get(path[index]);
+      BsonDocument child =
+          existing != null && existing.isDocument() ? existing.asDocument() : new BsonDocument();
+      includePath(value.asDocument(), child, path, index + 1);
+      target.put(path[index], child);
+    } else if (value.isArray()) {
+      // Keep the included field of every embedded document of the array
+      BsonArray projectedArray = new BsonArray();
+      for (BsonValue element : value.asArray()) {
+        if (element.isDocument()) {
+          BsonDocument projectedElement = new BsonDocument();
+          includePath(element.asDocument(), projectedElement, path, index + 1);
+          projectedArray.add(projectedElement);
+        }
+      }
+      target.put(path[index], projectedArray);
+    }
+  }
+}
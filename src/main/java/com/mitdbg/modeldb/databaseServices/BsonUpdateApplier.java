@@ -0,0 +1,227 @@
+package com.mitdbg.modeldb.databaseServices;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonValue;
+import com.google.rpc.Code;
+import com.google.rpc.Status;
+import io.grpc.protobuf.StatusProto;
+
+/**
+ * Application of MongoDB update documents ($set, $unset, $inc, $push, $addToSet, $pull, $pullAll)
+ * to BSON documents for {@link InMemoryDocumentService}. Updates are applied to a copy, the stored
+ * document is never modified in place so concurrent readers always see a complete document.
+ */
+final class BsonUpdateApplier {
+
+  private BsonUpdateApplier() {}
+
+  /**
+   * @param BsonDocument document --> stored document, left unchanged
+   * @param BsonDocument update --> update operators, or a replacement document without operators
+   * @return BsonDocument updatedDocument --> updated copy of document
+   */
+  static BsonDocument apply(BsonDocument document, BsonDocument update) {
+    if (update.isEmpty() || !update.getFirstKey().startsWith("$")) {
+      return replace(document, update);
+    }
+
+    BsonDocument updatedDocument = document.clone();
+    for (Map.Entry<String, BsonValue> operator : update.entrySet()) {
+      for (Map.Entry<String, BsonValue> field : operator.getValue().asDocument().entrySet()) {
+        String path = field.getKey();
+        BsonValue operand = field.getValue();
+        switch (operator.getKey()) {
+          case "$set":
+            BsonQueryMatcher.setPathValue(updatedDocument, path, operand);
+            break;
+          case "$unset":
+            BsonQueryMatcher.removePathValue(updatedDocument, path);
+            break;
+          case "$inc":
+            increment(updatedDocument, path, operand);
+            break;
+          case "$push":
+            getOrCreateArray(updatedDocument, path).addAll(getEachValues(operand));
+            break;
+          case "$addToSet":
+            addToSet(getOrCreateArray(updatedDocument, path), getEachValues(operand));
+            break;
+          case "$pull":
+            pull(updatedDocument, path, operand);
+            break;
+          case "$pullAll":
+            pullAll(updatedDocument, path, operand.asArray());
+            break;
+          default:
+            throw BsonQueryMatcher.getUnsupportedOperatorException(operator.getKey());
+        }
+      }
+    }
+    return updatedDocument;
+  }
+
+  /**
+   * Document inserted by an upsert which matched nothing: the top-level equality conditions of
+   * filter with the update applied, like MongoDB does.
+   *
+   * @param BsonDocument filter --> query filter of the upsert
+   * @param BsonDocument update --> update operators of the upsert
+   * @return BsonDocument insertedDocument
+   */
+  static BsonDocument getUpsertDocument(BsonDocument filter, BsonDocument update) {
+    BsonDocument document = new BsonDocument();
+    for (Map.Entry<String, BsonValue> condition : filter.entrySet()) {
+      if (!condition.getKey().startsWith("$")
+          && !BsonQueryMatcher.isOperatorDocument(condition.getValue())) {
+        BsonQueryMatcher.setPathValue(document, condition.getKey(), condition.getValue());
+      }
+    }
+    return apply(document, update);
+  }
+
+  /** A replacement document keeps the _id of the replaced document. */
+  private static BsonDocument replace(BsonDocument document, BsonDocument replacement) {
+    BsonDocument replacedDocument = new BsonDocument();
+    BsonValue id = document.get(BsonQueryMatcher.ID_FIELD);
+    if (id != null) {
+      replacedDocument.put(BsonQueryMatcher.ID_FIELD, id);
+    }
+    for (Map.Entry<String, BsonValue> field : replacement.clone().entrySet()) {
+      replacedDocument.put(field.getKey(), field.getValue());
+    }
+    return replacedDocument;
+  }
+
+  /** {$each: [a, b]} pushes a and b, any other operand is pushed as one value. */
+  private static List<BsonValue> getEachValues(BsonValue operand) {
+    if (!BsonQueryMatcher.isOperatorDocument(operand)) {
+      return Collections.singletonList(operand);
+    }
+    BsonDocument modifiers = operand.asDocument();
+    for (String modifier : modifiers.keySet()) {
+      if (!modifier.equals("$each")) {
+        throw BsonQueryMatcher.getUnsupportedOperatorException(modifier);
+      }
+    }
+    return modifiers.getArray("$each").getValues();
+  }
+
+  private static BsonArray getOrCreateArray(BsonDocument document, String path) {
+    BsonValue value = BsonQueryMatcher.getPathValue(document, path);
+    if (value == null) {
+      BsonArray array = new BsonArray();
+      BsonQueryMatcher.setPathValue(document, path, array);
+      return array;
+    }
+    if (!value.isArray()) {
+      throw getNotAnArrayException(path);
+    }
+    return value.asArray();
+  }
+
+  /** Integers stay integers while both operands are, any double operand makes the sum a double. */
+  private static void increment(BsonDocument document, String path, BsonValue operand) {
+    if (!operand.isNumber()) {
+      throw getNotANumberException(path);
+    }
+    BsonValue value = BsonQueryMatcher.getPathValue(document, path);
+    BsonValue sum;
+    if (value == null) {
+      sum = operand;
+    } else if (!value.isNumber()) {
+      throw getNotANumberException(path);
+    } else if (value.isDouble() || operand.isDouble()) {
+      sum = new BsonDouble(value.asNumber().doubleValue() + operand.asNumber().doubleValue());
+    } else if (value.isInt64() || operand.isInt64()) {
+      sum = new BsonInt64(value.asNumber().longValue() + operand.asNumber().longValue());
+    } else {
+      sum = new BsonInt32(value.asNumber().intValue() + operand.asNumber().intValue());
+    }
+    BsonQueryMatcher.setPathValue(document, path, sum);
+  }
+
+  private static void addToSet(BsonArray array, List<BsonValue> values) {
+    for (BsonValue value : values) {
+      if (!contains(array, value)) {
+        array.add(value);
+      }
+    }
+  }
+
+  private static boolean contains(BsonArray array, BsonValue value) {
+    for (BsonValue element : array) {
+      if (BsonQueryMatcher.equalValues(element, value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Remove the elements matching the condition: an operator document like {$in: [...]} applies to
+   * each element, a plain document is a query on embedded documents, any other value removes equal
+   * elements.
+   */
+  private static void pull(BsonDocument document, String path, BsonValue condition) {
+    BsonValue value = BsonQueryMatcher.getPathValue(document, path);
+    if (value == null) {
+      return;
+    }
+    if (!value.isArray()) {
+      throw getNotAnArrayException(path);
+    }
+    boolean operatorCondition = BsonQueryMatcher.isOperatorDocument(condition);
+    Iterator<BsonValue> iterator = value.asArray().iterator();
+    while (iterator.hasNext()) {
+      BsonValue element = iterator.next();
+      boolean matched;
+      if (operatorCondition) {
+        matched = BsonQueryMatcher.matchesField(Collections.singletonList(element), condition);
+      } else if (condition.isDocument() && element.isDocument()) {
+        matched = BsonQueryMatcher.matches(element.asDocument(), condition.asDocument());
+      } else {
+        matched = BsonQueryMatcher.equalValues(element, condition);
+      }
+      if (matched) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private static void pullAll(BsonDocument document, String path, BsonArray values) {
+    BsonValue value = BsonQueryMatcher.getPathValue(document, path);
+    if (value == null) {
+      return;
+    }
+    if (!value.isArray()) {
+      throw getNotAnArrayException(path);
+    }
+    value.asArray().removeIf(element -> contains(values, element));
+  }
+
+  private static RuntimeException getNotANumberException(String path) {
+    Status status =
+        Status.newBuilder()
+            .setCode(Code.INVALID_ARGUMENT_VALUE)
+            .setMessage("Field " + path + " is not a number")
+            .build();
+    return StatusProto.toStatusRuntimeException(status);
+  }
+
+  private static RuntimeException getNotAnArrayException(String path) {
+    Status status =
+        Status.newBuilder()
+            .setCode(Code.INVALID_ARGUMENT_VALUE)
+            .setMessage("Field " + path + " is not an array")
+            .build();
+    return StatusProto.toStatusRuntimeException(status);
+  }
+}
@@ -1,6 +1,7 @@
 package com.mitdbg.modeldb.databaseServices;
 
 import java.util.List;
+import java.util.stream.Stream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageOrBuilder;
 
@@ -20,6 +21,23 @@ public interface DocumentService {
    */
   void insertOne(MessageOrBuilder object) throws InvalidProtocolBufferException;
 
+  /**
+   * Insert given ProtocolBuffer entity together with fields which are not part of its message,
+   * like the maps kept alongside its list fields, in one round trip.
+   *
+   * @param MessageOrBuilder object --> entity of the current collection
+   * @param Object extraFields --> Document of the fields added to the encoded entity
+   */
+  void insertOne(MessageOrBuilder object, Object extraFields)
+      throws InvalidProtocolBufferException;
+
+  /**
+   * Insert all given ProtocolBuffer entities in one round trip.
+   *
+   * @param List<? extends MessageOrBuilder> objects --> entities of the current collection
+   */
+  void insertMany(List<? extends MessageOrBuilder> objects) throws InvalidProtocolBufferException;
+
   /*
    * @see com.mitdbg.modeldb.repository.PersistenceNoSQLService#find(java.lang.String)
    */
@@ -60,6 +78,77 @@ public interface DocumentService {
    */
   Object findByObject(Object queryObj);
 
+  /**
+   * Typed variants of the finders above. Matching documents are decoded straight into given
+   * documentClass (e.g. ExperimentRun.class, Project.class) by the registered codecs, without any
+   * intermediate JSON conversion.
+   *
+   * @param Class<T> documentClass --> ProtocolBuffer entity class or org.bson.Document
+   */
+  <T> List<T> find(Class<T> documentClass);
+
+  <T> List<T> findListByKey(
+      String key,
+      String value,
+      Integer pageNumber,
+      Integer pageLimit,
+      String order,
+      String sortBy,
+      Class<T> documentClass);
+
+  /**
+   * Keyset pagination variant of findListByKey. Documents are sorted on (sortBy, id) and the page
+   * starts right after the last document of the previous page, given by its sort value and id, so
+   * deep pages cost the same as the first one.
+   *
+   * @param String key, String value --> where clause like project_id = project.id, null key lists
+   *     the whole collection
+   * @param Integer pageLimit --> page size, null returns all remaining documents
+   * @param String order --> asc OR desc
+   * @param String sortBy --> sort field, ID is always used as tie breaker
+   * @param Object lastSortValue --> stored sortBy value of last document of previous page, null if
+   *     the field is missing
+   * @param String lastId --> id of last document of previous page, null for first page
+   * @param Class<T> documentClass --> ProtocolBuffer entity class or org.bson.Document
+   * @return List<T> --> page of documents
+   */
+  <T> List<T> findListByKeyAfter(
+      String key,
+      String value,
+      Integer pageLimit,
+      String order,
+      String sortBy,
+      Object lastSortValue,
+      String lastId,
+      Class<T> documentClass);
+
+  <T> T findByKey(String key, String value, Class<T> documentClass);
+
+  <T> List<T> findListByKey(String key, String value, Class<T> documentClass);
+
+  <T> List<T> findListByObject(
+      Object queryObj,
+      Object projectionObj,
+      Object sortObj,
+      Integer recordLimit,
+      Class<T> documentClass);
+
+  <T> T findByObject(Object queryObj, Class<T> documentClass);
+
+  /**
+   * Lazy variants of findListByKey and findListByObject. Documents are decoded one by one while the
+   * returned stream is consumed, backed by a database cursor, so the result is never materialized
+   * in memory. The stream must be closed to release the cursor.
+   *
+   * @param Class<T> documentClass --> ProtocolBuffer entity class or org.bson.Document
+   * @return Stream<T> --> lazy stream of documents
+   */
+  <T> Stream<T> streamListByKey(
+      String key, String value, String order, String sortBy, Class<T> documentClass);
+
+  <T> Stream<T> streamListByObject(
+      Object queryObj, Object projectionObj, Object sortObj, Class<T> documentClass);
+
   /*
    * @see com.mitdbg.modeldb.repository.PersistenceNoSQLService#deleteOne(java.lang.String,
    * java.lang.String, java.lang.String)
@@ -79,6 +168,40 @@ public interface DocumentService {
    */
   long updateOne(Object queryObj, Object updateObj) throws InvalidProtocolBufferException;
 
+  /**
+   * Send all given write operations (insert, update, delete models) to the database in one batch.
+   * Operations are applied in order and the batch stops at the first failing operation.
+   *
+   * @param List<?> writeModels --> write operations on the current collection
+   * @return long --> number of modified documents
+   */
+  long bulkWrite(List<?> writeModels);
+
+  /**
+   * Atomically update the first document matching queryObj and return its post-image in the same
+   * round trip, instead of updateOne followed by findByKey.
+   *
+   * @param queryObj --> queryObj is used to build the where clause
+   * @param updateObj --> update operators like $set, $push, $addToSet, $pull etc.
+   * @param projectionObj --> optional projection of the returned document, null returns all fields
+   * @param Class<T> documentClass --> ProtocolBuffer entity class or org.bson.Document
+   * @return T --> updated document, null if no document matched queryObj
+   */
+  <T> T findOneAndUpdate(
+      Object queryObj, Object updateObj, Object projectionObj, Class<T> documentClass);
+
+  /**
+   * Atomically $set all fields of newObject on the document with given key-value and return its
+   * post-image. Like updateOne, nothing is returned (null) if the stored fields are already equal
+   * to newObject.
+   *
+   * @param String key, String value, MessageOrBuilder newObject
+   * @param Class<T> documentClass --> ProtocolBuffer entity class or org.bson.Document
+   * @return T --> updated document, null if nothing was modified
+   */
+  <T> T findOneAndUpdate(
+      String key, String value, MessageOrBuilder newObject, Class<T> documentClass);
+
   void insertOne(Object object) throws InvalidProtocolBufferException;
 
   /**
@@ -88,4 +211,6 @@ public interface DocumentService {
    * @return List<Object> --> Return list of entity base on aggregate query
    */
   List<?> findListByAggregateObject(List<?> queryObj);
+
+  <T> List<T> findListByAggregateObject(List<?> queryObj, Class<T> documentClass);
 }
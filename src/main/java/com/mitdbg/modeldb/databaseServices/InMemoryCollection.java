@@ -0,0 +1,261 @@
+package com.mitdbg.modeldb.databaseServices;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonValue;
+
+/**
+ * Documents of one collection of {@link InMemoryDatabase}, kept in insertion order under their
+ * position, with hash indexes on the configured top-level fields. Reads are lock-free and see
+ * each document either before or after a write, writes of a collection are serialized so
+ * conditional updates like findOneAndUpdate are atomic. Stored documents are never modified in
+ * place, an update replaces the document by an updated copy.
+ */
+class InMemoryCollection {
+
+  // position --> document, in insertion order like the natural order of MongoDB
+  private final ConcurrentNavigableMap<Long, BsonDocument> documentMap =
+      new ConcurrentSkipListMap<>();
+  // field --> value --> positions of the documents having that value
+  private final Map<String, ConcurrentMap<BsonValue, NavigableSet<Long>>> indexMap =
+      new ConcurrentHashMap<>();
+  private final Object writeLock = new Object();
+  private long nextPosition = 0;
+
+  InMemoryCollection(Collection<String> indexedFields) {
+    for (String indexedField : indexedFields) {
+      indexMap.put(indexedField, new ConcurrentHashMap<>());
+    }
+  }
+
+  void insert(BsonDocument document) {
+    synchronized (writeLock) {
+      long position = nextPosition++;
+      documentMap.put(position, document);
+      updateIndexes(position, null, document);
+    }
+  }
+
+  /**
+   * @param BsonDocument filter --> query filter, empty matches every document
+   * @return List<BsonDocument> documents --> matching documents in insertion order
+   */
+  List<BsonDocument> find(BsonDocument filter) {
+    List<BsonDocument> documents = new ArrayList<>();
+    for (Map.Entry<Long, BsonDocument> entry : getCandidates(filter)) {
+      if (BsonQueryMatcher.matches(entry.getValue(), filter)) {
+        documents.add(entry.getValue());
+      }
+    }
+    return documents;
+  }
+
+  /**
+   * Update the first or every document matching filter.
+   *
+   * @param BsonDocument filter --> query filter
+   * @param BsonDocument update --> update operators or replacement document
+   * @param boolean multi --> update every matching document instead of the first one
+   * @param List<BsonDocument> updatedDocuments --> receives the post-image of every matched
+   *     document, may be null
+   * @return long modifiedCount --> number of documents actually changed by the update
+   */
+  long update(
+      BsonDocument filter,
+      BsonDocument update,
+      boolean multi,
+      List<BsonDocument> updatedDocuments) {
+    long modifiedCount = 0;
+    synchronized (writeLock) {
+      for (Map.Entry<Long, BsonDocument> entry : getCandidates(filter)) {
+        BsonDocument document = entry.getValue();
+        if (!BsonQueryMatcher.matches(document, filter)) {
+          continue;
+        }
+        BsonDocument updatedDocument = BsonUpdateApplier.apply(document, update);
+        if (!updatedDocument.equals(document)) {
+          documentMap.put(entry.getKey(), updatedDocument);
+          updateIndexes(entry.getKey(), document, updatedDocument);
+          modifiedCount++;
+        }
+        if (updatedDocuments != null) {
+          updatedDocuments.add(updatedDocument);
+        }
+        if (!multi) {
+          break;
+        }
+      }
+    }
+    return modifiedCount;
+  }
+
+  /**
+   * Update the first document matching filter, or insert given document when none matches. The
+   * match and the insert are one atomic write of the collection, like the upsert of MongoDB.
+   *
+   * @param BsonDocument filter --> query filter
+   * @param BsonDocument update --> update operators
+   * @param BsonDocument upsertDocument --> document inserted when nothing matches filter
+   * @return long modifiedCount --> number of existing documents changed by the update
+   */
+  long upsert(BsonDocument filter, BsonDocument update, BsonDocument upsertDocument) {
+    synchronized (writeLock) {
+      List<BsonDocument> updatedDocuments = new ArrayList<>();
+      long modifiedCount = update(filter, update, false, updatedDocuments);
+      if (updatedDocuments.isEmpty()) {
+        insert(upsertDocument);
+      }
+      return modifiedCount;
+    }
+  }
+
+  /**
+   * @param BsonDocument filter --> query filter
+   * @param boolean multi --> delete every matching document instead of the first one
+   * @return long deletedCount
+   */
+  long delete(BsonDocument filter, boolean multi) {
+    long deletedCount = 0;
+    synchronized (writeLock) {
+      for (Map.Entry<Long, BsonDocument> entry : getCandidates(filter)) {
+        if (!BsonQueryMatcher.matches(entry.getValue(), filter)) {
+          continue;
+        }
+        documentMap.remove(entry.getKey());
+        updateIndexes(entry.getKey(), entry.getValue(), null);
+        deletedCount++;
+        if (!multi) {
+          break;
+        }
+      }
+    }
+    return deletedCount;
+  }
+
+  /*
+   * ----------------------------- Indexes -----------------------------
+   */
+
+  /**
+   * Documents which may match the filter: the ones of the most selective index lookup when the
+   * filter has an equality or $in condition on an indexed field, every document otherwise.
+   */
+  private Iterable<Map.Entry<Long, BsonDocument>> getCandidates(BsonDocument filter) {
+    NavigableSet<Long> candidatePositions = null;
+    for (Map.Entry<String, BsonValue> condition : filter.entrySet()) {
+      ConcurrentMap<BsonValue, NavigableSet<Long>> index = indexMap.get(condition.getKey());
+      if (index == null) {
+        continue;
+      }
+      NavigableSet<Long> positions = lookup(index, condition.getValue());
+      if (positions != null
+          && (candidatePositions == null || positions.size() < candidatePositions.size())) {
+        candidatePositions = positions;
+      }
+    }
+    if (candidatePositions == null) {
+      return documentMap.entrySet();
+    }
+
+    List<Map.Entry<Long, BsonDocument>> candidates = new ArrayList<>(candidatePositions.size());
+    for (Long position : candidatePositions) {
+      BsonDocument document = documentMap.get(position);
+      if (document != null) {
+        candidates.add(new AbstractMap.SimpleImmutableEntry<>(position, document));
+      }
+    }
+    return candidates;
+  }
+
+  /** @return NavigableSet<Long> positions --> null if the condition can not use the index */
+  private NavigableSet<Long> lookup(
+      ConcurrentMap<BsonValue, NavigableSet<Long>> index, BsonValue condition) {
+    if (isIndexable(condition)) {
+      NavigableSet<Long> positions = index.get(getIndexKey(condition));
+      return positions == null ? new TreeSet<>() : positions;
+    }
+    if (condition.isDocument()
+        && condition.asDocument().size() == 1
+        && condition.asDocument().containsKey("$in")) {
+      NavigableSet<Long> positions = new TreeSet<>();
+      for (BsonValue value : condition.asDocument().getArray("$in")) {
+        if (!isIndexable(value)) {
+          return null;
+        }
+        NavigableSet<Long> valuePositions = index.get(getIndexKey(value));
+        if (valuePositions != null) {
+          positions.addAll(valuePositions);
+        }
+      }
+      return positions;
+    }
+    return null;
+  }
+
+  private static boolean isIndexable(BsonValue value) {
+    return !value.isNull() && !value.isDocument() && !value.isArray();
+  }
+
+  /** Numbers of different types are equal in queries, they share one key. */
+  private static BsonValue getIndexKey(BsonValue value) {
+    return value.isNumber() ? new BsonDouble(value.asNumber().doubleValue()) : value;
+  }
+
+  private void updateIndexes(long position, BsonDocument oldDocument, BsonDocument newDocument) {
+    for (Map.Entry<String, ConcurrentMap<BsonValue, NavigableSet<Long>>> index :
+        indexMap.entrySet()) {
+      List<BsonValue> oldKeys = getIndexKeys(oldDocument, index.getKey());
+      List<BsonValue> newKeys = getIndexKeys(newDocument, index.getKey());
+      if (oldKeys.equals(newKeys)) {
+        continue;
+      }
+      for (BsonValue oldKey : oldKeys) {
+        index
+            .getValue()
+            .computeIfPresent(
+                oldKey,
+                (key, positions) -> {
+                  positions.remove(position);
+                  return positions.isEmpty() ? null : positions;
+                });
+      }
+      for (BsonValue newKey : newKeys) {
+        index
+            .getValue()
+            .computeIfAbsent(newKey, key -> new ConcurrentSkipListSet<>())
+            .add(position);
+      }
+    }
+  }
+
+  /** A document is indexed under its value of the field, or under each element of an array. */
+  private static List<BsonValue> getIndexKeys(BsonDocument document, String field) {
+    List<BsonValue> indexKeys = new ArrayList<>();
+    BsonValue value = document == null ? null : document.get(field);
+    if (value == null) {
+      return indexKeys;
+    }
+    if (value.isArray()) {
+      for (BsonValue element : value.asArray()) {
+        if (isIndexable(element)) {
+          indexKeys.add(getIndexKey(element));
+        }
+      }
+    } else if (isIndexable(value)) {
+      indexKeys.add(getIndexKey(value));
+    }
+    return indexKeys;
+  }
+}
@@ -0,0 +1,51 @@
+package com.mitdbg.modeldb.databaseServices;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.bson.codecs.configuration.CodecRegistry;
+import com.mitdbg.modeldb.ModelDBConstants;
+
+/**
+ * Process local database for {@link InMemoryDocumentService}, used by DBType inmemory for offline
+ * load testing and benchmarks without a MongoDB server. It is shared by the InMemoryDocumentService
+ * of every DAO like MongoDatabase is, nothing is persisted.
+ */
+public class InMemoryDatabase {
+
+  private final ConcurrentMap<String, InMemoryCollection> collectionMap =
+      new ConcurrentHashMap<>();
+  private final Collection<String> indexedFields;
+  private final CodecRegistry codecRegistry = ProtoCodecProvider.getCodecRegistry();
+
+  /**
+   * Index the fields every DAO looks entities up by: id, project_id, experiment_id and the
+   * experiment_run_id of observation buckets.
+   */
+  public InMemoryDatabase() {
+    this(
+        Arrays.asList(
+            ModelDBConstants.ID,
+            ModelDBConstants.PROJECT_ID,
+            ModelDBConstants.EXPERIMENT_ID,
+            ModelDBConstants.EXPERIMENT_RUN_ID));
+  }
+
+  /**
+   * @param Collection<String> indexedFields --> top-level fields with a hash index in every
+   *     collection, used by equality and $in filters
+   */
+  public InMemoryDatabase(Collection<String> indexedFields) {
+    this.indexedFields = indexedFields;
+  }
+
+  InMemoryCollection getCollection(String collectionName) {
+    return collectionMap.computeIfAbsent(
+        collectionName, name -> new InMemoryCollection(indexedFields));
+  }
+
+  CodecRegistry getCodecRegistry() {
+    return codecRegistry;
+  }
+}
@@ -0,0 +1,463 @@
+package com.mitdbg.modeldb.databaseServices;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInt32;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
+import com.mitdbg.modeldb.ModelDBConstants;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+
+/**
+ * DocumentService on an {@link InMemoryDatabase}, with the semantics of {@link MongoService}: the
+ * same Document, Filters and Updates objects built by the DAOs are evaluated against BSON documents
+ * kept in memory. Supported are the query operators $eq, $ne, $gt, $gte, $lt, $lte, $in, $nin,
+ * $exists, $all, $not, $elemMatch, $size, $and, $or and $nor, the update operators $set, $unset,
+ * $inc, $push, $addToSet, $pull and $pullAll and the aggregation stages $match, $unwind, $sort,
+ * $skip, $limit, $project and $addFields. Any other operator fails with UNIMPLEMENTED.
+ */
+public class InMemoryDocumentService implements DocumentService {
+
+  private final InMemoryDatabase database;
+  private String collectionName = null;
+
+  public InMemoryDocumentService(InMemoryDatabase database) {
+    this.database = database;
+  }
+
+  @Override
+  public void checkCollectionAvailability(String collection) {
+    this.collectionName = collection;
+    this.database.getCollection(collection);
+  }
+
+  private InMemoryCollection getCollection() {
+    return this.database.getCollection(collectionName);
+  }
+
+  /*
+   * ----------------------------- Conversions -----------------------------
+   */
+
+  private Message convertObjectToMessage(MessageOrBuilder object) {
+    if (object instanceof Message.Builder) {
+      return ((Message.Builder) object).build();
+    }
+    return (Message) object;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends Message> BsonDocument encodeMessage(T message) {
+    Codec<T> codec = (Codec<T>) this.database.getCodecRegistry().get(message.getClass());
+    BsonDocument bsonDocument = new BsonDocument();
+    codec.encode(new BsonDocumentWriter(bsonDocument), message, EncoderContext.builder().build());
+    return bsonDocument;
+  }
+
+  /**
+   * Convert a query, update, projection or sort object (Document, Filters, Updates etc.) to a new
+   * BsonDocument, null is converted to an empty document.
+   */
+  private BsonDocument toBsonDocument(Object object) {
+    if (object == null) {
+      return new BsonDocument();
+    }
+    if (object instanceof BsonDocument) {
+      return ((BsonDocument) object).clone();
+    }
+    return ((Bson) object).toBsonDocument(BsonDocument.class, this.database.getCodecRegistry());
+  }
+
+  private List<BsonDocument> toBsonDocuments(List<?> objects) {
+    List<BsonDocument> bsonDocuments = new ArrayList<>();
+    for (Object object : objects) {
+      bsonDocuments.add(toBsonDocument(object));
+    }
+    return bsonDocuments;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T decode(BsonDocument bsonDocument, Class<T> documentClass) {
+    if (documentClass == BsonDocument.class) {
+      return (T) bsonDocument.clone();
+    }
+    Codec<T> codec = this.database.getCodecRegistry().get(documentClass);
+    return codec.decode(new BsonDocumentReader(bsonDocument), DecoderContext.builder().build());
+  }
+
+  private <T> List<T> decode(List<BsonDocument> bsonDocuments, Class<T> documentClass) {
+    List<T> documents = new ArrayList<>(bsonDocuments.size());
+    for (BsonDocument bsonDocument : bsonDocuments) {
+      documents.add(decode(bsonDocument, documentClass));
+    }
+    return documents;
+  }
+
+  /** Like the MongoDB driver, give a document without _id a generated ObjectId as first field. */
+  private static BsonDocument withObjectId(BsonDocument bsonDocument) {
+    if (bsonDocument.containsKey(BsonQueryMatcher.ID_FIELD)) {
+      return bsonDocument;
+    }
+    BsonDocument documentWithId =
+        new BsonDocument(BsonQueryMatcher.ID_FIELD, new BsonObjectId(new ObjectId()));
+    documentWithId.putAll(bsonDocument);
+    return documentWithId;
+  }
+
+  private static BsonDocument getKeyFilter(String key, String value) {
+    return new BsonDocument(key, value == null ? BsonNull.VALUE : new BsonString(value));
+  }
+
+  private static BsonDocument getSortDocument(String order, String sortBy) {
+    order = (order == null || order.isEmpty()) ? ModelDBConstants.ORDER_DESC : order;
+    sortBy = (sortBy == null || sortBy.isEmpty()) ? ModelDBConstants.DATE_CREATED : sortBy;
+    int direction = order.equalsIgnoreCase(ModelDBConstants.ORDER_ASC) ? 1 : -1;
+    return new BsonDocument(sortBy, new BsonInt32(direction));
+  }
+
+  /** Skip and limit of a find, a limit of 0 or less means no limit like in MongoDB. */
+  private static List<BsonDocument> slice(List<BsonDocument> documents, int skip, Integer limit) {
+    int fromIndex = Math.min(Math.max(skip, 0), documents.size());
+    int toIndex = documents.size();
+    if (limit != null && limit > 0) {
+      toIndex = Math.min(fromIndex + limit, toIndex);
+    }
+    return documents.subList(fromIndex, toIndex);
+  }
+
+  private static List<BsonDocument> project(List<BsonDocument> documents, BsonDocument projection) {
+    if (projection.isEmpty()) {
+      return documents;
+    }
+    List<BsonDocument> projectedDocuments = new ArrayList<>(documents.size());
+    for (BsonDocument document : documents) {
+      projectedDocuments.add(BsonQueryMatcher.project(document, projection));
+    }
+    return projectedDocuments;
+  }
+
+  /*
+   * ----------------------------- Inserts -----------------------------
+   */
+
+  @Override
+  public void insertOne(MessageOrBuilder object) throws InvalidProtocolBufferException {
+    getCollection().insert(withObjectId(encodeMessage(convertObjectToMessage(object))));
+  }
+
+  @Override
+  public void insertOne(MessageOrBuilder object, Object extraFields)
+      throws InvalidProtocolBufferException {
+    BsonDocument document = encodeMessage(convertObjectToMessage(object));
+    document.putAll(toBsonDocument(extraFields));
+    getCollection().insert(withObjectId(document));
+  }
+
+  @Override
+  public void insertMany(List<? extends MessageOrBuilder> objects)
+      throws InvalidProtocolBufferException {
+    for (MessageOrBuilder object : objects) {
+      insertOne(object);
+    }
+  }
+
+  @Override
+  public void insertOne(Object object) throws InvalidProtocolBufferException {
+    getCollection().insert(withObjectId(toBsonDocument(object)));
+  }
+
+  /*
+   * ----------------------------- Finds -----------------------------
+   */
+
+  @Override
+  public List<Document> find() {
+    return find(Document.class);
+  }
+
+  @Override
+  public <T> List<T> find(Class<T> documentClass) {
+    return decode(getCollection().find(new BsonDocument()), documentClass);
+  }
+
+  @Override
+  public List<Document> findListByKey(
+      String key,
+      String value,
+      Integer pageNumber,
+      Integer pageLimit,
+      String order,
+      String sortBy) {
+    return findListByKey(key, value, pageNumber, pageLimit, order, sortBy, Document.class);
+  }
+
+  @Override
+  public <T> List<T> findListByKey(
+      String key,
+      String value,
+      Integer pageNumber,
+      Integer pageLimit,
+      String order,
+      String sortBy,
+      Class<T> documentClass) {
+    List<BsonDocument> documents =
+        BsonQueryMatcher.sort(
+            getCollection().find(getKeyFilter(key, value)), getSortDocument(order, sortBy));
+    if (pageNumber != null && pageLimit != null) {
+      // Calculate number of documents to skip
+      documents = slice(documents, pageLimit * (pageNumber - 1), pageLimit);
+    }
+    return decode(documents, documentClass);
+  }
+
+  @Override
+  public <T> List<T> findListByKeyAfter(
+      String key,
+      String value,
+      Integer pageLimit,
+      String order,
+      String sortBy,
+      Object lastSortValue,
+      String lastId,
+      Class<T> documentClass) {
+    Boolean ascending = ModelDBConstants.ORDER_ASC.equalsIgnoreCase(order);
+    BsonInt32 direction = new BsonInt32(ascending ? 1 : -1);
+
+    BsonDocument queryDocument = key == null ? new BsonDocument() : getKeyFilter(key, value);
+    if (lastId != null) {
+      queryDocument.append(
+          "$or",
+          new BsonArray(
+              toBsonDocuments(
+                  MongoService.getSeekConditions(sortBy, ascending, lastSortValue, lastId))));
+    }
+
+    BsonDocument sortDocument =
+        new BsonDocument(sortBy, direction).append(ModelDBConstants.ID, direction);
+    List<BsonDocument> documents =
+        BsonQueryMatcher.sort(getCollection().find(queryDocument), sortDocument);
+    return decode(slice(documents, 0, pageLimit), documentClass);
+  }
+
+  @Override
+  public Document findByKey(String key, String value) {
+    return findByKey(key, value, Document.class);
+  }
+
+  @Override
+  public <T> T findByKey(String key, String value, Class<T> documentClass) {
+    return findByObject(getKeyFilter(key, value), documentClass);
+  }
+
+  @Override
+  public List<Document> findListByKey(String key, String value) {
+    return findListByKey(key, value, Document.class);
+  }
+
+  @Override
+  public <T> List<T> findListByKey(String key, String value, Class<T> documentClass) {
+    return decode(getCollection().find(getKeyFilter(key, value)), documentClass);
+  }
+
+  @Override
+  public List<Document> findListByObject(
+      Object queryObj, Object projectionObj, Object sortObj, Integer recordLimit) {
+    return findListByObject(queryObj, projectionObj, sortObj, recordLimit, Document.class);
+  }
+
+  @Override
+  public <T> List<T> findListByObject(
+      Object queryObj,
+      Object projectionObj,
+      Object sortObj,
+      Integer recordLimit,
+      Class<T> documentClass) {
+    List<BsonDocument> documents =
+        BsonQueryMatcher.sort(
+            getCollection().find(toBsonDocument(queryObj)), toBsonDocument(sortObj));
+    documents = slice(documents, 0, recordLimit);
+    return decode(project(documents, toBsonDocument(projectionObj)), documentClass);
+  }
+
+  @Override
+  public Document findByObject(Object queryObj) {
+    return findByObject(queryObj, Document.class);
+  }
+
+  @Override
+  public <T> T findByObject(Object queryObj, Class<T> documentClass) {
+    List<BsonDocument> documents = getCollection().find(toBsonDocument(queryObj));
+    return documents.isEmpty() ? null : decode(documents.get(0), documentClass);
+  }
+
+  /** Results are already in memory, the streams only defer decoding. */
+  @Override
+  public <T> Stream<T> streamListByKey(
+      String key, String value, String order, String sortBy, Class<T> documentClass) {
+    return BsonQueryMatcher.sort(
+            getCollection().find(getKeyFilter(key, value)), getSortDocument(order, sortBy))
+        .stream()
+        .map(bsonDocument -> decode(bsonDocument, documentClass));
+  }
+
+  @Override
+  public <T> Stream<T> streamListByObject(
+      Object queryObj, Object projectionObj, Object sortObj, Class<T> documentClass) {
+    List<BsonDocument> documents =
+        BsonQueryMatcher.sort(
+            getCollection().find(toBsonDocument(queryObj)), toBsonDocument(sortObj));
+    return project(documents, toBsonDocument(projectionObj))
+        .stream()
+        .map(bsonDocument -> decode(bsonDocument, documentClass));
+  }
+
+  @Override
+  public List<Document> findListByAggregateObject(List<?> queryObj) {
+    return findListByAggregateObject(queryObj, Document.class);
+  }
+
+  /** A leading $match stage is run as a find, so it can use the indexes of the collection. */
+  @Override
+  public <T> List<T> findListByAggregateObject(List<?> queryObj, Class<T> documentClass) {
+    List<BsonDocument> pipeline = toBsonDocuments(queryObj);
+    BsonDocument matchDocument = new BsonDocument();
+    if (!pipeline.isEmpty() && pipeline.get(0).getFirstKey().equals("$match")) {
+      matchDocument = pipeline.get(0).getDocument("$match");
+      pipeline = pipeline.subList(1, pipeline.size());
+    }
+    List<BsonDocument> documents =
+        BsonAggregationPipeline.aggregate(getCollection().find(matchDocument), pipeline);
+    return decode(documents, documentClass);
+  }
+
+  /*
+   * ----------------------------- Writes -----------------------------
+   */
+
+  @Override
+  public Boolean deleteOne(String collectionName, String key, String value) {
+    this.database.getCollection(collectionName).delete(getKeyFilter(key, value), false);
+    return true;
+  }
+
+  @Override
+  public long updateOne(String key, String value, MessageOrBuilder newObject)
+      throws InvalidProtocolBufferException {
+    BsonDocument updateDocument =
+        new BsonDocument("$set", encodeMessage(convertObjectToMessage(newObject)));
+    return getCollection().update(getKeyFilter(key, value), updateDocument, false, null);
+  }
+
+  @Override
+  public long updateOne(Object queryObj, Object updateObj) throws InvalidProtocolBufferException {
+    return getCollection()
+        .update(toBsonDocument(queryObj), toBsonDocument(updateObj), false, null);
+  }
+
+  /** Only UpdateOneModel supports upsert, other models with upsert fail with UNIMPLEMENTED. */
+  @Override
+  public long bulkWrite(List<?> writeModels) {
+    InMemoryCollection collection = getCollection();
+    long modifiedCount = 0;
+    for (Object writeModel : writeModels) {
+      if (writeModel instanceof InsertOneModel) {
+        collection.insert(
+            withObjectId(toBsonDocument(((InsertOneModel<?>) writeModel).getDocument())));
+      } else if (writeModel instanceof UpdateOneModel) {
+        UpdateOneModel<?> updateModel = (UpdateOneModel<?>) writeModel;
+        BsonDocument filter = toBsonDocument(updateModel.getFilter());
+        BsonDocument update = toBsonDocument(updateModel.getUpdate());
+        if (updateModel.getOptions().isUpsert()) {
+          modifiedCount +=
+              collection.upsert(
+                  filter,
+                  update,
+                  withObjectId(BsonUpdateApplier.getUpsertDocument(filter, update)));
+        } else {
+          modifiedCount += collection.update(filter, update, false, null);
+        }
+      } else if (writeModel instanceof UpdateManyModel) {
+        UpdateManyModel<?> updateModel = (UpdateManyModel<?>) writeModel;
+        checkNoUpsert(updateModel.getOptions().isUpsert());
+        modifiedCount +=
+            collection.update(
+                toBsonDocument(updateModel.getFilter()),
+                toBsonDocument(updateModel.getUpdate()),
+                true,
+                null);
+      } else if (writeModel instanceof ReplaceOneModel) {
+        ReplaceOneModel<?> replaceModel = (ReplaceOneModel<?>) writeModel;
+        checkNoUpsert(replaceModel.getReplaceOptions().isUpsert());
+        modifiedCount +=
+            collection.update(
+                toBsonDocument(replaceModel.getFilter()),
+                toBsonDocument(replaceModel.getReplacement()),
+                false,
+                null);
+      } else if (writeModel instanceof DeleteOneModel) {
+        collection.delete(toBsonDocument(((DeleteOneModel<?>) writeModel).getFilter()), false);
+      } else if (writeModel instanceof DeleteManyModel) {
+        collection.delete(toBsonDocument(((DeleteManyModel<?>) writeModel).getFilter()), true);
+      } else {
+        throw BsonQueryMatcher.getUnsupportedOperatorException(
+            writeModel.getClass().getSimpleName());
+      }
+    }
+    return modifiedCount;
+  }
+
+  private static void checkNoUpsert(boolean upsert) {
+    if (upsert) {
+      throw BsonQueryMatcher.getUnsupportedOperatorException("upsert");
+    }
+  }
+
+  @Override
+  public <T> T findOneAndUpdate(
+      Object queryObj, Object updateObj, Object projectionObj, Class<T> documentClass) {
+    List<BsonDocument> updatedDocuments = new ArrayList<>();
+    getCollection()
+        .update(toBsonDocument(queryObj), toBsonDocument(updateObj), false, updatedDocuments);
+    if (updatedDocuments.isEmpty()) {
+      return null;
+    }
+    BsonDocument projection = toBsonDocument(projectionObj);
+    BsonDocument updatedDocument = updatedDocuments.get(0);
+    if (!projection.isEmpty()) {
+      updatedDocument = BsonQueryMatcher.project(updatedDocument, projection);
+    }
+    return decode(updatedDocument, documentClass);
+  }
+
+  /** Like updateOne, nothing is returned if the stored fields are already equal to newObject. */
+  @Override
+  public <T> T findOneAndUpdate(
+      String key, String value, MessageOrBuilder newObject, Class<T> documentClass) {
+    BsonDocument updateDocument =
+        new BsonDocument("$set", encodeMessage(convertObjectToMessage(newObject)));
+    List<BsonDocument> updatedDocuments = new ArrayList<>();
+    long modifiedCount =
+        getCollection().update(getKeyFilter(key, value), updateDocument, false, updatedDocuments);
+    return modifiedCount == 0 ? null : decode(updatedDocuments.get(0), documentClass);
+  }
+}
@@ -0,0 +1,243 @@
+package com.mitdbg.modeldb.databaseServices;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import com.mitdbg.modeldb.App;
+import com.mitdbg.modeldb.ModelDBConstants;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+
+/**
+ * Declarative registry of the MongoDB indexes required by the modelDB lookups, reconciled against
+ * the database at startup. Missing indexes are created, indexes which are present in the database
+ * but not declared here, or never used since the server started, are only reported.
+ */
+public class MongoIndexManager {
+
+  private static final Logger LOGGER = Logger.getLogger(MongoIndexManager.class.getName());
+  private static final String DEFAULT_ID_INDEX = "_id_";
+
+  private final MongoDatabase database;
+  private final Boolean buildInBackground;
+  private final Map<String, List<IndexModel>> indexRegistry = new LinkedHashMap<>();
+
+  public MongoIndexManager(MongoDatabase database, Boolean buildInBackground) {
+    this.database = database;
+    this.buildInBackground = buildInBackground;
+
+    App app = App.getInstance();
+    registerIndex(app.getProjectEntity(), "id_unique", true, ModelDBConstants.ID);
+    registerIndex(app.getProjectEntity(), "name", false, ModelDBConstants.NAME);
+
+    registerIndex(app.getExperimentEntity(), "id_unique", true, ModelDBConstants.ID);
+    registerIndex(
+        app.getExperimentEntity(),
+        "project_id_name",
+        false,
+        ModelDBConstants.PROJECT_ID,
+        ModelDBConstants.NAME);
+    registerIndex(
+        app.getExperimentEntity(),
+        "project_id_date_created",
+        false,
+        ModelDBConstants.PROJECT_ID,
+        ModelDBConstants.DATE_CREATED);
+
+    registerIndex(app.getExperimentRunEntity(), "id_unique", true, ModelDBConstants.ID);
+    // Unique, run names are checked against it when the creation cache skips the lookup
+    registerIndex(
+        app.getExperimentRunEntity(),
+        "project_id_experiment_id_name_unique",
+        true,
+        ModelDBConstants.PROJECT_ID,
+        ModelDBConstants.EXPERIMENT_ID,
+        ModelDBConstants.NAME);
+    registerIndex(
+        app.getExperimentRunEntity(),
+        "project_id_date_created",
+        false,
+        ModelDBConstants.PROJECT_ID,
+        ModelDBConstants.DATE_CREATED);
+    registerIndex(
+        app.getExperimentRunEntity(),
+        "experiment_id_date_created",
+        false,
+        ModelDBConstants.EXPERIMENT_ID,
+        ModelDBConstants.DATE_CREATED);
+    registerIndex(
+        app.getExperimentRunEntity(),
+        "metrics_key",
+        false,
+        ModelDBConstants.METRICS + "." + ModelDBConstants.KEY);
+    registerIndex(
+        app.getExperimentRunEntity(),
+        "hyperparameters_key",
+        false,
+        ModelDBConstants.HYPERPARAMETERS + "." + ModelDBConstants.KEY);
+    // Wildcard indexes serve sorts and range predicates on any metric_values.<key>, they need
+    // MongoDB 4.2+ and are only reported as failed on older servers
+    registerIndex(
+        app.getExperimentRunEntity(),
+        "metric_values_wildcard",
+        false,
+        new Document(ModelDBConstants.METRIC_VALUES + ".$**", 1));
+    registerIndex(
+        app.getExperimentRunEntity(),
+        "hyperparameter_values_wildcard",
+        false,
+        new Document(ModelDBConstants.HYPERPARAMETER_VALUES + ".$**", 1));
+
+    // Observations of a run and key are read as one range of buckets in time order
+    registerIndex(
+        app.getObservationBucketEntity(),
+        "experiment_run_id_key_bucket_start",
+        false,
+        ModelDBConstants.EXPERIMENT_RUN_ID,
+        ModelDBConstants.KEY,
+        ModelDBConstants.BUCKET_START);
+
+    registerIndex(app.getJobEntity(), "id_unique", true, ModelDBConstants.ID);
+
+    registerIndex(
+        app.getArtifactStoreMappingEntity(),
+        "entity_name_entity_id_client_key",
+        false,
+        ModelDBConstants.ENTITY_NAME,
+        ModelDBConstants.ENTITY_ID,
+        ModelDBConstants.CLIENT_KEY);
+    registerIndex(
+        app.getArtifactStoreMappingEntity(),
+        "cloud_storage_key",
+        false,
+        ModelDBConstants.CLOUD_STORAGE_KEY);
+  }
+
+  private void registerIndex(
+      String collectionName, String indexName, Boolean unique, String... fieldNames) {
+    registerIndex(collectionName, indexName, unique, Indexes.ascending(fieldNames));
+  }
+
+  private void registerIndex(
+      String collectionName, String indexName, Boolean unique, Bson indexKeys) {
+    IndexOptions indexOptions =
+        new IndexOptions().name(indexName).unique(unique).background(buildInBackground);
+    indexRegistry
+        .computeIfAbsent(collectionName, key -> new ArrayList<>())
+        .add(new IndexModel(indexKeys, indexOptions));
+  }
+
+  /**
+   * Return the declared indexes of given collection.
+   *
+   * @param String collectionName
+   * @return List<IndexModel> declared indexes, empty if nothing is declared for the collection
+   */
+  public List<IndexModel> getDeclaredIndexes(String collectionName) {
+    return indexRegistry.getOrDefault(collectionName, Collections.emptyList());
+  }
+
+  /**
+   * Compare the declared indexes with the indexes present in each collection, create the missing
+   * ones and report the undeclared and unused ones. Failures are logged and never stop the server,
+   * e.g. a unique index can not be built while the collection already contains duplicates.
+   */
+  public void reconcileIndexes() {
+    for (Map.Entry<String, List<IndexModel>> registryEntry : indexRegistry.entrySet()) {
+      String collectionName = registryEntry.getKey();
+      try {
+        MongoCollection<Document> collection = database.getCollection(collectionName);
+        Set<String> existingIndexNames = new HashSet<>();
+        for (Document index : collection.listIndexes()) {
+          existingIndexNames.add(index.getString("name"));
+        }
+
+        List<IndexModel> missingIndexes = new ArrayList<>();
+        Set<String> declaredIndexNames = new HashSet<>();
+        for (IndexModel indexModel : registryEntry.getValue()) {
+          String indexName = indexModel.getOptions().getName();
+          declaredIndexNames.add(indexName);
+          if (!existingIndexNames.contains(indexName)) {
+            missingIndexes.add(indexModel);
+          }
+        }
+
+        // Created one by one, so an index the server can not build does not block the others
+        for (IndexModel missingIndex : missingIndexes) {
+          try {
+            String createdIndexName =
+                collection.createIndex(missingIndex.getKeys(), missingIndex.getOptions());
+            LOGGER.info("Created index " + createdIndexName + " on " + collectionName);
+          } catch (MongoException e) {
+            LOGGER.log(
+                Level.WARNING,
+                "Index "
+                    + missingIndex.getOptions().getName()
+                    + " on "
+                    + collectionName
+                    + " could not be created: "
+                    + e,
+                e);
+          }
+        }
+
+        for (String existingIndexName : existingIndexNames) {
+          if (!existingIndexName.equals(DEFAULT_ID_INDEX)
+              && !declaredIndexNames.contains(existingIndexName)) {
+            LOGGER.warning(
+                "Index "
+                    + existingIndexName
+                    + " on "
+                    + collectionName
+                    + " is not declared in the index registry");
+          }
+        }
+
+        reportUnusedIndexes(collection, collectionName);
+      } catch (MongoException e) {
+        LOGGER.log(
+            Level.WARNING, "Index reconciliation failed for " + collectionName + ": " + e, e);
+      }
+    }
+  }
+
+  /**
+   * Log the indexes which have not served any operation since the MongoDB server started, based on
+   * the $indexStats aggregation stage.
+   */
+  private void reportUnusedIndexes(MongoCollection<Document> collection, String collectionName) {
+    List<Document> indexStatsPipeline =
+        Collections.singletonList(new Document("$indexStats", new Document()));
+    for (Document indexStats : collection.aggregate(indexStatsPipeline)) {
+      Document accesses = (Document) indexStats.get("accesses");
+      if (accesses == null) {
+        continue;
+      }
+      Number operations = (Number) accesses.get("ops");
+      String indexName = indexStats.getString("name");
+      if (operations != null
+          && operations.longValue() == 0
+          && !indexName.equals(DEFAULT_ID_INDEX)) {
+        LOGGER.info(
+            "Index "
+                + indexName
+                + " on "
+                + collectionName
+                + " has not been used since "
+                + accesses.get("since"));
+      }
+    }
+  }
+}
@@ -2,17 +2,40 @@ package com.mitdbg.modeldb.databaseServices;
 
 import static com.mongodb.client.model.Filters.eq;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
 import com.google.protobuf.MessageOrBuilder;
 import com.mitdbg.modeldb.ModelDBConstants;
-import com.mitdbg.modeldb.ModelDBUtils;
+import com.mitdbg.modeldb.monitoring.DatabaseMetrics;
+import com.mitdbg.modeldb.monitoring.SlowOperationLog;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 
@@ -23,7 +46,8 @@ public class MongoService implements DocumentService {
   private String collectionName = null;
 
   public MongoService(MongoDatabase database) {
-    this.database = database;
+    // Register ProtocolBuffer codecs so entities are written and read as BSON directly
+    this.database = database.withCodecRegistry(ProtoCodecProvider.getCodecRegistry());
   }
 
   /*
@@ -56,24 +80,51 @@ public class MongoService implements DocumentService {
   }
 
   /**
-   * Method convert Any ProtocolBuffer entity class to MongoDB Document object.
+   * Method convert Any ProtocolBuffer entity or builder to the Message, which is encoded to BSON by
+   * {@link ProtoCodec}.
    *
    * @param object : is all ProtocolBuffer entity POJO.
-   * @return Document : is a MongoDB Object
-   * @throws InvalidProtocolBufferException
+   * @return Message : ProtocolBuffer message
    */
-  private Document convertObjectToDocument(MessageOrBuilder object)
-      throws InvalidProtocolBufferException {
+  private Message convertObjectToMessage(MessageOrBuilder object) {
+    if (object instanceof Message.Builder) {
+      return ((Message.Builder) object).build();
+    }
+    return (Message) object;
+  }
 
-    String json = ModelDBUtils.getStringFromProtoObject(object);
-    return Document.parse(json);
+  @SuppressWarnings("unchecked")
+  private <T extends Message> MongoCollection<T> getMessageCollection(T message) {
+    return this.database.getCollection(collectionName, (Class<T>) message.getClass());
   }
 
   @Override
   public void insertOne(MessageOrBuilder object) throws InvalidProtocolBufferException {
-    MongoCollection<Document> collection = this.database.getCollection(collectionName);
-    Document document = convertObjectToDocument(object);
-    collection.insertOne(document);
+    Message message = convertObjectToMessage(object);
+    getMessageCollection(message).insertOne(message);
+  }
+
+  @Override
+  public void insertOne(MessageOrBuilder object, Object extraFields)
+      throws InvalidProtocolBufferException {
+    BsonDocument document = encodeMessage(convertObjectToMessage(object));
+    document.putAll(
+        ((Document) extraFields)
+            .toBsonDocument(BsonDocument.class, this.database.getCodecRegistry()));
+    this.database.getCollection(collectionName, BsonDocument.class).insertOne(document);
+  }
+
+  @Override
+  public void insertMany(List<? extends MessageOrBuilder> objects)
+      throws InvalidProtocolBufferException {
+    if (objects.isEmpty()) {
+      return;
+    }
+    List<Message> messages = new ArrayList<>();
+    for (MessageOrBuilder object : objects) {
+      messages.add(convertObjectToMessage(object));
+    }
+    this.database.getCollection(collectionName, Message.class).insertMany(messages);
   }
 
   @Override
@@ -85,8 +136,13 @@ public class MongoService implements DocumentService {
 
   @Override
   public List<Document> find() {
-    MongoCollection<Document> collection = this.database.getCollection(collectionName);
-    return collection.find().into(new ArrayList<Document>());
+    return find(Document.class);
+  }
+
+  @Override
+  public <T> List<T> find(Class<T> documentClass) {
+    MongoCollection<T> collection = this.database.getCollection(collectionName, documentClass);
+    return collection.find().into(new ArrayList<T>());
   }
 
   @Override
@@ -97,7 +153,19 @@ public class MongoService implements DocumentService {
       Integer pageLimit,
       String order,
       String sortBy) {
-    MongoCollection<Document> collection = this.database.getCollection(collectionName);
+    return findListByKey(key, value, pageNumber, pageLimit, order, sortBy, Document.class);
+  }
+
+  @Override
+  public <T> List<T> findListByKey(
+      String key,
+      String value,
+      Integer pageNumber,
+      Integer pageLimit,
+      String order,
+      String sortBy,
+      Class<T> documentClass) {
+    MongoCollection<T> collection = this.database.getCollection(collectionName, documentClass);
 
     Document queryObj = new Document();
     queryObj.put(key, value);
@@ -112,36 +180,134 @@ public class MongoService implements DocumentService {
       filter.append(sortBy, -1);
     }
 
+    long startNanos = System.nanoTime();
     if (pageNumber == null || pageLimit == null) {
-      return collection.find(queryObj).sort(filter).into(new ArrayList<Document>());
+      List<T> documents = collection.find(queryObj).sort(filter).into(new ArrayList<T>());
+      return checkSlowFind(
+          "findListByKey", queryObj, null, filter, null, null, startNanos, documents);
     }
 
     // Calculate number of documents to skip
     Integer skips = pageLimit * (pageNumber - 1);
-    return collection
-        .find(queryObj)
-        .skip(skips)
-        .limit(pageLimit)
-        .sort(filter)
-        .into(new ArrayList<Document>());
+    List<T> documents =
+        collection
+            .find(queryObj)
+            .skip(skips)
+            .limit(pageLimit)
+            .sort(filter)
+            .into(new ArrayList<T>());
+    return checkSlowFind(
+        "findListByKey", queryObj, null, filter, skips, pageLimit, startNanos, documents);
+  }
+
+  @Override
+  public <T> List<T> findListByKeyAfter(
+      String key,
+      String value,
+      Integer pageLimit,
+      String order,
+      String sortBy,
+      Object lastSortValue,
+      String lastId,
+      Class<T> documentClass) {
+    MongoCollection<T> collection = this.database.getCollection(collectionName, documentClass);
+
+    Boolean ascending = ModelDBConstants.ORDER_ASC.equalsIgnoreCase(order);
+    Integer direction = ascending ? 1 : -1;
+
+    Document queryObj = key == null ? new Document() : new Document(key, value);
+    if (lastId != null) {
+      queryObj.append("$or", getSeekConditions(sortBy, ascending, lastSortValue, lastId));
+    }
+
+    Document sortObj = new Document(sortBy, direction).append(ModelDBConstants.ID, direction);
+    long startNanos = System.nanoTime();
+    FindIterable<T> documents = collection.find(queryObj).sort(sortObj);
+    Integer limit = null;
+    if (pageLimit != null && pageLimit > 0) {
+      limit = pageLimit;
+      documents = documents.limit(limit);
+    }
+    return checkSlowFind(
+        "findListByKeyAfter",
+        queryObj,
+        null,
+        sortObj,
+        null,
+        limit,
+        startNanos,
+        documents.into(new ArrayList<T>()));
+  }
+
+  /**
+   * Conditions of the documents sorted after the given last document on (sortBy, id). A missing
+   * sort field sorts before any value, so it is matched explicitly: range operators never match it.
+   *
+   * @param String sortBy --> sort field
+   * @param Boolean ascending --> sort order
+   * @param Object lastSortValue --> sortBy value of last document, null if missing
+   * @param String lastId --> id of last document
+   * @return List<Document> --> conditions of an $or
+   */
+  static List<Document> getSeekConditions(
+      String sortBy, Boolean ascending, Object lastSortValue, String lastId) {
+    String rangeOperator = ascending ? "$gt" : "$lt";
+    Document sameValueCondition =
+        new Document(sortBy, lastSortValue)
+            .append(ModelDBConstants.ID, new Document(rangeOperator, lastId));
+    if (lastSortValue == null) {
+      return ascending
+          ? Arrays.asList(new Document(sortBy, new Document("$ne", null)), sameValueCondition)
+          : Arrays.asList(sameValueCondition);
+    }
+    List<Document> seekConditions = new ArrayList<>();
+    seekConditions.add(new Document(sortBy, new Document(rangeOperator, lastSortValue)));
+    seekConditions.add(sameValueCondition);
+    if (!ascending) {
+      seekConditions.add(new Document(sortBy, null));
+    }
+    return seekConditions;
   }
 
   @Override
   public Document findByKey(String key, String value) {
-    MongoCollection<Document> collection = this.database.getCollection(collectionName);
+    return findByKey(key, value, Document.class);
+  }
+
+  @Override
+  public <T> T findByKey(String key, String value, Class<T> documentClass) {
+    MongoCollection<T> collection = this.database.getCollection(collectionName, documentClass);
     return collection.find(eq(key, value)).first();
   }
 
   @Override
   public List<Document> findListByKey(String key, String value) {
-    MongoCollection<Document> collection = this.database.getCollection(collectionName);
-    return collection.find(eq(key, value)).into(new ArrayList<Document>());
+    return findListByKey(key, value, Document.class);
+  }
+
+  @Override
+  public <T> List<T> findListByKey(String key, String value, Class<T> documentClass) {
+    MongoCollection<T> collection = this.database.getCollection(collectionName, documentClass);
+    Document queryDoc = new Document(key, value);
+    long startNanos = System.nanoTime();
+    List<T> documents = collection.find(queryDoc).into(new ArrayList<T>());
+    return checkSlowFind("findListByKey", queryDoc, null, null, null, null, startNanos, documents);
   }
 
   @Override
   public List<Document> findListByObject(
       Object queryObj, Object projectionObj, Object sortObj, Integer recordLimit) {
-    MongoCollection<Document> collection = this.database.getCollection(collectionName);
+    return findListByObject(queryObj, projectionObj, sortObj, recordLimit, Document.class);
+  }
+
+  @Override
+  public <T> List<T> findListByObject(
+      Object queryObj,
+      Object projectionObj,
+      Object sortObj,
+      Integer recordLimit,
+      Class<T> documentClass) {
+    MongoCollection<T> collection = this.database.getCollection(collectionName, documentClass);
     Document queryDoc = (Document) queryObj;
     Document projectionDoc = new Document();
     if (projectionObj != null) {
@@ -151,26 +317,213 @@ public class MongoService implements DocumentService {
     if (sortObj != null) {
       sortDoc = (Document) sortObj;
     }
-    FindIterable<Document> documents =
-        collection.find(queryDoc).projection(projectionDoc).sort(sortDoc);
+    long startNanos = System.nanoTime();
+    FindIterable<T> documents = collection.find(queryDoc).projection(projectionDoc).sort(sortDoc);
 
     if (recordLimit != null) {
       documents = documents.limit(recordLimit);
     }
 
-    return documents.into(new ArrayList<Document>());
+    return checkSlowFind(
+        "findListByObject",
+        queryDoc,
+        projectionDoc,
+        sortDoc,
+        null,
+        recordLimit,
+        startNanos,
+        documents.into(new ArrayList<T>()));
+  }
+
+  /**
+   * Record a find in {@link SlowOperationLog} if it took longer than the slow operation threshold,
+   * the plan of the query is explained only for slow operations.
+   */
+  private <T> List<T> checkSlowFind(
+      String operation,
+      Document queryDoc,
+      Document projectionDoc,
+      Document sortDoc,
+      Integer skip,
+      Integer limit,
+      long startNanos,
+      List<T> documents) {
+    long durationNanos = System.nanoTime() - startNanos;
+    SlowOperationLog slowOperationLog = SlowOperationLog.getInstance();
+    if (slowOperationLog.isSlow(durationNanos)) {
+      Document findCommand = new Document("find", collectionName).append("filter", queryDoc);
+      if (projectionDoc != null && !projectionDoc.isEmpty()) {
+        findCommand.append("projection", projectionDoc);
+      }
+      if (sortDoc != null && !sortDoc.isEmpty()) {
+        findCommand.append("sort", sortDoc);
+      }
+      if (skip != null) {
+        findCommand.append("skip", skip);
+      }
+      if (limit != null) {
+        findCommand.append("limit", limit);
+      }
+      Document queryShape = new Document("filter", queryDoc).append("sort", sortDoc);
+      if (projectionDoc != null && !projectionDoc.isEmpty()) {
+        // Covered and uncovered finds of the same filter have different plans
+        queryShape.append("projection", projectionDoc);
+      }
+      slowOperationLog.record(
+          DatabaseMetrics.MONGO,
+          collectionName,
+          operation,
+          queryShape,
+          durationNanos,
+          documents.size(),
+          explain(findCommand));
+    }
+    return documents;
+  }
+
+  private Supplier<String> explain(Document command) {
+    return () ->
+        this.database
+            .runCommand(new Document("explain", command).append("verbosity", "queryPlanner"))
+            .toJson();
+  }
+
+  /**
+   * Stream the documents of given cursor. The time spent in the cursor, i.e. running the query and
+   * fetching the batches but not consuming the documents, is recorded in {@link SlowOperationLog}
+   * when the stream is closed.
+   *
+   * @param MongoCursor<T> cursor
+   * @param String operation --> e.g. streamListByObject
+   * @param Document findCommand --> find command of the cursor, its filter, projection and sort
+   *     are the query shape
+   * @return Stream<T> documents
+   */
+  private <T> Stream<T> toStream(MongoCursor<T> cursor, String operation, Document findCommand) {
+    long[] cursorNanos = new long[1];
+    long[] documentCount = new long[1];
+    Iterator<T> timedCursor =
+        new Iterator<T>() {
+          @Override
+          public boolean hasNext() {
+            long startNanos = System.nanoTime();
+            try {
+              return cursor.hasNext();
+            } finally {
+              cursorNanos[0] += System.nanoTime() - startNanos;
+            }
+          }
+
+          @Override
+          public T next() {
+            long startNanos = System.nanoTime();
+            try {
+              T document = cursor.next();
+              documentCount[0]++;
+              return document;
+            } finally {
+              cursorNanos[0] += System.nanoTime() - startNanos;
+            }
+          }
+        };
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(timedCursor, Spliterator.ORDERED), false)
+        .onClose(
+            () -> {
+              cursor.close();
+              Document queryShape = new Document(findCommand);
+              queryShape.remove("find");
+              SlowOperationLog.getInstance()
+                  .record(
+                      DatabaseMetrics.MONGO,
+                      collectionName,
+                      operation,
+                      queryShape,
+                      cursorNanos[0],
+                      documentCount[0],
+                      explain(findCommand));
+            });
+  }
+
+  @Override
+  public <T> Stream<T> streamListByKey(
+      String key, String value, String order, String sortBy, Class<T> documentClass) {
+    MongoCollection<T> collection = this.database.getCollection(collectionName, documentClass);
+
+    order = (order == null || order.isEmpty()) ? ModelDBConstants.ORDER_DESC : order;
+    sortBy = (sortBy == null || sortBy.isEmpty()) ? ModelDBConstants.DATE_CREATED : sortBy;
+    Integer direction = order.equalsIgnoreCase(ModelDBConstants.ORDER_ASC) ? 1 : -1;
+
+    Document queryDoc = new Document(key, value);
+    Document sortDoc = new Document(sortBy, direction);
+    return toStream(
+        collection.find(queryDoc).sort(sortDoc).iterator(),
+        "streamListByKey",
+        new Document("find", collectionName).append("filter", queryDoc).append("sort", sortDoc));
+  }
+
+  @Override
+  public <T> Stream<T> streamListByObject(
+      Object queryObj, Object projectionObj, Object sortObj, Class<T> documentClass) {
+    MongoCollection<T> collection = this.database.getCollection(collectionName, documentClass);
+    Document queryDoc = (Document) queryObj;
+    Document projectionDoc = projectionObj == null ? new Document() : (Document) projectionObj;
+    Document sortDoc = sortObj == null ? new Document() : (Document) sortObj;
+    Document findCommand = new Document("find", collectionName).append("filter", queryDoc);
+    if (!projectionDoc.isEmpty()) {
+      findCommand.append("projection", projectionDoc);
+    }
+    findCommand.append("sort", sortDoc);
+    return toStream(
+        collection.find(queryDoc).projection(projectionDoc).sort(sortDoc).iterator(),
+        "streamListByObject",
+        findCommand);
   }
 
   @Override
   public List<Document> findListByAggregateObject(List<?> queryObj) {
+    return findListByAggregateObject(queryObj, Document.class);
+  }
+
+  @Override
+  public <T> List<T> findListByAggregateObject(List<?> queryObj, Class<T> documentClass) {
     MongoCollection<Document> collection = this.database.getCollection(collectionName);
     List<Document> queryDoc = (List<Document>) queryObj;
-    return collection.aggregate(queryDoc).into(new ArrayList<Document>());
+    long startNanos = System.nanoTime();
+    // A $sort stage over the memory limit of the server spills to disk instead of failing
+    List<T> documents =
+        collection
+            .aggregate(queryDoc, documentClass)
+            .allowDiskUse(true)
+            .into(new ArrayList<T>());
+    long durationNanos = System.nanoTime() - startNanos;
+    SlowOperationLog slowOperationLog = SlowOperationLog.getInstance();
+    if (slowOperationLog.isSlow(durationNanos)) {
+      Document aggregateCommand =
+          new Document("aggregate", collectionName)
+              .append("pipeline", queryDoc)
+              .append("allowDiskUse", true)
+              .append("cursor", new Document());
+      slowOperationLog.record(
+          DatabaseMetrics.MONGO,
+          collectionName,
+          "findListByAggregateObject",
+          queryDoc,
+          durationNanos,
+          documents.size(),
+          explain(aggregateCommand));
+    }
+    return documents;
   }
 
   @Override
   public Document findByObject(Object queryObj) {
-    MongoCollection<Document> collection = this.database.getCollection(collectionName);
+    return findByObject(queryObj, Document.class);
+  }
+
+  @Override
+  public <T> T findByObject(Object queryObj, Class<T> documentClass) {
+    MongoCollection<T> collection = this.database.getCollection(collectionName, documentClass);
     Document queryDoc = (Document) queryObj;
     return collection.find(queryDoc).first();
   }
@@ -186,9 +539,8 @@ public class MongoService implements DocumentService {
   public long updateOne(String key, String value, MessageOrBuilder newObject)
       throws InvalidProtocolBufferException {
     MongoCollection<Document> collection = this.database.getCollection(collectionName);
-    Document document = convertObjectToDocument(newObject);
-    UpdateResult updateResult =
-        collection.updateOne(eq(key, value), new Document("$set", document));
+    Message message = convertObjectToMessage(newObject);
+    UpdateResult updateResult = collection.updateOne(eq(key, value), new Document("$set", message));
     return updateResult.getModifiedCount();
   }
 
@@ -200,4 +552,117 @@ public class MongoService implements DocumentService {
     UpdateResult updateResult = collection.updateOne(queryDocument, updateDocument);
     return updateResult.getModifiedCount();
   }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public long bulkWrite(List<?> writeModels) {
+    if (writeModels.isEmpty()) {
+      return 0;
+    }
+    MongoCollection<Document> collection = this.database.getCollection(collectionName);
+    long startNanos = System.nanoTime();
+    BulkWriteResult bulkWriteResult =
+        collection.bulkWrite((List<WriteModel<Document>>) writeModels);
+    long durationNanos = System.nanoTime() - startNanos;
+    SlowOperationLog slowOperationLog = SlowOperationLog.getInstance();
+    if (slowOperationLog.isSlow(durationNanos)) {
+      slowOperationLog.record(
+          DatabaseMetrics.MONGO,
+          collectionName,
+          "bulkWrite",
+          getBulkWriteShape(writeModels),
+          durationNanos,
+          bulkWriteResult.getInsertedCount()
+              + bulkWriteResult.getMatchedCount()
+              + bulkWriteResult.getDeletedCount()
+              + bulkWriteResult.getUpserts().size(),
+          null);
+    }
+    return bulkWriteResult.getModifiedCount();
+  }
+
+  @Override
+  public <T> T findOneAndUpdate(
+      Object queryObj, Object updateObj, Object projectionObj, Class<T> documentClass) {
+    MongoCollection<T> collection = this.database.getCollection(collectionName, documentClass);
+    Document queryDocument = (Document) queryObj;
+    Document updateDocument = (Document) updateObj;
+    FindOneAndUpdateOptions options =
+        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
+    Document findAndModifyCommand =
+        new Document("findAndModify", collectionName)
+            .append("query", queryDocument)
+            .append("update", updateDocument)
+            .append("new", true);
+    if (projectionObj != null) {
+      options.projection((Document) projectionObj);
+      findAndModifyCommand.append("fields", projectionObj);
+    }
+    long startNanos = System.nanoTime();
+    T document = collection.findOneAndUpdate(queryDocument, updateDocument, options);
+    long durationNanos = System.nanoTime() - startNanos;
+    SlowOperationLog slowOperationLog = SlowOperationLog.getInstance();
+    if (slowOperationLog.isSlow(durationNanos)) {
+      slowOperationLog.record(
+          DatabaseMetrics.MONGO,
+          collectionName,
+          "findOneAndUpdate",
+          new Document("query", queryDocument).append("update", updateDocument),
+          durationNanos,
+          document == null ? 0 : 1,
+          explain(findAndModifyCommand));
+    }
+    return document;
+  }
+
+  /**
+   * Filter and update of the first write model of each kind in a bulk write, the models of one
+   * bulk write are built by the same code so the first one stands for the others.
+   */
+  private static List<Document> getBulkWriteShape(List<?> writeModels) {
+    List<Document> bulkWriteShape = new ArrayList<>();
+    Set<Class<?>> writeModelClasses = new HashSet<>();
+    for (Object writeModel : writeModels) {
+      if (!writeModelClasses.add(writeModel.getClass())) {
+        continue;
+      }
+      Document modelShape = new Document();
+      if (writeModel instanceof UpdateOneModel) {
+        modelShape.append("filter", ((UpdateOneModel<?>) writeModel).getFilter());
+        modelShape.append("update", ((UpdateOneModel<?>) writeModel).getUpdate());
+      } else if (writeModel instanceof DeleteManyModel) {
+        modelShape.append("filter", ((DeleteManyModel<?>) writeModel).getFilter());
+      }
+      bulkWriteShape.add(new Document(writeModel.getClass().getSimpleName(), modelShape));
+    }
+    return bulkWriteShape;
+  }
+
+  @Override
+  public <T> T findOneAndUpdate(
+      String key, String value, MessageOrBuilder newObject, Class<T> documentClass) {
+    Message message = convertObjectToMessage(newObject);
+    BsonDocument messageDocument = encodeMessage(message);
+
+    // updateOne reports zero modified documents when every field is already equal, keep that
+    // behaviour by only matching the document if at least one of the given fields differs
+    List<Document> changedFields = new ArrayList<>();
+    for (Map.Entry<String, BsonValue> field : messageDocument.entrySet()) {
+      changedFields.add(new Document(field.getKey(), new Document("$ne", field.getValue())));
+    }
+    Document queryDocument = new Document(key, value);
+    if (!changedFields.isEmpty()) {
+      queryDocument.append("$or", changedFields);
+    }
+    return findOneAndUpdate(
+        queryDocument, new Document("$set", messageDocument), null, documentClass);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends Message> BsonDocument encodeMessage(T message) {
+    Codec<T> codec = (Codec<T>) this.database.getCodecRegistry().get(message.getClass());
+    BsonDocument bsonDocument = new BsonDocument();
+    codec.encode(new BsonDocumentWriter(bsonDocument), message, EncoderContext.builder().build());
+    return bsonDocument;
+  }
 }
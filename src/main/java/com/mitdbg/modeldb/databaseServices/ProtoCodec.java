@@ -0,0 +1,420 @@
+package com.mitdbg.modeldb.databaseServices;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Message;
+import com.google.protobuf.NullValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.mitdbg.modeldb.monitoring.DatabaseMetrics;
+
+/**
+ * MongoDB codec which reads and writes any ProtocolBuffer entity (ExperimentRun, Project,
+ * Experiment, Job, KeyValue, Artifact etc.) directly from BSON reader and writer, without
+ * intermediate JSON strings.
+ *
+ * <p>Stored layout is the same as the one produced by the old JsonFormat + Document.parse path, so
+ * existing documents and queries keep working: field names are the proto field names, default
+ * values are omitted, int64 fields are stored as strings, enums as their names and
+ * google.protobuf.Value/Struct/ListValue as native BSON values. Unknown fields (like MongoDB "_id")
+ * are skipped on read.
+ *
+ * @param <T> ProtocolBuffer entity class
+ */
+public class ProtoCodec<T extends Message> implements Codec<T> {
+
+  private static final String VALUE_TYPE = "google.protobuf.Value";
+  private static final String STRUCT_TYPE = "google.protobuf.Struct";
+  private static final String LIST_VALUE_TYPE = "google.protobuf.ListValue";
+
+  private final Class<T> encoderClass;
+  private final Message defaultInstance;
+  private final String entityName;
+
+  public ProtoCodec(Class<T> encoderClass) {
+    this.encoderClass = encoderClass;
+    this.defaultInstance = getDefaultInstance(encoderClass);
+    this.entityName = encoderClass.getSimpleName();
+  }
+
+  private static Message getDefaultInstance(Class<?> clazz) {
+    try {
+      return (Message) clazz.getMethod("getDefaultInstance").invoke(null);
+    } catch (NoSuchMethodException e) {
+      // Abstract types like Message itself can only be used for encoding
+      return null;
+    } catch (ReflectiveOperationException e) {
+      throw new CodecConfigurationException(
+          "Unable to get default instance of " + clazz.getName(), e);
+    }
+  }
+
+  @Override
+  public Class<T> getEncoderClass() {
+    return encoderClass;
+  }
+
+  @Override
+  public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+    long startNanos = System.nanoTime();
+    // Value and ListValue embedded in update documents are written as native BSON values too
+    writeMessageValue(writer, value);
+    DatabaseMetrics.getInstance()
+        .record(DatabaseMetrics.CODEC, "encode", entityName, System.nanoTime() - startNanos);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public T decode(BsonReader reader, DecoderContext decoderContext) {
+    if (defaultInstance == null) {
+      throw new CodecConfigurationException(
+          "Decoding is not supported for abstract class " + encoderClass.getName());
+    }
+    long startNanos = System.nanoTime();
+    Message.Builder builder = defaultInstance.newBuilderForType();
+    readMessage(reader, builder);
+    T message = (T) builder.build();
+    DatabaseMetrics.getInstance()
+        .record(DatabaseMetrics.CODEC, "decode", entityName, System.nanoTime() - startNanos);
+    return message;
+  }
+
+  /*
+   * ----------------------------- Encoding -----------------------------
+   */
+
+  private static void writeMessage(BsonWriter writer, Message message) {
+    String fullName = message.getDescriptorForType().getFullName();
+    if (fullName.equals(STRUCT_TYPE)) {
+      writeStruct(writer, (Struct) message);
+      return;
+    }
+    writer.writeStartDocument();
+    // getAllFields() only returns set fields, so proto3 default values are omitted like JsonFormat
+    for (Map.Entry<FieldDescriptor, Object> entry : message.getAllFields().entrySet()) {
+      FieldDescriptor field = entry.getKey();
+      writer.writeName(field.getName());
+      if (field.isMapField()) {
+        writeMap(writer, field, (List<?>) entry.getValue());
+      } else if (field.isRepeated()) {
+        writer.writeStartArray();
+        for (Object element : (List<?>) entry.getValue()) {
+          writeFieldValue(writer, field, element);
+        }
+        writer.writeEndArray();
+      } else {
+        writeFieldValue(writer, field, entry.getValue());
+      }
+    }
+    writer.writeEndDocument();
+  }
+
+  private static void writeMap(BsonWriter writer, FieldDescriptor field, List<?> entries) {
+    Descriptor entryDescriptor = field.getMessageType();
+    FieldDescriptor keyField = entryDescriptor.findFieldByName("key");
+    FieldDescriptor valueField = entryDescriptor.findFieldByName("value");
+    writer.writeStartDocument();
+    for (Object element : entries) {
+      Message entry = (Message) element;
+      writer.writeName(String.valueOf(entry.getField(keyField)));
+      writeFieldValue(writer, valueField, entry.getField(valueField));
+    }
+    writer.writeEndDocument();
+  }
+
+  private static void writeFieldValue(BsonWriter writer, FieldDescriptor field, Object value) {
+    switch (field.getJavaType()) {
+      case INT:
+        writer.writeInt32((Integer) value);
+        break;
+      case LONG:
+        // JsonFormat prints 64 bit integers as strings, keep that for stored documents
+        writer.writeString(
+            field.getType() == FieldDescriptor.Type.UINT64
+                    || field.getType() == FieldDescriptor.Type.FIXED64
+                ? Long.toUnsignedString((Long) value)
+                : Long.toString((Long) value));
+        break;
+      case FLOAT:
+        writer.writeDouble((Float) value);
+        break;
+      case DOUBLE:
+        writer.writeDouble((Double) value);
+        break;
+      case BOOLEAN:
+        writer.writeBoolean((Boolean) value);
+        break;
+      case STRING:
+        writer.writeString((String) value);
+        break;
+      case BYTE_STRING:
+        writer.writeString(Base64.getEncoder().encodeToString(((ByteString) value).toByteArray()));
+        break;
+      case ENUM:
+        EnumValueDescriptor enumValue = (EnumValueDescriptor) value;
+        if (field.getEnumType().findValueByNumber(enumValue.getNumber()) == null) {
+          writer.writeInt32(enumValue.getNumber());
+        } else {
+          writer.writeString(enumValue.getName());
+        }
+        break;
+      case MESSAGE:
+        writeMessageValue(writer, (Message) value);
+        break;
+      default:
+        throw new CodecConfigurationException("Unsupported field type of " + field.getFullName());
+    }
+  }
+
+  private static void writeMessageValue(BsonWriter writer, Message message) {
+    String fullName = message.getDescriptorForType().getFullName();
+    if (fullName.equals(VALUE_TYPE)) {
+      writeValue(writer, (Value) message);
+    } else if (fullName.equals(LIST_VALUE_TYPE)) {
+      writeListValue(writer, (ListValue) message);
+    } else {
+      writeMessage(writer, message);
+    }
+  }
+
+  private static void writeValue(BsonWriter writer, Value value) {
+    switch (value.getKindCase()) {
+      case NUMBER_VALUE:
+        writer.writeDouble(value.getNumberValue());
+        break;
+      case STRING_VALUE:
+        writer.writeString(value.getStringValue());
+        break;
+      case BOOL_VALUE:
+        writer.writeBoolean(value.getBoolValue());
+        break;
+      case STRUCT_VALUE:
+        writeStruct(writer, value.getStructValue());
+        break;
+      case LIST_VALUE:
+        writeListValue(writer, value.getListValue());
+        break;
+      case NULL_VALUE:
+      default:
+        writer.writeNull();
+        break;
+    }
+  }
+
+  private static void writeStruct(BsonWriter writer, Struct struct) {
+    writer.writeStartDocument();
+    for (Map.Entry<String, Value> entry : struct.getFieldsMap().entrySet()) {
+      writer.writeName(entry.getKey());
+      writeValue(writer, entry.getValue());
+    }
+    writer.writeEndDocument();
+  }
+
+  private static void writeListValue(BsonWriter writer, ListValue listValue) {
+    writer.writeStartArray();
+    for (Value value : listValue.getValuesList()) {
+      writeValue(writer, value);
+    }
+    writer.writeEndArray();
+  }
+
+  /*
+   * ----------------------------- Decoding -----------------------------
+   */
+
+  private static void readMessage(BsonReader reader, Message.Builder builder) {
+    Descriptor descriptor = builder.getDescriptorForType();
+    if (descriptor.getFullName().equals(STRUCT_TYPE)) {
+      ((Struct.Builder) builder).mergeFrom(readStruct(reader));
+      return;
+    }
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      FieldDescriptor field = descriptor.findFieldByName(reader.readName());
+      if (field == null || reader.getCurrentBsonType() == BsonType.NULL) {
+        reader.skipValue();
+      } else if (field.isMapField()) {
+        readMap(reader, builder, field);
+      } else if (field.isRepeated()) {
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+          builder.addRepeatedField(field, readFieldValue(reader, builder, field));
+        }
+        reader.readEndArray();
+      } else {
+        builder.setField(field, readFieldValue(reader, builder, field));
+      }
+    }
+    reader.readEndDocument();
+  }
+
+  private static void readMap(BsonReader reader, Message.Builder builder, FieldDescriptor field) {
+    Descriptor entryDescriptor = field.getMessageType();
+    FieldDescriptor keyField = entryDescriptor.findFieldByName("key");
+    FieldDescriptor valueField = entryDescriptor.findFieldByName("value");
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      Message.Builder entryBuilder = builder.newBuilderForField(field);
+      entryBuilder.setField(keyField, parseMapKey(keyField, reader.readName()));
+      entryBuilder.setField(valueField, readFieldValue(reader, entryBuilder, valueField));
+      builder.addRepeatedField(field, entryBuilder.build());
+    }
+    reader.readEndDocument();
+  }
+
+  private static Object parseMapKey(FieldDescriptor keyField, String key) {
+    switch (keyField.getJavaType()) {
+      case INT:
+        return Integer.parseInt(key);
+      case LONG:
+        return Long.parseLong(key);
+      case BOOLEAN:
+        return Boolean.parseBoolean(key);
+      default:
+        return key;
+    }
+  }
+
+  private static Object readFieldValue(
+      BsonReader reader, Message.Builder parentBuilder, FieldDescriptor field) {
+    switch (field.getJavaType()) {
+      case INT:
+        return (int) readNumberAsLong(reader);
+      case LONG:
+        return readNumberAsLong(reader);
+      case FLOAT:
+        return (float) readNumberAsDouble(reader);
+      case DOUBLE:
+        return readNumberAsDouble(reader);
+      case BOOLEAN:
+        return reader.readBoolean();
+      case STRING:
+        return reader.readString();
+      case BYTE_STRING:
+        if (reader.getCurrentBsonType() == BsonType.BINARY) {
+          return ByteString.copyFrom(reader.readBinaryData().getData());
+        }
+        return ByteString.copyFrom(Base64.getDecoder().decode(reader.readString()));
+      case ENUM:
+        if (reader.getCurrentBsonType() == BsonType.STRING) {
+          String name = reader.readString();
+          EnumValueDescriptor enumValue = field.getEnumType().findValueByName(name);
+          if (enumValue == null) {
+            throw new CodecConfigurationException(
+                "Invalid enum value " + name + " for " + field.getFullName());
+          }
+          return enumValue;
+        }
+        return field
+            .getEnumType()
+            .findValueByNumberCreatingIfUnknown((int) readNumberAsLong(reader));
+      case MESSAGE:
+        return readMessageValue(reader, parentBuilder.newBuilderForField(field));
+      default:
+        throw new CodecConfigurationException("Unsupported field type of " + field.getFullName());
+    }
+  }
+
+  private static Message readMessageValue(BsonReader reader, Message.Builder builder) {
+    String fullName = builder.getDescriptorForType().getFullName();
+    if (fullName.equals(VALUE_TYPE)) {
+      return readValue(reader);
+    } else if (fullName.equals(LIST_VALUE_TYPE)) {
+      return readListValue(reader);
+    }
+    readMessage(reader, builder);
+    return builder.build();
+  }
+
+  private static Value readValue(BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case DOUBLE:
+      case INT32:
+      case INT64:
+      case DECIMAL128:
+        return Value.newBuilder().setNumberValue(readNumberAsDouble(reader)).build();
+      case STRING:
+        return Value.newBuilder().setStringValue(reader.readString()).build();
+      case BOOLEAN:
+        return Value.newBuilder().setBoolValue(reader.readBoolean()).build();
+      case DOCUMENT:
+        return Value.newBuilder().setStructValue(readStruct(reader)).build();
+      case ARRAY:
+        return Value.newBuilder().setListValue(readListValue(reader)).build();
+      default:
+        reader.skipValue();
+        return Value.newBuilder().setNullValue(NullValue.NULL_VALUE).build();
+    }
+  }
+
+  private static Struct readStruct(BsonReader reader) {
+    Struct.Builder structBuilder = Struct.newBuilder();
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      String name = reader.readName();
+      structBuilder.putFields(name, readValue(reader));
+    }
+    reader.readEndDocument();
+    return structBuilder.build();
+  }
+
+  private static ListValue readListValue(BsonReader reader) {
+    ListValue.Builder listBuilder = ListValue.newBuilder();
+    reader.readStartArray();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      listBuilder.addValues(readValue(reader));
+    }
+    reader.readEndArray();
+    return listBuilder.build();
+  }
+
+  private static long readNumberAsLong(BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case INT32:
+        return reader.readInt32();
+      case INT64:
+        return reader.readInt64();
+      case DOUBLE:
+        return (long) reader.readDouble();
+      case DECIMAL128:
+        return reader.readDecimal128().bigDecimalValue().longValue();
+      case STRING:
+        String number = reader.readString();
+        return number.startsWith("-") ? Long.parseLong(number) : Long.parseUnsignedLong(number);
+      default:
+        throw new CodecConfigurationException(
+            "Unable to read number from BSON type " + reader.getCurrentBsonType());
+    }
+  }
+
+  private static double readNumberAsDouble(BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case INT32:
+        return reader.readInt32();
+      case INT64:
+        return reader.readInt64();
+      case DOUBLE:
+        return reader.readDouble();
+      case DECIMAL128:
+        return reader.readDecimal128().bigDecimalValue().doubleValue();
+      case STRING:
+        return Double.parseDouble(reader.readString());
+      default:
+        throw new CodecConfigurationException(
+            "Unable to read number from BSON type " + reader.getCurrentBsonType());
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.mitdbg.modeldb.databaseServices;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import com.google.protobuf.Message;
+import com.mongodb.MongoClient;
+
+/**
+ * CodecProvider which supplies {@link ProtoCodec} for every ProtocolBuffer entity class, so the
+ * MongoDB driver can encode and decode ExperimentRun, Project, Experiment, Job, KeyValue, Artifact
+ * etc. directly. Codecs are created once per class and reused.
+ */
+public class ProtoCodecProvider implements CodecProvider {
+
+  private final ConcurrentMap<Class<?>, Codec<?>> codecMap = new ConcurrentHashMap<>();
+
+  /**
+   * Return the default MongoDB codec registry with ProtocolBuffer codecs registered in front of it.
+   *
+   * @return CodecRegistry codecRegistry
+   */
+  public static CodecRegistry getCodecRegistry() {
+    return CodecRegistries.fromRegistries(
+        CodecRegistries.fromProviders(new ProtoCodecProvider()),
+        MongoClient.getDefaultCodecRegistry());
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @Override
+  public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+    if (!Message.class.isAssignableFrom(clazz)) {
+      return null;
+    }
+    return (Codec<T>) codecMap.computeIfAbsent(clazz, key -> new ProtoCodec(key));
+  }
+}
@@ -0,0 +1,336 @@
+package com.mitdbg.modeldb.databaseServices;
+
+import java.util.List;
+import java.util.stream.Stream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageOrBuilder;
+import com.mitdbg.modeldb.monitoring.DatabaseMetrics;
+
+/**
+ * DocumentService decorator recording the latency of every operation of the wrapped service in
+ * {@link DatabaseMetrics}, by operation and collection. Streams are timed from their creation until
+ * they are closed, i.e. for the whole life of the cursor.
+ */
+public class TimedDocumentService implements DocumentService {
+
+  private final DocumentService documentService;
+  private String collectionName = "unknown";
+
+  public TimedDocumentService(DocumentService documentService) {
+    this.documentService = documentService;
+  }
+
+  private void record(String operation, long startNanos) {
+    DatabaseMetrics.getInstance()
+        .record(DatabaseMetrics.MONGO, operation, collectionName, System.nanoTime() - startNanos);
+  }
+
+  @Override
+  public void checkCollectionAvailability(String collection) {
+    this.collectionName = collection;
+    documentService.checkCollectionAvailability(collection);
+  }
+
+  @Override
+  public void insertOne(MessageOrBuilder object) throws InvalidProtocolBufferException {
+    long startNanos = System.nanoTime();
+    try {
+      documentService.insertOne(object);
+    } finally {
+      record("insertOne", startNanos);
+    }
+  }
+
+  @Override
+  public void insertOne(MessageOrBuilder object, Object extraFields)
+      throws InvalidProtocolBufferException {
+    long startNanos = System.nanoTime();
+    try {
+      documentService.insertOne(object, extraFields);
+    } finally {
+      record("insertOne", startNanos);
+    }
+  }
+
+  @Override
+  public void insertMany(List<? extends MessageOrBuilder> objects)
+      throws InvalidProtocolBufferException {
+    long startNanos = System.nanoTime();
+    try {
+      documentService.insertMany(objects);
+    } finally {
+      record("insertMany", startNanos);
+    }
+  }
+
+  @Override
+  public List<?> find() {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.find();
+    } finally {
+      record("find", startNanos);
+    }
+  }
+
+  @Override
+  public List<?> findListByKey(
+      String key,
+      String value,
+      Integer pageNumber,
+      Integer pageLimit,
+      String order,
+      String sortBy) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findListByKey(key, value, pageNumber, pageLimit, order, sortBy);
+    } finally {
+      record("findListByKey", startNanos);
+    }
+  }
+
+  @Override
+  public Object findByKey(String key, String value) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findByKey(key, value);
+    } finally {
+      record("findByKey", startNanos);
+    }
+  }
+
+  @Override
+  public List<?> findListByKey(String key, String value) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findListByKey(key, value);
+    } finally {
+      record("findListByKey", startNanos);
+    }
+  }
+
+  @Override
+  public List<?> findListByObject(
+      Object queryObj, Object projectionObj, Object sortObj, Integer recordLimit) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findListByObject(queryObj, projectionObj, sortObj, recordLimit);
+    } finally {
+      record("findListByObject", startNanos);
+    }
+  }
+
+  @Override
+  public Object findByObject(Object queryObj) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findByObject(queryObj);
+    } finally {
+      record("findByObject", startNanos);
+    }
+  }
+
+  @Override
+  public <T> List<T> find(Class<T> documentClass) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.find(documentClass);
+    } finally {
+      record("find", startNanos);
+    }
+  }
+
+  @Override
+  public <T> List<T> findListByKey(
+      String key,
+      String value,
+      Integer pageNumber,
+      Integer pageLimit,
+      String order,
+      String sortBy,
+      Class<T> documentClass) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findListByKey(
+          key, value, pageNumber, pageLimit, order, sortBy, documentClass);
+    } finally {
+      record("findListByKey", startNanos);
+    }
+  }
+
+  @Override
+  public <T> List<T> findListByKeyAfter(
+      String key,
+      String value,
+      Integer pageLimit,
+      String order,
+      String sortBy,
+      Object lastSortValue,
+      String lastId,
+      Class<T> documentClass) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findListByKeyAfter(
+          key, value, pageLimit, order, sortBy, lastSortValue, lastId, documentClass);
+    } finally {
+      record("findListByKeyAfter", startNanos);
+    }
+  }
+
+  @Override
+  public <T> T findByKey(String key, String value, Class<T> documentClass) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findByKey(key, value, documentClass);
+    } finally {
+      record("findByKey", startNanos);
+    }
+  }
+
+  @Override
+  public <T> List<T> findListByKey(String key, String value, Class<T> documentClass) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findListByKey(key, value, documentClass);
+    } finally {
+      record("findListByKey", startNanos);
+    }
+  }
+
+  @Override
+  public <T> List<T> findListByObject(
+      Object queryObj,
+      Object projectionObj,
+      Object sortObj,
+      Integer recordLimit,
+      Class<T> documentClass) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findListByObject(
+          queryObj, projectionObj, sortObj, recordLimit, documentClass);
+    } finally {
+      record("findListByObject", startNanos);
+    }
+  }
+
+  @Override
+  public <T> T findByObject(Object queryObj, Class<T> documentClass) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findByObject(queryObj, documentClass);
+    } finally {
+      record("findByObject", startNanos);
+    }
+  }
+
+  @Override
+  public <T> Stream<T> streamListByKey(
+      String key, String value, String order, String sortBy, Class<T> documentClass) {
+    long startNanos = System.nanoTime();
+    return documentService
+        .streamListByKey(key, value, order, sortBy, documentClass)
+        .onClose(() -> record("streamListByKey", startNanos));
+  }
+
+  @Override
+  public <T> Stream<T> streamListByObject(
+      Object queryObj, Object projectionObj, Object sortObj, Class<T> documentClass) {
+    long startNanos = System.nanoTime();
+    return documentService
+        .streamListByObject(queryObj, projectionObj, sortObj, documentClass)
+        .onClose(() -> record("streamListByObject", startNanos));
+  }
+
+  @Override
+  public Boolean deleteOne(String collectionName, String key, String value) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.deleteOne(collectionName, key, value);
+    } finally {
+      record("deleteOne", startNanos);
+    }
+  }
+
+  @Override
+  public long updateOne(String key, String value, MessageOrBuilder newObject)
+      throws InvalidProtocolBufferException {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.updateOne(key, value, newObject);
+    } finally {
+      record("updateOne", startNanos);
+    }
+  }
+
+  @Override
+  public long updateOne(Object queryObj, Object updateObj) throws InvalidProtocolBufferException {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.updateOne(queryObj, updateObj);
+    } finally {
+      record("updateOne", startNanos);
+    }
+  }
+
+  @Override
+  public long bulkWrite(List<?> writeModels) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.bulkWrite(writeModels);
+    } finally {
+      record("bulkWrite", startNanos);
+    }
+  }
+
+  @Override
+  public <T> T findOneAndUpdate(
+      Object queryObj, Object updateObj, Object projectionObj, Class<T> documentClass) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findOneAndUpdate(queryObj, updateObj, projectionObj, documentClass);
+    } finally {
+      record("findOneAndUpdate", startNanos);
+    }
+  }
+
+  @Override
+  public <T> T findOneAndUpdate(
+      String key, String value, MessageOrBuilder newObject, Class<T> documentClass) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findOneAndUpdate(key, value, newObject, documentClass);
+    } finally {
+      record("findOneAndUpdate", startNanos);
+    }
+  }
+
+  @Override
+  public void insertOne(Object object) throws InvalidProtocolBufferException {
+    long startNanos = System.nanoTime();
+    try {
+      documentService.insertOne(object);
+    } finally {
+      record("insertOne", startNanos);
+    }
+  }
+
+  @Override
+  public List<?> findListByAggregateObject(List<?> queryObj) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findListByAggregateObject(queryObj);
+    } finally {
+      record("findListByAggregateObject", startNanos);
+    }
+  }
+
+  @Override
+  public <T> List<T> findListByAggregateObject(List<?> queryObj, Class<T> documentClass) {
+    long startNanos = System.nanoTime();
+    try {
+      return documentService.findListByAggregateObject(queryObj, documentClass);
+    } finally {
+      record("findListByAggregateObject", startNanos);
+    }
+  }
+}
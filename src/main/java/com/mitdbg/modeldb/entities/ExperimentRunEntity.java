@@ -8,14 +8,21 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.OrderBy;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.mitdbg.modeldb.ExperimentRun;
 import com.mitdbg.modeldb.ModelDBConstants;
 import com.mitdbg.modeldb.RdbmsUtils;
 
 @Entity
-@Table(name = "experimentRun")
+@Table(
+    name = "experimentRun",
+    uniqueConstraints =
+        @UniqueConstraint(
+            name = "uk_experiment_run_project_experiment_name",
+            columnNames = {"project_id", "experiment_id", "name"}))
 public class ExperimentRunEntity {
 
   public ExperimentRunEntity() {}
@@ -49,7 +56,9 @@ public class ExperimentRunEntity {
     setMetrics(
         RdbmsUtils.convertFromKeyValuesToKeyValueEntityList(
             this, ModelDBConstants.METRICS, experimentRun.getMetricsList()));
-    /*.addAllObservations(values)*/
+    setObservations(
+        RdbmsUtils.convertFromObservationsToObservationEntityList(
+            this, experimentRun.getObservationsList()));
     setFeatures(
         RdbmsUtils.convertFromFeatureListToFeatureMappingList(
             this, experimentRun.getFeaturesList()));
@@ -125,7 +134,12 @@ public class ExperimentRunEntity {
       cascade = CascadeType.ALL)
   private List<KeyValueEntity> metrics;
 
-  // repeated Observation observations = 26;
+  @OneToMany(
+      targetEntity = ObservationEntity.class,
+      mappedBy = "experimentRunEntity",
+      cascade = CascadeType.ALL)
+  @OrderBy("id")
+  private List<ObservationEntity> observations;
 
   @OneToMany(
       targetEntity = FeatureEntity.class,
@@ -270,6 +284,14 @@ public class ExperimentRunEntity {
     this.metrics = metrics;
   }
 
+  public List<ObservationEntity> getObservations() {
+    return observations;
+  }
+
+  public void setObservations(List<ObservationEntity> observations) {
+    this.observations = observations;
+  }
+
   public List<FeatureEntity> getFeatures() {
     return features;
   }
@@ -313,7 +335,8 @@ public class ExperimentRunEntity {
         .addAllArtifacts(RdbmsUtils.convertFromArtifactEntityListToArtifacts(getArtifacts()))
         .addAllDatasets(RdbmsUtils.convertFromArtifactEntityListToArtifacts(getDatasets()))
         .addAllMetrics(RdbmsUtils.convertFromKeyValueEntityListToKeyValues(getMetrics()))
-        /*.addAllObservations(values)*/
+        .addAllObservations(
+            RdbmsUtils.convertFromObservationEntityListToObservations(getObservations()))
         .addAllFeatures(RdbmsUtils.convertFromFeatureEntityListToFeatureList(getFeatures()))
         .addAllTags(RdbmsUtils.convertFromTagsMappingListToTagList(getTags()))
         .setJobId(getJob_id())
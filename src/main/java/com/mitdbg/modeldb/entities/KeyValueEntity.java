@@ -9,6 +9,7 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Value;
 import com.google.protobuf.Value.Builder;
@@ -16,7 +17,12 @@ import com.mitdbg.modeldb.KeyValue;
 import com.mitdbg.modeldb.ModelDBUtils;
 
 @Entity
-@Table(name = "keyvalue")
+@Table(
+    name = "keyvalue",
+    uniqueConstraints =
+        @UniqueConstraint(
+            name = "uk_keyvalue_experiment_run_field_key",
+            columnNames = {"experiment_run_id", "field_type", "kv_key"}))
 public class KeyValueEntity {
 
   public KeyValueEntity() {}
@@ -43,7 +49,8 @@ public class KeyValueEntity {
   @Column(name = "id", updatable = false, nullable = false)
   private Long id;
 
-  @Column(name = "kv_key", columnDefinition = "TEXT")
+  // Bounded length instead of TEXT, so the key can be part of the unique constraint
+  @Column(name = "kv_key", length = 255)
   private String key;
 
   @Column(name = "kv_value", columnDefinition = "TEXT")
@@ -0,0 +1,99 @@
+package com.mitdbg.modeldb.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mitdbg.modeldb.ModelDBUtils;
+import com.mitdbg.modeldb.Observation;
+
+/**
+ * Observation of an ExperimentRun. The observation is stored as its JSON, its key (the key of the
+ * attribute or of the artifact) and its timestamp are kept as columns to be queried.
+ */
+@Entity
+@Table(name = "observation")
+public class ObservationEntity {
+
+  public ObservationEntity() {}
+
+  public ObservationEntity(ExperimentRunEntity experimentRunEntity, Observation observation)
+      throws InvalidProtocolBufferException {
+    setExperimentRunEntity(experimentRunEntity);
+    setKey(
+        observation.hasArtifact()
+            ? observation.getArtifact().getKey()
+            : observation.getAttribute().getKey());
+    setTimestamp(observation.getTimestamp());
+    setObservation(ModelDBUtils.getStringFromProtoObject(observation));
+  }
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.AUTO)
+  @Column(name = "id", updatable = false, nullable = false)
+  private Long id;
+
+  @Column(name = "obs_key", length = 255)
+  private String key;
+
+  @Column(name = "timestamp")
+  private Long timestamp;
+
+  @Column(name = "observation", columnDefinition = "TEXT")
+  private String observation;
+
+  @ManyToOne
+  @JoinColumn(name = "experiment_run_id", nullable = false)
+  private ExperimentRunEntity experimentRunEntity;
+
+  public Long getId() {
+    return id;
+  }
+
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public void setKey(String key) {
+    this.key = key;
+  }
+
+  public Long getTimestamp() {
+    return timestamp;
+  }
+
+  public void setTimestamp(Long timestamp) {
+    this.timestamp = timestamp;
+  }
+
+  public String getObservation() {
+    return observation;
+  }
+
+  public void setObservation(String observation) {
+    this.observation = observation;
+  }
+
+  public ExperimentRunEntity getExperimentRunEntity() {
+    return experimentRunEntity;
+  }
+
+  public void setExperimentRunEntity(ExperimentRunEntity experimentRunEntity) {
+    this.experimentRunEntity = experimentRunEntity;
+  }
+
+  public Observation getProtoObservation() throws InvalidProtocolBufferException {
+    Observation.Builder observationBuilder = Observation.newBuilder();
+    ModelDBUtils.getProtoObjectFromString(getObservation(), observationBuilder);
+    return observationBuilder.build();
+  }
+}
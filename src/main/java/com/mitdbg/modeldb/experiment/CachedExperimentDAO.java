@@ -0,0 +1,142 @@
+package com.mitdbg.modeldb.experiment;
+
+import java.util.List;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mitdbg.modeldb.ContinuationToken;
+import com.mitdbg.modeldb.Experiment;
+import com.mitdbg.modeldb.ExperimentRun;
+import com.mitdbg.modeldb.KeyValue;
+import com.mitdbg.modeldb.cache.EntityCache;
+
+/**
+ * ExperimentDAO of any backend with an {@link EntityCache} of the Experiments read by id. Every
+ * write of an Experiment invalidates it after the write, deleting an Experiment also invalidates
+ * its cached ExperimentRuns since the backends delete them with it.
+ */
+public class CachedExperimentDAO implements ExperimentDAO {
+
+  private final ExperimentDAO experimentDAO;
+  private final EntityCache<Experiment> experimentCache;
+  private final EntityCache<ExperimentRun> experimentRunCache;
+
+  /**
+   * @param ExperimentDAO experimentDAO --> DAO of the backend
+   * @param EntityCache<Experiment> experimentCache
+   * @param EntityCache<ExperimentRun> experimentRunCache --> cache of the ExperimentRunDAO, may be
+   *     null
+   */
+  public CachedExperimentDAO(
+      ExperimentDAO experimentDAO,
+      EntityCache<Experiment> experimentCache,
+      EntityCache<ExperimentRun> experimentRunCache) {
+    this.experimentDAO = experimentDAO;
+    this.experimentCache = experimentCache;
+    this.experimentRunCache = experimentRunCache;
+  }
+
+  @Override
+  public Experiment insertExperiment(Experiment experiment) throws InvalidProtocolBufferException {
+    return experimentDAO.insertExperiment(experiment);
+  }
+
+  @Override
+  public Experiment updateExperiment(String experimentId, Experiment experiment)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentDAO.updateExperiment(experimentId, experiment);
+    } finally {
+      experimentCache.invalidate(experimentId);
+    }
+  }
+
+  @Override
+  public Experiment getExperiment(String experimentId) throws InvalidProtocolBufferException {
+    return experimentCache.get(experimentId, () -> experimentDAO.getExperiment(experimentId));
+  }
+
+  @Override
+  public List<Experiment> getExperimentsInProject(
+      String projectId, Integer pageNumber, Integer pageLimit, String order, String sortBy)
+      throws InvalidProtocolBufferException {
+    return experimentDAO.getExperimentsInProject(projectId, pageNumber, pageLimit, order, sortBy);
+  }
+
+  @Override
+  public List<Experiment> getExperimentsInProjectAfter(
+      String projectId, Integer pageLimit, ContinuationToken continuationToken)
+      throws InvalidProtocolBufferException {
+    return experimentDAO.getExperimentsInProjectAfter(projectId, pageLimit, continuationToken);
+  }
+
+  @Override
+  public Experiment addExperimentTags(String experimentId, List<String> tagsList)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentDAO.addExperimentTags(experimentId, tagsList);
+    } finally {
+      experimentCache.invalidate(experimentId);
+    }
+  }
+
+  @Override
+  public List<String> getExperimentTags(String experimentId) throws InvalidProtocolBufferException {
+    return experimentDAO.getExperimentTags(experimentId);
+  }
+
+  @Override
+  public Experiment deleteExperimentTags(
+      String experimentId, List<String> experimentTagList, Boolean deleteAll)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentDAO.deleteExperimentTags(experimentId, experimentTagList, deleteAll);
+    } finally {
+      experimentCache.invalidate(experimentId);
+    }
+  }
+
+  @Override
+  public Experiment addExperimentAttributes(String experimentId, List<KeyValue> attributes)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentDAO.addExperimentAttributes(experimentId, attributes);
+    } finally {
+      experimentCache.invalidate(experimentId);
+    }
+  }
+
+  @Override
+  public List<KeyValue> getExperimentAttributes(
+      String experimentId, List<String> attributeKeyList, Boolean getAll)
+      throws InvalidProtocolBufferException {
+    return experimentDAO.getExperimentAttributes(experimentId, attributeKeyList, getAll);
+  }
+
+  @Override
+  public Experiment deleteExperimentAttributes(
+      String experimentId, List<String> attributeKeyList, Boolean deleteAll)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentDAO.deleteExperimentAttributes(experimentId, attributeKeyList, deleteAll);
+    } finally {
+      experimentCache.invalidate(experimentId);
+    }
+  }
+
+  @Override
+  public Boolean deleteExperiment(String experimentId) {
+    try {
+      return experimentDAO.deleteExperiment(experimentId);
+    } finally {
+      experimentCache.invalidate(experimentId);
+      if (experimentRunCache != null) {
+        experimentRunCache.invalidateIf(
+            experimentRun -> experimentRun.getExperimentId().equals(experimentId));
+      }
+    }
+  }
+
+  @Override
+  public Experiment getExperiment(List<KeyValue> keyValues) throws InvalidProtocolBufferException {
+    return experimentDAO.getExperiment(keyValues);
+  }
+}
@@ -2,6 +2,7 @@ package com.mitdbg.modeldb.experiment;
 
 import java.util.List;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.mitdbg.modeldb.ContinuationToken;
 import com.mitdbg.modeldb.Experiment;
 import com.mitdbg.modeldb.KeyValue;
 
@@ -51,6 +52,20 @@ public interface ExperimentDAO {
       String projectId, Integer pageNumber, Integer pageLimit, String order, String sortBy)
       throws InvalidProtocolBufferException;
 
+  /**
+   * Keyset pagination variant of getExperimentsInProject, page starts right after the last
+   * Experiment of given continuationToken.
+   *
+   * @param String projectId
+   * @param pageLimit --> page limit is per page record count.
+   * @param continuationToken --> sort of the listing and last id of previous page.
+   * @return List<Experiment> experimentList
+   * @throws InvalidProtocolBufferException
+   */
+  List<Experiment> getExperimentsInProjectAfter(
+      String projectId, Integer pageLimit, ContinuationToken continuationToken)
+      throws InvalidProtocolBufferException;
+
   /**
    * Add List of Experiment Tags in database.
    *
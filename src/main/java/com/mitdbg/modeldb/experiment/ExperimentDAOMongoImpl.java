@@ -7,14 +7,14 @@ import java.util.logging.Logger;
 import org.bson.Document;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Value;
-import com.google.protobuf.util.JsonFormat;
 import com.google.rpc.Code;
 import com.google.rpc.Status;
 import com.mitdbg.modeldb.App;
+import com.mitdbg.modeldb.ContinuationToken;
 import com.mitdbg.modeldb.Experiment;
 import com.mitdbg.modeldb.KeyValue;
 import com.mitdbg.modeldb.ModelDBConstants;
-import com.mitdbg.modeldb.ModelDBUtils;
+import com.mitdbg.modeldb.cache.ExperimentRunCreationCache;
 import com.mitdbg.modeldb.databaseServices.DocumentService;
 import io.grpc.protobuf.StatusProto;
 
@@ -23,54 +23,19 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
   private static final Logger LOGGER = Logger.getLogger(ExperimentDAOMongoImpl.class.getName());
   private String experimentEntity = null;
   private String experimentRunEntity = null;
+  private ExperimentRunCreationCache creationCache = null;
   DocumentService documentService = null;
 
   public ExperimentDAOMongoImpl(DocumentService documentService) {
     App app = App.getInstance();
     this.experimentEntity = app.getExperimentEntity();
     this.experimentRunEntity = app.getExperimentRunEntity();
+    this.creationCache = app.getExperimentRunCreationCache();
 
     this.documentService = documentService;
     documentService.checkCollectionAvailability(experimentEntity);
   }
 
-  /**
-   * Convert MongoDB Document object to Experiment entity. Here remove MongoDB "_ID" because if _id
-   * is their then both the structure MongoDB Document and Experiment Entity is different and direct
-   * conversion is not possible that's why "_ID" is remove.
-   *
-   * @param Document document : MongoDB data object.
-   * @return Experiment experiment : ProtocolBuffer Object of Experiment entity.
-   * @throws InvalidProtocolBufferException
-   */
-  private Experiment convertExperimentFromDocument(Document document)
-      throws InvalidProtocolBufferException {
-    Experiment.Builder builder = Experiment.newBuilder();
-
-    document.remove("_id");
-
-    JsonFormat.parser().merge(document.toJson(), builder);
-    return builder.build();
-  }
-
-  /**
-   * Convert list of MongoDB document object to list of Experiment entity object.
-   *
-   * @param List<Document> documents : list of MongoDB data object.
-   * @return List<Experiment> : Experiment entity List
-   * @throws InvalidProtocolBufferException
-   */
-  private List<Experiment> getExperimentsFromDocuments(List<Document> documents)
-      throws InvalidProtocolBufferException {
-
-    List<Experiment> experimentList = new ArrayList<>();
-    for (Document document : documents) {
-      Experiment experiment = convertExperimentFromDocument(document);
-      experimentList.add(experiment);
-    }
-    return experimentList;
-  }
-
   private void checkEntityAlreadyExist(Experiment experiment) {
 
     Document queryDoc = new Document();
@@ -100,9 +65,7 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
     checkEntityAlreadyExist(experiment);
 
     documentService.insertOne(experiment);
-    Document document =
-        (Document) documentService.findByKey(ModelDBConstants.ID, experiment.getId());
-    return convertExperimentFromDocument(document);
+    return documentService.findByKey(ModelDBConstants.ID, experiment.getId(), Experiment.class);
   }
 
   /**
@@ -117,10 +80,11 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
    */
   public Experiment updateExperiment(String experimentId, Experiment experiment)
       throws InvalidProtocolBufferException {
-    long updatedCount = documentService.updateOne(ModelDBConstants.ID, experimentId, experiment);
-    if (updatedCount > 0) {
-      Document document = (Document) documentService.findByKey(ModelDBConstants.ID, experimentId);
-      return convertExperimentFromDocument(document);
+    Experiment savedExperiment =
+        documentService.findOneAndUpdate(
+            ModelDBConstants.ID, experimentId, experiment, Experiment.class);
+    if (savedExperiment != null) {
+      return savedExperiment;
     } else {
       String errorMessage = "Updated value is already present in Experiment";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -138,9 +102,10 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
    * @throws InvalidProtocolBufferException
    */
   public Experiment getExperiment(String experimentId) throws InvalidProtocolBufferException {
-    Document document = (Document) documentService.findByKey(ModelDBConstants.ID, experimentId);
-    if (document != null) {
-      return convertExperimentFromDocument(document);
+    Experiment experiment =
+        documentService.findByKey(ModelDBConstants.ID, experimentId, Experiment.class);
+    if (experiment != null) {
+      return experiment;
     } else {
       String errorMessage = "Experiment not found for given ID : " + experimentId;
       LOGGER.log(Level.WARNING, errorMessage);
@@ -160,15 +125,29 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
   public List<Experiment> getExperimentsInProject(
       String projectId, Integer pageNumber, Integer pageLimit, String order, String sortBy)
       throws InvalidProtocolBufferException {
-    List<Experiment> experiments = new ArrayList<>();
-    List<Document> documentList =
-        (List<Document>)
-            documentService.findListByKey(
-                ModelDBConstants.PROJECT_ID, projectId, pageNumber, pageLimit, order, sortBy);
-    if (!documentList.isEmpty()) {
-      experiments = getExperimentsFromDocuments(documentList);
-    }
-    return experiments;
+    return documentService.findListByKey(
+        ModelDBConstants.PROJECT_ID,
+        projectId,
+        pageNumber,
+        pageLimit,
+        order,
+        sortBy,
+        Experiment.class);
+  }
+
+  @Override
+  public List<Experiment> getExperimentsInProjectAfter(
+      String projectId, Integer pageLimit, ContinuationToken continuationToken)
+      throws InvalidProtocolBufferException {
+    return documentService.findListByKeyAfter(
+        ModelDBConstants.PROJECT_ID,
+        projectId,
+        pageLimit,
+        continuationToken.getOrder(),
+        continuationToken.getSortBy(),
+        continuationToken.getLastStoredSortValue(),
+        continuationToken.getLastId(),
+        Experiment.class);
   }
 
   /**
@@ -205,9 +184,9 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
       }
     }
 
-    Document document = (Document) documentService.findByObject(queryDocument);
-    if (document != null) {
-      return convertExperimentFromDocument(document);
+    Experiment experiment = documentService.findByObject(queryDocument, Experiment.class);
+    if (experiment != null) {
+      return experiment;
     } else {
       String errorMessage = "Experiment not found in database";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -228,15 +207,17 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
       throws InvalidProtocolBufferException {
     Document queryExperiment = new Document();
     queryExperiment.append(ModelDBConstants.ID, experimentId);
+    queryExperiment.append(
+        ModelDBConstants.TAGS, new Document("$not", new Document("$all", tagsList)));
 
     Document updatedExperiment = new Document();
     updatedExperiment.append(ModelDBConstants.TAGS, new Document("$each", tagsList));
 
-    long updatedCount =
-        documentService.updateOne(queryExperiment, new Document("$addToSet", updatedExperiment));
-    if (updatedCount > 0) {
-      Document document = (Document) documentService.findByKey(ModelDBConstants.ID, experimentId);
-      return convertExperimentFromDocument(document);
+    Experiment savedExperiment =
+        documentService.findOneAndUpdate(
+            queryExperiment, new Document("$addToSet", updatedExperiment), null, Experiment.class);
+    if (savedExperiment != null) {
+      return savedExperiment;
     } else {
       String errorMessage = "Added tags value is already present in Experiment";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -260,12 +241,11 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
     Document projectionDoc = new Document();
     projectionDoc.append(ModelDBConstants.TAGS, 1);
 
-    List<Document> documentList =
-        (List<Document>) documentService.findListByObject(queryObj, projectionDoc, null, null);
+    List<Experiment> experimentList =
+        documentService.findListByObject(queryObj, projectionDoc, null, null, Experiment.class);
 
-    if (!documentList.isEmpty()) {
-      Document document = documentList.get(0);
-      Experiment experiment = convertExperimentFromDocument(document);
+    if (!experimentList.isEmpty()) {
+      Experiment experiment = experimentList.get(0);
       return experiment.getTagsList();
     } else {
       String errorMessage = "Experiment tags not found in database";
@@ -295,16 +275,18 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
     Document updatedExperiment = new Document();
     if (deleteAll) {
       updatedExperiment.append(ModelDBConstants.TAGS, 1);
+      queryExperiment.append(ModelDBConstants.TAGS, new Document("$exists", true));
       updateQueryDoc = new Document("$unset", updatedExperiment);
     } else {
       updatedExperiment.append(ModelDBConstants.TAGS, experimentTagList);
+      queryExperiment.append(ModelDBConstants.TAGS, new Document("$in", experimentTagList));
       updateQueryDoc = new Document("$pullAll", updatedExperiment);
     }
 
-    long updatedCount = documentService.updateOne(queryExperiment, updateQueryDoc);
-    if (updatedCount > 0) {
-      Document document = (Document) documentService.findByKey(ModelDBConstants.ID, experimentId);
-      return convertExperimentFromDocument(document);
+    Experiment savedExperiment =
+        documentService.findOneAndUpdate(queryExperiment, updateQueryDoc, null, Experiment.class);
+    if (savedExperiment != null) {
+      return savedExperiment;
     } else {
       String errorMessage =
           "The tags field of Experiment is already deleted Or tags not found in the Experiment";
@@ -329,20 +311,13 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
     queryExperiment.append(ModelDBConstants.ID, experimentId);
 
     Document updatedExperiment = new Document();
+    updatedExperiment.append(ModelDBConstants.ATTRIBUTES, new Document("$each", attributes));
 
-    List<Document> attributeDocList = new ArrayList<>();
-    for (KeyValue attribute : attributes) {
-      String json = ModelDBUtils.getStringFromProtoObject(attribute);
-      Document documentAttributes = Document.parse(json);
-      attributeDocList.add(documentAttributes);
-    }
-    updatedExperiment.append(ModelDBConstants.ATTRIBUTES, new Document("$each", attributeDocList));
-
-    long updatedCount =
-        documentService.updateOne(queryExperiment, new Document("$push", updatedExperiment));
-    if (updatedCount > 0) {
-      Document document = (Document) documentService.findByKey(ModelDBConstants.ID, experimentId);
-      return convertExperimentFromDocument(document);
+    Experiment savedExperiment =
+        documentService.findOneAndUpdate(
+            queryExperiment, new Document("$push", updatedExperiment), null, Experiment.class);
+    if (savedExperiment != null) {
+      return savedExperiment;
     } else {
       String errorMessage =
           "Added attributes value is already present in Experiment OR Invalid Experiment ID found";
@@ -371,12 +346,11 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
     Document projectionDoc = new Document();
     projectionDoc.append(ModelDBConstants.ATTRIBUTES, 1);
 
-    List<Document> documentList =
-        (List<Document>) documentService.findListByObject(queryDoc, projectionDoc, null, null);
+    List<Experiment> experimentList =
+        documentService.findListByObject(queryDoc, projectionDoc, null, null, Experiment.class);
 
-    if (!documentList.isEmpty()) {
-      Document document = documentList.get(0);
-      Experiment experiment = convertExperimentFromDocument(document);
+    if (!experimentList.isEmpty()) {
+      Experiment experiment = experimentList.get(0);
       if (!getAll) {
         List<KeyValue> attributes = new ArrayList<>();
         experiment
@@ -420,18 +394,22 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
     Document updatedProject = new Document();
     if (deleteAll) {
       updatedProject.append(ModelDBConstants.ATTRIBUTES, 1);
+      queryDoc.append(ModelDBConstants.ATTRIBUTES, new Document("$exists", true));
       updateQueryDoc = new Document("$unset", updatedProject);
     } else {
       updatedProject.append(
           ModelDBConstants.ATTRIBUTES,
           new Document(ModelDBConstants.KEY, new Document("$in", attributeKeyList)));
+      queryDoc.append(
+          ModelDBConstants.ATTRIBUTES + "." + ModelDBConstants.KEY,
+          new Document("$in", attributeKeyList));
       updateQueryDoc = new Document("$pull", updatedProject);
     }
 
-    long updatedCount = documentService.updateOne(queryDoc, updateQueryDoc);
-    if (updatedCount > 0) {
-      Document document = (Document) documentService.findByKey(ModelDBConstants.ID, experimentId);
-      return convertExperimentFromDocument(document);
+    Experiment savedExperiment =
+        documentService.findOneAndUpdate(queryDoc, updateQueryDoc, null, Experiment.class);
+    if (savedExperiment != null) {
+      return savedExperiment;
     } else {
       String errorMessage =
           "The Attribute field of Experiment is already deleted Or tags not found in the Experiment";
@@ -452,6 +430,11 @@ public class ExperimentDAOMongoImpl implements ExperimentDAO {
    */
   public Boolean deleteExperiment(String experimentId) {
     documentService.deleteOne(experimentRunEntity, ModelDBConstants.EXPERIMENT_ID, experimentId);
-    return documentService.deleteOne(experimentEntity, ModelDBConstants.ID, experimentId);
+    Boolean deleted =
+        documentService.deleteOne(experimentEntity, ModelDBConstants.ID, experimentId);
+    if (creationCache != null) {
+      creationCache.invalidateExperiment(experimentId);
+    }
+    return deleted;
   }
 }
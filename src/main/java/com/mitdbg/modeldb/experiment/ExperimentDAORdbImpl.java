@@ -14,20 +14,30 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Value;
 import com.google.rpc.Code;
 import com.google.rpc.Status;
+import com.mitdbg.modeldb.App;
+import com.mitdbg.modeldb.ContinuationToken;
 import com.mitdbg.modeldb.Experiment;
 import com.mitdbg.modeldb.KeyValue;
 import com.mitdbg.modeldb.ModelDBConstants;
 import com.mitdbg.modeldb.ModelDBHibernateUtil;
 import com.mitdbg.modeldb.RdbmsUtils;
+import com.mitdbg.modeldb.cache.ExperimentRunCreationCache;
 import com.mitdbg.modeldb.entities.ExperimentEntity;
 import com.mitdbg.modeldb.entities.KeyValueEntity;
 import com.mitdbg.modeldb.entities.ProjectEntity;
 import com.mitdbg.modeldb.entities.TagsMapping;
+import com.mitdbg.modeldb.monitoring.DatabaseMetrics;
+import com.mitdbg.modeldb.monitoring.SlowOperationLog;
 import io.grpc.protobuf.StatusProto;
 
 public class ExperimentDAORdbImpl implements ExperimentDAO {
 
   private static final Logger LOGGER = Logger.getLogger(ExperimentDAORdbImpl.class.getName());
+  private ExperimentRunCreationCache creationCache = null;
+
+  public ExperimentDAORdbImpl() {
+    this.creationCache = App.getInstance().getExperimentRunCreationCache();
+  }
 
   @Transactional
   public void checkIfEntityAlreadyExists(Experiment experiment, Boolean isInsert) {
@@ -51,7 +61,10 @@ public class ExperimentDAORdbImpl implements ExperimentDAO {
         query.setParameter("experimentId", experiment.getId());
       }
 
-      Boolean existStatus = (query.uniqueResult() != null);
+      Boolean existStatus =
+          (RdbmsUtils.uniqueResultWithSlowOperationLog(
+                  query, "ExperimentEntity", "checkIfEntityAlreadyExists")
+              != null);
       transaction.commit();
 
       // Throw error if it is an insert request and Experiment with same name already exists
@@ -168,7 +181,17 @@ public class ExperimentDAORdbImpl implements ExperimentDAO {
         query.setMaxResults(pageLimit);
       }
       query.setParameter("projectId", projectId);
+      long startNanos = System.nanoTime();
       List<ExperimentEntity> experimentEntities = query.list();
+      SlowOperationLog.getInstance()
+          .record(
+              DatabaseMetrics.HIBERNATE,
+              "ExperimentEntity",
+              "getExperimentsInProject",
+              stringQueryBuilder.toString(),
+              System.nanoTime() - startNanos,
+              experimentEntities.size(),
+              null);
       transaction.commit();
       LOGGER.log(
           Level.INFO,
@@ -178,6 +201,46 @@ public class ExperimentDAORdbImpl implements ExperimentDAO {
     }
   }
 
+  @Override
+  @Transactional
+  public List<Experiment> getExperimentsInProjectAfter(
+      String projectId, Integer pageLimit, ContinuationToken continuationToken)
+      throws InvalidProtocolBufferException {
+    try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
+      Transaction transaction = session.beginTransaction();
+
+      StringBuilder stringQueryBuilder = new StringBuilder("FROM ExperimentEntity ee ");
+      stringQueryBuilder.append(
+          " WHERE ee.projectEntity." + ModelDBConstants.ID + " = :projectId ");
+      if (continuationToken.getLastId() != null) {
+        stringQueryBuilder.append(" AND " + RdbmsUtils.getKeysetPredicate("ee", continuationToken));
+      }
+      stringQueryBuilder.append(RdbmsUtils.getKeysetOrderBy("ee", continuationToken));
+
+      Query query = session.createQuery(stringQueryBuilder.toString());
+      query.setParameter("projectId", projectId);
+      if (continuationToken.getLastId() != null) {
+        RdbmsUtils.setKeysetParameters(query, continuationToken);
+      }
+      if (pageLimit != null && pageLimit > 0) {
+        query.setMaxResults(pageLimit);
+      }
+      long startNanos = System.nanoTime();
+      List<ExperimentEntity> experimentEntities = query.list();
+      SlowOperationLog.getInstance()
+          .record(
+              DatabaseMetrics.HIBERNATE,
+              "ExperimentEntity",
+              "getExperimentsInProjectAfter",
+              stringQueryBuilder.toString(),
+              System.nanoTime() - startNanos,
+              experimentEntities.size(),
+              null);
+      transaction.commit();
+      return RdbmsUtils.convertFromExperimentsToExperimentEntityList(experimentEntities);
+    }
+  }
+
   @Override
   @Transactional
   public Experiment addExperimentTags(String experimentId, List<String> tagsList)
@@ -220,7 +283,7 @@ public class ExperimentDAORdbImpl implements ExperimentDAO {
             " tm.experimentEntity." + ModelDBConstants.ID + " = :experimentId");
         Query query = session.createQuery(stringQueryBuilder.toString());
         query.setParameter("experimentId", experimentId);
-        query.executeUpdate();
+        RdbmsUtils.executeUpdateWithSlowOperationLog(query, "TagsMapping", "deleteExperimentTags");
       } else {
         stringQueryBuilder.append(" tm." + ModelDBConstants.TAGS + " in (:tags)");
         stringQueryBuilder.append(
@@ -228,7 +291,7 @@ public class ExperimentDAORdbImpl implements ExperimentDAO {
         Query query = session.createQuery(stringQueryBuilder.toString());
         query.setParameter("tags", experimentTagList);
         query.setParameter("experimentId", experimentId);
-        query.executeUpdate();
+        RdbmsUtils.executeUpdateWithSlowOperationLog(query, "TagsMapping", "deleteExperimentTags");
       }
       ExperimentEntity experimentObj = session.get(ExperimentEntity.class, experimentId);
       transaction.commit();
@@ -296,7 +359,8 @@ public class ExperimentDAORdbImpl implements ExperimentDAO {
         Query query = session.createQuery(stringQueryBuilder.toString());
         query.setParameterList("keys", attributeKeyList);
         query.setParameter("experimentId", experimentId);
-        List<KeyValueEntity> keyValueEntities = query.list();
+        List<KeyValueEntity> keyValueEntities =
+            RdbmsUtils.listWithSlowOperationLog(query, "KeyValueEntity", "getExperimentAttributes");
         transaction.commit();
         return RdbmsUtils.convertFromKeyValueEntityListToKeyValues(keyValueEntities);
       }
@@ -317,7 +381,8 @@ public class ExperimentDAORdbImpl implements ExperimentDAO {
             " kv.experimentEntity." + ModelDBConstants.ID + " = :experimentId");
         Query query = session.createQuery(stringQueryBuilder.toString());
         query.setParameter("experimentId", experimentId);
-        query.executeUpdate();
+        RdbmsUtils.executeUpdateWithSlowOperationLog(
+            query, "KeyValueEntity", "deleteExperimentAttributes");
       } else {
         stringQueryBuilder.append(" kv." + ModelDBConstants.KEY + " in (:keys)");
         stringQueryBuilder.append(
@@ -325,7 +390,8 @@ public class ExperimentDAORdbImpl implements ExperimentDAO {
         Query query = session.createQuery(stringQueryBuilder.toString());
         query.setParameter("keys", attributeKeyList);
         query.setParameter("experimentId", experimentId);
-        query.executeUpdate();
+        RdbmsUtils.executeUpdateWithSlowOperationLog(
+            query, "KeyValueEntity", "deleteExperimentAttributes");
       }
       ExperimentEntity experimentObj = session.get(ExperimentEntity.class, experimentId);
       transaction.commit();
@@ -333,16 +399,59 @@ public class ExperimentDAORdbImpl implements ExperimentDAO {
     }
   }
 
+  /**
+   * Delete the Experiment, its ExperimentRuns and what belongs to both in one transaction. Bulk
+   * deletes are used because session.delete would cascade from the Experiment and its runs to their
+   * Project through the ManyToOne associations.
+   */
   @Override
   @Transactional
   public Boolean deleteExperiment(String experimentId) {
-    // TODO Auto-generated method stub
-    Status status =
-        Status.newBuilder()
-            .setCode(Code.UNIMPLEMENTED_VALUE)
-            .setMessage("this method is under development")
-            .build();
-    throw StatusProto.toStatusRuntimeException(status);
+    try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
+      Transaction transaction = session.beginTransaction();
+      String experimentRunIds =
+          "select er.id from ExperimentRunEntity er where er.experimentEntity.id = :experimentId";
+      Query observationQuery =
+          session.createQuery(
+              "delete from ObservationEntity oe where oe.experimentRunEntity.id in ("
+                  + experimentRunIds
+                  + ")");
+      observationQuery.setParameter("experimentId", experimentId);
+      RdbmsUtils.executeUpdateWithSlowOperationLog(
+          observationQuery, "ObservationEntity", "deleteExperiment");
+      for (String childEntity :
+          new String[] {"KeyValueEntity", "ArtifactEntity", "FeatureEntity", "TagsMapping"}) {
+        Query query =
+            session.createQuery(
+                "delete from "
+                    + childEntity
+                    + " ce where ce.experimentEntity.id = :experimentId"
+                    + " or ce.experimentRunEntity.id in ("
+                    + experimentRunIds
+                    + ")");
+        query.setParameter("experimentId", experimentId);
+        RdbmsUtils.executeUpdateWithSlowOperationLog(query, childEntity, "deleteExperiment");
+      }
+      Query experimentRunQuery =
+          session.createQuery(
+              "delete from ExperimentRunEntity er where er.experimentEntity.id = :experimentId");
+      experimentRunQuery.setParameter("experimentId", experimentId);
+      RdbmsUtils.executeUpdateWithSlowOperationLog(
+          experimentRunQuery, "ExperimentRunEntity", "deleteExperiment");
+      Query experimentQuery =
+          session.createQuery("delete from ExperimentEntity ee where ee.id = :experimentId");
+      experimentQuery.setParameter("experimentId", experimentId);
+      Boolean deleted =
+          RdbmsUtils.executeUpdateWithSlowOperationLog(
+                  experimentQuery, "ExperimentEntity", "deleteExperiment")
+              > 0;
+      transaction.commit();
+      if (creationCache != null) {
+        creationCache.invalidateExperiment(experimentId);
+      }
+      LOGGER.log(Level.INFO, "Experiment deleted successfully");
+      return deleted;
+    }
   }
 
   @Override
@@ -390,7 +499,10 @@ public class ExperimentDAORdbImpl implements ExperimentDAO {
       for (Entry<String, Object> paramEntry : paramMap.entrySet()) {
         query.setParameter(paramEntry.getKey(), paramEntry.getValue());
       }
-      ExperimentEntity experimentObj = (ExperimentEntity) query.uniqueResult();
+      ExperimentEntity experimentObj =
+          (ExperimentEntity)
+              RdbmsUtils.uniqueResultWithSlowOperationLog(
+                  query, "ExperimentEntity", "getExperiment");
       transaction.commit();
       return experimentObj.getProtoObject();
     }
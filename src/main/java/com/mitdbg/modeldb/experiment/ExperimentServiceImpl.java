@@ -3,7 +3,6 @@ package com.mitdbg.modeldb.experiment;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import com.google.protobuf.Any;
@@ -13,6 +12,7 @@ import com.google.rpc.Status;
 import com.mitdbg.modeldb.AddAttributes;
 import com.mitdbg.modeldb.AddExperimentAttributes;
 import com.mitdbg.modeldb.AddExperimentTags;
+import com.mitdbg.modeldb.App;
 import com.mitdbg.modeldb.CreateExperiment;
 import com.mitdbg.modeldb.DeleteExperiment;
 import com.mitdbg.modeldb.DeleteExperimentAttributes;
@@ -71,7 +71,7 @@ public class ExperimentServiceImpl extends ExperimentServiceImplBase {
      */
     Experiment.Builder experimentBuilder =
         Experiment.newBuilder()
-            .setId(UUID.randomUUID().toString())
+            .setId(App.getInstance().getIdGenerator().generateId())
             .setProjectId(request.getProjectId())
             .setName(request.getName())
             .setDescription(request.getDescription())
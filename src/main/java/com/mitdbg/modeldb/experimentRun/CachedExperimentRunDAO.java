@@ -0,0 +1,402 @@
+package com.mitdbg.modeldb.experimentRun;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mitdbg.modeldb.Artifact;
+import com.mitdbg.modeldb.ContinuationToken;
+import com.mitdbg.modeldb.ExperimentRun;
+import com.mitdbg.modeldb.FindExperimentRuns;
+import com.mitdbg.modeldb.KeyValue;
+import com.mitdbg.modeldb.ModelDBConstants;
+import com.mitdbg.modeldb.Observation;
+import com.mitdbg.modeldb.SortExperimentRuns;
+import com.mitdbg.modeldb.TopExperimentRunsSelector;
+import com.mitdbg.modeldb.cache.EntityCache;
+
+/**
+ * ExperimentRunDAO with an {@link EntityCache} of the ExperimentRuns read by id. The getters of
+ * the fields of one ExperimentRun (metrics, hyperparameters, tags, attributes, datasets, artifacts
+ * and job id) are served from the cached ExperimentRun, and go to the backend when it does not
+ * exist so that the backend reports the error. Every write of an ExperimentRun invalidates it
+ * after the write.
+ */
+public class CachedExperimentRunDAO implements ExperimentRunDAO {
+
+  private final ExperimentRunDAO experimentRunDAO;
+  private final EntityCache<ExperimentRun> experimentRunCache;
+
+  /**
+   * @param ExperimentRunDAO experimentRunDAO --> DAO of the backend
+   * @param EntityCache<ExperimentRun> experimentRunCache
+   */
+  public CachedExperimentRunDAO(
+      ExperimentRunDAO experimentRunDAO, EntityCache<ExperimentRun> experimentRunCache) {
+    this.experimentRunDAO = experimentRunDAO;
+    this.experimentRunCache = experimentRunCache;
+  }
+
+  /**
+   * @param String experimentRunId
+   * @return ExperimentRun experimentRun --> null if it does not exist
+   */
+  private ExperimentRun getCachedExperimentRun(String experimentRunId)
+      throws InvalidProtocolBufferException {
+    return experimentRunCache.get(
+        experimentRunId,
+        () -> {
+          List<ExperimentRun> experimentRuns =
+              experimentRunDAO.getExperimentRuns(ModelDBConstants.ID, experimentRunId);
+          return experimentRuns.size() == 1 ? experimentRuns.get(0) : null;
+        });
+  }
+
+  @Override
+  public ExperimentRun insertExperimentRun(ExperimentRun experimentRun)
+      throws InvalidProtocolBufferException {
+    return experimentRunDAO.insertExperimentRun(experimentRun);
+  }
+
+  @Override
+  public Boolean deleteExperimentRun(String experimentRunId) {
+    try {
+      return experimentRunDAO.deleteExperimentRun(experimentRunId);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public List<ExperimentRun> getExperimentRunsFromEntity(
+      String entityKey,
+      String entityValue,
+      Integer pageNumber,
+      Integer pageLimit,
+      String order,
+      String sortBy)
+      throws InvalidProtocolBufferException {
+    return experimentRunDAO.getExperimentRunsFromEntity(
+        entityKey, entityValue, pageNumber, pageLimit, order, sortBy);
+  }
+
+  @Override
+  public List<ExperimentRun> getExperimentRunsFromEntityAfter(
+      String entityKey,
+      String entityValue,
+      Integer pageLimit,
+      ContinuationToken continuationToken)
+      throws InvalidProtocolBufferException {
+    return experimentRunDAO.getExperimentRunsFromEntityAfter(
+        entityKey, entityValue, pageLimit, continuationToken);
+  }
+
+  @Override
+  public Stream<ExperimentRun> streamExperimentRunsFromEntity(
+      String entityKey, String entityValue, String order, String sortBy)
+      throws InvalidProtocolBufferException {
+    return experimentRunDAO.streamExperimentRunsFromEntity(entityKey, entityValue, order, sortBy);
+  }
+
+  /** Lookups by id are served from the cache, lookups by any other key from the backend. */
+  @Override
+  public List<ExperimentRun> getExperimentRuns(String key, String value)
+      throws InvalidProtocolBufferException {
+    if (!ModelDBConstants.ID.equals(key)) {
+      return experimentRunDAO.getExperimentRuns(key, value);
+    }
+    ExperimentRun experimentRun = getCachedExperimentRun(value);
+    if (experimentRun == null) {
+      return experimentRunDAO.getExperimentRuns(key, value);
+    }
+    return Collections.singletonList(experimentRun);
+  }
+
+  @Override
+  public ExperimentRun updateExperimentRun(String experimentRunId, ExperimentRun experimentRun)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.updateExperimentRun(experimentRunId, experimentRun);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public ExperimentRun addExperimentRunTags(String experimentRunId, List<String> tagsList)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.addExperimentRunTags(experimentRunId, tagsList);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public ExperimentRun deleteExperimentRunTags(
+      String experimentRunId, List<String> experimentRunTagList, Boolean deleteAll)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.deleteExperimentRunTags(
+          experimentRunId, experimentRunTagList, deleteAll);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public ExperimentRun logObservation(String experimentRunId, Observation observation)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.logObservation(experimentRunId, observation);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public List<Observation> getObservationByKey(String experimentRunId, String observationKey)
+      throws InvalidProtocolBufferException {
+    return experimentRunDAO.getObservationByKey(experimentRunId, observationKey);
+  }
+
+  @Override
+  public ExperimentRun logMetric(String experimentRunId, KeyValue metric)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.logMetric(experimentRunId, metric);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public List<KeyValue> getExperimentRunMetrics(String experimentRunId)
+      throws InvalidProtocolBufferException {
+    ExperimentRun experimentRun = getCachedExperimentRun(experimentRunId);
+    if (experimentRun == null) {
+      return experimentRunDAO.getExperimentRunMetrics(experimentRunId);
+    }
+    return experimentRun.getMetricsList();
+  }
+
+  @Override
+  public ExperimentRun logDataSet(String experimentRunId, Artifact dataset)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.logDataSet(experimentRunId, dataset);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public List<Artifact> getExperimentRunDataSets(String experimentRunId)
+      throws InvalidProtocolBufferException {
+    ExperimentRun experimentRun = getCachedExperimentRun(experimentRunId);
+    if (experimentRun == null) {
+      return experimentRunDAO.getExperimentRunDataSets(experimentRunId);
+    }
+    return experimentRun.getDatasetsList();
+  }
+
+  @Override
+  public ExperimentRun logArtifact(String experimentRunId, Artifact artifact)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.logArtifact(experimentRunId, artifact);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public List<Artifact> getExperimentRunArtifacts(String experimentRunId)
+      throws InvalidProtocolBufferException {
+    ExperimentRun experimentRun = getCachedExperimentRun(experimentRunId);
+    if (experimentRun == null) {
+      return experimentRunDAO.getExperimentRunArtifacts(experimentRunId);
+    }
+    return experimentRun.getArtifactsList();
+  }
+
+  @Override
+  public ExperimentRun logHyperparameter(String experimentRunId, KeyValue hyperparameter)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.logHyperparameter(experimentRunId, hyperparameter);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public List<KeyValue> getExperimentRunHyperparameters(String experimentRunId)
+      throws InvalidProtocolBufferException {
+    ExperimentRun experimentRun = getCachedExperimentRun(experimentRunId);
+    if (experimentRun == null) {
+      return experimentRunDAO.getExperimentRunHyperparameters(experimentRunId);
+    }
+    return experimentRun.getHyperparametersList();
+  }
+
+  @Override
+  public ExperimentRun logAttribute(String experimentRunId, KeyValue attribute)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.logAttribute(experimentRunId, attribute);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public List<KeyValue> getExperimentRunAttributes(
+      String experimentRunId, List<String> attributeKeyList, Boolean getAll)
+      throws InvalidProtocolBufferException {
+    ExperimentRun experimentRun = getCachedExperimentRun(experimentRunId);
+    if (experimentRun == null) {
+      return experimentRunDAO.getExperimentRunAttributes(
+          experimentRunId, attributeKeyList, getAll);
+    }
+    if (getAll) {
+      return experimentRun.getAttributesList();
+    }
+    Set<String> attributeKeys = new HashSet<>(attributeKeyList);
+    return experimentRun
+        .getAttributesList()
+        .stream()
+        .filter(attribute -> attributeKeys.contains(attribute.getKey()))
+        .collect(Collectors.toCollection(ArrayList::new));
+  }
+
+  @Override
+  public List<ExperimentRun> findExperimentRuns(FindExperimentRuns queryParameters)
+      throws InvalidProtocolBufferException {
+    return experimentRunDAO.findExperimentRuns(queryParameters);
+  }
+
+  @Override
+  public Stream<ExperimentRun> streamExperimentRuns(FindExperimentRuns queryParameters)
+      throws InvalidProtocolBufferException {
+    return experimentRunDAO.streamExperimentRuns(queryParameters);
+  }
+
+  @Override
+  public List<ExperimentRun> sortExperimentRuns(SortExperimentRuns queryParameters)
+      throws InvalidProtocolBufferException {
+    return experimentRunDAO.sortExperimentRuns(queryParameters);
+  }
+
+  @Override
+  public List<ExperimentRun> getTopExperimentRuns(TopExperimentRunsSelector queryParameters)
+      throws InvalidProtocolBufferException {
+    return experimentRunDAO.getTopExperimentRuns(queryParameters);
+  }
+
+  @Override
+  public List<String> getExperimentRunTags(String experimentRunId)
+      throws InvalidProtocolBufferException {
+    ExperimentRun experimentRun = getCachedExperimentRun(experimentRunId);
+    if (experimentRun == null) {
+      return experimentRunDAO.getExperimentRunTags(experimentRunId);
+    }
+    return experimentRun.getTagsList();
+  }
+
+  @Override
+  public ExperimentRun addExperimentRunAttributes(
+      String experimentRunId, List<KeyValue> attributesList)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.addExperimentRunAttributes(experimentRunId, attributesList);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public ExperimentRun deleteExperimentRunAttributes(
+      String experimentRunId, List<String> attributeKeyList, Boolean deleteAll)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.deleteExperimentRunAttributes(
+          experimentRunId, attributeKeyList, deleteAll);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public ExperimentRun logJobId(String experimentRunId, String jobId)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.logJobId(experimentRunId, jobId);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public String getJobId(String experimentRunId) throws InvalidProtocolBufferException {
+    ExperimentRun experimentRun = getCachedExperimentRun(experimentRunId);
+    if (experimentRun == null || experimentRun.getJobId().isEmpty()) {
+      return experimentRunDAO.getJobId(experimentRunId);
+    }
+    return experimentRun.getJobId();
+  }
+
+  @Override
+  public ExperimentRun logObservations(String experimentRunId, List<Observation> observations)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.logObservations(experimentRunId, observations);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public ExperimentRun logMetrics(String experimentRunId, List<KeyValue> metrics)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.logMetrics(experimentRunId, metrics);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public ExperimentRun logDataSets(String experimentRunId, List<Artifact> datasets)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.logDataSets(experimentRunId, datasets);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public ExperimentRun logHyperparameters(String experimentRunId, List<KeyValue> hyperparameters)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.logHyperparameters(experimentRunId, hyperparameters);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+
+  @Override
+  public ExperimentRun logAttributes(String experimentRunId, List<KeyValue> attributes)
+      throws InvalidProtocolBufferException {
+    try {
+      return experimentRunDAO.logAttributes(experimentRunId, attributes);
+    } finally {
+      experimentRunCache.invalidate(experimentRunId);
+    }
+  }
+}
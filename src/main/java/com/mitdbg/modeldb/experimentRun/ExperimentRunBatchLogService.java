@@ -0,0 +1,326 @@
+package com.mitdbg.modeldb.experimentRun;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.google.protobuf.Any;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.rpc.Code;
+import com.google.rpc.Status;
+import com.mitdbg.modeldb.Artifact;
+import com.mitdbg.modeldb.ExperimentRunServiceGrpc;
+import com.mitdbg.modeldb.KeyValue;
+import com.mitdbg.modeldb.LogAttribute;
+import com.mitdbg.modeldb.LogDataset;
+import com.mitdbg.modeldb.LogHyperparameter;
+import com.mitdbg.modeldb.LogMetric;
+import com.mitdbg.modeldb.LogObservation;
+import com.mitdbg.modeldb.Observation;
+import io.grpc.BindableService;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.StatusRuntimeException;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.protobuf.StatusProto;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Client-streaming variants of the ExperimentRun log RPCs. The client streams the usual LogMetric,
+ * LogObservation, ... requests of one ExperimentRun and half-closes, the values are then written
+ * with one batched DAO call (one $push $each on MongoDB, one transaction on RDBMS) and the updated
+ * ExperimentRun is returned in a single response. A batch is written entirely or not at all.
+ */
+public class ExperimentRunBatchLogService implements BindableService {
+
+  private static final Logger LOGGER =
+      Logger.getLogger(ExperimentRunBatchLogService.class.getName());
+  public static final String SERVICE_NAME = ExperimentRunServiceGrpc.SERVICE_NAME + "Batch";
+  private static final int MAX_BATCH_SIZE = 1000;
+
+  private static final MethodDescriptor<LogObservation, LogObservation.Response>
+      LOG_OBSERVATIONS_METHOD =
+          MethodDescriptor.<LogObservation, LogObservation.Response>newBuilder()
+              .setType(MethodType.CLIENT_STREAMING)
+              .setFullMethodName(
+                  MethodDescriptor.generateFullMethodName(SERVICE_NAME, "logObservations"))
+              .setRequestMarshaller(ProtoUtils.marshaller(LogObservation.getDefaultInstance()))
+              .setResponseMarshaller(
+                  ProtoUtils.marshaller(LogObservation.Response.getDefaultInstance()))
+              .build();
+
+  private static final MethodDescriptor<LogMetric, LogMetric.Response> LOG_METRICS_METHOD =
+      MethodDescriptor.<LogMetric, LogMetric.Response>newBuilder()
+          .setType(MethodType.CLIENT_STREAMING)
+          .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, "logMetrics"))
+          .setRequestMarshaller(ProtoUtils.marshaller(LogMetric.getDefaultInstance()))
+          .setResponseMarshaller(ProtoUtils.marshaller(LogMetric.Response.getDefaultInstance()))
+          .build();
+
+  private static final MethodDescriptor<LogDataset, LogDataset.Response> LOG_DATASETS_METHOD =
+      MethodDescriptor.<LogDataset, LogDataset.Response>newBuilder()
+          .setType(MethodType.CLIENT_STREAMING)
+          .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, "logDatasets"))
+          .setRequestMarshaller(ProtoUtils.marshaller(LogDataset.getDefaultInstance()))
+          .setResponseMarshaller(ProtoUtils.marshaller(LogDataset.Response.getDefaultInstance()))
+          .build();
+
+  private static final MethodDescriptor<LogHyperparameter, LogHyperparameter.Response>
+      LOG_HYPERPARAMETERS_METHOD =
+          MethodDescriptor.<LogHyperparameter, LogHyperparameter.Response>newBuilder()
+              .setType(MethodType.CLIENT_STREAMING)
+              .setFullMethodName(
+                  MethodDescriptor.generateFullMethodName(SERVICE_NAME, "logHyperparameters"))
+              .setRequestMarshaller(ProtoUtils.marshaller(LogHyperparameter.getDefaultInstance()))
+              .setResponseMarshaller(
+                  ProtoUtils.marshaller(LogHyperparameter.Response.getDefaultInstance()))
+              .build();
+
+  private static final MethodDescriptor<LogAttribute, LogAttribute.Response>
+      LOG_ATTRIBUTES_METHOD =
+          MethodDescriptor.<LogAttribute, LogAttribute.Response>newBuilder()
+              .setType(MethodType.CLIENT_STREAMING)
+              .setFullMethodName(
+                  MethodDescriptor.generateFullMethodName(SERVICE_NAME, "logAttributes"))
+              .setRequestMarshaller(ProtoUtils.marshaller(LogAttribute.getDefaultInstance()))
+              .setResponseMarshaller(
+                  ProtoUtils.marshaller(LogAttribute.Response.getDefaultInstance()))
+              .build();
+
+  private final ExperimentRunDAO experimentRunDAO;
+  private final ExperimentRunWriteBuffer writeBuffer;
+
+  /**
+   * @param ExperimentRunDAO experimentRunDAO
+   * @param ExperimentRunWriteBuffer writeBuffer --> flushed before a batch of its ExperimentRun is
+   *     written, null if values are not buffered
+   */
+  public ExperimentRunBatchLogService(
+      ExperimentRunDAO experimentRunDAO, ExperimentRunWriteBuffer writeBuffer) {
+    this.experimentRunDAO = experimentRunDAO;
+    this.writeBuffer = writeBuffer;
+  }
+
+  @Override
+  public ServerServiceDefinition bindService() {
+    return ServerServiceDefinition.builder(SERVICE_NAME)
+        .addMethod(
+            LOG_OBSERVATIONS_METHOD, ServerCalls.asyncClientStreamingCall(this::logObservations))
+        .addMethod(LOG_METRICS_METHOD, ServerCalls.asyncClientStreamingCall(this::logMetrics))
+        .addMethod(LOG_DATASETS_METHOD, ServerCalls.asyncClientStreamingCall(this::logDatasets))
+        .addMethod(
+            LOG_HYPERPARAMETERS_METHOD,
+            ServerCalls.asyncClientStreamingCall(this::logHyperparameters))
+        .addMethod(
+            LOG_ATTRIBUTES_METHOD, ServerCalls.asyncClientStreamingCall(this::logAttributes))
+        .build();
+  }
+
+  public StreamObserver<LogObservation> logObservations(
+      StreamObserver<LogObservation.Response> responseObserver) {
+    return new BatchObserver<LogObservation, Observation, LogObservation.Response>(
+        "LogObservation",
+        "Observation",
+        LogObservation::getId,
+        request ->
+            request.getObservation().hasArtifact() || request.getObservation().hasAttribute(),
+        LogObservation::getObservation,
+        (experimentRunId, observations) ->
+            LogObservation.Response.newBuilder()
+                .setExperimentRun(experimentRunDAO.logObservations(experimentRunId, observations))
+                .build(),
+        LogObservation.Response.getDefaultInstance(),
+        responseObserver);
+  }
+
+  public StreamObserver<LogMetric> logMetrics(StreamObserver<LogMetric.Response> responseObserver) {
+    return new BatchObserver<LogMetric, KeyValue, LogMetric.Response>(
+        "LogMetric",
+        "Metric KeyValue",
+        LogMetric::getId,
+        request -> !request.getMetric().getKey().isEmpty(),
+        LogMetric::getMetric,
+        (experimentRunId, metrics) ->
+            LogMetric.Response.newBuilder()
+                .setExperimentRun(experimentRunDAO.logMetrics(experimentRunId, metrics))
+                .build(),
+        LogMetric.Response.getDefaultInstance(),
+        responseObserver);
+  }
+
+  public StreamObserver<LogDataset> logDatasets(
+      StreamObserver<LogDataset.Response> responseObserver) {
+    return new BatchObserver<LogDataset, Artifact, LogDataset.Response>(
+        "LogDataset",
+        "DataSet",
+        LogDataset::getId,
+        request ->
+            !request.getDataset().getKey().isEmpty() && !request.getDataset().getPath().isEmpty(),
+        LogDataset::getDataset,
+        (experimentRunId, datasets) ->
+            LogDataset.Response.newBuilder()
+                .setExperimentRun(experimentRunDAO.logDataSets(experimentRunId, datasets))
+                .build(),
+        LogDataset.Response.getDefaultInstance(),
+        responseObserver);
+  }
+
+  public StreamObserver<LogHyperparameter> logHyperparameters(
+      StreamObserver<LogHyperparameter.Response> responseObserver) {
+    return new BatchObserver<LogHyperparameter, KeyValue, LogHyperparameter.Response>(
+        "LogHyperparameter",
+        "Hyperparameter",
+        LogHyperparameter::getId,
+        request -> !request.getHyperparameter().getKey().isEmpty(),
+        LogHyperparameter::getHyperparameter,
+        (experimentRunId, hyperparameters) ->
+            LogHyperparameter.Response.newBuilder()
+                .setExperimentRun(
+                    experimentRunDAO.logHyperparameters(experimentRunId, hyperparameters))
+                .build(),
+        LogHyperparameter.Response.getDefaultInstance(),
+        responseObserver);
+  }
+
+  public StreamObserver<LogAttribute> logAttributes(
+      StreamObserver<LogAttribute.Response> responseObserver) {
+    return new BatchObserver<LogAttribute, KeyValue, LogAttribute.Response>(
+        "LogAttribute",
+        "Attribute",
+        LogAttribute::getId,
+        request -> !request.getAttribute().getKey().isEmpty(),
+        LogAttribute::getAttribute,
+        (experimentRunId, attributes) ->
+            LogAttribute.Response.newBuilder()
+                .setExperimentRun(experimentRunDAO.logAttributes(experimentRunId, attributes))
+                .build(),
+        LogAttribute.Response.getDefaultInstance(),
+        responseObserver);
+  }
+
+  /** Batched DAO call writing the values of one ExperimentRun. */
+  private interface BatchWriter<T, R> {
+    R write(String experimentRunId, List<T> values) throws InvalidProtocolBufferException;
+  }
+
+  /**
+   * Collect the values of the streamed requests and write them once the client half-closes. The
+   * first invalid request fails the call, the requests received after it are ignored.
+   *
+   * @param <Q> request type, e.g. LogMetric
+   * @param <T> logged value type, e.g. KeyValue
+   * @param <R> response type, e.g. LogMetric.Response
+   */
+  private class BatchObserver<Q, T, R extends Message> implements StreamObserver<Q> {
+
+    private final String requestName;
+    private final String valueName;
+    private final Function<Q, String> experimentRunIdGetter;
+    private final Predicate<Q> valueValidator;
+    private final Function<Q, T> valueGetter;
+    private final BatchWriter<T, R> batchWriter;
+    private final R defaultResponse;
+    private final StreamObserver<R> responseObserver;
+    private final List<T> values = new ArrayList<>();
+    private String experimentRunId = null;
+    private boolean failed = false;
+
+    BatchObserver(
+        String requestName,
+        String valueName,
+        Function<Q, String> experimentRunIdGetter,
+        Predicate<Q> valueValidator,
+        Function<Q, T> valueGetter,
+        BatchWriter<T, R> batchWriter,
+        R defaultResponse,
+        StreamObserver<R> responseObserver) {
+      this.requestName = requestName;
+      this.valueName = valueName;
+      this.experimentRunIdGetter = experimentRunIdGetter;
+      this.valueValidator = valueValidator;
+      this.valueGetter = valueGetter;
+      this.batchWriter = batchWriter;
+      this.defaultResponse = defaultResponse;
+      this.responseObserver = responseObserver;
+    }
+
+    @Override
+    public void onNext(Q request) {
+      if (failed) {
+        return;
+      }
+      String requestExperimentRunId = experimentRunIdGetter.apply(request);
+      if (requestExperimentRunId.isEmpty() || !valueValidator.test(request)) {
+        fail(
+            "ExperimentRun ID OR New "
+                + valueName
+                + " is not found in "
+                + requestName
+                + " request.");
+      } else if (experimentRunId != null && !experimentRunId.equals(requestExperimentRunId)) {
+        fail("All " + requestName + " requests of a batch must have the same ExperimentRun ID.");
+      } else if (values.size() >= MAX_BATCH_SIZE) {
+        fail("A batch can not have more than " + MAX_BATCH_SIZE + " " + requestName + " requests.");
+      } else {
+        experimentRunId = requestExperimentRunId;
+        values.add(valueGetter.apply(request));
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      LOGGER.log(
+          Level.WARNING,
+          requestName + " batch cancelled by the client, " + values.size() + " values dropped",
+          t);
+    }
+
+    @Override
+    public void onCompleted() {
+      if (failed) {
+        return;
+      }
+      if (values.isEmpty()) {
+        fail("No " + requestName + " request is found in the batch.");
+        return;
+      }
+      try {
+        if (writeBuffer != null) {
+          writeBuffer.flush(experimentRunId);
+        }
+        responseObserver.onNext(batchWriter.write(experimentRunId, values));
+        responseObserver.onCompleted();
+      } catch (StatusRuntimeException e) {
+        LOGGER.log(Level.WARNING, e.getMessage(), e);
+        responseObserver.onError(e);
+      } catch (Exception e) {
+        LOGGER.log(Level.WARNING, e.getMessage(), e);
+        Status status =
+            Status.newBuilder()
+                .setCode(Code.INTERNAL.getNumber())
+                .setMessage("Internal server error.")
+                .addDetails(Any.pack(defaultResponse))
+                .build();
+        responseObserver.onError(StatusProto.toStatusRuntimeException(status));
+      }
+    }
+
+    private void fail(String errorMessage) {
+      failed = true;
+      values.clear();
+      LOGGER.log(Level.WARNING, errorMessage);
+      Status status =
+          Status.newBuilder()
+              .setCode(Code.INVALID_ARGUMENT_VALUE)
+              .setMessage(errorMessage)
+              .addDetails(Any.pack(defaultResponse))
+              .build();
+      responseObserver.onError(StatusProto.toStatusRuntimeException(status));
+    }
+  }
+}
@@ -1,8 +1,10 @@
 package com.mitdbg.modeldb.experimentRun;
 
 import java.util.List;
+import java.util.stream.Stream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.mitdbg.modeldb.Artifact;
+import com.mitdbg.modeldb.ContinuationToken;
 import com.mitdbg.modeldb.ExperimentRun;
 import com.mitdbg.modeldb.FindExperimentRuns;
 import com.mitdbg.modeldb.KeyValue;
@@ -52,6 +54,41 @@ public interface ExperimentRunDAO {
       String sortBy)
       throws InvalidProtocolBufferException;
 
+  /**
+   * Keyset pagination variant of getExperimentRunsFromEntity, page starts right after the last
+   * ExperimentRun of given continuationToken.
+   *
+   * @param String entityKey --> like ModelDBConstants.PROJECT_ID, ModelDBConstants.EXPERIMENT_ID
+   *     etc.
+   * @param String entityValue --> like Project.id, experiment.id etc.
+   * @param pageLimit --> page limit is per page record count.
+   * @param continuationToken --> sort of the listing and last id of previous page.
+   * @return List<ExperimentRun> experimentRunList
+   * @throws InvalidProtocolBufferException
+   */
+  List<ExperimentRun> getExperimentRunsFromEntityAfter(
+      String entityKey,
+      String entityValue,
+      Integer pageLimit,
+      ContinuationToken continuationToken)
+      throws InvalidProtocolBufferException;
+
+  /**
+   * Streaming variant of getExperimentRunsFromEntity. ExperimentRuns are read lazily from a
+   * database cursor while the stream is consumed, the caller must close the stream.
+   *
+   * @param String entityKey --> like ModelDBConstants.PROJECT_ID, ModelDBConstants.EXPERIMENT_ID
+   *     etc.
+   * @param String entityValue --> like Project.id, experiment.id etc.
+   * @param order --> this parameter has order like asc OR desc.
+   * @param sortBy -- > Use this field for sort data.
+   * @return Stream<ExperimentRun> experimentRuns
+   * @throws InvalidProtocolBufferException
+   */
+  Stream<ExperimentRun> streamExperimentRunsFromEntity(
+      String entityKey, String entityValue, String order, String sortBy)
+      throws InvalidProtocolBufferException;
+
   /**
    * Get ExperimentRun entity using given experimentRunId from database.
    *
@@ -240,6 +277,16 @@ public interface ExperimentRunDAO {
   List<ExperimentRun> findExperimentRuns(FindExperimentRuns queryParameters)
       throws InvalidProtocolBufferException;
 
+  /**
+   * Streaming variant of findExperimentRuns, the caller must close the returned stream.
+   *
+   * @param FindExperimentRuns queryParameters --> query parameters for filtering experimentRuns
+   * @return Stream<ExperimentRun> -- lazy stream of experimentRuns based on filter queryParameters
+   * @throws InvalidProtocolBufferException
+   */
+  Stream<ExperimentRun> streamExperimentRuns(FindExperimentRuns queryParameters)
+      throws InvalidProtocolBufferException;
+
   /**
    * Return sorted list of experimentRuns based on SortExperimentRuns queryParameters
    *
@@ -314,4 +361,60 @@ public interface ExperimentRunDAO {
    * @throws InvalidProtocolBufferException
    */
   String getJobId(String experimentRunId) throws InvalidProtocolBufferException;
+
+  /**
+   * Add all given observations in the Observations list of ExperimentRun with a single update.
+   *
+   * @param experimentRunId
+   * @param observations
+   * @return ExperimentRun updated experimentRun entity
+   * @throws InvalidProtocolBufferException
+   */
+  ExperimentRun logObservations(String experimentRunId, List<Observation> observations)
+      throws InvalidProtocolBufferException;
+
+  /**
+   * Add all given metrics in the Metrics list of ExperimentRun with a single update.
+   *
+   * @param experimentRunId
+   * @param metrics has KeyValue entities
+   * @return ExperimentRun updated ExperimentRun
+   * @throws InvalidProtocolBufferException
+   */
+  ExperimentRun logMetrics(String experimentRunId, List<KeyValue> metrics)
+      throws InvalidProtocolBufferException;
+
+  /**
+   * Add all given datasets in the datasets list of ExperimentRun with a single update.
+   *
+   * @param experimentRunId
+   * @param datasets has Artifact entities
+   * @return ExperimentRun updated ExperimentRun
+   * @throws InvalidProtocolBufferException
+   */
+  ExperimentRun logDataSets(String experimentRunId, List<Artifact> datasets)
+      throws InvalidProtocolBufferException;
+
+  /**
+   * Add all given hyperparameters in the hyperparameters list of ExperimentRun with a single
+   * update.
+   *
+   * @param experimentRunId
+   * @param hyperparameters has KeyValue entities
+   * @return ExperimentRun updated experimentRun
+   * @throws InvalidProtocolBufferException
+   */
+  ExperimentRun logHyperparameters(String experimentRunId, List<KeyValue> hyperparameters)
+      throws InvalidProtocolBufferException;
+
+  /**
+   * Add all given attributes in the attributes list of ExperimentRun with a single update.
+   *
+   * @param experimentRunId
+   * @param attributes has KeyValue entities
+   * @return ExperimentRun updated experimentRun
+   * @throws InvalidProtocolBufferException
+   */
+  ExperimentRun logAttributes(String experimentRunId, List<KeyValue> attributes)
+      throws InvalidProtocolBufferException;
 }
@@ -1,78 +1,103 @@
 package com.mitdbg.modeldb.experimentRun;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.bson.Document;
+import com.google.protobuf.Any;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Value;
-import com.google.protobuf.util.JsonFormat;
 import com.google.rpc.Code;
 import com.google.rpc.Status;
 import com.mitdbg.modeldb.App;
 import com.mitdbg.modeldb.Artifact;
+import com.mitdbg.modeldb.ContinuationToken;
 import com.mitdbg.modeldb.ExperimentRun;
 import com.mitdbg.modeldb.FindExperimentRuns;
 import com.mitdbg.modeldb.KeyValue;
 import com.mitdbg.modeldb.KeyValueQuery;
+import com.mitdbg.modeldb.LogHyperparameter;
+import com.mitdbg.modeldb.LogMetric;
 import com.mitdbg.modeldb.ModelDBConstants;
-import com.mitdbg.modeldb.ModelDBUtils;
 import com.mitdbg.modeldb.Observation;
 import com.mitdbg.modeldb.SortExperimentRuns;
 import com.mitdbg.modeldb.TopExperimentRunsSelector;
+import com.mitdbg.modeldb.cache.ExperimentRunCreationCache;
 import com.mitdbg.modeldb.databaseServices.DocumentService;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.model.UpdateOneModel;
 import io.grpc.protobuf.StatusProto;
 
 public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
 
   private static final Logger LOGGER = Logger.getLogger(ExperimentRunDAOMongoImpl.class.getName());
+  private static final String SORT_VALUE_FIELD = "_sort_value";
+  private static final int BACKFILL_BATCH_SIZE = 1000;
+  private static final int OBSERVATION_READ_BATCH_SIZE = 100;
   private String experimentRunEntity = null;
   private DocumentService documentService = null;
+  private ObservationBucketStore observationBucketStore = null;
+  private ExperimentRunCreationCache creationCache = null;
 
-  public ExperimentRunDAOMongoImpl(DocumentService documentService) {
+  /**
+   * @param DocumentService documentService --> DocumentService of the ExperimentRun collection
+   * @param ObservationBucketStore observationBucketStore --> storage of the observations
+   */
+  public ExperimentRunDAOMongoImpl(
+      DocumentService documentService, ObservationBucketStore observationBucketStore) {
     App app = App.getInstance();
     this.experimentRunEntity = app.getExperimentRunEntity();
     this.documentService = documentService;
+    this.observationBucketStore = observationBucketStore;
+    this.creationCache = app.getExperimentRunCreationCache();
     documentService.checkCollectionAvailability(experimentRunEntity);
   }
 
   /**
-   * Convert MongoDB Document object to ExperimentRun entity. Here remove MongoDB "_ID" because if
-   * _id is their then both the structure MongoDB Document and ExperimentRun Entity is different and
-   * direct conversion is not possible that's why "_ID" is remove.
+   * Migrate the ExperimentRuns stored by earlier versions, see backfillKeyValueMaps and
+   * moveEmbeddedObservations. A completed migration is recorded in the migration collection and
+   * skipped by the next starts, so only the first start after an upgrade scans the ExperimentRuns.
+   * Called on a background thread once the indexes are reconciled: until a migration is completed,
+   * the runs it has not reached yet are missed by the sorts and predicates on the metric and
+   * hyperparameter maps, and their observations are read from the ExperimentRun document.
    *
-   * @param Document document : MongoDB data object.
-   * @return ExperimentRun experimentRun : ProtocolBuffer Object of ExperimentRun entity.
-   * @throws InvalidProtocolBufferException
+   * @param DocumentService migrationService --> DocumentService of the migration collection
    */
-  private ExperimentRun convertExperimentRunFromDocument(Document document)
-      throws InvalidProtocolBufferException {
-    ExperimentRun.Builder builder = ExperimentRun.newBuilder();
-
-    document.remove("_id");
-
-    JsonFormat.parser().merge(document.toJson(), builder);
-    return builder.build();
+  public void migrate(DocumentService migrationService) {
+    runMigration(migrationService, "experiment_run_key_value_maps", this::backfillKeyValueMaps);
+    runMigration(
+        migrationService, "experiment_run_observation_buckets", this::moveEmbeddedObservations);
   }
 
-  /**
-   * Convert list of MongoDB document object to list of ExperimentRun entity object.
-   *
-   * @param List<Document> documents : list of MongoDB data object.
-   * @return List<ExperimentRun> : ExperimentRun entity List
-   * @throws InvalidProtocolBufferException
-   */
-  private List<ExperimentRun> getExperimentRunsFromDocuments(List<Document> documents)
-      throws InvalidProtocolBufferException {
-
-    List<ExperimentRun> experimentRunList = new ArrayList<>();
-    for (Document document : documents) {
-      ExperimentRun experimentRun = convertExperimentRunFromDocument(document);
-      experimentRunList.add(experimentRun);
+  private static void runMigration(
+      DocumentService migrationService, String migrationId, Runnable migration) {
+    Document markerDoc = new Document(ModelDBConstants.ID, migrationId);
+    try {
+      if (!migrationService.findListByObject(markerDoc, null, null, 1).isEmpty()) {
+        return;
+      }
+      migration.run();
+      // Two nodes may both run a migration before one records it, running it again is harmless
+      migrationService.insertOne(
+          markerDoc.append(ModelDBConstants.DATE_CREATED, System.currentTimeMillis()));
+      LOGGER.info("Migration " + migrationId + " completed");
+    } catch (Exception e) {
+      // Not recorded, the migration is run again by the next start
+      LOGGER.log(Level.WARNING, "Migration " + migrationId + " failed : " + e.getMessage(), e);
     }
-    return experimentRunList;
   }
 
   private void checkEntityAlreadyExist(ExperimentRun experimentRun) {
@@ -93,19 +118,74 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     }
   }
 
+  /**
+   * Read the names of the ExperimentRuns of a Project and Experiment, for the name filter of the
+   * creation cache.
+   */
+  private List<String> getExperimentRunNames(String projectId, String experimentId)
+      throws InvalidProtocolBufferException {
+    Document queryDoc =
+        new Document(ModelDBConstants.PROJECT_ID, projectId)
+            .append(ModelDBConstants.EXPERIMENT_ID, experimentId);
+    Document projectionDoc = new Document(ModelDBConstants.NAME, 1);
+    List<ExperimentRun> experimentRuns =
+        documentService.findListByObject(queryDoc, projectionDoc, null, null, ExperimentRun.class);
+    List<String> names = new ArrayList<>(experimentRuns.size());
+    for (ExperimentRun experimentRun : experimentRuns) {
+      names.add(experimentRun.getName());
+    }
+    return names;
+  }
+
   public ExperimentRun insertExperimentRun(ExperimentRun experimentRun)
       throws InvalidProtocolBufferException {
 
-    checkEntityAlreadyExist(experimentRun);
+    // A name the creation cache knows to be unused needs no lookup. The cache only knows the names
+    // created through this node, the unique index on project_id, experiment_id and name rejects a
+    // name created meanwhile by another node
+    String projectId = experimentRun.getProjectId();
+    String experimentId = experimentRun.getExperimentId();
+    if (creationCache == null
+        || !creationCache.reserveName(
+            projectId,
+            experimentId,
+            experimentRun.getName(),
+            () -> getExperimentRunNames(projectId, experimentId))) {
+      checkEntityAlreadyExist(experimentRun);
+      if (creationCache != null) {
+        creationCache.addName(projectId, experimentId, experimentRun.getName());
+      }
+    }
 
-    documentService.insertOne(experimentRun);
-    Document document =
-        (Document) documentService.findByKey(ModelDBConstants.ID, experimentRun.getId());
-    return convertExperimentRunFromDocument(document);
+    // Observations are stored in their buckets, not in the ExperimentRun document. They are written
+    // once the ExperimentRun is inserted, so a rejected duplicate leaves no buckets behind. The
+    // metric and hyperparameter maps are inserted with the document, in the same round trip
+    List<Observation> observations = experimentRun.getObservationsList();
+    experimentRun = experimentRun.toBuilder().clearObservations().build();
+    try {
+      documentService.insertOne(experimentRun, getKeyValueMaps(experimentRun));
+    } catch (MongoWriteException e) {
+      if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+        throw e;
+      }
+      String errorMessage = "ExperimentRun already exist in database";
+      LOGGER.log(Level.WARNING, errorMessage);
+      Status status =
+          Status.newBuilder().setCode(Code.ALREADY_EXISTS_VALUE).setMessage(errorMessage).build();
+      throw StatusProto.toStatusRuntimeException(status);
+    }
+    if (!observations.isEmpty()) {
+      observationBucketStore.insertObservations(experimentRun.getId(), observations);
+    }
+    // The observations of a new ExperimentRun are the inserted ones, no need to read them back
+    return experimentRun.toBuilder().addAllObservations(observations).build();
   }
 
   public Boolean deleteExperimentRun(String experimentRunId) {
-    return documentService.deleteOne(experimentRunEntity, ModelDBConstants.ID, experimentRunId);
+    Boolean deleted =
+        documentService.deleteOne(experimentRunEntity, ModelDBConstants.ID, experimentRunId);
+    observationBucketStore.deleteObservations(experimentRunId);
+    return deleted;
   }
 
   public List<ExperimentRun> getExperimentRunsFromEntity(
@@ -116,40 +196,56 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
       String order,
       String sortBy)
       throws InvalidProtocolBufferException {
-    List<ExperimentRun> experimentRuns = new ArrayList<>();
-    List<Document> documentList =
-        (List<Document>)
-            documentService.findListByKey(
-                entityKey, entityValue, pageNumber, pageLimit, order, sortBy);
-    if (!documentList.isEmpty()) {
-      experimentRuns = getExperimentRunsFromDocuments(documentList);
-    }
-    return experimentRuns;
+    return withObservations(
+        documentService.findListByKey(
+            entityKey, entityValue, pageNumber, pageLimit, order, sortBy, ExperimentRun.class));
+  }
+
+  @Override
+  public List<ExperimentRun> getExperimentRunsFromEntityAfter(
+      String entityKey,
+      String entityValue,
+      Integer pageLimit,
+      ContinuationToken continuationToken)
+      throws InvalidProtocolBufferException {
+    return withObservations(
+        documentService.findListByKeyAfter(
+            entityKey,
+            entityValue,
+            pageLimit,
+            continuationToken.getOrder(),
+            continuationToken.getSortBy(),
+            continuationToken.getLastStoredSortValue(),
+            continuationToken.getLastId(),
+            ExperimentRun.class));
+  }
+
+  @Override
+  public Stream<ExperimentRun> streamExperimentRunsFromEntity(
+      String entityKey, String entityValue, String order, String sortBy)
+      throws InvalidProtocolBufferException {
+    return withObservations(
+        documentService.streamListByKey(
+            entityKey, entityValue, order, sortBy, ExperimentRun.class));
   }
 
   public List<ExperimentRun> getExperimentRuns(String key, String value)
       throws InvalidProtocolBufferException {
 
-    List<ExperimentRun> experimentRuns = new ArrayList<>();
     Document queryDoc = new Document();
     queryDoc.append(key, value);
 
-    List<Document> documentList =
-        (List<Document>) documentService.findListByObject(queryDoc, null, null, null);
-    if (documentList != null && documentList.size() > 0) {
-      experimentRuns = getExperimentRunsFromDocuments(documentList);
-    }
-    return experimentRuns;
+    return withObservations(
+        documentService.findListByObject(queryDoc, null, null, null, ExperimentRun.class));
   }
 
   public ExperimentRun updateExperimentRun(String experimentRunId, ExperimentRun experimentRun)
       throws InvalidProtocolBufferException {
-    long updatedCount =
-        documentService.updateOne(ModelDBConstants.ID, experimentRunId, experimentRun);
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-      return convertExperimentRunFromDocument(document);
+    ExperimentRun savedExperimentRun =
+        documentService.findOneAndUpdate(
+            ModelDBConstants.ID, experimentRunId, experimentRun, ExperimentRun.class);
+    if (savedExperimentRun != null) {
+      return savedExperimentRun;
     } else {
       String errorMessage = "Updated value is already present in ExperimentRun";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -163,17 +259,21 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
       throws InvalidProtocolBufferException {
     Document queryExperimentRun = new Document();
     queryExperimentRun.append(ModelDBConstants.ID, experimentRunId);
+    // $addToSet changes nothing when every tag is present, so match only if one is missing
+    queryExperimentRun.append(
+        ModelDBConstants.TAGS, new Document("$not", new Document("$all", tagsList)));
 
     Document updatedExperimentRun = new Document();
     updatedExperimentRun.append(ModelDBConstants.TAGS, new Document("$each", tagsList));
 
-    long updatedCount =
-        documentService.updateOne(
-            queryExperimentRun, new Document("$addToSet", updatedExperimentRun));
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-      return convertExperimentRunFromDocument(document);
+    ExperimentRun savedExperimentRun =
+        documentService.findOneAndUpdate(
+            queryExperimentRun,
+            new Document("$addToSet", updatedExperimentRun),
+            null,
+            ExperimentRun.class);
+    if (savedExperimentRun != null) {
+      return savedExperimentRun;
     } else {
       String errorMessage = "Added tags value is already present in ExperimentRun";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -191,12 +291,12 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     Document projectionDoc = new Document();
     projectionDoc.append(ModelDBConstants.TAGS, 1);
 
-    List<Document> documentList =
-        (List<Document>) documentService.findListByObject(queryObj, projectionDoc, null, null);
+    List<ExperimentRun> experimentRuns =
+        documentService.findListByObject(
+            queryObj, projectionDoc, null, null, ExperimentRun.class);
 
-    if (!documentList.isEmpty()) {
-      Document document = documentList.get(0);
-      ExperimentRun experimentRun = convertExperimentRunFromDocument(document);
+    if (!experimentRuns.isEmpty()) {
+      ExperimentRun experimentRun = experimentRuns.get(0);
       return experimentRun.getTagsList();
     } else {
       String errorMessage = "ExperimentRun tags not found in database";
@@ -217,17 +317,19 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     Document updatedExperimentRun = new Document();
     if (deleteAll) {
       updatedExperimentRun.append(ModelDBConstants.TAGS, 1);
+      queryExperimentRun.append(ModelDBConstants.TAGS, new Document("$exists", true));
       updateQueryDoc = new Document("$unset", updatedExperimentRun);
     } else {
       updatedExperimentRun.append(ModelDBConstants.TAGS, experimentRunTagList);
+      queryExperimentRun.append(ModelDBConstants.TAGS, new Document("$in", experimentRunTagList));
       updateQueryDoc = new Document("$pullAll", updatedExperimentRun);
     }
 
-    long updatedCount = documentService.updateOne(queryExperimentRun, updateQueryDoc);
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-      return convertExperimentRunFromDocument(document);
+    ExperimentRun savedExperimentRun =
+        documentService.findOneAndUpdate(
+            queryExperimentRun, updateQueryDoc, null, ExperimentRun.class);
+    if (savedExperimentRun != null) {
+      return savedExperimentRun;
     } else {
       String errorMessage =
           "The tags field of ExperimentRun is already deleted Or tags not found in the ExperimentRun";
@@ -245,22 +347,17 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     queryExperimentRun.append(ModelDBConstants.ID, experimentRunId);
 
     Document updatedExperimentRunDoc = new Document();
-    List<Document> attributeDocList = new ArrayList<>();
-    for (KeyValue attribute : attributesList) {
-      String json = ModelDBUtils.getStringFromProtoObject(attribute);
-      Document documentAttributes = Document.parse(json);
-      attributeDocList.add(documentAttributes);
-    }
     updatedExperimentRunDoc.append(
-        ModelDBConstants.ATTRIBUTES, new Document("$each", attributeDocList));
-
-    long updatedCount =
-        documentService.updateOne(
-            queryExperimentRun, new Document("$push", updatedExperimentRunDoc));
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-      return convertExperimentRunFromDocument(document);
+        ModelDBConstants.ATTRIBUTES, new Document("$each", attributesList));
+
+    ExperimentRun savedExperimentRun =
+        documentService.findOneAndUpdate(
+            queryExperimentRun,
+            new Document("$push", updatedExperimentRunDoc),
+            null,
+            ExperimentRun.class);
+    if (savedExperimentRun != null) {
+      return savedExperimentRun;
     } else {
       String errorMessage = "Added attributes is already present in ExperimentRun";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -281,19 +378,22 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     Document updatedExperimentRun = new Document();
     if (deleteAll) {
       updatedExperimentRun.append(ModelDBConstants.ATTRIBUTES, 1);
+      queryDoc.append(ModelDBConstants.ATTRIBUTES, new Document("$exists", true));
       updateQueryDoc = new Document("$unset", updatedExperimentRun);
     } else {
       updatedExperimentRun.append(
           ModelDBConstants.ATTRIBUTES,
           new Document(ModelDBConstants.KEY, new Document("$in", attributeKeyList)));
+      queryDoc.append(
+          ModelDBConstants.ATTRIBUTES + "." + ModelDBConstants.KEY,
+          new Document("$in", attributeKeyList));
       updateQueryDoc = new Document("$pull", updatedExperimentRun);
     }
 
-    long updatedCount = documentService.updateOne(queryDoc, updateQueryDoc);
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-      return convertExperimentRunFromDocument(document);
+    ExperimentRun savedExperimentRun =
+        documentService.findOneAndUpdate(queryDoc, updateQueryDoc, null, ExperimentRun.class);
+    if (savedExperimentRun != null) {
+      return savedExperimentRun;
     } else {
       String errorMessage =
           "The Attribute field of ExperimentRun is already deleted Or tags not found in the ExperimentRun";
@@ -306,90 +406,126 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
 
   public ExperimentRun logObservation(String experimentRunId, Observation observation)
       throws InvalidProtocolBufferException {
-    Document queryExperimentRun = new Document();
-    queryExperimentRun.append(ModelDBConstants.ID, experimentRunId);
-
-    Document updatedExperimentRun = new Document();
-    String json = ModelDBUtils.getStringFromProtoObject(observation);
-    Document documentAttributes = Document.parse(json);
-    updatedExperimentRun.append(ModelDBConstants.OBSERVATIONS, documentAttributes);
-
-    long updatedCount =
-        documentService.updateOne(queryExperimentRun, new Document("$push", updatedExperimentRun));
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-      return convertExperimentRunFromDocument(document);
-    } else {
-      String errorMessage = "Added observation value is already present in ExperimentRun";
-      LOGGER.log(Level.WARNING, errorMessage);
-      Status status =
-          Status.newBuilder().setCode(Code.ALREADY_EXISTS_VALUE).setMessage(errorMessage).build();
-      throw StatusProto.toStatusRuntimeException(status);
-    }
+    return logObservations(experimentRunId, Collections.singletonList(observation));
   }
 
+  /**
+   * Observations are read from their buckets as one indexed range, the ExperimentRun is only read
+   * when none was found, to tell a missing ExperimentRun from a key without observations.
+   */
   public List<Observation> getObservationByKey(String experimentRunId, String observationKey)
       throws InvalidProtocolBufferException {
+    List<Observation> observations =
+        observationBucketStore.getObservations(experimentRunId, observationKey);
+    if (observations.isEmpty()) {
+      getExistingExperimentRun(experimentRunId, new Document(ModelDBConstants.ID, 1));
+    }
+    return observations;
+  }
 
-    Document document = (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-    if (document != null) {
-      ExperimentRun experimentRun = convertExperimentRunFromDocument(document);
-      List<Observation> filteredObservation = new ArrayList<Observation>();
-      List<Observation> dataObservationList = experimentRun.getObservationsList();
-
-      dataObservationList.forEach(
-          observation -> {
-            if (observation.hasArtifact()
-                && observation.getArtifact().getKey().equals(observationKey)) {
-              filteredObservation.add(observation);
-            } else if (observation.hasAttribute()
-                && observation.getAttribute().getKey().equals(observationKey)) {
-              filteredObservation.add(observation);
+  /**
+   * Add the observations of given ExperimentRuns, read from their buckets in one query, as
+   * ExperimentRuns are returned with their observations whatever the database.
+   *
+   * @param List<ExperimentRun> experimentRuns --> ExperimentRuns read without observations
+   * @return List<ExperimentRun> experimentRuns with their observations, in the same order
+   */
+  private List<ExperimentRun> withObservations(List<ExperimentRun> experimentRuns) {
+    if (experimentRuns.isEmpty()) {
+      return experimentRuns;
+    }
+    List<String> experimentRunIds = new ArrayList<>(experimentRuns.size());
+    for (ExperimentRun experimentRun : experimentRuns) {
+      experimentRunIds.add(experimentRun.getId());
+    }
+    Map<String, List<Observation>> observationMap =
+        observationBucketStore.getObservations(experimentRunIds);
+    if (observationMap.isEmpty()) {
+      return experimentRuns;
+    }
+    List<ExperimentRun> joinedExperimentRuns = new ArrayList<>(experimentRuns.size());
+    for (ExperimentRun experimentRun : experimentRuns) {
+      List<Observation> observations = observationMap.get(experimentRun.getId());
+      joinedExperimentRuns.add(
+          observations == null
+              ? experimentRun
+              : experimentRun.toBuilder().addAllObservations(observations).build());
+    }
+    return joinedExperimentRuns;
+  }
+
+  /**
+   * Add the observations of the streamed ExperimentRuns, read from their buckets in one query per
+   * OBSERVATION_READ_BATCH_SIZE ExperimentRuns while the stream is consumed.
+   *
+   * @param Stream<ExperimentRun> experimentRunStream --> ExperimentRuns read without observations
+   * @return Stream<ExperimentRun> experimentRuns with their observations, closing given stream
+   */
+  private Stream<ExperimentRun> withObservations(Stream<ExperimentRun> experimentRunStream) {
+    Iterator<ExperimentRun> experimentRunIterator = experimentRunStream.iterator();
+    Iterator<List<ExperimentRun>> batchIterator =
+        new Iterator<List<ExperimentRun>>() {
+          @Override
+          public boolean hasNext() {
+            return experimentRunIterator.hasNext();
+          }
+
+          @Override
+          public List<ExperimentRun> next() {
+            List<ExperimentRun> batch = new ArrayList<>(OBSERVATION_READ_BATCH_SIZE);
+            while (experimentRunIterator.hasNext() && batch.size() < OBSERVATION_READ_BATCH_SIZE) {
+              batch.add(experimentRunIterator.next());
             }
-          });
+            return withObservations(batch);
+          }
+        };
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(batchIterator, Spliterator.ORDERED), false)
+        .flatMap(List::stream)
+        .onClose(experimentRunStream::close);
+  }
 
-      return filteredObservation;
-    } else {
+  /**
+   * Read an ExperimentRun, failing with NOT_FOUND if there is no ExperimentRun of given id.
+   *
+   * @param String experimentRunId
+   * @param Document projectionDoc --> fields to read, null reads the whole ExperimentRun
+   * @return ExperimentRun experimentRun
+   */
+  private ExperimentRun getExistingExperimentRun(String experimentRunId, Document projectionDoc) {
+    List<ExperimentRun> experimentRuns =
+        documentService.findListByObject(
+            new Document(ModelDBConstants.ID, experimentRunId),
+            projectionDoc,
+            null,
+            1,
+            ExperimentRun.class);
+    if (experimentRuns.isEmpty()) {
       String errorMessage = "ExperimentRun not found for given ID : " + experimentRunId;
       LOGGER.log(Level.WARNING, errorMessage);
       Status status =
           Status.newBuilder().setCode(Code.NOT_FOUND_VALUE).setMessage(errorMessage).build();
       throw StatusProto.toStatusRuntimeException(status);
     }
+    return experimentRuns.get(0);
   }
 
   public ExperimentRun logMetric(String experimentRunId, KeyValue metric)
       throws InvalidProtocolBufferException {
-    Document queryExperimentRun = new Document();
-    queryExperimentRun.append(ModelDBConstants.ID, experimentRunId);
-
-    Document updatedExperimentRun = new Document();
-    String json = ModelDBUtils.getStringFromProtoObject(metric);
-    Document documentAttributes = Document.parse(json);
-    updatedExperimentRun.append(ModelDBConstants.METRICS, documentAttributes);
-
-    long updatedCount =
-        documentService.updateOne(queryExperimentRun, new Document("$push", updatedExperimentRun));
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-      return convertExperimentRunFromDocument(document);
-    } else {
-      String errorMessage = "Added metrics value is already present in ExperimentRun";
-      LOGGER.log(Level.WARNING, errorMessage);
-      Status status =
-          Status.newBuilder().setCode(Code.ALREADY_EXISTS_VALUE).setMessage(errorMessage).build();
-      throw StatusProto.toStatusRuntimeException(status);
-    }
+    return pushUniqueKeyValues(
+        experimentRunId,
+        ModelDBConstants.METRICS,
+        Collections.singletonList(metric),
+        "Metric being logged already exists.",
+        Any.pack(LogMetric.Response.getDefaultInstance()));
   }
 
   public List<KeyValue> getExperimentRunMetrics(String experimentRunId)
       throws InvalidProtocolBufferException {
 
-    Document document = (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-    if (document != null) {
-      ExperimentRun experimentRun = convertExperimentRunFromDocument(document);
+    ExperimentRun experimentRun =
+        documentService.findByKey(ModelDBConstants.ID, experimentRunId, ExperimentRun.class);
+    if (experimentRun != null) {
       return experimentRun.getMetricsList();
     } else {
       String errorMessage = "Metrics not found in the ExperimentRun";
@@ -406,16 +542,16 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     queryExperimentRun.append(ModelDBConstants.ID, experimentRunId);
 
     Document updatedExperimentRun = new Document();
-    String json = ModelDBUtils.getStringFromProtoObject(dataset);
-    Document documentAttributes = Document.parse(json);
-    updatedExperimentRun.append(ModelDBConstants.DATASETS, documentAttributes);
-
-    long updatedCount =
-        documentService.updateOne(queryExperimentRun, new Document("$push", updatedExperimentRun));
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-      return convertExperimentRunFromDocument(document);
+    updatedExperimentRun.append(ModelDBConstants.DATASETS, dataset);
+
+    ExperimentRun savedExperimentRun =
+        documentService.findOneAndUpdate(
+            queryExperimentRun,
+            new Document("$push", updatedExperimentRun),
+            null,
+            ExperimentRun.class);
+    if (savedExperimentRun != null) {
+      return savedExperimentRun;
     } else {
       String errorMessage = "Added datasets value is already present in ExperimentRun";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -427,9 +563,9 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
 
   public List<Artifact> getExperimentRunDataSets(String experimentRunId)
       throws InvalidProtocolBufferException {
-    Document document = (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-    if (document != null) {
-      ExperimentRun experimentRun = convertExperimentRunFromDocument(document);
+    ExperimentRun experimentRun =
+        documentService.findByKey(ModelDBConstants.ID, experimentRunId, ExperimentRun.class);
+    if (experimentRun != null) {
       return experimentRun.getDatasetsList();
     } else {
       String errorMessage = "Datasets not found in the ExperimentRun";
@@ -446,16 +582,16 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     queryExperimentRun.append(ModelDBConstants.ID, experimentRunId);
 
     Document updatedExperimentRun = new Document();
-    String json = ModelDBUtils.getStringFromProtoObject(artifact);
-    Document documentAttributes = Document.parse(json);
-    updatedExperimentRun.append(ModelDBConstants.ARTIFACTS, documentAttributes);
-
-    long updatedCount =
-        documentService.updateOne(queryExperimentRun, new Document("$push", updatedExperimentRun));
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-      return convertExperimentRunFromDocument(document);
+    updatedExperimentRun.append(ModelDBConstants.ARTIFACTS, artifact);
+
+    ExperimentRun savedExperimentRun =
+        documentService.findOneAndUpdate(
+            queryExperimentRun,
+            new Document("$push", updatedExperimentRun),
+            null,
+            ExperimentRun.class);
+    if (savedExperimentRun != null) {
+      return savedExperimentRun;
     } else {
       String errorMessage = "Added artifacts value is already present in ExperimentRun";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -467,9 +603,9 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
 
   public List<Artifact> getExperimentRunArtifacts(String experimentRunId)
       throws InvalidProtocolBufferException {
-    Document document = (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-    if (document != null) {
-      ExperimentRun experimentRun = convertExperimentRunFromDocument(document);
+    ExperimentRun experimentRun =
+        documentService.findByKey(ModelDBConstants.ID, experimentRunId, ExperimentRun.class);
+    if (experimentRun != null) {
       return experimentRun.getArtifactsList();
     } else {
       String errorMessage = "Artifacts not found in the ExperimentRun";
@@ -482,34 +618,19 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
 
   public ExperimentRun logHyperparameter(String experimentRunId, KeyValue hyperparameter)
       throws InvalidProtocolBufferException {
-    Document queryExperimentRun = new Document();
-    queryExperimentRun.append(ModelDBConstants.ID, experimentRunId);
-
-    Document updatedExperimentRun = new Document();
-    String json = ModelDBUtils.getStringFromProtoObject(hyperparameter);
-    Document documentAttributes = Document.parse(json);
-    updatedExperimentRun.append(ModelDBConstants.HYPERPARAMETERS, documentAttributes);
-
-    long updatedCount =
-        documentService.updateOne(queryExperimentRun, new Document("$push", updatedExperimentRun));
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-      return convertExperimentRunFromDocument(document);
-    } else {
-      String errorMessage = "Added hyperparameters value is already present in ExperimentRun";
-      LOGGER.log(Level.WARNING, errorMessage);
-      Status status =
-          Status.newBuilder().setCode(Code.ALREADY_EXISTS_VALUE).setMessage(errorMessage).build();
-      throw StatusProto.toStatusRuntimeException(status);
-    }
+    return pushUniqueKeyValues(
+        experimentRunId,
+        ModelDBConstants.HYPERPARAMETERS,
+        Collections.singletonList(hyperparameter),
+        "Hyperparameter being logged already exists.",
+        Any.pack(LogHyperparameter.Response.getDefaultInstance()));
   }
 
   public List<KeyValue> getExperimentRunHyperparameters(String experimentRunId)
       throws InvalidProtocolBufferException {
-    Document document = (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-    if (document != null) {
-      ExperimentRun experimentRun = convertExperimentRunFromDocument(document);
+    ExperimentRun experimentRun =
+        documentService.findByKey(ModelDBConstants.ID, experimentRunId, ExperimentRun.class);
+    if (experimentRun != null) {
       return experimentRun.getHyperparametersList();
     } else {
       String errorMessage = "Hyperparameters not found in the ExperimentRun";
@@ -526,16 +647,16 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     queryExperimentRun.append(ModelDBConstants.ID, experimentRunId);
 
     Document updatedExperimentRun = new Document();
-    String json = ModelDBUtils.getStringFromProtoObject(attribute);
-    Document documentAttributes = Document.parse(json);
-    updatedExperimentRun.append(ModelDBConstants.ATTRIBUTES, documentAttributes);
-
-    long updatedCount =
-        documentService.updateOne(queryExperimentRun, new Document("$push", updatedExperimentRun));
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-      return convertExperimentRunFromDocument(document);
+    updatedExperimentRun.append(ModelDBConstants.ATTRIBUTES, attribute);
+
+    ExperimentRun savedExperimentRun =
+        documentService.findOneAndUpdate(
+            queryExperimentRun,
+            new Document("$push", updatedExperimentRun),
+            null,
+            ExperimentRun.class);
+    if (savedExperimentRun != null) {
+      return savedExperimentRun;
     } else {
       String errorMessage = "Added attributes value is already present in ExperimentRun";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -545,6 +666,10 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     }
   }
 
+  /**
+   * Only the requested attributes are read: without getAll the attributes are filtered by key with
+   * $filter in the database, so the other ones are neither transferred nor decoded.
+   */
   public List<KeyValue> getExperimentRunAttributes(
       String experimentRunId, List<String> attributeKeyList, Boolean getAll)
       throws InvalidProtocolBufferException {
@@ -552,29 +677,36 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     Document queryDoc = new Document();
     queryDoc.append(ModelDBConstants.ID, experimentRunId);
 
-    Document projectionDoc = new Document();
-    projectionDoc.append(ModelDBConstants.ATTRIBUTES, 1);
-
-    List<Document> documentList =
-        (List<Document>) documentService.findListByObject(queryDoc, projectionDoc, null, null);
-
-    if (!documentList.isEmpty()) {
-      Document document = documentList.get(0);
-      ExperimentRun experimentRun = convertExperimentRunFromDocument(document);
-      if (!getAll) {
-        List<KeyValue> attributes = new ArrayList<>();
-        experimentRun
-            .getAttributesList()
-            .forEach(
-                attribute -> {
-                  if (attributeKeyList.contains(attribute.getKey())) {
-                    attributes.add(attribute);
-                  }
-                });
-        return attributes;
-      } else {
-        return experimentRun.getAttributesList();
-      }
+    List<ExperimentRun> experimentRuns;
+    if (getAll) {
+      Document projectionDoc = new Document();
+      projectionDoc.append(ModelDBConstants.ATTRIBUTES, 1);
+      experimentRuns =
+          documentService.findListByObject(
+              queryDoc, projectionDoc, null, null, ExperimentRun.class);
+    } else {
+      // $literal keeps keys starting with $ from being read as field paths
+      Document attributeKeys =
+          new Document("$literal", new ArrayList<>(new HashSet<>(attributeKeyList)));
+      Document filterDoc =
+          new Document("input", "$" + ModelDBConstants.ATTRIBUTES)
+              .append("as", "attribute")
+              .append(
+                  "cond",
+                  new Document(
+                      "$in", Arrays.asList("$$attribute." + ModelDBConstants.KEY, attributeKeys)));
+      List<Document> aggregateDocs =
+          Arrays.asList(
+              new Document("$match", queryDoc),
+              new Document(
+                  "$project",
+                  new Document(ModelDBConstants.ATTRIBUTES, new Document("$filter", filterDoc))));
+      experimentRuns =
+          documentService.findListByAggregateObject(aggregateDocs, ExperimentRun.class);
+    }
+
+    if (!experimentRuns.isEmpty()) {
+      return experimentRuns.get(0).getAttributesList();
     } else {
       String errorMessage = "Attributes not found in the ExperimentRun";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -587,7 +719,45 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
   @Override
   public List<ExperimentRun> findExperimentRuns(FindExperimentRuns queryParameters)
       throws InvalidProtocolBufferException {
+    List<ExperimentRun> experimentRuns =
+        documentService.findListByObject(
+            getFindExperimentRunsQuery(queryParameters),
+            getFindExperimentRunsProjection(queryParameters),
+            null,
+            null,
+            ExperimentRun.class);
+    return queryParameters.getIdsOnly() ? experimentRuns : withObservations(experimentRuns);
+  }
+
+  @Override
+  public Stream<ExperimentRun> streamExperimentRuns(FindExperimentRuns queryParameters)
+      throws InvalidProtocolBufferException {
+    Stream<ExperimentRun> experimentRunStream =
+        documentService.streamListByObject(
+            getFindExperimentRunsQuery(queryParameters),
+            getFindExperimentRunsProjection(queryParameters),
+            null,
+            ExperimentRun.class);
+    return queryParameters.getIdsOnly()
+        ? experimentRunStream
+        : withObservations(experimentRunStream);
+  }
+
+  private Document getFindExperimentRunsProjection(FindExperimentRuns queryParameters) {
+    Document projectionDoc = new Document();
+    if (queryParameters.getIdsOnly()) {
+      projectionDoc.append(ModelDBConstants.ID, 1);
+    }
+    return projectionDoc;
+  }
 
+  /**
+   * Build MongoDB query of FindExperimentRuns request from its ids and predicates.
+   *
+   * @param FindExperimentRuns queryParameters
+   * @return Document query
+   */
+  private Document getFindExperimentRunsQuery(FindExperimentRuns queryParameters) {
     Document queryObj = new Document();
 
     if (!queryParameters.getProjectId().isEmpty()) {
@@ -644,6 +814,8 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
         if (keyArr.length <= 1) {
           Document queryDoc = new Document(keyArr[keyArr.length - 1], operatorDocument);
           predicateDoc.add(queryDoc);
+        } else if (getFlattenedFieldPath(keyArr) != null) {
+          predicateDoc.add(new Document(getFlattenedFieldPath(keyArr), operatorDocument));
         } else {
           StringBuilder stringBuilder = new StringBuilder();
           for (int i = 0; i < keyArr.length - 1; i++) {
@@ -671,14 +843,7 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
       }
       queryObj.append("$and", predicateDoc);
     }
-
-    Document projectionDoc = new Document();
-    if (queryParameters.getIdsOnly()) {
-      projectionDoc.append(ModelDBConstants.ID, 1);
-    }
-    List<Document> documentList =
-        (List<Document>) documentService.findListByObject(queryObj, projectionDoc, null, null);
-    return getExperimentRunsFromDocuments(documentList);
+    return queryObj;
   }
 
   @Override
@@ -700,49 +865,30 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     String[] keyArr = sortBy.split("\\.");
     Document sortDoc = new Document();
 
+    String flattenedFieldPath = getFlattenedFieldPath(keyArr);
+    List<ExperimentRun> experimentRuns;
     if (keyArr.length <= 1) {
       sortDoc.append(keyArr[keyArr.length - 1], order);
-      List<Document> documentList =
-          (List<Document>) documentService.findListByObject(queryObj, projectionDoc, sortDoc, null);
-      return getExperimentRunsFromDocuments(documentList);
+      experimentRuns =
+          documentService.findListByObject(
+              queryObj, projectionDoc, sortDoc, null, ExperimentRun.class);
+    } else if (flattenedFieldPath != null) {
+      queryObj.append(flattenedFieldPath, new Document("$exists", true));
+      sortDoc.append(flattenedFieldPath, order).append(ModelDBConstants.ID, order);
+      experimentRuns =
+          documentService.findListByObject(
+              queryObj, projectionDoc, sortDoc, null, ExperimentRun.class);
     } else {
-      StringBuilder stringBuilder = new StringBuilder();
-      for (int i = 0; i < keyArr.length - 1; i++) {
-        stringBuilder.append(keyArr[i]);
+      // Without a limit every matching experimentRun is sorted, so only the ids are sorted and the
+      // documents are read afterwards
+      List<Document> aggregateDocs = getNestedKeySortPipeline(queryObj, keyArr, order, true, null);
+      experimentRuns =
+          documentService.findListByAggregateObject(aggregateDocs, ExperimentRun.class);
+      if (!queryParameters.getIdsOnly()) {
+        experimentRuns = getExperimentRunsInOrder(experimentRuns);
       }
-
-      List<Document> aggregateDocs = new ArrayList<>();
-      aggregateDocs.add(new Document("$unwind", "$" + keyArr[0]));
-
-      queryObj.append(
-          String.join(".", stringBuilder.toString(), ModelDBConstants.KEY),
-          keyArr[keyArr.length - 1]);
-      aggregateDocs.add(new Document("$match", queryObj));
-      aggregateDocs.add(
-          new Document(
-              "$sort",
-              new Document(
-                  String.join(".", stringBuilder.toString(), ModelDBConstants.VALUE), order)));
-      aggregateDocs.add(new Document("$project", new Document(ModelDBConstants.ID, 1)));
-
-      List<Document> documentList =
-          (List<Document>) documentService.findListByAggregateObject(aggregateDocs);
-      List<ExperimentRun> experimentRunList = getExperimentRunsFromDocuments(documentList);
-
-      if (queryParameters.getIdsOnly()) {
-        return experimentRunList;
-      }
-
-      List<Document> sortedExperimentRunDocList = new LinkedList<>();
-      experimentRunList.forEach(
-          experimentRun -> {
-            Document experimentRunDocument =
-                (Document) documentService.findByKey(ModelDBConstants.ID, experimentRun.getId());
-            sortedExperimentRunDocList.add(experimentRunDocument);
-          });
-
-      return getExperimentRunsFromDocuments(sortedExperimentRunDocList);
     }
+    return queryParameters.getIdsOnly() ? experimentRuns : withObservations(experimentRuns);
   }
 
   @Override
@@ -769,49 +915,126 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     String[] keyArr = sortBy.split("\\.");
     Document sortDoc = new Document();
 
+    String flattenedFieldPath = getFlattenedFieldPath(keyArr);
+    List<ExperimentRun> experimentRuns;
     if (keyArr.length <= 1) {
       sortDoc.append(keyArr[keyArr.length - 1], order);
-      List<Document> documentList =
-          (List<Document>)
-              documentService.findListByObject(queryObj, null, sortDoc, queryParameters.getTopK());
-      return getExperimentRunsFromDocuments(documentList);
+      experimentRuns =
+          documentService.findListByObject(
+              queryObj, null, sortDoc, queryParameters.getTopK(), ExperimentRun.class);
+    } else if (flattenedFieldPath != null) {
+      queryObj.append(flattenedFieldPath, new Document("$exists", true));
+      sortDoc.append(flattenedFieldPath, order).append(ModelDBConstants.ID, order);
+      experimentRuns =
+          documentService.findListByObject(
+              queryObj, null, sortDoc, queryParameters.getTopK(), ExperimentRun.class);
     } else {
-      StringBuilder stringBuilder = new StringBuilder();
-      for (int i = 0; i < keyArr.length - 1; i++) {
-        stringBuilder.append(keyArr[i]);
-      }
-
-      List<Document> aggregateDocs = new ArrayList<>();
-      aggregateDocs.add(new Document("$unwind", "$" + keyArr[0]));
-
-      queryObj.append(
-          String.join(".", stringBuilder.toString(), ModelDBConstants.KEY),
-          keyArr[keyArr.length - 1]);
-      aggregateDocs.add(new Document("$match", queryObj));
-      aggregateDocs.add(
-          new Document(
-              "$sort",
-              new Document(
-                  String.join(".", stringBuilder.toString(), ModelDBConstants.VALUE), order)));
-      aggregateDocs.add(new Document("$project", new Document(ModelDBConstants.ID, 1)));
-
-      List<Document> documentList =
-          (List<Document>) documentService.findListByAggregateObject(aggregateDocs);
-      List<ExperimentRun> experimentRunList = getExperimentRunsFromDocuments(documentList);
+      List<Document> aggregateDocs =
+          getNestedKeySortPipeline(queryObj, keyArr, order, false, queryParameters.getTopK());
+      experimentRuns =
+          documentService.findListByAggregateObject(aggregateDocs, ExperimentRun.class);
+    }
+    return withObservations(experimentRuns);
+  }
 
-      List<Document> sortedExperimentRunDocList = new LinkedList<>();
-      for (ExperimentRun experimentRun : experimentRunList) {
-        Document experimentRunDocument =
-            (Document) documentService.findByKey(ModelDBConstants.ID, experimentRun.getId());
-        sortedExperimentRunDocList.add(experimentRunDocument);
-      }
-      if (sortedExperimentRunDocList.size() > queryParameters.getTopK()) {
-        sortedExperimentRunDocList =
-            sortedExperimentRunDocList.subList(0, queryParameters.getTopK());
+  /**
+   * Read the experimentRuns of given ids in one query, in the order of the given list. An
+   * experimentRun deleted since its id was read is left out.
+   *
+   * @param List<ExperimentRun> sortedIds --> experimentRuns having only their id
+   * @return List<ExperimentRun> experimentRuns
+   */
+  private List<ExperimentRun> getExperimentRunsInOrder(List<ExperimentRun> sortedIds) {
+    if (sortedIds.isEmpty()) {
+      return sortedIds;
+    }
+    List<String> experimentRunIds = new ArrayList<>(sortedIds.size());
+    for (ExperimentRun experimentRun : sortedIds) {
+      experimentRunIds.add(experimentRun.getId());
+    }
+    Map<String, ExperimentRun> experimentRunMap = new HashMap<>();
+    for (ExperimentRun experimentRun :
+        documentService.findListByObject(
+            new Document(ModelDBConstants.ID, new Document("$in", experimentRunIds)),
+            null,
+            null,
+            null,
+            ExperimentRun.class)) {
+      experimentRunMap.put(experimentRun.getId(), experimentRun);
+    }
+    List<ExperimentRun> experimentRuns = new ArrayList<>(experimentRunMap.size());
+    for (String experimentRunId : experimentRunIds) {
+      ExperimentRun experimentRun = experimentRunMap.get(experimentRunId);
+      if (experimentRun != null) {
+        experimentRuns.add(experimentRun);
       }
+    }
+    return experimentRuns;
+  }
 
-      return getExperimentRunsFromDocuments(sortedExperimentRunDocList);
+  /**
+   * Build one aggregation pipeline sorting experimentRuns on the value of a nested key like
+   * metrics.accuracy. The value of the key is copied into a temporary field, so the documents are
+   * sorted, limited and returned as a whole without a second read per experimentRun. With idsOnly
+   * the documents are narrowed to their id and sort value before the $sort stage, whose memory is
+   * limited by the server.
+   *
+   * @param Document queryObj --> filter of the experimentRuns
+   * @param String[] keyArr --> sort key split on '.', e.g. [metrics, accuracy]
+   * @param Integer order --> 1 for ascending, -1 for descending
+   * @param Boolean idsOnly --> project only the experimentRun id
+   * @param Integer limit --> maximum number of experimentRuns returned, null for no limit
+   * @return List<Document> aggregation pipeline
+   */
+  private List<Document> getNestedKeySortPipeline(
+      Document queryObj, String[] keyArr, Integer order, Boolean idsOnly, Integer limit) {
+    String listFieldName = String.join(".", Arrays.copyOf(keyArr, keyArr.length - 1));
+    String keyName = keyArr[keyArr.length - 1];
+
+    queryObj.append(String.join(".", listFieldName, ModelDBConstants.KEY), keyName);
+
+    // First value of the list entries having given key
+    Document matchingEntries =
+        new Document(
+            "$filter",
+            new Document("input", "$" + listFieldName)
+                .append("as", "entry")
+                .append(
+                    "cond",
+                    new Document(
+                        "$eq", Arrays.asList("$$entry." + ModelDBConstants.KEY, keyName))));
+    Document sortValue =
+        new Document(
+            "$arrayElemAt",
+            Arrays.asList(
+                new Document(
+                    "$map",
+                    new Document("input", matchingEntries)
+                        .append("as", "entry")
+                        .append("in", "$$entry." + ModelDBConstants.VALUE)),
+                0));
+
+    List<Document> aggregateDocs = new ArrayList<>();
+    aggregateDocs.add(new Document("$match", queryObj));
+    if (idsOnly) {
+      Document narrowedFields =
+          new Document(ModelDBConstants.ID, 1).append(SORT_VALUE_FIELD, sortValue);
+      aggregateDocs.add(new Document("$project", narrowedFields));
+    } else {
+      aggregateDocs.add(new Document("$addFields", new Document(SORT_VALUE_FIELD, sortValue)));
+    }
+    aggregateDocs.add(
+        new Document(
+            "$sort", new Document(SORT_VALUE_FIELD, order).append(ModelDBConstants.ID, order)));
+    if (limit != null && limit > 0) {
+      aggregateDocs.add(new Document("$limit", limit));
     }
+    if (idsOnly) {
+      aggregateDocs.add(new Document("$project", new Document(ModelDBConstants.ID, 1)));
+    } else {
+      aggregateDocs.add(new Document("$project", new Document(SORT_VALUE_FIELD, 0)));
+    }
+    return aggregateDocs;
   }
 
   @Override
@@ -819,15 +1042,16 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
       throws InvalidProtocolBufferException {
     Document queryExperimentRun = new Document();
     queryExperimentRun.append(ModelDBConstants.ID, experimentRunId);
+    queryExperimentRun.append(ModelDBConstants.JOB_ID, new Document("$ne", jobId));
 
     Document updatedExperimentRun = new Document();
     updatedExperimentRun.append("$set", new Document(ModelDBConstants.JOB_ID, jobId));
 
-    long updatedCount = documentService.updateOne(queryExperimentRun, updatedExperimentRun);
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, experimentRunId);
-      return convertExperimentRunFromDocument(document);
+    ExperimentRun savedExperimentRun =
+        documentService.findOneAndUpdate(
+            queryExperimentRun, updatedExperimentRun, null, ExperimentRun.class);
+    if (savedExperimentRun != null) {
+      return savedExperimentRun;
     } else {
       String errorMessage = "Added jobId is already present in ExperimentRun";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -845,9 +1069,9 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
     Document projectionDoc = new Document();
     projectionDoc.append(ModelDBConstants.JOB_ID, 1);
 
-    List<Document> documentList =
-        (List<Document>) documentService.findListByObject(queryObj, projectionDoc, null, null);
-    List<ExperimentRun> experimentRuns = getExperimentRunsFromDocuments(documentList);
+    List<ExperimentRun> experimentRuns =
+        documentService.findListByObject(
+            queryObj, projectionDoc, null, null, ExperimentRun.class);
     ExperimentRun experimentRun = experimentRuns.get(0);
     if (experimentRun != null && !experimentRun.getJobId().isEmpty()) {
       return experimentRun.getJobId();
@@ -859,4 +1083,341 @@ public class ExperimentRunDAOMongoImpl implements ExperimentRunDAO {
       throw StatusProto.toStatusRuntimeException(status);
     }
   }
+
+  /**
+   * Push all given values in the list field of ExperimentRun using one $push with $each.
+   *
+   * @param String experimentRunId
+   * @param String fieldName --> list field of ExperimentRun like metrics, hyperparameters etc.
+   * @param List<?> values --> ProtocolBuffer entities to append
+   * @return ExperimentRun updated experimentRun
+   */
+  private ExperimentRun pushAllToExperimentRun(
+      String experimentRunId, String fieldName, List<?> values) {
+    Document queryExperimentRun = new Document();
+    queryExperimentRun.append(ModelDBConstants.ID, experimentRunId);
+
+    Document updatedExperimentRun = new Document();
+    updatedExperimentRun.append(fieldName, new Document("$each", values));
+
+    ExperimentRun savedExperimentRun =
+        documentService.findOneAndUpdate(
+            queryExperimentRun,
+            new Document("$push", updatedExperimentRun),
+            null,
+            ExperimentRun.class);
+    if (savedExperimentRun != null) {
+      return savedExperimentRun;
+    } else {
+      // The filter is the id alone, so nothing matched because the experimentRun does not exist
+      getExistingExperimentRun(experimentRunId, new Document(ModelDBConstants.ID, 1));
+      String errorMessage = "Added " + fieldName + " value is already present in ExperimentRun";
+      LOGGER.log(Level.WARNING, errorMessage);
+      Status status =
+          Status.newBuilder().setCode(Code.ALREADY_EXISTS_VALUE).setMessage(errorMessage).build();
+      throw StatusProto.toStatusRuntimeException(status);
+    }
+  }
+
+  /**
+   * Push given key values in the list field of ExperimentRun, only if none of their keys is already
+   * present. The uniqueness condition is part of the update filter, so the check and the write are
+   * one atomic operation and concurrent loggers of the same key can not both succeed.
+   *
+   * @param String experimentRunId
+   * @param String fieldName --> metrics or hyperparameters
+   * @param List<KeyValue> keyValues --> key values to append, their keys must be unique
+   * @param String errorMessage --> message of the ALREADY_EXISTS error
+   * @param Any responseDetail --> default response of the log request, detail of the error
+   * @return ExperimentRun updated experimentRun
+   */
+  private ExperimentRun pushUniqueKeyValues(
+      String experimentRunId,
+      String fieldName,
+      List<KeyValue> keyValues,
+      String errorMessage,
+      Any responseDetail) {
+    Set<String> keySet = new HashSet<>();
+    for (KeyValue keyValue : keyValues) {
+      if (!keySet.add(keyValue.getKey())) {
+        LOGGER.log(Level.WARNING, errorMessage);
+        Status status =
+            Status.newBuilder()
+                .setCode(Code.ALREADY_EXISTS_VALUE)
+                .setMessage(errorMessage)
+                .addDetails(responseDetail)
+                .build();
+        throw StatusProto.toStatusRuntimeException(status);
+      }
+    }
+
+    Document queryExperimentRun = new Document();
+    queryExperimentRun.append(ModelDBConstants.ID, experimentRunId);
+    queryExperimentRun.append(
+        fieldName + "." + ModelDBConstants.KEY, new Document("$nin", new ArrayList<>(keySet)));
+
+    Document updatedExperimentRun = new Document();
+    updatedExperimentRun.append(fieldName, new Document("$each", keyValues));
+
+    Document updateDoc = new Document("$push", updatedExperimentRun);
+    Document flattenedValues = getFlattenedValuesUpdate(fieldName, keyValues);
+    if (!flattenedValues.isEmpty()) {
+      updateDoc.append("$set", flattenedValues);
+    }
+
+    ExperimentRun savedExperimentRun =
+        documentService.findOneAndUpdate(queryExperimentRun, updateDoc, null, ExperimentRun.class);
+    if (savedExperimentRun != null) {
+      return savedExperimentRun;
+    }
+
+    // Nothing matched, read the id only to tell a missing experimentRun from a duplicate key
+    List<ExperimentRun> experimentRuns =
+        documentService.findListByObject(
+            new Document(ModelDBConstants.ID, experimentRunId),
+            new Document(ModelDBConstants.ID, 1),
+            null,
+            1,
+            ExperimentRun.class);
+    Status status;
+    if (experimentRuns.isEmpty()) {
+      String notFoundMessage = "ExperimentRun not found for given ID";
+      LOGGER.log(Level.WARNING, notFoundMessage);
+      status =
+          Status.newBuilder().setCode(Code.NOT_FOUND_VALUE).setMessage(notFoundMessage).build();
+    } else {
+      LOGGER.log(Level.WARNING, errorMessage);
+      status =
+          Status.newBuilder()
+              .setCode(Code.ALREADY_EXISTS_VALUE)
+              .setMessage(errorMessage)
+              .addDetails(responseDetail)
+              .build();
+    }
+    throw StatusProto.toStatusRuntimeException(status);
+  }
+
+  /**
+   * Observations are written to their buckets, the returned ExperimentRun is read without them
+   * like the one returned by the other write methods.
+   */
+  @Override
+  public ExperimentRun logObservations(String experimentRunId, List<Observation> observations)
+      throws InvalidProtocolBufferException {
+    getExistingExperimentRun(experimentRunId, new Document(ModelDBConstants.ID, 1));
+    observationBucketStore.insertObservations(experimentRunId, observations);
+    // Update the ExperimentRun document after the buckets, so that the caches of the other nodes
+    // are invalidated once the observations can be read. The marker is not a field of the
+    // ExperimentRun message, so date_updated keeps the value and type written by the codec
+    ExperimentRun experimentRun =
+        documentService.findOneAndUpdate(
+            new Document(ModelDBConstants.ID, experimentRunId),
+            new Document(
+                "$set",
+                new Document(ModelDBConstants.OBSERVATIONS_UPDATED, System.currentTimeMillis())),
+            null,
+            ExperimentRun.class);
+    if (experimentRun == null) {
+      String errorMessage = "ExperimentRun not found for given ID : " + experimentRunId;
+      LOGGER.log(Level.WARNING, errorMessage);
+      Status status =
+          Status.newBuilder().setCode(Code.NOT_FOUND_VALUE).setMessage(errorMessage).build();
+      throw StatusProto.toStatusRuntimeException(status);
+    }
+    return experimentRun;
+  }
+
+  @Override
+  public ExperimentRun logMetrics(String experimentRunId, List<KeyValue> metrics)
+      throws InvalidProtocolBufferException {
+    return pushUniqueKeyValues(
+        experimentRunId,
+        ModelDBConstants.METRICS,
+        metrics,
+        "Metric being logged already exists.",
+        Any.pack(LogMetric.Response.getDefaultInstance()));
+  }
+
+  @Override
+  public ExperimentRun logDataSets(String experimentRunId, List<Artifact> datasets)
+      throws InvalidProtocolBufferException {
+    return pushAllToExperimentRun(experimentRunId, ModelDBConstants.DATASETS, datasets);
+  }
+
+  @Override
+  public ExperimentRun logHyperparameters(String experimentRunId, List<KeyValue> hyperparameters)
+      throws InvalidProtocolBufferException {
+    return pushUniqueKeyValues(
+        experimentRunId,
+        ModelDBConstants.HYPERPARAMETERS,
+        hyperparameters,
+        "Hyperparameter being logged already exists.",
+        Any.pack(LogHyperparameter.Response.getDefaultInstance()));
+  }
+
+  @Override
+  public ExperimentRun logAttributes(String experimentRunId, List<KeyValue> attributes)
+      throws InvalidProtocolBufferException {
+    return pushAllToExperimentRun(experimentRunId, ModelDBConstants.ATTRIBUTES, attributes);
+  }
+
+  /**
+   * Return the map field kept alongside given list field, e.g. metric_values for metrics. Each map
+   * holds key --> value of the list entries, so a predicate or a sort on one key is a plain field
+   * path like metric_values.accuracy which an index can serve.
+   *
+   * @param String listFieldName
+   * @return String map field name, null if the list field is not flattened
+   */
+  private static String getFlattenedFieldName(String listFieldName) {
+    if (listFieldName.equals(ModelDBConstants.METRICS)) {
+      return ModelDBConstants.METRIC_VALUES;
+    } else if (listFieldName.equals(ModelDBConstants.HYPERPARAMETERS)) {
+      return ModelDBConstants.HYPERPARAMETER_VALUES;
+    }
+    return null;
+  }
+
+  /** Keys containing '.' or starting with '$' can not be used as field names of the maps. */
+  private static Boolean isFlattenableKey(String key) {
+    return !key.isEmpty() && !key.contains(".") && !key.startsWith("$");
+  }
+
+  /**
+   * Return the flattened path of a nested key like metrics.accuracy --> metric_values.accuracy.
+   *
+   * @param String[] keyArr --> key split on '.'
+   * @return String flattened path, null if the key has to be resolved on the list field
+   */
+  private static String getFlattenedFieldPath(String[] keyArr) {
+    if (keyArr.length != 2 || !isFlattenableKey(keyArr[1])) {
+      return null;
+    }
+    String flattenedFieldName = getFlattenedFieldName(keyArr[0]);
+    return flattenedFieldName == null ? null : flattenedFieldName + "." + keyArr[1];
+  }
+
+  /**
+   * Build the $set document keeping the map field in sync with the key values pushed to the list.
+   *
+   * @param String listFieldName --> metrics or hyperparameters
+   * @param List<KeyValue> keyValues
+   * @return Document like {"metric_values.accuracy": 0.9}, empty if nothing has to be set
+   */
+  private static Document getFlattenedValuesUpdate(String listFieldName, List<KeyValue> keyValues) {
+    Document flattenedValues = new Document();
+    String flattenedFieldName = getFlattenedFieldName(listFieldName);
+    if (flattenedFieldName == null) {
+      return flattenedValues;
+    }
+    for (KeyValue keyValue : keyValues) {
+      if (isFlattenableKey(keyValue.getKey())) {
+        flattenedValues.append(flattenedFieldName + "." + keyValue.getKey(), keyValue.getValue());
+      }
+    }
+    return flattenedValues;
+  }
+
+  private static Document getKeyValueMap(List<KeyValue> keyValues) {
+    Document keyValueMap = new Document();
+    for (KeyValue keyValue : keyValues) {
+      if (isFlattenableKey(keyValue.getKey())) {
+        keyValueMap.append(keyValue.getKey(), keyValue.getValue());
+      }
+    }
+    return keyValueMap;
+  }
+
+  /**
+   * Build both map fields of given experimentRun from its metrics and hyperparameters lists.
+   *
+   * @param ExperimentRun experimentRun
+   * @return Document like {metric_values: {..}, hyperparameter_values: {..}}
+   */
+  private static Document getKeyValueMaps(ExperimentRun experimentRun) {
+    return new Document(
+            ModelDBConstants.METRIC_VALUES, getKeyValueMap(experimentRun.getMetricsList()))
+        .append(
+            ModelDBConstants.HYPERPARAMETER_VALUES,
+            getKeyValueMap(experimentRun.getHyperparametersList()));
+  }
+
+  /**
+   * Build the map fields of the experimentRuns stored before the maps were introduced. Only runs
+   * having metrics or hyperparameters but no map yet are read, so once every run is migrated the
+   * backfill is a single empty query.
+   */
+  private void backfillKeyValueMaps() {
+    Document queryObj =
+        new Document(
+            "$or",
+            Arrays.asList(
+                new Document(ModelDBConstants.METRICS, new Document("$exists", true))
+                    .append(ModelDBConstants.METRIC_VALUES, new Document("$exists", false)),
+                new Document(ModelDBConstants.HYPERPARAMETERS, new Document("$exists", true))
+                    .append(
+                        ModelDBConstants.HYPERPARAMETER_VALUES, new Document("$exists", false))));
+    Document projectionDoc =
+        new Document(ModelDBConstants.ID, 1)
+            .append(ModelDBConstants.METRICS, 1)
+            .append(ModelDBConstants.HYPERPARAMETERS, 1);
+
+    long backfilledCount = 0;
+    List<UpdateOneModel<Document>> updateModels = new ArrayList<>();
+    try (Stream<ExperimentRun> experimentRunStream =
+        documentService.streamListByObject(queryObj, projectionDoc, null, ExperimentRun.class)) {
+      Iterator<ExperimentRun> experimentRunIterator = experimentRunStream.iterator();
+      while (experimentRunIterator.hasNext()) {
+        ExperimentRun experimentRun = experimentRunIterator.next();
+        updateModels.add(
+            new UpdateOneModel<>(
+                new Document(ModelDBConstants.ID, experimentRun.getId()),
+                new Document("$set", getKeyValueMaps(experimentRun))));
+        if (updateModels.size() == BACKFILL_BATCH_SIZE) {
+          backfilledCount += documentService.bulkWrite(updateModels);
+          updateModels.clear();
+        }
+      }
+    }
+    if (!updateModels.isEmpty()) {
+      backfilledCount += documentService.bulkWrite(updateModels);
+    }
+    if (backfilledCount > 0) {
+      LOGGER.info("Backfilled metric and hyperparameter maps of " + backfilledCount + " runs");
+    }
+  }
+
+  /**
+   * Move the observations embedded in experimentRuns stored before the observation buckets to
+   * their buckets. Only runs still having embedded observations are read, so once every run is
+   * migrated this is a single empty query. The buckets of a run are written before its embedded
+   * observations are removed, and writing them again replaces them, so a migration interrupted
+   * in between neither loses nor duplicates observations when it is run again.
+   */
+  private void moveEmbeddedObservations() {
+    Document queryObj =
+        new Document(ModelDBConstants.OBSERVATIONS + ".0", new Document("$exists", true));
+    Document projectionDoc =
+        new Document(ModelDBConstants.ID, 1).append(ModelDBConstants.OBSERVATIONS, 1);
+
+    long movedCount = 0;
+    try (Stream<ExperimentRun> experimentRunStream =
+        documentService.streamListByObject(queryObj, projectionDoc, null, ExperimentRun.class)) {
+      Iterator<ExperimentRun> experimentRunIterator = experimentRunStream.iterator();
+      while (experimentRunIterator.hasNext()) {
+        ExperimentRun experimentRun = experimentRunIterator.next();
+        observationBucketStore.replaceEmbeddedObservations(
+            experimentRun.getId(), experimentRun.getObservationsList());
+        movedCount +=
+            documentService.bulkWrite(
+                Collections.singletonList(
+                    new UpdateOneModel<Document>(
+                        new Document(ModelDBConstants.ID, experimentRun.getId()),
+                        new Document("$unset", new Document(ModelDBConstants.OBSERVATIONS, "")))));
+      }
+    }
+    if (movedCount > 0) {
+      LOGGER.info("Moved embedded observations of " + movedCount + " runs to observation buckets");
+    }
+  }
 }
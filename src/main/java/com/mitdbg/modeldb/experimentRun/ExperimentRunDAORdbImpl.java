@@ -1,40 +1,67 @@
 package com.mitdbg.modeldb.experimentRun;
 
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.persistence.PersistenceException;
 import javax.transaction.Transactional;
+import org.hibernate.LockMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
+import org.hibernate.exception.ConstraintViolationException;
 import org.hibernate.query.Query;
+import com.google.protobuf.Any;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.rpc.Code;
 import com.google.rpc.Status;
 import com.mitdbg.modeldb.App;
 import com.mitdbg.modeldb.Artifact;
+import com.mitdbg.modeldb.ContinuationToken;
 import com.mitdbg.modeldb.ExperimentRun;
 import com.mitdbg.modeldb.FindExperimentRuns;
 import com.mitdbg.modeldb.KeyValue;
+import com.mitdbg.modeldb.LogHyperparameter;
+import com.mitdbg.modeldb.LogMetric;
 import com.mitdbg.modeldb.ModelDBConstants;
 import com.mitdbg.modeldb.ModelDBHibernateUtil;
 import com.mitdbg.modeldb.Observation;
 import com.mitdbg.modeldb.RdbmsUtils;
 import com.mitdbg.modeldb.SortExperimentRuns;
 import com.mitdbg.modeldb.TopExperimentRunsSelector;
+import com.mitdbg.modeldb.cache.ExperimentRunCreationCache;
 import com.mitdbg.modeldb.entities.ExperimentEntity;
 import com.mitdbg.modeldb.entities.ExperimentRunEntity;
 import com.mitdbg.modeldb.entities.KeyValueEntity;
 import com.mitdbg.modeldb.entities.ProjectEntity;
+import com.mitdbg.modeldb.monitoring.DatabaseMetrics;
+import com.mitdbg.modeldb.monitoring.SlowOperationLog;
+import io.grpc.StatusRuntimeException;
 import io.grpc.protobuf.StatusProto;
 
 public class ExperimentRunDAORdbImpl implements ExperimentRunDAO {
 
   private static final Logger LOGGER = Logger.getLogger(ExperimentRunDAORdbImpl.class.getName());
+  private static final int STREAM_FETCH_SIZE = 100;
   private String experimentRunEntity = null;
+  private ExperimentRunCreationCache creationCache = null;
 
   public ExperimentRunDAORdbImpl() {
     App app = App.getInstance();
     this.experimentRunEntity = app.getExperimentRunEntity();
+    this.creationCache = app.getExperimentRunCreationCache();
   }
 
   @Transactional
@@ -43,10 +70,18 @@ public class ExperimentRunDAORdbImpl implements ExperimentRunDAO {
       Transaction transaction = session.beginTransaction();
       StringBuilder stringQueryBuilder = new StringBuilder("From ExperimentRunEntity p where ");
       stringQueryBuilder.append("p." + ModelDBConstants.NAME + " = :experimentRunName ");
+      stringQueryBuilder.append("and p.projectEntity.id = :projectId ");
+      stringQueryBuilder.append("and p.experimentEntity.id = :experimentId");
 
       Query query = session.createQuery(stringQueryBuilder.toString());
       query.setParameter("experimentRunName", experimentRun.getName());
-      Boolean existStatus = (query.uniqueResult() != null);
+      query.setParameter("projectId", experimentRun.getProjectId());
+      query.setParameter("experimentId", experimentRun.getExperimentId());
+      query.setMaxResults(1);
+      Boolean existStatus =
+          (RdbmsUtils.uniqueResultWithSlowOperationLog(
+                  query, "ExperimentRunEntity", "checkIfEntityAlreadyExists")
+              != null);
       transaction.commit();
 
       // Throw error if it is an insert request and ExperimentRun with same name already exists
@@ -69,20 +104,81 @@ public class ExperimentRunDAORdbImpl implements ExperimentRunDAO {
     }
   }
 
+  /**
+   * Read the names of the ExperimentRuns of a Project and Experiment, for the name filter of the
+   * creation cache.
+   */
+  private List<String> getExperimentRunNames(String projectId, String experimentId) {
+    try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
+      Query<String> query =
+          session.createQuery(
+              "select p."
+                  + ModelDBConstants.NAME
+                  + " from ExperimentRunEntity p where p.projectEntity.id = :projectId"
+                  + " and p.experimentEntity.id = :experimentId",
+              String.class);
+      query.setParameter("projectId", projectId);
+      query.setParameter("experimentId", experimentId);
+      return RdbmsUtils.listWithSlowOperationLog(
+          query, "ExperimentRunEntity", "getExperimentRunNames");
+    }
+  }
+
   @Override
   @Transactional
   public ExperimentRun insertExperimentRun(ExperimentRun experimentRun)
       throws InvalidProtocolBufferException {
+    String projectId = experimentRun.getProjectId();
+    String experimentId = experimentRun.getExperimentId();
     try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
-      checkIfEntityAlreadyExists(experimentRun, true);
+      // A name the creation cache knows to be unused needs no lookup
+      if (creationCache == null
+          || !creationCache.reserveName(
+              projectId,
+              experimentId,
+              experimentRun.getName(),
+              () -> getExperimentRunNames(projectId, experimentId))) {
+        checkIfEntityAlreadyExists(experimentRun, true);
+        if (creationCache != null) {
+          creationCache.addName(projectId, experimentId, experimentRun.getName());
+        }
+      }
       Transaction transaction = session.beginTransaction();
-      ProjectEntity projectEntity = session.get(ProjectEntity.class, experimentRun.getProjectId());
-      ExperimentEntity experimentEntity =
-          session.get(ExperimentEntity.class, experimentRun.getExperimentId());
+      ProjectEntity projectEntity;
+      ExperimentEntity experimentEntity;
+      if (creationCache != null && creationCache.isParentValidated(projectId, experimentId)) {
+        // Proxies of parents known to exist, the insert only needs their ids
+        projectEntity = session.load(ProjectEntity.class, projectId);
+        experimentEntity = session.load(ExperimentEntity.class, experimentId);
+      } else {
+        projectEntity = session.get(ProjectEntity.class, projectId);
+        experimentEntity = session.get(ExperimentEntity.class, experimentId);
+        if (projectEntity == null || experimentEntity == null) {
+          transaction.rollback();
+          String errorMessage = "Project or Experiment of the ExperimentRun not found";
+          LOGGER.log(Level.WARNING, errorMessage);
+          Status status =
+              Status.newBuilder().setCode(Code.NOT_FOUND_VALUE).setMessage(errorMessage).build();
+          throw StatusProto.toStatusRuntimeException(status);
+        }
+        if (creationCache != null) {
+          creationCache.setParentValidated(projectId, experimentId);
+        }
+      }
       ExperimentRunEntity experimentRunObj =
           RdbmsUtils.convertFromExperimentRunToExperimentRunEntity(
               projectEntity, experimentEntity, experimentRun);
       session.saveOrUpdate(experimentRunObj);
+      try {
+        session.flush();
+      } catch (PersistenceException e) {
+        // Same name created meanwhile, e.g. by another node whose name the creation cache missed
+        if (e.getCause() instanceof ConstraintViolationException) {
+          transaction.rollback();
+          throw getAlreadyExistsException("ExperimentRun already exists in database");
+        }
+        throw e;
+      }
       transaction.commit();
       LOGGER.log(Level.INFO, "ExperimentRun created successfully");
       return experimentRun;
@@ -134,7 +230,17 @@ public class ExperimentRunDAORdbImpl implements ExperimentRunDAO {
         query.setMaxResults(pageLimit);
       }
       query.setParameter("entityValue", entityValue);
+      long startNanos = System.nanoTime();
       List<ExperimentRunEntity> experimentRUnEntities = query.list();
+      SlowOperationLog.getInstance()
+          .record(
+              DatabaseMetrics.HIBERNATE,
+              "ExperimentRunEntity",
+              "getExperimentRunsFromEntity",
+              stringQueryBuilder.toString(),
+              System.nanoTime() - startNanos,
+              experimentRUnEntities.size(),
+              null);
       transaction.commit();
       LOGGER.log(
           Level.INFO,
@@ -144,6 +250,165 @@ public class ExperimentRunDAORdbImpl implements ExperimentRunDAO {
     }
   }
 
+  @Override
+  public Stream<ExperimentRun> streamExperimentRunsFromEntity(
+      String entityKey, String entityValue, String order, String sortBy)
+      throws InvalidProtocolBufferException {
+    order = (order == null || order.isEmpty()) ? ModelDBConstants.ORDER_DESC : order;
+    sortBy = (sortBy == null || sortBy.isEmpty()) ? ModelDBConstants.DATE_CREATED : sortBy;
+    // The sort field is concatenated in the query, only the sortable fields are accepted
+    if (!ContinuationToken.EXPERIMENT_RUN_SORT_FIELDS.contains(sortBy)) {
+      String errorMessage = "ExperimentRuns can not be sorted on " + sortBy;
+      LOGGER.log(Level.WARNING, errorMessage);
+      Status status =
+          Status.newBuilder().setCode(Code.INVALID_ARGUMENT_VALUE).setMessage(errorMessage).build();
+      throw StatusProto.toStatusRuntimeException(status);
+    }
+    String direction =
+        order.equalsIgnoreCase(ModelDBConstants.ORDER_ASC)
+            ? ModelDBConstants.ORDER_ASC
+            : ModelDBConstants.ORDER_DESC;
+
+    // Session stays open until the stream is closed, rows are fetched while it is consumed
+    Session session = ModelDBHibernateUtil.getSessionFactory().openSession();
+    try {
+      Transaction transaction = session.beginTransaction();
+      Query query =
+          session.createQuery(
+              "FROM ExperimentRunEntity ee WHERE ee."
+                  + entityKey
+                  + " = :entityValue ORDER BY ee."
+                  + sortBy
+                  + " "
+                  + direction);
+      query.setParameter("entityValue", entityValue);
+      query.setFetchSize(STREAM_FETCH_SIZE);
+      // Time spent in the database, recorded in SlowOperationLog when the stream is closed
+      long[] resultNanos = new long[1];
+      long[] rowCount = new long[1];
+      long scrollStartNanos = System.nanoTime();
+      ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+      resultNanos[0] = System.nanoTime() - scrollStartNanos;
+
+      // Rows are converted a chunk at a time: while the entities of the chunk are all in the
+      // session, the batch fetch size loads each child collection for the whole chunk in one query
+      // instead of one query per row and collection
+      Iterator<ExperimentRun> experimentRunIterator =
+          new Iterator<ExperimentRun>() {
+            private Iterator<ExperimentRun> chunkIterator = Collections.emptyIterator();
+            private boolean lastChunk = false;
+
+            @Override
+            public boolean hasNext() {
+              if (!chunkIterator.hasNext() && !lastChunk) {
+                chunkIterator = readChunk().iterator();
+              }
+              return chunkIterator.hasNext();
+            }
+
+            @Override
+            public ExperimentRun next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              return chunkIterator.next();
+            }
+
+            private List<ExperimentRun> readChunk() {
+              List<ExperimentRunEntity> experimentRunEntities =
+                  new ArrayList<>(STREAM_FETCH_SIZE);
+              long startNanos = System.nanoTime();
+              while (experimentRunEntities.size() < STREAM_FETCH_SIZE) {
+                if (!results.next()) {
+                  lastChunk = true;
+                  break;
+                }
+                experimentRunEntities.add((ExperimentRunEntity) results.get(0));
+              }
+              rowCount[0] += experimentRunEntities.size();
+              try {
+                List<ExperimentRun> experimentRuns =
+                    RdbmsUtils.convertFromExperimentRunsToExperimentRunEntityList(
+                        experimentRunEntities);
+                // Reading the rows and the batch loads of their collections, not their consumer
+                resultNanos[0] += System.nanoTime() - startNanos;
+                return experimentRuns;
+              } catch (InvalidProtocolBufferException e) {
+                throw new UncheckedIOException(e);
+              } finally {
+                // Drop converted rows and their collections from the session, so memory stays
+                // bounded
+                session.clear();
+              }
+            }
+          };
+      return StreamSupport.stream(
+              Spliterators.spliteratorUnknownSize(experimentRunIterator, Spliterator.ORDERED),
+              false)
+          .onClose(
+              () -> {
+                results.close();
+                transaction.commit();
+                session.close();
+                SlowOperationLog.getInstance()
+                    .record(
+                        DatabaseMetrics.HIBERNATE,
+                        "ExperimentRunEntity",
+                        "streamExperimentRunsFromEntity",
+                        query.getQueryString(),
+                        resultNanos[0],
+                        rowCount[0],
+                        null);
+              });
+    } catch (RuntimeException e) {
+      session.close();
+      throw e;
+    }
+  }
+
+  @Override
+  @Transactional
+  public List<ExperimentRun> getExperimentRunsFromEntityAfter(
+      String entityKey,
+      String entityValue,
+      Integer pageLimit,
+      ContinuationToken continuationToken)
+      throws InvalidProtocolBufferException {
+    try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
+      Transaction transaction = session.beginTransaction();
+
+      StringBuilder stringQueryBuilder = new StringBuilder("FROM ExperimentRunEntity ee ");
+      stringQueryBuilder.append(" WHERE ee." + entityKey + " = :entityValue ");
+      if (continuationToken.getLastId() != null) {
+        // Seek after the last row of previous page instead of skipping all previous rows
+        stringQueryBuilder.append(" AND " + RdbmsUtils.getKeysetPredicate("ee", continuationToken));
+      }
+      stringQueryBuilder.append(RdbmsUtils.getKeysetOrderBy("ee", continuationToken));
+
+      Query query = session.createQuery(stringQueryBuilder.toString());
+      query.setParameter("entityValue", entityValue);
+      if (continuationToken.getLastId() != null) {
+        RdbmsUtils.setKeysetParameters(query, continuationToken);
+      }
+      if (pageLimit != null && pageLimit > 0) {
+        query.setMaxResults(pageLimit);
+      }
+      long startNanos = System.nanoTime();
+      List<ExperimentRunEntity> experimentRunEntities = query.list();
+      SlowOperationLog.getInstance()
+          .record(
+              DatabaseMetrics.HIBERNATE,
+              "ExperimentRunEntity",
+              "getExperimentRunsFromEntityAfter",
+              stringQueryBuilder.toString(),
+              System.nanoTime() - startNanos,
+              experimentRunEntities.size(),
+              null);
+      transaction.commit();
+      return RdbmsUtils.convertFromExperimentRunsToExperimentRunEntityList(experimentRunEntities);
+    }
+  }
+
   @Override
   @Transactional
   public List<ExperimentRun> getExperimentRuns(String key, String value)
@@ -227,18 +492,12 @@ public class ExperimentRunDAORdbImpl implements ExperimentRunDAO {
   @Transactional
   public ExperimentRun logMetric(String experimentRunId, KeyValue metric)
       throws InvalidProtocolBufferException {
-    try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
-      Transaction transaction = session.beginTransaction();
-      ExperimentRunEntity experimentRunEntityObj =
-          session.get(ExperimentRunEntity.class, experimentRunId);
-      KeyValueEntity newMetrics =
-          RdbmsUtils.convertFromKeyValueToKeyValueEntity(
-              experimentRunEntityObj, ModelDBConstants.METRICS, metric);
-      experimentRunEntityObj.getMetrics().add(newMetrics);
-      session.saveOrUpdate(experimentRunEntityObj);
-      transaction.commit();
-      return experimentRunEntityObj.getProtoObject();
-    }
+    return addUniqueKeyValues(
+        experimentRunId,
+        ModelDBConstants.METRICS,
+        Collections.singletonList(metric),
+        "Metric being logged already exists.",
+        Any.pack(LogMetric.Response.getDefaultInstance()));
   }
 
   @Override
@@ -310,19 +569,12 @@ public class ExperimentRunDAORdbImpl implements ExperimentRunDAO {
   @Transactional
   public ExperimentRun logHyperparameter(String experimentRunId, KeyValue hyperparameter)
       throws InvalidProtocolBufferException {
-    try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
-      Transaction transaction = session.beginTransaction();
-      ExperimentRunEntity experimentRunEntityObj =
-          session.get(ExperimentRunEntity.class, experimentRunId);
-      KeyValueEntity newHyperparameter =
-          RdbmsUtils.convertFromKeyValueToKeyValueEntity(
-              experimentRunEntityObj, ModelDBConstants.HYPERPARAMETERS, hyperparameter);
-
-      experimentRunEntityObj.getHyperparameters().add(newHyperparameter);
-      session.saveOrUpdate(experimentRunEntityObj);
-      transaction.commit();
-      return experimentRunEntityObj.getProtoObject();
-    }
+    return addUniqueKeyValues(
+        experimentRunId,
+        ModelDBConstants.HYPERPARAMETERS,
+        Collections.singletonList(hyperparameter),
+        "Hyperparameter being logged already exists.",
+        Any.pack(LogHyperparameter.Response.getDefaultInstance()));
   }
 
   @Override
@@ -378,6 +630,16 @@ public class ExperimentRunDAORdbImpl implements ExperimentRunDAO {
     throw StatusProto.toStatusRuntimeException(status);
   }
 
+  @Override
+  /**
+   * The result of findExperimentRuns as a stream, there is no cursor to keep open for it. The
+   * streaming find is not registered on RDBMS as long as findExperimentRuns is not supported.
+   */
+  public Stream<ExperimentRun> streamExperimentRuns(FindExperimentRuns queryParameters)
+      throws InvalidProtocolBufferException {
+    return findExperimentRuns(queryParameters).stream();
+  }
+
   @Override
   @Transactional
   public List<ExperimentRun> sortExperimentRuns(SortExperimentRuns queryParameters)
@@ -468,4 +730,198 @@ public class ExperimentRunDAORdbImpl implements ExperimentRunDAO {
             .build();
     throw StatusProto.toStatusRuntimeException(status);
   }
+
+  @Override
+  @Transactional
+  public ExperimentRun logObservations(String experimentRunId, List<Observation> observations)
+      throws InvalidProtocolBufferException {
+    try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
+      Transaction transaction = session.beginTransaction();
+      ExperimentRunEntity experimentRunEntityObj =
+          getExistingExperimentRunEntity(session, transaction, experimentRunId, LockMode.NONE);
+      experimentRunEntityObj
+          .getObservations()
+          .addAll(
+              RdbmsUtils.convertFromObservationsToObservationEntityList(
+                  experimentRunEntityObj, observations));
+      session.saveOrUpdate(experimentRunEntityObj);
+      transaction.commit();
+      return experimentRunEntityObj.getProtoObject();
+    }
+  }
+
+  @Override
+  @Transactional
+  public ExperimentRun logMetrics(String experimentRunId, List<KeyValue> metrics)
+      throws InvalidProtocolBufferException {
+    return addUniqueKeyValues(
+        experimentRunId,
+        ModelDBConstants.METRICS,
+        metrics,
+        "Metric being logged already exists.",
+        Any.pack(LogMetric.Response.getDefaultInstance()));
+  }
+
+  @Override
+  @Transactional
+  public ExperimentRun logDataSets(String experimentRunId, List<Artifact> datasets)
+      throws InvalidProtocolBufferException {
+    try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
+      Transaction transaction = session.beginTransaction();
+      ExperimentRunEntity experimentRunEntityObj =
+          getExistingExperimentRunEntity(session, transaction, experimentRunId, LockMode.NONE);
+      experimentRunEntityObj
+          .getDatasets()
+          .addAll(
+              RdbmsUtils.convertFromArtifactsToArtifactEntityList(
+                  experimentRunEntityObj, ModelDBConstants.DATASETS, datasets));
+      session.saveOrUpdate(experimentRunEntityObj);
+      transaction.commit();
+      return experimentRunEntityObj.getProtoObject();
+    }
+  }
+
+  @Override
+  @Transactional
+  public ExperimentRun logHyperparameters(String experimentRunId, List<KeyValue> hyperparameters)
+      throws InvalidProtocolBufferException {
+    return addUniqueKeyValues(
+        experimentRunId,
+        ModelDBConstants.HYPERPARAMETERS,
+        hyperparameters,
+        "Hyperparameter being logged already exists.",
+        Any.pack(LogHyperparameter.Response.getDefaultInstance()));
+  }
+
+  @Override
+  @Transactional
+  public ExperimentRun logAttributes(String experimentRunId, List<KeyValue> attributes)
+      throws InvalidProtocolBufferException {
+    try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
+      Transaction transaction = session.beginTransaction();
+      ExperimentRunEntity experimentRunEntityObj =
+          getExistingExperimentRunEntity(session, transaction, experimentRunId, LockMode.NONE);
+      experimentRunEntityObj
+          .getAttributes()
+          .addAll(
+              RdbmsUtils.convertFromKeyValuesToKeyValueEntityList(
+                  experimentRunEntityObj, ModelDBConstants.ATTRIBUTES, attributes));
+      session.saveOrUpdate(experimentRunEntityObj);
+      try {
+        session.flush();
+      } catch (PersistenceException e) {
+        if (e.getCause() instanceof ConstraintViolationException) {
+          transaction.rollback();
+          throw getAlreadyExistsException("Attribute being logged already exists.");
+        }
+        throw e;
+      }
+      transaction.commit();
+      return experimentRunEntityObj.getProtoObject();
+    }
+  }
+
+  /**
+   * Add given key values to the metrics or hyperparameters of ExperimentRun, only if none of their
+   * keys is already present. The experimentRun row is locked for the transaction, so concurrent
+   * loggers of the same run are serialized, and the unique constraint of the keyvalue table rejects
+   * any duplicate left.
+   *
+   * @param String experimentRunId
+   * @param String fieldType --> metrics or hyperparameters
+   * @param List<KeyValue> keyValues --> key values to add, their keys must be unique
+   * @param String errorMessage --> message of the ALREADY_EXISTS error
+   * @param Any responseDetail --> default response of the log request, detail of the error
+   * @return ExperimentRun updated experimentRun
+   * @throws InvalidProtocolBufferException
+   */
+  private ExperimentRun addUniqueKeyValues(
+      String experimentRunId,
+      String fieldType,
+      List<KeyValue> keyValues,
+      String errorMessage,
+      Any responseDetail)
+      throws InvalidProtocolBufferException {
+    try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
+      Transaction transaction = session.beginTransaction();
+      ExperimentRunEntity experimentRunEntityObj =
+          getExistingExperimentRunEntity(
+              session, transaction, experimentRunId, LockMode.PESSIMISTIC_WRITE);
+
+      List<KeyValueEntity> keyValueEntities =
+          fieldType.equals(ModelDBConstants.METRICS)
+              ? experimentRunEntityObj.getMetrics()
+              : experimentRunEntityObj.getHyperparameters();
+      Set<String> keySet = new HashSet<>();
+      for (KeyValueEntity keyValueEntity : keyValueEntities) {
+        keySet.add(keyValueEntity.getKey());
+      }
+      for (KeyValue keyValue : keyValues) {
+        if (!keySet.add(keyValue.getKey())) {
+          transaction.rollback();
+          throw getAlreadyExistsException(errorMessage, responseDetail);
+        }
+        keyValueEntities.add(
+            RdbmsUtils.convertFromKeyValueToKeyValueEntity(
+                experimentRunEntityObj, fieldType, keyValue));
+      }
+      session.saveOrUpdate(experimentRunEntityObj);
+      try {
+        session.flush();
+      } catch (PersistenceException e) {
+        if (e.getCause() instanceof ConstraintViolationException) {
+          transaction.rollback();
+          throw getAlreadyExistsException(errorMessage, responseDetail);
+        }
+        throw e;
+      }
+      transaction.commit();
+      return experimentRunEntityObj.getProtoObject();
+    }
+  }
+
+  /**
+   * Read the ExperimentRun to update in given transaction, the transaction is rolled back if it
+   * does not exist.
+   *
+   * @param Session session
+   * @param Transaction transaction
+   * @param String experimentRunId
+   * @param LockMode lockMode --> PESSIMISTIC_WRITE to serialize the updates of the ExperimentRun
+   * @return ExperimentRunEntity experimentRunEntity
+   * @throws StatusRuntimeException NOT_FOUND if the ExperimentRun does not exist
+   */
+  private ExperimentRunEntity getExistingExperimentRunEntity(
+      Session session, Transaction transaction, String experimentRunId, LockMode lockMode) {
+    ExperimentRunEntity experimentRunEntityObj =
+        session.get(ExperimentRunEntity.class, experimentRunId, lockMode);
+    if (experimentRunEntityObj == null) {
+      transaction.rollback();
+      String notFoundMessage = "ExperimentRun not found for given ID";
+      LOGGER.log(Level.WARNING, notFoundMessage);
+      Status status =
+          Status.newBuilder().setCode(Code.NOT_FOUND_VALUE).setMessage(notFoundMessage).build();
+      throw StatusProto.toStatusRuntimeException(status);
+    }
+    return experimentRunEntityObj;
+  }
+
+  private StatusRuntimeException getAlreadyExistsException(String errorMessage) {
+    LOGGER.log(Level.WARNING, errorMessage);
+    Status status =
+        Status.newBuilder().setCode(Code.ALREADY_EXISTS_VALUE).setMessage(errorMessage).build();
+    return StatusProto.toStatusRuntimeException(status);
+  }
+
+  private StatusRuntimeException getAlreadyExistsException(
+      String errorMessage, Any responseDetail) {
+    LOGGER.log(Level.WARNING, errorMessage);
+    Status status =
+        Status.newBuilder()
+            .setCode(Code.ALREADY_EXISTS_VALUE)
+            .setMessage(errorMessage)
+            .addDetails(responseDetail)
+            .build();
+    return StatusProto.toStatusRuntimeException(status);
+  }
 }
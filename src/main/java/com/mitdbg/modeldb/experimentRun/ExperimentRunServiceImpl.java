@@ -1,10 +1,13 @@
 package com.mitdbg.modeldb.experimentRun;
 
+import java.util.Collections;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import com.google.protobuf.Any;
+import com.google.protobuf.Message;
 import com.google.rpc.Code;
 import com.google.rpc.Status;
 import com.mitdbg.artifactstore.ArtifactStoreGrpc;
@@ -63,6 +66,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
   private ProjectDAO projectDAO = null;
   private ExperimentDAO experimentDAO = null;
   private ArtifactStoreDAO artifactStoreDAO = null;
+  private ExperimentRunWriteBuffer writeBuffer = null;
   private App app = App.getInstance();
 
   public ExperimentRunServiceImpl(
@@ -76,6 +80,79 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
     this.artifactStoreDAO = artifactStoreDAO;
   }
 
+  /**
+   * Ingest mode: observations and metrics are logged through given write-behind buffer, see
+   * {@link ExperimentRunWriteBuffer}.
+   *
+   * @param ExperimentRunWriteBuffer writeBuffer --> null logs every value with its own write
+   */
+  public ExperimentRunServiceImpl(
+      ExperimentRunDAO experimentRunDAO,
+      ProjectDAO projectDAO,
+      ExperimentDAO experimentDAO,
+      ArtifactStoreDAO artifactStoreDAO,
+      ExperimentRunWriteBuffer writeBuffer) {
+    this(experimentRunDAO, projectDAO, experimentDAO, artifactStoreDAO);
+    this.writeBuffer = writeBuffer;
+  }
+
+  /**
+   * Write the buffered observations and metrics of the ExperimentRun a request is about to read or
+   * update, so it sees every value logged before it.
+   */
+  private void flushBufferedWrites(String experimentRunId) {
+    if (writeBuffer != null) {
+      writeBuffer.flush(experimentRunId);
+    }
+  }
+
+  /**
+   * Write the buffered observations and metrics a listing of a Project, an Experiment or given
+   * ExperimentRuns is about to read.
+   */
+  private void flushBufferedWrites(
+      String projectId, String experimentId, List<String> experimentRunIds) {
+    if (writeBuffer != null) {
+      writeBuffer.flushListing(projectId, experimentId, experimentRunIds);
+    }
+  }
+
+  /**
+   * Complete a log request once the write buffer acknowledges its value. The response is sent by
+   * the thread completing the acknowledgement, so the gRPC thread is not held while a FLUSHED
+   * batch is written.
+   *
+   * @param CompletableFuture<ExperimentRun> acknowledgement --> acknowledgement of the buffer
+   * @param StreamObserver<T> responseObserver
+   * @param Function<ExperimentRun, T> responseBuilder --> wrap the ExperimentRun in the response
+   * @param T defaultResponse --> error detail of the INTERNAL status
+   */
+  private <T extends Message> void respondWhenAcknowledged(
+      CompletableFuture<ExperimentRun> acknowledgement,
+      StreamObserver<T> responseObserver,
+      Function<ExperimentRun, T> responseBuilder,
+      T defaultResponse) {
+    acknowledgement.whenComplete(
+        (experimentRun, error) -> {
+          if (error == null) {
+            responseObserver.onNext(responseBuilder.apply(experimentRun));
+            responseObserver.onCompleted();
+          } else if (error instanceof StatusRuntimeException) {
+            LOGGER.log(Level.WARNING, error.getMessage(), error);
+            responseObserver.onError(error);
+          } else {
+            LOGGER.log(Level.WARNING, error.getMessage(), error);
+            Status status =
+                Status.newBuilder()
+                    .setCode(Code.INTERNAL.getNumber())
+                    .setMessage("Internal server error.")
+                    .addDetails(Any.pack(defaultResponse))
+                    .build();
+            responseObserver.onError(StatusProto.toStatusRuntimeException(status));
+          }
+        });
+  }
+
   /**
    * Convert CreateExperimentRun request to Experiment object. This method generate the
    * ExperimentRun Id using UUID and put it in ExperimentRun object.
@@ -106,7 +183,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
      */
     ExperimentRun.Builder experimentRunBuilder =
         ExperimentRun.newBuilder()
-            .setId(UUID.randomUUID().toString())
+            .setId(App.getInstance().getIdGenerator().generateId())
             .setProjectId(request.getProjectId())
             .setExperimentId(request.getExperimentId())
             .setName(request.getName())
@@ -177,6 +254,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       Boolean status = experimentRunDAO.deleteExperimentRun(request.getId());
       responseObserver.onNext(DeleteExperimentRun.Response.newBuilder().setStatus(status).build());
       responseObserver.onCompleted();
@@ -214,6 +292,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getProjectId(), "", Collections.emptyList());
       List<ExperimentRun> experimentRunList =
           experimentRunDAO.getExperimentRunsFromEntity(
               ModelDBConstants.PROJECT_ID,
@@ -262,6 +341,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites("", request.getExperimentId(), Collections.emptyList());
       List<ExperimentRun> experimentRunList =
           experimentRunDAO.getExperimentRunsFromEntity(
               ModelDBConstants.EXPERIMENT_ID,
@@ -309,6 +389,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       List<ExperimentRun> experimentRunList =
           experimentRunDAO.getExperimentRuns(ModelDBConstants.ID, request.getId());
 
@@ -410,6 +491,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
               .setDescription(request.getDescription())
               .build();
 
+      flushBufferedWrites(request.getId());
       ExperimentRun updatedExperimentRun =
           experimentRunDAO.updateExperimentRun(request.getId(), experimentRun);
 
@@ -452,6 +534,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       ExperimentRun updatedExperimentRun =
           experimentRunDAO.addExperimentRunTags(request.getId(), request.getTagsList());
       responseObserver.onNext(
@@ -491,6 +574,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       List<String> experimentRunTags = experimentRunDAO.getExperimentRunTags(request.getId());
       responseObserver.onNext(GetTags.Response.newBuilder().addAllTags(experimentRunTags).build());
       responseObserver.onCompleted();
@@ -529,6 +613,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       ExperimentRun updatedExperimentRun =
           experimentRunDAO.deleteExperimentRunTags(
               request.getId(), request.getTagsList(), request.getDeleteAll());
@@ -572,6 +657,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       ExperimentRun updatedExperimentRun =
           experimentRunDAO.addExperimentRunAttributes(request.getId(), request.getAttributesList());
       responseObserver.onNext(
@@ -614,6 +700,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       ExperimentRun updatedExperimentRun =
           experimentRunDAO.deleteExperimentRunAttributes(
               request.getId(), request.getAttributeKeysList(), request.getDeleteAll());
@@ -657,6 +744,15 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      if (writeBuffer != null) {
+        respondWhenAcknowledged(
+            writeBuffer.logObservationAsync(request.getId(), request.getObservation()),
+            responseObserver,
+            experimentRun ->
+                LogObservation.Response.newBuilder().setExperimentRun(experimentRun).build(),
+            LogObservation.Response.getDefaultInstance());
+        return;
+      }
       ExperimentRun updatedExperimentRun =
           experimentRunDAO.logObservation(request.getId(), request.getObservation());
       responseObserver.onNext(
@@ -696,6 +792,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       List<Observation> observations =
           experimentRunDAO.getObservationByKey(request.getId(), request.getObservationKey());
       responseObserver.onNext(
@@ -734,19 +831,15 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
-      List<KeyValue> metricList = experimentRunDAO.getExperimentRunMetrics(request.getId());
-      for (KeyValue metric : metricList) {
-        if (metric.getKey().equals(request.getMetric().getKey())) {
-          Status status =
-              Status.newBuilder()
-                  .setCode(Code.ALREADY_EXISTS.getNumber())
-                  .setMessage("Metric being logged already exists.")
-                  .addDetails(Any.pack(LogMetric.Response.getDefaultInstance()))
-                  .build();
-          throw StatusProto.toStatusRuntimeException(status);
-        }
+      if (writeBuffer != null) {
+        respondWhenAcknowledged(
+            writeBuffer.logMetricAsync(request.getId(), request.getMetric()),
+            responseObserver,
+            experimentRun ->
+                LogMetric.Response.newBuilder().setExperimentRun(experimentRun).build(),
+            LogMetric.Response.getDefaultInstance());
+        return;
       }
-
       ExperimentRun updatedExperimentRun =
           experimentRunDAO.logMetric(request.getId(), request.getMetric());
       responseObserver.onNext(
@@ -783,6 +876,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       List<KeyValue> metricList = experimentRunDAO.getExperimentRunMetrics(request.getId());
       responseObserver.onNext(GetMetrics.Response.newBuilder().addAllMetrics(metricList).build());
       responseObserver.onCompleted();
@@ -819,6 +913,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       ExperimentRun updatedExperimentRun =
           experimentRunDAO.logDataSet(request.getId(), request.getDataset());
       responseObserver.onNext(
@@ -857,6 +952,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       List<Artifact> dataSetList = experimentRunDAO.getExperimentRunDataSets(request.getId());
       responseObserver.onNext(
           GetDatasets.Response.newBuilder().addAllDatasets(dataSetList).build());
@@ -896,6 +992,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       ExperimentRun updatedExperimentRun =
           experimentRunDAO.logArtifact(request.getId(), request.getArtifact());
       responseObserver.onNext(
@@ -934,6 +1031,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       List<Artifact> artifactList = experimentRunDAO.getExperimentRunArtifacts(request.getId());
       responseObserver.onNext(
           GetArtifacts.Response.newBuilder().addAllArtifacts(artifactList).build());
@@ -971,20 +1069,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
-      List<KeyValue> hyperparameterList =
-          experimentRunDAO.getExperimentRunHyperparameters(request.getId());
-      for (KeyValue hyperparameter : hyperparameterList) {
-        if (hyperparameter.getKey().equals(request.getHyperparameter().getKey())) {
-          Status status =
-              Status.newBuilder()
-                  .setCode(Code.ALREADY_EXISTS.getNumber())
-                  .setMessage("Hyperparameter being logged already exists.")
-                  .addDetails(Any.pack(LogHyperparameter.Response.getDefaultInstance()))
-                  .build();
-          throw StatusProto.toStatusRuntimeException(status);
-        }
-      }
-
+      flushBufferedWrites(request.getId());
       ExperimentRun updatedExperimentRun =
           experimentRunDAO.logHyperparameter(request.getId(), request.getHyperparameter());
       responseObserver.onNext(
@@ -1023,6 +1108,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       List<KeyValue> hyperparameterList =
           experimentRunDAO.getExperimentRunHyperparameters(request.getId());
       responseObserver.onNext(
@@ -1063,6 +1149,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       ExperimentRun updatedExperimentRun =
           experimentRunDAO.logAttribute(request.getId(), request.getAttribute());
       responseObserver.onNext(
@@ -1103,6 +1190,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       List<KeyValue> attributeList =
           experimentRunDAO.getExperimentRunAttributes(
               request.getId(), request.getAttributeKeysList(), request.getGetAll());
@@ -1145,6 +1233,8 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(
+          request.getProjectId(), request.getExperimentId(), request.getExperimentRunIdsList());
       List<ExperimentRun> experimentRuns = experimentRunDAO.findExperimentRuns(request);
       responseObserver.onNext(
           FindExperimentRuns.Response.newBuilder().addAllExperimentRuns(experimentRuns).build());
@@ -1183,6 +1273,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites("", "", request.getExperimentRunIdsList());
       List<ExperimentRun> experimentRuns = experimentRunDAO.sortExperimentRuns(request);
       responseObserver.onNext(
           SortExperimentRuns.Response.newBuilder().addAllExperimentRuns(experimentRuns).build());
@@ -1225,6 +1316,8 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(
+          request.getProjectId(), request.getExperimentId(), request.getExperimentRunIdsList());
       List<ExperimentRun> experimentRuns = experimentRunDAO.getTopExperimentRuns(request);
       responseObserver.onNext(
           TopExperimentRunsSelector.Response.newBuilder()
@@ -1263,6 +1356,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       ExperimentRun updatedExperimentRun =
           experimentRunDAO.logJobId(request.getId(), request.getJobId());
       responseObserver.onNext(
@@ -1300,6 +1394,7 @@ public class ExperimentRunServiceImpl extends ExperimentRunServiceImplBase {
         throw StatusProto.toStatusRuntimeException(status);
       }
 
+      flushBufferedWrites(request.getId());
       String jobId = experimentRunDAO.getJobId(request.getId());
       responseObserver.onNext(GetJobId.Response.newBuilder().setJobId(jobId).build());
       responseObserver.onCompleted();
@@ -0,0 +1,310 @@
+package com.mitdbg.modeldb.experimentRun;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import com.google.protobuf.Any;
+import com.google.protobuf.Message;
+import com.google.rpc.Code;
+import com.google.rpc.Status;
+import com.mitdbg.modeldb.ExperimentRun;
+import com.mitdbg.modeldb.ExperimentRunServiceGrpc;
+import com.mitdbg.modeldb.FindExperimentRuns;
+import com.mitdbg.modeldb.GetExperimentRunsInExperiment;
+import com.mitdbg.modeldb.GetExperimentRunsInProject;
+import com.mitdbg.modeldb.ModelDBConstants;
+import io.grpc.BindableService;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.StatusRuntimeException;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.protobuf.StatusProto;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Server-streaming variants of the ExperimentRun listings. Runs are read through a database cursor
+ * and sent in chunks of {@link #CHUNK_SIZE} runs, each chunk being one response message of the
+ * unary RPC, so a client never has to hold a whole project in one message. Chunks are only produced
+ * while the transport is ready, a slow client therefore pauses the cursor instead of the server
+ * buffering the remaining runs.
+ */
+public class ExperimentRunStreamingService implements BindableService {
+
+  private static final Logger LOGGER =
+      Logger.getLogger(ExperimentRunStreamingService.class.getName());
+  public static final String SERVICE_NAME = ExperimentRunServiceGrpc.SERVICE_NAME + "Stream";
+  private static final int CHUNK_SIZE = 100;
+
+  private static final MethodDescriptor<
+          GetExperimentRunsInProject, GetExperimentRunsInProject.Response>
+      STREAM_EXPERIMENT_RUNS_IN_PROJECT_METHOD =
+          MethodDescriptor
+              .<GetExperimentRunsInProject, GetExperimentRunsInProject.Response>newBuilder()
+              .setType(MethodType.SERVER_STREAMING)
+              .setFullMethodName(
+                  MethodDescriptor.generateFullMethodName(
+                      SERVICE_NAME, "streamExperimentRunsInProject"))
+              .setRequestMarshaller(
+                  ProtoUtils.marshaller(GetExperimentRunsInProject.getDefaultInstance()))
+              .setResponseMarshaller(
+                  ProtoUtils.marshaller(GetExperimentRunsInProject.Response.getDefaultInstance()))
+              .build();
+
+  private static final MethodDescriptor<
+          GetExperimentRunsInExperiment, GetExperimentRunsInExperiment.Response>
+      STREAM_EXPERIMENT_RUNS_IN_EXPERIMENT_METHOD =
+          MethodDescriptor
+              .<GetExperimentRunsInExperiment, GetExperimentRunsInExperiment.Response>newBuilder()
+              .setType(MethodType.SERVER_STREAMING)
+              .setFullMethodName(
+                  MethodDescriptor.generateFullMethodName(
+                      SERVICE_NAME, "streamExperimentRunsInExperiment"))
+              .setRequestMarshaller(
+                  ProtoUtils.marshaller(GetExperimentRunsInExperiment.getDefaultInstance()))
+              .setResponseMarshaller(
+                  ProtoUtils.marshaller(
+                      GetExperimentRunsInExperiment.Response.getDefaultInstance()))
+              .build();
+
+  private static final MethodDescriptor<FindExperimentRuns, FindExperimentRuns.Response>
+      STREAM_FIND_EXPERIMENT_RUNS_METHOD =
+          MethodDescriptor.<FindExperimentRuns, FindExperimentRuns.Response>newBuilder()
+              .setType(MethodType.SERVER_STREAMING)
+              .setFullMethodName(
+                  MethodDescriptor.generateFullMethodName(SERVICE_NAME, "streamFindExperimentRuns"))
+              .setRequestMarshaller(ProtoUtils.marshaller(FindExperimentRuns.getDefaultInstance()))
+              .setResponseMarshaller(
+                  ProtoUtils.marshaller(FindExperimentRuns.Response.getDefaultInstance()))
+              .build();
+
+  private final ExperimentRunDAO experimentRunDAO;
+  private final ExperimentRunWriteBuffer writeBuffer;
+  private final boolean findSupported;
+
+  /**
+   * @param ExperimentRunDAO experimentRunDAO
+   * @param ExperimentRunWriteBuffer writeBuffer --> buffer flushed before streaming, may be null
+   * @param boolean findSupported --> register streamFindExperimentRuns, false if the database does
+   *     not support findExperimentRuns
+   */
+  public ExperimentRunStreamingService(
+      ExperimentRunDAO experimentRunDAO,
+      ExperimentRunWriteBuffer writeBuffer,
+      boolean findSupported) {
+    this.experimentRunDAO = experimentRunDAO;
+    this.writeBuffer = writeBuffer;
+    this.findSupported = findSupported;
+  }
+
+  private void flushBufferedWrites(
+      String projectId, String experimentId, List<String> experimentRunIds) {
+    if (writeBuffer != null) {
+      writeBuffer.flushListing(projectId, experimentId, experimentRunIds);
+    }
+  }
+
+  @Override
+  public ServerServiceDefinition bindService() {
+    ServerServiceDefinition.Builder serviceBuilder =
+        ServerServiceDefinition.builder(SERVICE_NAME)
+            .addMethod(
+                STREAM_EXPERIMENT_RUNS_IN_PROJECT_METHOD,
+                ServerCalls.asyncServerStreamingCall(this::streamExperimentRunsInProject))
+            .addMethod(
+                STREAM_EXPERIMENT_RUNS_IN_EXPERIMENT_METHOD,
+                ServerCalls.asyncServerStreamingCall(this::streamExperimentRunsInExperiment));
+    if (findSupported) {
+      serviceBuilder.addMethod(
+          STREAM_FIND_EXPERIMENT_RUNS_METHOD,
+          ServerCalls.asyncServerStreamingCall(this::streamFindExperimentRuns));
+    }
+    return serviceBuilder.build();
+  }
+
+  public void streamExperimentRunsInProject(
+      GetExperimentRunsInProject request,
+      StreamObserver<GetExperimentRunsInProject.Response> responseObserver) {
+    try {
+      if (request.getProjectId().isEmpty()) {
+        throw getInvalidArgumentException(
+            "Project ID is not found in GetExperimentRunsInProject request.",
+            GetExperimentRunsInProject.Response.getDefaultInstance());
+      }
+
+      flushBufferedWrites(request.getProjectId(), "", Collections.emptyList());
+      Stream<ExperimentRun> experimentRunStream =
+          experimentRunDAO.streamExperimentRunsFromEntity(
+              ModelDBConstants.PROJECT_ID,
+              request.getProjectId(),
+              request.getSortOrder(),
+              request.getSortBy());
+      sendInChunks(
+          experimentRunStream,
+          responseObserver,
+          experimentRuns ->
+              GetExperimentRunsInProject.Response.newBuilder()
+                  .addAllExperimentRuns(experimentRuns)
+                  .build(),
+          GetExperimentRunsInProject.Response.getDefaultInstance());
+    } catch (StatusRuntimeException e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(e);
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(
+          getInternalErrorException(GetExperimentRunsInProject.Response.getDefaultInstance()));
+    }
+  }
+
+  public void streamExperimentRunsInExperiment(
+      GetExperimentRunsInExperiment request,
+      StreamObserver<GetExperimentRunsInExperiment.Response> responseObserver) {
+    try {
+      if (request.getExperimentId().isEmpty()) {
+        throw getInvalidArgumentException(
+            "Experiment ID is not found in GetExperimentRunsInExperiment request.",
+            GetExperimentRunsInExperiment.Response.getDefaultInstance());
+      }
+
+      flushBufferedWrites("", request.getExperimentId(), Collections.emptyList());
+      Stream<ExperimentRun> experimentRunStream =
+          experimentRunDAO.streamExperimentRunsFromEntity(
+              ModelDBConstants.EXPERIMENT_ID,
+              request.getExperimentId(),
+              request.getSortOrder(),
+              request.getSortBy());
+      sendInChunks(
+          experimentRunStream,
+          responseObserver,
+          experimentRuns ->
+              GetExperimentRunsInExperiment.Response.newBuilder()
+                  .addAllExperimentRuns(experimentRuns)
+                  .build(),
+          GetExperimentRunsInExperiment.Response.getDefaultInstance());
+    } catch (StatusRuntimeException e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(e);
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(
+          getInternalErrorException(GetExperimentRunsInExperiment.Response.getDefaultInstance()));
+    }
+  }
+
+  public void streamFindExperimentRuns(
+      FindExperimentRuns request, StreamObserver<FindExperimentRuns.Response> responseObserver) {
+    try {
+      if (request.getProjectId().isEmpty()
+          && request.getExperimentId().isEmpty()
+          && request.getExperimentRunIdsList().isEmpty()) {
+        throw getInvalidArgumentException(
+            "Project ID OR Experiment ID OR ExperimentRun Id's is not found in FindExperimentRuns request.",
+            FindExperimentRuns.Response.getDefaultInstance());
+      }
+
+      flushBufferedWrites(
+          request.getProjectId(), request.getExperimentId(), request.getExperimentRunIdsList());
+      Stream<ExperimentRun> experimentRunStream = experimentRunDAO.streamExperimentRuns(request);
+      sendInChunks(
+          experimentRunStream,
+          responseObserver,
+          experimentRuns ->
+              FindExperimentRuns.Response.newBuilder().addAllExperimentRuns(experimentRuns).build(),
+          FindExperimentRuns.Response.getDefaultInstance());
+    } catch (StatusRuntimeException e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(e);
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      responseObserver.onError(
+          getInternalErrorException(FindExperimentRuns.Response.getDefaultInstance()));
+    }
+  }
+
+  /**
+   * Drain given stream into the response observer chunk by chunk, honouring the flow control of the
+   * call. The stream, and so the underlying cursor, is closed once it is exhausted, on failure or
+   * when the client cancels the call.
+   *
+   * @param Stream<ExperimentRun> experimentRunStream --> cursor backed stream of runs
+   * @param StreamObserver<R> responseObserver
+   * @param Function<List<ExperimentRun>, R> chunkBuilder --> wrap one chunk in a response message
+   * @param R defaultResponse --> error detail of the INTERNAL status
+   */
+  private <R extends Message> void sendInChunks(
+      Stream<ExperimentRun> experimentRunStream,
+      StreamObserver<R> responseObserver,
+      Function<List<ExperimentRun>, R> chunkBuilder,
+      R defaultResponse) {
+    ServerCallStreamObserver<R> serverCallStreamObserver =
+        (ServerCallStreamObserver<R>) responseObserver;
+    Iterator<ExperimentRun> experimentRunIterator = experimentRunStream.iterator();
+    AtomicBoolean closed = new AtomicBoolean(false);
+
+    Runnable closeStream =
+        () -> {
+          if (closed.compareAndSet(false, true)) {
+            experimentRunStream.close();
+          }
+        };
+    Runnable drain =
+        () -> {
+          try {
+            while (!closed.get() && serverCallStreamObserver.isReady()) {
+              List<ExperimentRun> chunk = new ArrayList<>(CHUNK_SIZE);
+              while (chunk.size() < CHUNK_SIZE && experimentRunIterator.hasNext()) {
+                chunk.add(experimentRunIterator.next());
+              }
+              if (!chunk.isEmpty()) {
+                serverCallStreamObserver.onNext(chunkBuilder.apply(chunk));
+              }
+              if (!experimentRunIterator.hasNext()) {
+                closeStream.run();
+                serverCallStreamObserver.onCompleted();
+              }
+            }
+          } catch (Exception e) {
+            LOGGER.log(Level.WARNING, e.getMessage(), e);
+            if (!closed.get()) {
+              closeStream.run();
+              serverCallStreamObserver.onError(getInternalErrorException(defaultResponse));
+            }
+          }
+        };
+
+    serverCallStreamObserver.setOnCancelHandler(closeStream);
+    serverCallStreamObserver.setOnReadyHandler(drain);
+    drain.run();
+  }
+
+  private StatusRuntimeException getInvalidArgumentException(
+      String errorMessage, Message defaultResponse) {
+    LOGGER.log(Level.WARNING, errorMessage);
+    Status status =
+        Status.newBuilder()
+            .setCode(Code.INVALID_ARGUMENT_VALUE)
+            .setMessage(errorMessage)
+            .addDetails(Any.pack(defaultResponse))
+            .build();
+    return StatusProto.toStatusRuntimeException(status);
+  }
+
+  private StatusRuntimeException getInternalErrorException(Message defaultResponse) {
+    Status status =
+        Status.newBuilder()
+            .setCode(Code.INTERNAL.getNumber())
+            .setMessage("Internal server error.")
+            .addDetails(Any.pack(defaultResponse))
+            .build();
+    return StatusProto.toStatusRuntimeException(status);
+  }
+}
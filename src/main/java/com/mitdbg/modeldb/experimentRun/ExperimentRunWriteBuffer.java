@@ -0,0 +1,490 @@
+package com.mitdbg.modeldb.experimentRun;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.google.rpc.Code;
+import com.google.rpc.Status;
+import com.mitdbg.modeldb.ExperimentRun;
+import com.mitdbg.modeldb.KeyValue;
+import com.mitdbg.modeldb.Observation;
+import io.grpc.StatusRuntimeException;
+import io.grpc.protobuf.StatusProto;
+
+/**
+ * Write-behind buffer of the observations and metrics logged on ExperimentRuns. Logged values are
+ * queued per ExperimentRun without locking and written as one $push $each per ExperimentRun
+ * (ExperimentRunDAO logObservations and logMetrics) when maxBatchSize values of the run are
+ * pending, or at the latest every flushIntervalMillis, so the number of database writes follows
+ * the number of batches instead of the number of log requests.
+ *
+ * <p>With {@link AckMode#FLUSHED} a log request returns once its batch is written, with the
+ * updated ExperimentRun, and write errors are reported to it. With {@link AckMode#BUFFERED} it
+ * returns as soon as the value is queued, with an ExperimentRun holding only the id, and write
+ * errors are only logged. In both modes {@link #flush(String)} writes the pending values of an
+ * ExperimentRun, it is called before every other request on that ExperimentRun, and
+ * {@link #flushListing} before every listing of ExperimentRuns.
+ *
+ * <p>BUFFERED trades durability for latency: the buffer only lives in the memory of this server, so
+ * values acknowledged but not yet written (up to flushIntervalMillis of logs) are lost if the
+ * process crashes or is killed. They are only written on a graceful stop. Use FLUSHED when every
+ * acknowledged value must be stored.
+ *
+ * <p>Batches are written by flushThreads threads, the batches of one ExperimentRun are written one
+ * at a time and in order, the batches of different runs in parallel. A FLUSHED log request waits at
+ * most ackTimeoutMillis for its batch and fails with DEADLINE_EXCEEDED after it, the value may then
+ * still be written later. The async log methods return the acknowledgement as a future completed
+ * by the flush threads, so the caller's thread is not held while the batch is written. Log
+ * requests fail with UNAVAILABLE once the buffer is closed.
+ */
+public class ExperimentRunWriteBuffer {
+
+  private static final Logger LOGGER = Logger.getLogger(ExperimentRunWriteBuffer.class.getName());
+
+  public enum AckMode {
+    BUFFERED,
+    FLUSHED
+  }
+
+  private static class PendingWrite<T> {
+    private final T value;
+    private final CompletableFuture<ExperimentRun> future = new CompletableFuture<>();
+
+    private PendingWrite(T value) {
+      this.value = value;
+    }
+  }
+
+  private static class RunBuffer {
+    private final ConcurrentLinkedQueue<PendingWrite<Observation>> observations =
+        new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<PendingWrite<KeyValue>> metrics =
+        new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // Serializes the flushes of one run, so batches are written in the order they were logged
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Set while a flush of the run is queued on the flush threads, so it is queued only once
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+  }
+
+  private final ExperimentRunDAO experimentRunDAO;
+  private final int maxBatchSize;
+  private final AckMode ackMode;
+  private final long ackTimeoutMillis;
+  private final ConcurrentMap<String, RunBuffer> runBufferMap = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService flushExecutor;
+  private final ScheduledThreadPoolExecutor ackTimeoutExecutor;
+
+  /**
+   * @param ExperimentRunDAO experimentRunDAO --> DAO the batches are written with
+   * @param int maxBatchSize --> pending values of a run which trigger its flush
+   * @param long flushIntervalMillis --> maximum time a value stays in the buffer
+   * @param AckMode ackMode --> when a log request is acknowledged
+   * @param int flushThreads --> threads writing the batches, runs are written in parallel
+   * @param long ackTimeoutMillis --> maximum wait of a FLUSHED log request for its batch
+   */
+  public ExperimentRunWriteBuffer(
+      ExperimentRunDAO experimentRunDAO,
+      int maxBatchSize,
+      long flushIntervalMillis,
+      AckMode ackMode,
+      int flushThreads,
+      long ackTimeoutMillis) {
+    this.experimentRunDAO = experimentRunDAO;
+    this.maxBatchSize = maxBatchSize;
+    this.ackMode = ackMode;
+    this.ackTimeoutMillis = ackTimeoutMillis;
+    AtomicInteger threadCount = new AtomicInteger();
+    this.flushExecutor =
+        Executors.newScheduledThreadPool(
+            flushThreads,
+            runnable -> {
+              Thread thread =
+                  new Thread(
+                      runnable, "experiment-run-write-buffer-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    // Ack timeouts have their own thread, so they expire even while every flush thread is writing
+    this.ackTimeoutExecutor =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread = new Thread(runnable, "experiment-run-write-buffer-ack-timeout");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.ackTimeoutExecutor.setRemoveOnCancelPolicy(true);
+    this.ackTimeoutExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    this.flushExecutor.scheduleWithFixedDelay(
+        this::queueFlushAll, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Create the buffer configured by the experimentRunWriteBuffer section of config.yaml.
+   *
+   * @param ExperimentRunDAO experimentRunDAO
+   * @param Map<String, Object> writeBufferPropMap --> enabled, maxBatchSize, flushIntervalMillis,
+   *     ackMode, flushThreads and ackTimeoutMillis, may be null
+   * @return ExperimentRunWriteBuffer --> null if the buffer is not enabled
+   */
+  public static ExperimentRunWriteBuffer create(
+      ExperimentRunDAO experimentRunDAO, Map<String, Object> writeBufferPropMap) {
+    if (writeBufferPropMap == null
+        || !(Boolean) writeBufferPropMap.getOrDefault("enabled", false)) {
+      return null;
+    }
+    int maxBatchSize = (Integer) writeBufferPropMap.getOrDefault("maxBatchSize", 100);
+    int flushIntervalMillis = (Integer) writeBufferPropMap.getOrDefault("flushIntervalMillis", 50);
+    AckMode ackMode =
+        AckMode.valueOf(
+            ((String) writeBufferPropMap.getOrDefault("ackMode", AckMode.FLUSHED.name()))
+                .toUpperCase());
+    int flushThreads = (Integer) writeBufferPropMap.getOrDefault("flushThreads", 4);
+    int ackTimeoutMillis = (Integer) writeBufferPropMap.getOrDefault("ackTimeoutMillis", 10000);
+    LOGGER.info(
+        "ExperimentRun write buffer enabled, maxBatchSize "
+            + maxBatchSize
+            + ", flushIntervalMillis "
+            + flushIntervalMillis
+            + ", ackMode "
+            + ackMode
+            + ", flushThreads "
+            + flushThreads
+            + ", ackTimeoutMillis "
+            + ackTimeoutMillis);
+    ExperimentRunWriteBuffer writeBuffer =
+        new ExperimentRunWriteBuffer(
+            experimentRunDAO,
+            maxBatchSize,
+            flushIntervalMillis,
+            ackMode,
+            flushThreads,
+            ackTimeoutMillis);
+    // Acknowledged values must not be lost when the server stops
+    Runtime.getRuntime().addShutdownHook(new Thread(writeBuffer::close));
+    return writeBuffer;
+  }
+
+  public ExperimentRun logObservation(String experimentRunId, Observation observation) {
+    return await(logObservationAsync(experimentRunId, observation));
+  }
+
+  public ExperimentRun logMetric(String experimentRunId, KeyValue metric) {
+    return await(logMetricAsync(experimentRunId, metric));
+  }
+
+  /**
+   * Queue given observation, without waiting for its batch.
+   *
+   * @param String experimentRunId
+   * @param Observation observation
+   * @return CompletableFuture<ExperimentRun> acknowledgement --> completed with the ExperimentRun,
+   *     or exceptionally with a StatusRuntimeException
+   */
+  public CompletableFuture<ExperimentRun> logObservationAsync(
+      String experimentRunId, Observation observation) {
+    PendingWrite<Observation> pendingWrite = new PendingWrite<>(observation);
+    RunBuffer runBuffer = runBufferMap.computeIfAbsent(experimentRunId, id -> new RunBuffer());
+    runBuffer.observations.add(pendingWrite);
+    return acknowledge(experimentRunId, runBuffer, pendingWrite);
+  }
+
+  /**
+   * Queue given metric, without waiting for its batch.
+   *
+   * @param String experimentRunId
+   * @param KeyValue metric
+   * @return CompletableFuture<ExperimentRun> acknowledgement --> completed with the ExperimentRun,
+   *     or exceptionally with a StatusRuntimeException
+   */
+  public CompletableFuture<ExperimentRun> logMetricAsync(String experimentRunId, KeyValue metric) {
+    PendingWrite<KeyValue> pendingWrite = new PendingWrite<>(metric);
+    RunBuffer runBuffer = runBufferMap.computeIfAbsent(experimentRunId, id -> new RunBuffer());
+    runBuffer.metrics.add(pendingWrite);
+    return acknowledge(experimentRunId, runBuffer, pendingWrite);
+  }
+
+  private CompletableFuture<ExperimentRun> acknowledge(
+      String experimentRunId, RunBuffer runBuffer, PendingWrite<?> pendingWrite) {
+    int pendingCount = runBuffer.pendingCount.incrementAndGet();
+    if (flushExecutor.isShutdown()) {
+      // Closed, the final flush may already be done
+      throw getStatusException(
+          Code.UNAVAILABLE_VALUE, "ExperimentRun write buffer is closed", null);
+    }
+    // A buffer removed by a concurrent flush after it was found empty is not flushed anymore
+    if (pendingCount >= maxBatchSize || runBufferMap.get(experimentRunId) != runBuffer) {
+      try {
+        queueFlush(experimentRunId, runBuffer);
+      } catch (RejectedExecutionException e) {
+        // Closed, the value may have been missed by the final flush
+        throw getStatusException(Code.UNAVAILABLE_VALUE, "ExperimentRun write buffer is closed", e);
+      }
+    }
+    if (ackMode == AckMode.BUFFERED) {
+      return CompletableFuture.completedFuture(
+          ExperimentRun.newBuilder().setId(experimentRunId).build());
+    }
+
+    CompletableFuture<ExperimentRun> acknowledgement = new CompletableFuture<>();
+    ScheduledFuture<?> ackTimeout;
+    try {
+      ackTimeout =
+          ackTimeoutExecutor.schedule(
+              () -> {
+                if (!acknowledgement.isDone()) {
+                  acknowledgement.completeExceptionally(
+                      getStatusException(
+                          Code.DEADLINE_EXCEEDED_VALUE,
+                          "Buffered write of ExperimentRun not completed within "
+                              + ackTimeoutMillis
+                              + " ms",
+                          null));
+                }
+              },
+              ackTimeoutMillis,
+              TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      throw getStatusException(Code.UNAVAILABLE_VALUE, "ExperimentRun write buffer is closed", e);
+    }
+    pendingWrite.future.whenComplete(
+        (experimentRun, error) -> {
+          ackTimeout.cancel(false);
+          if (error == null) {
+            acknowledgement.complete(experimentRun);
+          } else if (error instanceof StatusRuntimeException) {
+            acknowledgement.completeExceptionally(error);
+          } else {
+            acknowledgement.completeExceptionally(getInternalException(error));
+          }
+        });
+    return acknowledgement;
+  }
+
+  private static ExperimentRun await(CompletableFuture<ExperimentRun> acknowledgement) {
+    try {
+      return acknowledgement.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw getInternalException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof StatusRuntimeException) {
+        throw (StatusRuntimeException) e.getCause();
+      }
+      throw getInternalException(e.getCause());
+    }
+  }
+
+  private static StatusRuntimeException getStatusException(
+      int code, String errorMessage, Exception cause) {
+    LOGGER.log(Level.WARNING, errorMessage, cause);
+    Status status = Status.newBuilder().setCode(code).setMessage(errorMessage).build();
+    return StatusProto.toStatusRuntimeException(status);
+  }
+
+  private static StatusRuntimeException getInternalException(Throwable cause) {
+    LOGGER.log(Level.WARNING, cause.getMessage(), cause);
+    Status status =
+        Status.newBuilder()
+            .setCode(Code.INTERNAL_VALUE)
+            .setMessage("Buffered write of ExperimentRun failed")
+            .build();
+    return StatusProto.toStatusRuntimeException(status);
+  }
+
+  /**
+   * Write the pending observations and metrics of given ExperimentRun, called before reading or
+   * updating it so requests always see the values logged before them.
+   *
+   * @param String experimentRunId
+   */
+  public void flush(String experimentRunId) {
+    RunBuffer runBuffer = runBufferMap.get(experimentRunId);
+    if (runBuffer != null) {
+      flush(experimentRunId, runBuffer);
+    }
+  }
+
+  /**
+   * Write the pending values of the ExperimentRuns a listing is about to read. A log request only
+   * carries the id of its ExperimentRun, so a listing of a Project or an Experiment writes the
+   * pending values of every run, which are at most flushIntervalMillis of logs, and a listing of
+   * given ids only those of the listed runs.
+   *
+   * @param String projectId --> Project of the listing, empty if none
+   * @param String experimentId --> Experiment of the listing, empty if none
+   * @param List<String> experimentRunIds --> ExperimentRuns of the listing, may be empty
+   */
+  public void flushListing(String projectId, String experimentId, List<String> experimentRunIds) {
+    if (!projectId.isEmpty() || !experimentId.isEmpty()) {
+      flushAll();
+      return;
+    }
+    for (String experimentRunId : experimentRunIds) {
+      flush(experimentRunId);
+    }
+  }
+
+  /** Write the pending values of every ExperimentRun. */
+  public void flushAll() {
+    try {
+      for (Map.Entry<String, RunBuffer> runBuffer : runBufferMap.entrySet()) {
+        flush(runBuffer.getKey(), runBuffer.getValue());
+      }
+    } catch (RuntimeException e) {
+      // Keep the scheduled flush alive, errors are already reported to the pending writes
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Queue a flush of given ExperimentRun on the flush threads, unless one is already queued. The
+   * flag is cleared before the flush drains the buffer, values logged after the drain queue the
+   * next flush.
+   */
+  private void queueFlush(String experimentRunId, RunBuffer runBuffer) {
+    if (runBuffer.flushQueued.compareAndSet(false, true)) {
+      try {
+        flushExecutor.execute(
+            () -> {
+              runBuffer.flushQueued.set(false);
+              flush(experimentRunId, runBuffer);
+            });
+      } catch (RejectedExecutionException e) {
+        runBuffer.flushQueued.set(false);
+        throw e;
+      }
+    }
+  }
+
+  /** Periodic flush, the runs are flushed in parallel by the flush threads. */
+  private void queueFlushAll() {
+    for (Map.Entry<String, RunBuffer> runBuffer : runBufferMap.entrySet()) {
+      queueFlush(runBuffer.getKey(), runBuffer.getValue());
+    }
+  }
+
+  /** Flush the remaining values and stop the flush threads. */
+  public void close() {
+    flushExecutor.shutdown();
+    flushAll();
+    // Every pending write is completed by the final flush
+    ackTimeoutExecutor.shutdown();
+  }
+
+  private void flush(String experimentRunId, RunBuffer runBuffer) {
+    runBuffer.flushLock.lock();
+    try {
+      List<PendingWrite<Observation>> observations = drain(runBuffer, runBuffer.observations);
+      if (!observations.isEmpty()) {
+        List<Observation> values = new ArrayList<>();
+        for (PendingWrite<Observation> observation : observations) {
+          values.add(observation.value);
+        }
+        try {
+          complete(observations, experimentRunDAO.logObservations(experimentRunId, values));
+        } catch (Exception e) {
+          fail(experimentRunId, observations, e);
+        }
+      }
+
+      List<PendingWrite<KeyValue>> metrics = drain(runBuffer, runBuffer.metrics);
+      if (!metrics.isEmpty()) {
+        writeMetrics(experimentRunId, metrics);
+      }
+
+      if (runBuffer.pendingCount.get() == 0) {
+        runBufferMap.remove(experimentRunId, runBuffer);
+      }
+    } finally {
+      runBuffer.flushLock.unlock();
+    }
+  }
+
+  /**
+   * Metric keys must be unique in an ExperimentRun and logMetrics rejects the whole batch if one of
+   * them is a duplicate, such a batch is written again metric by metric so only the duplicates
+   * fail.
+   */
+  private void writeMetrics(String experimentRunId, List<PendingWrite<KeyValue>> metrics) {
+    List<KeyValue> values = new ArrayList<>();
+    for (PendingWrite<KeyValue> metric : metrics) {
+      values.add(metric.value);
+    }
+    try {
+      complete(metrics, experimentRunDAO.logMetrics(experimentRunId, values));
+      return;
+    } catch (StatusRuntimeException e) {
+      if (metrics.size() == 1
+          || StatusProto.fromThrowable(e) == null
+          || StatusProto.fromThrowable(e).getCode() != Code.ALREADY_EXISTS_VALUE) {
+        fail(experimentRunId, metrics, e);
+        return;
+      }
+    } catch (Exception e) {
+      fail(experimentRunId, metrics, e);
+      return;
+    }
+
+    for (PendingWrite<KeyValue> metric : metrics) {
+      try {
+        metric.future.complete(experimentRunDAO.logMetric(experimentRunId, metric.value));
+      } catch (Exception e) {
+        fail(experimentRunId, Collections.singletonList(metric), e);
+      }
+    }
+  }
+
+  private static <T> List<PendingWrite<T>> drain(
+      RunBuffer runBuffer, ConcurrentLinkedQueue<PendingWrite<T>> queue) {
+    List<PendingWrite<T>> pendingWrites = new ArrayList<>();
+    PendingWrite<T> pendingWrite;
+    while ((pendingWrite = queue.poll()) != null) {
+      pendingWrites.add(pendingWrite);
+    }
+    runBuffer.pendingCount.addAndGet(-pendingWrites.size());
+    return pendingWrites;
+  }
+
+  private static void complete(List<? extends PendingWrite<?>> pendingWrites, ExperimentRun run) {
+    for (PendingWrite<?> pendingWrite : pendingWrites) {
+      pendingWrite.future.complete(run);
+    }
+  }
+
+  private void fail(
+      String experimentRunId, List<? extends PendingWrite<?>> pendingWrites, Exception e) {
+    if (ackMode == AckMode.BUFFERED) {
+      LOGGER.log(
+          Level.WARNING,
+          "Buffered write of "
+              + pendingWrites.size()
+              + " values of ExperimentRun "
+              + experimentRunId
+              + " failed : "
+              + e.getMessage(),
+          e);
+    }
+    for (PendingWrite<?> pendingWrite : pendingWrites) {
+      pendingWrite.future.completeExceptionally(e);
+    }
+  }
+}
@@ -0,0 +1,270 @@
+package com.mitdbg.modeldb.experimentRun;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import com.mitdbg.modeldb.App;
+import com.mitdbg.modeldb.ModelDBConstants;
+import com.mitdbg.modeldb.Observation;
+import com.mitdbg.modeldb.databaseServices.DocumentService;
+import com.mitdbg.modeldb.databaseServices.ProtoCodecProvider;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+
+/**
+ * Time-series storage of the observations of ExperimentRuns, out of the ExperimentRun document so
+ * it stays small however long a run is trained. Observations of one ExperimentRun and key are
+ * stored in bucket documents covering bucketMillis of observation timestamps:
+ *
+ * <pre>
+ * {experiment_run_id, key, bucket_start, count, observations: [...]}
+ * </pre>
+ *
+ * A bucket holds at most maxBucketSize observations, a full bucket is continued by a new bucket of
+ * the same bucket_start. The observations of a key are one range read of the index on
+ * experiment_run_id, key and bucket_start, and so are the observations of a page of ExperimentRuns.
+ */
+public class ObservationBucketStore {
+
+  private static final Logger LOGGER = Logger.getLogger(ObservationBucketStore.class.getName());
+  private static final String ID_FIELD = "_id";
+  private static final String POSITION_FIELD = "position";
+
+  private final DocumentService documentService;
+  private final long bucketMillis;
+  private final int maxBucketSize;
+  private final Codec<Observation> observationCodec =
+      ProtoCodecProvider.getCodecRegistry().get(Observation.class);
+
+  /**
+   * @param DocumentService documentService --> DocumentService bound to no other DAO
+   * @param Map<String, Object> bucketPropMap --> bucketMillis and maxBucketSize of the
+   *     observationBuckets section of config.yaml, may be null
+   */
+  public ObservationBucketStore(
+      DocumentService documentService, Map<String, Object> bucketPropMap) {
+    this.documentService = documentService;
+    documentService.checkCollectionAvailability(App.getInstance().getObservationBucketEntity());
+    if (bucketPropMap == null) {
+      bucketPropMap = new LinkedHashMap<>();
+    }
+    this.bucketMillis = ((Number) bucketPropMap.getOrDefault("bucketMillis", 3600000)).longValue();
+    this.maxBucketSize = (Integer) bucketPropMap.getOrDefault("maxBucketSize", 1000);
+    LOGGER.info(
+        "Observation buckets of " + bucketMillis + " ms and at most " + maxBucketSize + " values");
+  }
+
+  /**
+   * Key of an observation: the key of its artifact or of its attribute.
+   *
+   * @param Observation observation
+   * @return String key
+   */
+  public static String getObservationKey(Observation observation) {
+    if (observation.hasArtifact()) {
+      return observation.getArtifact().getKey();
+    }
+    return observation.getAttribute().getKey();
+  }
+
+  /**
+   * Append observations to the buckets of given ExperimentRun, one upsert per key and bucket in a
+   * single bulk write. The count condition of the upsert filter makes a full bucket match nothing,
+   * so the upsert starts the next bucket.
+   *
+   * @param String experimentRunId
+   * @param List<Observation> observations --> observations in the order they were logged
+   */
+  public void insertObservations(String experimentRunId, List<Observation> observations) {
+    List<UpdateOneModel<Document>> updateModels = new ArrayList<>();
+    for (Map.Entry<String, Map<Long, List<Observation>>> keyBuckets :
+        getBucketMap(observations).entrySet()) {
+      for (Map.Entry<Long, List<Observation>> bucket : keyBuckets.getValue().entrySet()) {
+        List<Observation> bucketObservations = bucket.getValue();
+        for (int from = 0; from < bucketObservations.size(); from += maxBucketSize) {
+          List<Observation> chunk =
+              bucketObservations.subList(
+                  from, Math.min(from + maxBucketSize, bucketObservations.size()));
+          Document queryBucket =
+              new Document(ModelDBConstants.EXPERIMENT_RUN_ID, experimentRunId)
+                  .append(ModelDBConstants.KEY, keyBuckets.getKey())
+                  .append(ModelDBConstants.BUCKET_START, bucket.getKey())
+                  .append(
+                      ModelDBConstants.COUNT,
+                      new Document("$lte", maxBucketSize - chunk.size()));
+          Document updateBucket =
+              new Document(
+                      "$push",
+                      new Document(
+                          ModelDBConstants.OBSERVATIONS,
+                          new Document("$each", new ArrayList<>(chunk))))
+                  .append("$inc", new Document(ModelDBConstants.COUNT, chunk.size()));
+          updateModels.add(
+              new UpdateOneModel<>(queryBucket, updateBucket, new UpdateOptions().upsert(true)));
+        }
+      }
+    }
+    documentService.bulkWrite(updateModels);
+  }
+
+  /**
+   * Write the observations embedded in an ExperimentRun stored before the observation buckets. The
+   * _id of each bucket is made of the ExperimentRun, key, bucket_start and position of the bucket,
+   * so writing the same observations again replaces the same buckets instead of duplicating the
+   * observations: an interrupted migration can simply be run again. These buckets are written full,
+   * observations logged later never go to them, and their _id sorts before the ObjectId of the
+   * buckets of later observations.
+   *
+   * @param String experimentRunId
+   * @param List<Observation> observations --> embedded observations, in the order they were logged
+   */
+  public void replaceEmbeddedObservations(String experimentRunId, List<Observation> observations) {
+    List<UpdateOneModel<Document>> updateModels = new ArrayList<>();
+    for (Map.Entry<String, Map<Long, List<Observation>>> keyBuckets :
+        getBucketMap(observations).entrySet()) {
+      for (Map.Entry<Long, List<Observation>> bucket : keyBuckets.getValue().entrySet()) {
+        List<Observation> bucketObservations = bucket.getValue();
+        for (int from = 0; from < bucketObservations.size(); from += maxBucketSize) {
+          List<Observation> chunk =
+              bucketObservations.subList(
+                  from, Math.min(from + maxBucketSize, bucketObservations.size()));
+          Document bucketId =
+              new Document(ModelDBConstants.EXPERIMENT_RUN_ID, experimentRunId)
+                  .append(ModelDBConstants.KEY, keyBuckets.getKey())
+                  .append(ModelDBConstants.BUCKET_START, bucket.getKey())
+                  .append(POSITION_FIELD, from);
+          Document updateBucket =
+              new Document(
+                  "$set",
+                  new Document(ModelDBConstants.EXPERIMENT_RUN_ID, experimentRunId)
+                      .append(ModelDBConstants.KEY, keyBuckets.getKey())
+                      .append(ModelDBConstants.BUCKET_START, bucket.getKey())
+                      .append(ModelDBConstants.COUNT, maxBucketSize)
+                      .append(ModelDBConstants.OBSERVATIONS, new ArrayList<>(chunk)));
+          updateModels.add(
+              new UpdateOneModel<>(
+                  new Document(ID_FIELD, bucketId),
+                  updateBucket,
+                  new UpdateOptions().upsert(true)));
+        }
+      }
+    }
+    documentService.bulkWrite(updateModels);
+  }
+
+  /**
+   * Group observations by key and bucket.
+   *
+   * @param List<Observation> observations
+   * @return Map<String, Map<Long, List<Observation>>> key --> bucket_start --> observations, in
+   *     logging order
+   */
+  private Map<String, Map<Long, List<Observation>>> getBucketMap(List<Observation> observations) {
+    Map<String, Map<Long, List<Observation>>> bucketMap = new LinkedHashMap<>();
+    for (Observation observation : observations) {
+      long bucketStart = Math.floorDiv(observation.getTimestamp(), bucketMillis) * bucketMillis;
+      bucketMap
+          .computeIfAbsent(getObservationKey(observation), key -> new LinkedHashMap<>())
+          .computeIfAbsent(bucketStart, start -> new ArrayList<>())
+          .add(observation);
+    }
+    return bucketMap;
+  }
+
+  /**
+   * Read the observations of given ExperimentRuns in one query, by key, in bucket order and logging
+   * order inside a bucket.
+   *
+   * @param Collection<String> experimentRunIds
+   * @return Map<String, List<Observation>> experimentRunId --> observations, ExperimentRuns without
+   *     observations are not in the map
+   */
+  public Map<String, List<Observation>> getObservations(Collection<String> experimentRunIds) {
+    Map<String, List<Observation>> observationMap = new LinkedHashMap<>();
+    if (experimentRunIds.isEmpty()) {
+      return observationMap;
+    }
+    Document queryBucket =
+        new Document(
+            ModelDBConstants.EXPERIMENT_RUN_ID,
+            new Document("$in", new ArrayList<>(experimentRunIds)));
+    Document projectionDoc =
+        new Document(ModelDBConstants.EXPERIMENT_RUN_ID, 1)
+            .append(ModelDBConstants.OBSERVATIONS, 1);
+    Document sortDoc =
+        new Document(ModelDBConstants.EXPERIMENT_RUN_ID, 1)
+            .append(ModelDBConstants.KEY, 1)
+            .append(ModelDBConstants.BUCKET_START, 1)
+            .append(ID_FIELD, 1);
+    List<BsonDocument> buckets =
+        documentService.findListByObject(
+            queryBucket, projectionDoc, sortDoc, null, BsonDocument.class);
+    for (BsonDocument bucket : buckets) {
+      decodeObservations(
+          bucket,
+          observationMap.computeIfAbsent(
+              bucket.getString(ModelDBConstants.EXPERIMENT_RUN_ID).getValue(),
+              experimentRunId -> new ArrayList<>()));
+    }
+    return observationMap;
+  }
+
+  /**
+   * Read the observations of given ExperimentRun and key, in bucket order and logging order inside
+   * a bucket.
+   *
+   * @param String experimentRunId
+   * @param String observationKey
+   * @return List<Observation> observations --> empty if none was logged
+   */
+  public List<Observation> getObservations(String experimentRunId, String observationKey) {
+    Document queryBucket =
+        new Document(ModelDBConstants.EXPERIMENT_RUN_ID, experimentRunId)
+            .append(ModelDBConstants.KEY, observationKey);
+    Document projectionDoc = new Document(ModelDBConstants.OBSERVATIONS, 1);
+    // _id keeps the buckets of the same bucket_start in creation order
+    Document sortDoc = new Document(ModelDBConstants.BUCKET_START, 1).append(ID_FIELD, 1);
+    List<BsonDocument> buckets =
+        documentService.findListByObject(
+            queryBucket, projectionDoc, sortDoc, null, BsonDocument.class);
+
+    List<Observation> observations = new ArrayList<>();
+    for (BsonDocument bucket : buckets) {
+      decodeObservations(bucket, observations);
+    }
+    return observations;
+  }
+
+  private void decodeObservations(BsonDocument bucket, List<Observation> observations) {
+    DecoderContext decoderContext = DecoderContext.builder().build();
+    BsonArray bucketObservations = bucket.getArray(ModelDBConstants.OBSERVATIONS, new BsonArray());
+    for (BsonValue observation : bucketObservations) {
+      observations.add(
+          observationCodec.decode(
+              new BsonDocumentReader(observation.asDocument()), decoderContext));
+    }
+  }
+
+  /**
+   * Delete every bucket of given ExperimentRun.
+   *
+   * @param String experimentRunId
+   */
+  public void deleteObservations(String experimentRunId) {
+    List<DeleteManyModel<Document>> deleteModels = new ArrayList<>();
+    deleteModels.add(
+        new DeleteManyModel<>(new Document(ModelDBConstants.EXPERIMENT_RUN_ID, experimentRunId)));
+    documentService.bulkWrite(deleteModels);
+  }
+}
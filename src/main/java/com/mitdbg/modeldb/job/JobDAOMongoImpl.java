@@ -1,12 +1,10 @@
 package com.mitdbg.modeldb.job;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.bson.Document;
 import com.google.protobuf.InvalidProtocolBufferException;
-import com.google.protobuf.util.JsonFormat;
 import com.google.rpc.Code;
 import com.google.rpc.Status;
 import com.mitdbg.modeldb.App;
@@ -29,51 +27,16 @@ public class JobDAOMongoImpl implements JobDAO {
     documentService.checkCollectionAvailability(jobEntity);
   }
 
-  /**
-   * Convert list of MongoDB document object to list of Job entity object.
-   *
-   * @param List<Document> documents : list of MongoDB data object.
-   * @return List<Job> : Job entity List
-   * @throws InvalidProtocolBufferException
-   */
-  private List<Job> getJobFromDocuments(List<Document> documents)
-      throws InvalidProtocolBufferException {
-    List<Job> jobList = new ArrayList<>();
-    for (Document document : documents) {
-      Job job = convertJobFromDocument(document);
-      jobList.add(job);
-    }
-    return jobList;
-  }
-
-  /**
-   * Convert MongoDB Document object to Job entity. Here remove MongoDB "_ID" because if _id is
-   * their then both the structure MongoDB Document and Job Entity is different and direct
-   * conversion is not possible that's why "_ID" is remove.
-   *
-   * @param Document document : MongoDB data object.
-   * @return Job job : ProtocolBuffer Object of Job entity.
-   * @throws InvalidProtocolBufferException
-   */
-  private Job convertJobFromDocument(Document document) throws InvalidProtocolBufferException {
-    Job.Builder builder = Job.newBuilder();
-    document.remove("_id");
-    JsonFormat.parser().merge(document.toJson(), builder);
-    return builder.build();
-  }
-
   @Override
   public Job insertJob(Job job) throws InvalidProtocolBufferException {
     documentService.insertOne(job);
-    Document document = (Document) documentService.findByKey(ModelDBConstants.ID, job.getId());
-    return convertJobFromDocument(document);
+    return documentService.findByKey(ModelDBConstants.ID, job.getId(), Job.class);
   }
 
   @Override
   public Job getJob(String entityFieldKey, String entityFieldValue)
       throws InvalidProtocolBufferException {
-    Document document = (Document) documentService.findByKey(entityFieldKey, entityFieldValue);
-    return convertJobFromDocument(document);
+    return documentService.findByKey(entityFieldKey, entityFieldValue, Job.class);
   }
 
   @Override
@@ -84,13 +47,24 @@ public class JobDAOMongoImpl implements JobDAO {
   @Override
   public Job updateJob(String jobId, JobStatus jobStatus, String endTime)
       throws InvalidProtocolBufferException {
-    Document document = (Document) documentService.findByKey(ModelDBConstants.ID, jobId);
-    Job existingJob = convertJobFromDocument(document);
-    existingJob = existingJob.toBuilder().setEndTime(endTime).setJobStatus(jobStatus).build();
-    Long updatedCount =
-        documentService.updateOne(ModelDBConstants.ID, existingJob.getId(), existingJob);
-    if (updatedCount > 0) {
-      return existingJob;
+    Document updatedFields = new Document();
+    updatedFields.append(ModelDBConstants.JOB_STATUS, jobStatus.name());
+    updatedFields.append(ModelDBConstants.END_TIME, endTime);
+
+    // Match only if status or endTime actually changes, same as a zero modified count before
+    Document queryJob = new Document();
+    queryJob.append(ModelDBConstants.ID, jobId);
+    queryJob.append(
+        "$or",
+        Arrays.asList(
+            new Document(ModelDBConstants.JOB_STATUS, new Document("$ne", jobStatus.name())),
+            new Document(ModelDBConstants.END_TIME, new Document("$ne", endTime))));
+
+    Job updatedJob =
+        documentService.findOneAndUpdate(
+            queryJob, new Document("$set", updatedFields), null, Job.class);
+    if (updatedJob != null) {
+      return updatedJob;
     } else {
       String errorMessage = "Added Job status or endTime is already present in Job";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -1,11 +1,11 @@
 package com.mitdbg.modeldb.job;
 
-import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import com.google.protobuf.Any;
 import com.google.rpc.Code;
 import com.google.rpc.Status;
+import com.mitdbg.modeldb.App;
 import com.mitdbg.modeldb.CreateJob;
 import com.mitdbg.modeldb.DeleteJob;
 import com.mitdbg.modeldb.GetJob;
@@ -52,7 +52,7 @@ public class JobServiceImpl extends JobServiceImplBase {
      */
     Job.Builder jobBuilder =
         Job.newBuilder()
-            .setId(UUID.randomUUID().toString())
+            .setId(App.getInstance().getIdGenerator().generateId())
             .setDescription(request.getDescription())
             .setStartTime(request.getStartTime())
             .setEndTime(request.getEndTime())
@@ -0,0 +1,40 @@
+package com.mitdbg.modeldb.monitoring;
+
+import com.mitdbg.modeldb.ModelDBHibernateUtil;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+/**
+ * Connections of the RDBMS connection pool: in use, idle, total and threads waiting for one.
+ * Nothing is written while the pool is not started, e.g. with MongoDB.
+ */
+public class ConnectionPoolMetrics implements MetricsSource {
+
+  private static final String ACTIVE_METRIC_NAME = "modeldb_db_pool_active_connections";
+  private static final String IDLE_METRIC_NAME = "modeldb_db_pool_idle_connections";
+  private static final String TOTAL_METRIC_NAME = "modeldb_db_pool_total_connections";
+  private static final String PENDING_METRIC_NAME = "modeldb_db_pool_pending_threads";
+  private static final ConnectionPoolMetrics INSTANCE = new ConnectionPoolMetrics();
+
+  private ConnectionPoolMetrics() {}
+
+  public static ConnectionPoolMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  public void writeMetrics(StringBuilder builder) {
+    HikariPoolMXBean poolMXBean = ModelDBHibernateUtil.getConnectionPoolMXBean();
+    if (poolMXBean == null) {
+      return;
+    }
+    writeGauge(builder, ACTIVE_METRIC_NAME, poolMXBean.getActiveConnections());
+    writeGauge(builder, IDLE_METRIC_NAME, poolMXBean.getIdleConnections());
+    writeGauge(builder, TOTAL_METRIC_NAME, poolMXBean.getTotalConnections());
+    writeGauge(builder, PENDING_METRIC_NAME, poolMXBean.getThreadsAwaitingConnection());
+  }
+
+  private static void writeGauge(StringBuilder builder, String metricName, int value) {
+    builder.append("# TYPE ").append(metricName).append(" gauge\n");
+    builder.append(metricName).append(' ').append(value).append('\n');
+  }
+}
@@ -0,0 +1,76 @@
+package com.mitdbg.modeldb.monitoring;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency histograms of the database operations, by layer (mongo, codec, hibernate), operation and
+ * entity. Layers are timed separately, so the time of a call can be attributed to database I/O or
+ * to the conversion between ProtocolBuffer entities and BSON.
+ */
+public class DatabaseMetrics implements MetricsSource {
+
+  public static final String MONGO = "mongo";
+  public static final String CODEC = "codec";
+  public static final String HIBERNATE = "hibernate";
+
+  private static final String METRIC_NAME = "modeldb_db_operation_seconds";
+  private static final DatabaseMetrics INSTANCE = new DatabaseMetrics();
+
+  // layer --> operation --> entity --> histogram, looked up without allocation once created
+  private final Map<String, Map<String, Map<String, LatencyHistogram>>> histogramMap =
+      new ConcurrentHashMap<>();
+
+  private DatabaseMetrics() {}
+
+  public static DatabaseMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Record one operation.
+   *
+   * @param String layer --> MONGO, CODEC or HIBERNATE
+   * @param String operation --> e.g. findByKey, decode, jdbcExecuteStatement
+   * @param String entity --> collection or entity name, e.g. ExperimentRun
+   * @param long nanos --> elapsed time in nanoseconds
+   */
+  public void record(String layer, String operation, String entity, long nanos) {
+    Map<String, Map<String, LatencyHistogram>> operationMap = histogramMap.get(layer);
+    if (operationMap == null) {
+      operationMap = histogramMap.computeIfAbsent(layer, key -> new ConcurrentHashMap<>());
+    }
+    Map<String, LatencyHistogram> entityMap = operationMap.get(operation);
+    if (entityMap == null) {
+      entityMap = operationMap.computeIfAbsent(operation, key -> new ConcurrentHashMap<>());
+    }
+    LatencyHistogram histogram = entityMap.get(entity);
+    if (histogram == null) {
+      histogram = entityMap.computeIfAbsent(entity, key -> new LatencyHistogram());
+    }
+    histogram.record(nanos);
+  }
+
+  @Override
+  public void writeMetrics(StringBuilder builder) {
+    builder.append("# TYPE ").append(METRIC_NAME).append(" histogram\n");
+    for (Map.Entry<String, Map<String, Map<String, LatencyHistogram>>> layerEntry :
+        histogramMap.entrySet()) {
+      for (Map.Entry<String, Map<String, LatencyHistogram>> operationEntry :
+          layerEntry.getValue().entrySet()) {
+        for (Map.Entry<String, LatencyHistogram> entityEntry :
+            operationEntry.getValue().entrySet()) {
+          String labels =
+              "layer=\""
+                  + layerEntry.getKey()
+                  + "\",operation=\""
+                  + operationEntry.getKey()
+                  + "\",entity=\""
+                  + entityEntry.getKey()
+                  + "\"";
+          entityEntry.getValue().writeTo(builder, METRIC_NAME, labels);
+        }
+      }
+    }
+  }
+}
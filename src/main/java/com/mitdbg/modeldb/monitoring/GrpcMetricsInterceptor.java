@@ -0,0 +1,172 @@
+package com.mitdbg.modeldb.monitoring;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import io.grpc.ForwardingServerCall.SimpleForwardingServerCall;
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * ServerInterceptor recording per method the started calls, the handled calls by status code, the
+ * calls in flight and a latency histogram. Counters of a method are created on its first call,
+ * afterwards recording only updates preallocated atomic counters.
+ */
+public class GrpcMetricsInterceptor implements ServerInterceptor, MetricsSource {
+
+  private static final Status.Code[] STATUS_CODES = Status.Code.values();
+  private static final double[] EXPOSED_QUANTILES = {0.5, 0.9, 0.99};
+
+  private final Map<String, MethodMetrics> methodMetricsMap = new ConcurrentHashMap<>();
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    MethodMetrics methodMetrics = getMethodMetrics(call.getMethodDescriptor().getFullMethodName());
+    MetricsServerCall<ReqT, RespT> metricsServerCall =
+        new MetricsServerCall<>(call, methodMetrics, System.nanoTime());
+    methodMetrics.started.incrementAndGet();
+    methodMetrics.inFlight.incrementAndGet();
+
+    ServerCall.Listener<ReqT> listener;
+    try {
+      listener = next.startCall(metricsServerCall, headers);
+    } catch (RuntimeException e) {
+      metricsServerCall.finish(Status.Code.UNKNOWN);
+      throw e;
+    }
+    return new SimpleForwardingServerCallListener<ReqT>(listener) {
+      @Override
+      public void onCancel() {
+        metricsServerCall.finish(Status.Code.CANCELLED);
+        super.onCancel();
+      }
+    };
+  }
+
+  private MethodMetrics getMethodMetrics(String fullMethodName) {
+    MethodMetrics methodMetrics = methodMetricsMap.get(fullMethodName);
+    if (methodMetrics == null) {
+      methodMetrics = methodMetricsMap.computeIfAbsent(fullMethodName, MethodMetrics::new);
+    }
+    return methodMetrics;
+  }
+
+  @Override
+  public void writeMetrics(StringBuilder builder) {
+    builder.append("# TYPE grpc_server_started_total counter\n");
+    for (MethodMetrics methodMetrics : methodMetricsMap.values()) {
+      builder
+          .append("grpc_server_started_total{")
+          .append(methodMetrics.labels)
+          .append("} ")
+          .append(methodMetrics.started.get())
+          .append('\n');
+    }
+
+    builder.append("# TYPE grpc_server_handled_total counter\n");
+    for (MethodMetrics methodMetrics : methodMetricsMap.values()) {
+      for (int i = 0; i < STATUS_CODES.length; i++) {
+        long handled = methodMetrics.handledByCode.get(i);
+        if (handled > 0) {
+          builder
+              .append("grpc_server_handled_total{")
+              .append(methodMetrics.labels)
+              .append(",code=\"")
+              .append(STATUS_CODES[i].name())
+              .append("\"} ")
+              .append(handled)
+              .append('\n');
+        }
+      }
+    }
+
+    builder.append("# TYPE grpc_server_in_flight gauge\n");
+    for (MethodMetrics methodMetrics : methodMetricsMap.values()) {
+      builder
+          .append("grpc_server_in_flight{")
+          .append(methodMetrics.labels)
+          .append("} ")
+          .append(methodMetrics.inFlight.get())
+          .append('\n');
+    }
+
+    builder.append("# TYPE grpc_server_handling_seconds histogram\n");
+    for (MethodMetrics methodMetrics : methodMetricsMap.values()) {
+      methodMetrics.latency.writeTo(builder, "grpc_server_handling_seconds", methodMetrics.labels);
+    }
+
+    builder.append("# TYPE grpc_server_handling_seconds_quantile gauge\n");
+    for (MethodMetrics methodMetrics : methodMetricsMap.values()) {
+      for (double quantile : EXPOSED_QUANTILES) {
+        builder
+            .append("grpc_server_handling_seconds_quantile{")
+            .append(methodMetrics.labels)
+            .append(",quantile=\"")
+            .append(quantile)
+            .append("\"} ")
+            .append(methodMetrics.latency.getQuantileSeconds(quantile))
+            .append('\n');
+      }
+    }
+  }
+
+  /** Counters of one gRPC method. */
+  private static class MethodMetrics {
+    private final String labels;
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLongArray handledByCode = new AtomicLongArray(STATUS_CODES.length);
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private MethodMetrics(String fullMethodName) {
+      int separatorIndex = fullMethodName.lastIndexOf('/');
+      this.labels =
+          "service=\""
+              + fullMethodName.substring(0, Math.max(separatorIndex, 0))
+              + "\",method=\""
+              + fullMethodName.substring(separatorIndex + 1)
+              + "\"";
+    }
+  }
+
+  /** ServerCall recording the status and the latency of the call once it is closed. */
+  private static class MetricsServerCall<ReqT, RespT>
+      extends SimpleForwardingServerCall<ReqT, RespT> {
+
+    private static final AtomicIntegerFieldUpdater<MetricsServerCall> FINISHED_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(MetricsServerCall.class, "finished");
+
+    private final MethodMetrics methodMetrics;
+    private final long startNanos;
+    private volatile int finished = 0;
+
+    private MetricsServerCall(
+        ServerCall<ReqT, RespT> delegate, MethodMetrics methodMetrics, long startNanos) {
+      super(delegate);
+      this.methodMetrics = methodMetrics;
+      this.startNanos = startNanos;
+    }
+
+    @Override
+    public void close(Status status, Metadata trailers) {
+      finish(status.getCode());
+      super.close(status, trailers);
+    }
+
+    /** Record the call once, it may be both closed and cancelled. */
+    private void finish(Status.Code code) {
+      if (FINISHED_UPDATER.compareAndSet(this, 0, 1)) {
+        methodMetrics.latency.record(System.nanoTime() - startNanos);
+        methodMetrics.handledByCode.incrementAndGet(code.ordinal());
+        methodMetrics.inFlight.decrementAndGet();
+      }
+    }
+  }
+}
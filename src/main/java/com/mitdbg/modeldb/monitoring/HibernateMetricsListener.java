@@ -0,0 +1,70 @@
+package com.mitdbg.modeldb.monitoring;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Hibernate session event listener recording JDBC statement, batch and flush latencies, and the
+ * whole session duration, in {@link DatabaseMetrics}. Hibernate creates one listener per session,
+ * registered for every session through the hibernate.session.events.auto setting.
+ */
+public class HibernateMetricsListener extends BaseSessionEventListener {
+
+  private static final long serialVersionUID = 1L;
+  private static final String ALL_ENTITIES = "all";
+
+  private final long sessionStartNanos = System.nanoTime();
+  private long prepareStartNanos;
+  private long executeStartNanos;
+  private long batchStartNanos;
+  private long flushStartNanos;
+
+  private static void record(String operation, long startNanos) {
+    DatabaseMetrics.getInstance()
+        .record(DatabaseMetrics.HIBERNATE, operation, ALL_ENTITIES, System.nanoTime() - startNanos);
+  }
+
+  @Override
+  public void jdbcPrepareStatementStart() {
+    prepareStartNanos = System.nanoTime();
+  }
+
+  @Override
+  public void jdbcPrepareStatementEnd() {
+    record("jdbcPrepareStatement", prepareStartNanos);
+  }
+
+  @Override
+  public void jdbcExecuteStatementStart() {
+    executeStartNanos = System.nanoTime();
+  }
+
+  @Override
+  public void jdbcExecuteStatementEnd() {
+    record("jdbcExecuteStatement", executeStartNanos);
+  }
+
+  @Override
+  public void jdbcExecuteBatchStart() {
+    batchStartNanos = System.nanoTime();
+  }
+
+  @Override
+  public void jdbcExecuteBatchEnd() {
+    record("jdbcExecuteBatch", batchStartNanos);
+  }
+
+  @Override
+  public void flushStart() {
+    flushStartNanos = System.nanoTime();
+  }
+
+  @Override
+  public void flushEnd(int numberOfEntities, int numberOfCollections) {
+    record("flush", flushStartNanos);
+  }
+
+  @Override
+  public void end() {
+    record("session", sessionStartNanos);
+  }
+}
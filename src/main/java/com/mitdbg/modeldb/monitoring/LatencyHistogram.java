@@ -0,0 +1,134 @@
+package com.mitdbg.modeldb.monitoring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram with HDR-style log-linear buckets: every power of two range of
+ * microseconds is split in {@link #SUB_BUCKET_COUNT} linear sub-buckets, so any recorded value is
+ * known within 25%. Buckets are allocated once, recording a value only updates atomic counters.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  // 2^35 microseconds is about 9.5 hours, longer values are counted in the last bucket
+  private static final int MAX_EXPONENT = 35;
+  private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * MAX_EXPONENT;
+  // Bounds exposed in the text format, one per power of two from 2^6 microseconds (64us)
+  private static final int MIN_EXPOSED_EXPONENT = 6;
+
+  private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sumMicros = new AtomicLong();
+
+  /**
+   * Record one latency.
+   *
+   * @param long nanos --> elapsed time in nanoseconds
+   */
+  public void record(long nanos) {
+    long micros = Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 0);
+    bucketCounts.incrementAndGet(getBucketIndex(micros));
+    count.incrementAndGet();
+    sumMicros.addAndGet(micros);
+  }
+
+  private static int getBucketIndex(long micros) {
+    if (micros < SUB_BUCKET_COUNT) {
+      return (int) micros;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    if (exponent >= MAX_EXPONENT + SUB_BUCKET_BITS - 1) {
+      return BUCKET_COUNT - 1;
+    }
+    int subBucket = (int) ((micros >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1));
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /** Exclusive upper bound in microseconds of the values counted in given bucket. */
+  private static long getBucketUpperBound(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index + 1L;
+    }
+    int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+    int subBucket = index % SUB_BUCKET_COUNT;
+    return (long) (SUB_BUCKET_COUNT + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Return the latency below which given fraction of the recorded values fall, as the upper bound
+   * of the bucket containing that rank.
+   *
+   * @param double quantile --> between 0 and 1, e.g. 0.99
+   * @return double latency in seconds, 0 if nothing is recorded
+   */
+  public double getQuantileSeconds(double quantile) {
+    long total = count.get();
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(quantile * total);
+    long cumulative = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      cumulative += bucketCounts.get(i);
+      if (cumulative >= rank) {
+        return toSeconds(getBucketUpperBound(i));
+      }
+    }
+    return toSeconds(getBucketUpperBound(BUCKET_COUNT - 1));
+  }
+
+  /**
+   * Append the histogram in Prometheus text format: cumulative buckets at every power of two, the
+   * sum and the count.
+   *
+   * @param StringBuilder builder
+   * @param String name --> metric name, e.g. grpc_server_handling_seconds
+   * @param String labels --> labels without braces, e.g. method="a/b"
+   */
+  public void writeTo(StringBuilder builder, String name, String labels) {
+    long cumulative = 0;
+    int index = 0;
+    for (int exponent = MIN_EXPOSED_EXPONENT; exponent <= MAX_EXPONENT; exponent++) {
+      long bound = 1L << exponent;
+      while (index < BUCKET_COUNT && getBucketUpperBound(index) <= bound) {
+        cumulative += bucketCounts.get(index++);
+      }
+      builder
+          .append(name)
+          .append("_bucket{")
+          .append(labels)
+          .append(",le=\"")
+          .append(toSeconds(bound))
+          .append("\"} ")
+          .append(cumulative)
+          .append('\n');
+    }
+    long total = count.get();
+    builder
+        .append(name)
+        .append("_bucket{")
+        .append(labels)
+        .append(",le=\"+Inf\"} ")
+        .append(total)
+        .append('\n');
+    builder
+        .append(name)
+        .append("_sum{")
+        .append(labels)
+        .append("} ")
+        .append(toSeconds(sumMicros.get()))
+        .append('\n');
+    builder.append(name).append("_count{").append(labels).append("} ").append(total).append('\n');
+  }
+
+  private static double toSeconds(long micros) {
+    return micros / 1_000_000.0;
+  }
+}
@@ -0,0 +1,64 @@
+package com.mitdbg.modeldb.monitoring;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal HTTP endpoint serving the metrics of the registered sources at /metrics in Prometheus
+ * text exposition format. It is bound to a local address, metrics are not meant to be public.
+ */
+public class MetricsHttpServer {
+
+  private static final Logger LOGGER = Logger.getLogger(MetricsHttpServer.class.getName());
+  private static final String METRICS_PATH = "/metrics";
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final List<MetricsSource> metricsSources = new CopyOnWriteArrayList<>();
+  private final HttpServer httpServer;
+
+  public MetricsHttpServer(String host, Integer port) throws IOException {
+    httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+    httpServer.createContext(METRICS_PATH, this::handleMetricsRequest);
+  }
+
+  public void addMetricsSource(MetricsSource metricsSource) {
+    metricsSources.add(metricsSource);
+  }
+
+  public void start() {
+    httpServer.start();
+    LOGGER.info("Metrics endpoint started, listening on : " + httpServer.getAddress());
+  }
+
+  public void stop() {
+    httpServer.stop(0);
+  }
+
+  private void handleMetricsRequest(HttpExchange exchange) throws IOException {
+    try {
+      StringBuilder builder = new StringBuilder();
+      for (MetricsSource metricsSource : metricsSources) {
+        metricsSource.writeMetrics(builder);
+      }
+      byte[] response = builder.toString().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, response.length);
+      try (OutputStream outputStream = exchange.getResponseBody()) {
+        outputStream.write(response);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Metrics exposition failed", e);
+      exchange.sendResponseHeaders(500, -1);
+    } finally {
+      exchange.close();
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package com.mitdbg.modeldb.monitoring;
+
+/** Component whose metrics are served by {@link MetricsHttpServer}. */
+public interface MetricsSource {
+
+  /**
+   * Append the current metrics in Prometheus text exposition format.
+   *
+   * @param StringBuilder builder
+   */
+  void writeMetrics(StringBuilder builder);
+}
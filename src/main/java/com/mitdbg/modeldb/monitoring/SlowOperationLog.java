@@ -0,0 +1,257 @@
+package com.mitdbg.modeldb.monitoring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+
+/**
+ * Records the database operations slower than a configurable threshold. A slow operation is logged
+ * with its query shape, literal values being replaced by "?" so operations of the same shape can be
+ * grouped, and kept in a bounded ring of recent slow operations served by {@link
+ * SlowOperationService}. Operations under the threshold only cost one comparison.
+ */
+public class SlowOperationLog {
+
+  private static final Logger LOGGER = Logger.getLogger(SlowOperationLog.class.getName());
+  private static final SlowOperationLog INSTANCE = new SlowOperationLog();
+  private static final String PLACEHOLDER = "?";
+  private static final int MAX_EXPLAIN_LENGTH = 4000;
+
+  private volatile long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(500);
+  private volatile boolean explainEnabled = false;
+  private volatile AtomicReferenceArray<SlowOperation> slowOperations =
+      new AtomicReferenceArray<>(100);
+  private final AtomicLong sequence = new AtomicLong();
+
+  private SlowOperationLog() {}
+
+  public static SlowOperationLog getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Apply the slowOperationLog section of config.yaml, missing keys keep their default value.
+   *
+   * @param Map<String, Object> slowOperationLogPropMap --> thresholdMillis, capacity, explain
+   */
+  public void configure(Map<String, Object> slowOperationLogPropMap) {
+    if (slowOperationLogPropMap == null) {
+      return;
+    }
+    Integer thresholdMillis = (Integer) slowOperationLogPropMap.get("thresholdMillis");
+    if (thresholdMillis != null) {
+      thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+    Integer capacity = (Integer) slowOperationLogPropMap.get("capacity");
+    if (capacity != null && capacity > 0 && capacity != slowOperations.length()) {
+      slowOperations = new AtomicReferenceArray<>(capacity);
+      sequence.set(0);
+    }
+    Boolean explain = (Boolean) slowOperationLogPropMap.get("explain");
+    if (explain != null) {
+      explainEnabled = explain;
+    }
+  }
+
+  public boolean isSlow(long durationNanos) {
+    return durationNanos >= thresholdNanos;
+  }
+
+  /**
+   * Record an operation if it is slower than the threshold.
+   *
+   * @param String layer --> DatabaseMetrics.MONGO or DatabaseMetrics.HIBERNATE
+   * @param String entity --> collection or entity name, e.g. ExperimentRun
+   * @param String operation --> e.g. findListByObject
+   * @param Object query --> BSON filter, aggregation pipeline or parameterized HQL
+   * @param long durationNanos --> elapsed time in nanoseconds
+   * @param long documentCount --> number of returned documents or rows
+   * @param Supplier<String> explainSupplier --> query plan, only called when explain is enabled
+   */
+  public void record(
+      String layer,
+      String entity,
+      String operation,
+      Object query,
+      long durationNanos,
+      long documentCount,
+      Supplier<String> explainSupplier) {
+    if (!isSlow(durationNanos)) {
+      return;
+    }
+    String queryShape = getQueryShape(query);
+    long durationMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    String explain = null;
+    if (explainEnabled && explainSupplier != null) {
+      try {
+        explain = truncate(explainSupplier.get());
+      } catch (RuntimeException e) {
+        LOGGER.log(Level.WARNING, "Explain of slow operation failed", e);
+      }
+    }
+
+    LOGGER.log(
+        Level.WARNING,
+        "Slow {0} operation {1} on {2} took {3} ms returning {4} documents, query shape : {5}",
+        new Object[] {layer, operation, entity, durationMillis, documentCount, queryShape});
+    if (explain != null) {
+      LOGGER.log(
+          Level.WARNING, "Plan of slow operation {0} : {1}", new Object[] {operation, explain});
+    }
+
+    SlowOperation slowOperation =
+        new SlowOperation(
+            System.currentTimeMillis(),
+            layer,
+            entity,
+            operation,
+            queryShape,
+            durationMillis,
+            documentCount,
+            explain);
+    AtomicReferenceArray<SlowOperation> ring = slowOperations;
+    long index = sequence.getAndIncrement();
+    ring.set((int) (index % ring.length()), slowOperation);
+  }
+
+  /** @return the recent slow operations, newest first */
+  public List<SlowOperation> getRecentSlowOperations() {
+    AtomicReferenceArray<SlowOperation> ring = slowOperations;
+    long last = sequence.get();
+    int count = (int) Math.min(last, ring.length());
+    List<SlowOperation> recentSlowOperations = new ArrayList<>(count);
+    for (long index = last - 1; index >= last - count; index--) {
+      SlowOperation slowOperation = ring.get((int) (index % ring.length()));
+      if (slowOperation != null) {
+        recentSlowOperations.add(slowOperation);
+      }
+    }
+    return recentSlowOperations;
+  }
+
+  /**
+   * HQL is already parameterized and kept as is, BSON documents and pipelines keep their field
+   * names and operators while every value is replaced by a placeholder.
+   */
+  private static String getQueryShape(Object query) {
+    if (query instanceof String) {
+      return (String) query;
+    }
+    if (query instanceof Map) {
+      return new Document(normalizeMap((Map<?, ?>) query)).toJson();
+    }
+    if (query instanceof List) {
+      List<String> stages = new ArrayList<>();
+      for (Object stage : (List<?>) query) {
+        stages.add(getQueryShape(stage));
+      }
+      return stages.toString();
+    }
+    return PLACEHOLDER;
+  }
+
+  private static Map<String, Object> normalizeMap(Map<?, ?> map) {
+    Document normalized = new Document();
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      normalized.put(String.valueOf(entry.getKey()), normalizeValue(entry.getValue()));
+    }
+    return normalized;
+  }
+
+  private static Object normalizeValue(Object value) {
+    if (value instanceof Map) {
+      return normalizeMap((Map<?, ?>) value);
+    }
+    if (value instanceof List) {
+      List<?> values = (List<?>) value;
+      // Operands of $and, $or and pipeline stages are documents whose shape matters, the elements
+      // of an $in list are values whose number would only split identical shapes
+      if (!values.isEmpty() && values.stream().allMatch(element -> element instanceof Map)) {
+        List<Object> normalized = new ArrayList<>();
+        for (Object element : values) {
+          normalized.add(normalizeMap((Map<?, ?>) element));
+        }
+        return normalized;
+      }
+    }
+    return PLACEHOLDER;
+  }
+
+  private static String truncate(String explain) {
+    if (explain == null || explain.length() <= MAX_EXPLAIN_LENGTH) {
+      return explain;
+    }
+    return explain.substring(0, MAX_EXPLAIN_LENGTH) + "...";
+  }
+
+  /** One recorded slow operation. */
+  public static class SlowOperation {
+    private final long timestamp;
+    private final String layer;
+    private final String entity;
+    private final String operation;
+    private final String queryShape;
+    private final long durationMillis;
+    private final long documentCount;
+    private final String explain;
+
+    private SlowOperation(
+        long timestamp,
+        String layer,
+        String entity,
+        String operation,
+        String queryShape,
+        long durationMillis,
+        long documentCount,
+        String explain) {
+      this.timestamp = timestamp;
+      this.layer = layer;
+      this.entity = entity;
+      this.operation = operation;
+      this.queryShape = queryShape;
+      this.durationMillis = durationMillis;
+      this.documentCount = documentCount;
+      this.explain = explain;
+    }
+
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    public String getLayer() {
+      return layer;
+    }
+
+    public String getEntity() {
+      return entity;
+    }
+
+    public String getOperation() {
+      return operation;
+    }
+
+    public String getQueryShape() {
+      return queryShape;
+    }
+
+    public long getDurationMillis() {
+      return durationMillis;
+    }
+
+    public long getDocumentCount() {
+      return documentCount;
+    }
+
+    /** @return the query plan, null if explain is disabled or not supported by the layer */
+    public String getExplain() {
+      return explain;
+    }
+  }
+}
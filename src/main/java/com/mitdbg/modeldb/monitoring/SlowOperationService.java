@@ -0,0 +1,96 @@
+package com.mitdbg.modeldb.monitoring;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import com.google.protobuf.Any;
+import com.google.protobuf.Empty;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.google.rpc.Code;
+import com.google.rpc.Status;
+import io.grpc.BindableService;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.protobuf.StatusProto;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Admin RPC returning the recent slow database operations recorded by {@link SlowOperationLog},
+ * newest first, as a Struct whose slow_operations field lists one Struct per operation.
+ */
+public class SlowOperationService implements BindableService {
+
+  private static final Logger LOGGER = Logger.getLogger(SlowOperationService.class.getName());
+  public static final String SERVICE_NAME = "modeldb.AdminService";
+
+  private static final MethodDescriptor<Empty, Struct> GET_SLOW_OPERATIONS_METHOD =
+      MethodDescriptor.<Empty, Struct>newBuilder()
+          .setType(MethodType.UNARY)
+          .setFullMethodName(
+              MethodDescriptor.generateFullMethodName(SERVICE_NAME, "getSlowOperations"))
+          .setRequestMarshaller(ProtoUtils.marshaller(Empty.getDefaultInstance()))
+          .setResponseMarshaller(ProtoUtils.marshaller(Struct.getDefaultInstance()))
+          .build();
+
+  @Override
+  public ServerServiceDefinition bindService() {
+    return ServerServiceDefinition.builder(SERVICE_NAME)
+        .addMethod(GET_SLOW_OPERATIONS_METHOD, ServerCalls.asyncUnaryCall(this::getSlowOperations))
+        .build();
+  }
+
+  public void getSlowOperations(Empty request, StreamObserver<Struct> responseObserver) {
+    try {
+      ListValue.Builder slowOperationList = ListValue.newBuilder();
+      for (SlowOperationLog.SlowOperation slowOperation :
+          SlowOperationLog.getInstance().getRecentSlowOperations()) {
+        slowOperationList.addValues(
+            Value.newBuilder().setStructValue(getSlowOperationStruct(slowOperation)));
+      }
+      Struct response =
+          Struct.newBuilder()
+              .putFields(
+                  "slow_operations", Value.newBuilder().setListValue(slowOperationList).build())
+              .build();
+      responseObserver.onNext(response);
+      responseObserver.onCompleted();
+    } catch (Exception e) {
+      LOGGER.log(Level.WARNING, e.getMessage(), e);
+      Status status =
+          Status.newBuilder()
+              .setCode(Code.INTERNAL_VALUE)
+              .setMessage("Internal server error.")
+              .addDetails(Any.pack(Struct.getDefaultInstance()))
+              .build();
+      responseObserver.onError(StatusProto.toStatusRuntimeException(status));
+    }
+  }
+
+  private static Struct getSlowOperationStruct(SlowOperationLog.SlowOperation slowOperation) {
+    Struct.Builder struct =
+        Struct.newBuilder()
+            .putFields("timestamp", numberValue(slowOperation.getTimestamp()))
+            .putFields("layer", stringValue(slowOperation.getLayer()))
+            .putFields("entity", stringValue(slowOperation.getEntity()))
+            .putFields("operation", stringValue(slowOperation.getOperation()))
+            .putFields("query_shape", stringValue(slowOperation.getQueryShape()))
+            .putFields("duration_millis", numberValue(slowOperation.getDurationMillis()))
+            .putFields("document_count", numberValue(slowOperation.getDocumentCount()));
+    if (slowOperation.getExplain() != null) {
+      struct.putFields("explain", stringValue(slowOperation.getExplain()));
+    }
+    return struct.build();
+  }
+
+  private static Value stringValue(String value) {
+    return Value.newBuilder().setStringValue(value == null ? "" : value).build();
+  }
+
+  private static Value numberValue(long value) {
+    return Value.newBuilder().setNumberValue(value).build();
+  }
+}
@@ -0,0 +1,172 @@
+package com.mitdbg.modeldb.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mitdbg.modeldb.ContinuationToken;
+import com.mitdbg.modeldb.Experiment;
+import com.mitdbg.modeldb.ExperimentRun;
+import com.mitdbg.modeldb.KeyValue;
+import com.mitdbg.modeldb.ModelDBConstants;
+import com.mitdbg.modeldb.Project;
+import com.mitdbg.modeldb.cache.EntityCache;
+
+/**
+ * ProjectDAO of any backend with an {@link EntityCache} of the Projects read by id. Every write of
+ * a Project invalidates it after the write, deleting a Project also invalidates its cached
+ * Experiments and ExperimentRuns since the backends delete them with it.
+ */
+public class CachedProjectDAO implements ProjectDAO {
+
+  private final ProjectDAO projectDAO;
+  private final EntityCache<Project> projectCache;
+  private final EntityCache<Experiment> experimentCache;
+  private final EntityCache<ExperimentRun> experimentRunCache;
+
+  /**
+   * @param ProjectDAO projectDAO --> DAO of the backend
+   * @param EntityCache<Project> projectCache
+   * @param EntityCache<Experiment> experimentCache --> cache of the ExperimentDAO, may be null
+   * @param EntityCache<ExperimentRun> experimentRunCache --> cache of the ExperimentRunDAO, may be
+   *     null
+   */
+  public CachedProjectDAO(
+      ProjectDAO projectDAO,
+      EntityCache<Project> projectCache,
+      EntityCache<Experiment> experimentCache,
+      EntityCache<ExperimentRun> experimentRunCache) {
+    this.projectDAO = projectDAO;
+    this.projectCache = projectCache;
+    this.experimentCache = experimentCache;
+    this.experimentRunCache = experimentRunCache;
+  }
+
+  @Override
+  public Project insertProject(Project project) throws InvalidProtocolBufferException {
+    return projectDAO.insertProject(project);
+  }
+
+  @Override
+  public Project updateProject(String projectId, Project project)
+      throws InvalidProtocolBufferException {
+    try {
+      return projectDAO.updateProject(projectId, project);
+    } finally {
+      projectCache.invalidate(projectId);
+    }
+  }
+
+  @Override
+  public Project updateProjectAttributes(String projectId, KeyValue attribute)
+      throws InvalidProtocolBufferException {
+    try {
+      return projectDAO.updateProjectAttributes(projectId, attribute);
+    } finally {
+      projectCache.invalidate(projectId);
+    }
+  }
+
+  @Override
+  public List<KeyValue> getProjectAttributes(
+      String projectId, List<String> attributeKeyList, Boolean getAll)
+      throws InvalidProtocolBufferException {
+    return projectDAO.getProjectAttributes(projectId, attributeKeyList, getAll);
+  }
+
+  @Override
+  public Boolean deleteProject(String projectId) {
+    try {
+      return projectDAO.deleteProject(projectId);
+    } finally {
+      projectCache.invalidate(projectId);
+      if (experimentCache != null) {
+        experimentCache.invalidateIf(experiment -> experiment.getProjectId().equals(projectId));
+      }
+      if (experimentRunCache != null) {
+        experimentRunCache.invalidateIf(
+            experimentRun -> experimentRun.getProjectId().equals(projectId));
+      }
+    }
+  }
+
+  @Override
+  public List<Project> getProjects() throws InvalidProtocolBufferException {
+    return projectDAO.getProjects();
+  }
+
+  @Override
+  public List<Project> getProjectsAfter(Integer pageLimit, ContinuationToken continuationToken)
+      throws InvalidProtocolBufferException {
+    return projectDAO.getProjectsAfter(pageLimit, continuationToken);
+  }
+
+  @Override
+  public Project addProjectTags(String projectId, List<String> tagsList)
+      throws InvalidProtocolBufferException {
+    try {
+      return projectDAO.addProjectTags(projectId, tagsList);
+    } finally {
+      projectCache.invalidate(projectId);
+    }
+  }
+
+  @Override
+  public Project deleteProjectTags(String projectId, List<String> projectTagList, Boolean deleteAll)
+      throws InvalidProtocolBufferException {
+    try {
+      return projectDAO.deleteProjectTags(projectId, projectTagList, deleteAll);
+    } finally {
+      projectCache.invalidate(projectId);
+    }
+  }
+
+  /** Lookups by id are served from the cache, lookups by any other key from the backend. */
+  @Override
+  public List<Project> getProjects(String key, String value) throws InvalidProtocolBufferException {
+    if (!ModelDBConstants.ID.equals(key)) {
+      return projectDAO.getProjects(key, value);
+    }
+    List<Project> loadedProjects = new ArrayList<>();
+    Project project =
+        projectCache.get(
+            value,
+            () -> {
+              loadedProjects.addAll(projectDAO.getProjects(key, value));
+              return loadedProjects.size() == 1 ? loadedProjects.get(0) : null;
+            });
+    return project != null ? Collections.singletonList(project) : loadedProjects;
+  }
+
+  @Override
+  public List<Project> getProjectByIds(List<String> sharedProjectIds)
+      throws InvalidProtocolBufferException {
+    return projectDAO.getProjectByIds(sharedProjectIds);
+  }
+
+  @Override
+  public Project addProjectAttributes(String projectId, List<KeyValue> attributesList)
+      throws InvalidProtocolBufferException {
+    try {
+      return projectDAO.addProjectAttributes(projectId, attributesList);
+    } finally {
+      projectCache.invalidate(projectId);
+    }
+  }
+
+  @Override
+  public Project deleteProjectAttributes(
+      String projectId, List<String> attributeKeyList, Boolean deleteAll)
+      throws InvalidProtocolBufferException {
+    try {
+      return projectDAO.deleteProjectAttributes(projectId, attributeKeyList, deleteAll);
+    } finally {
+      projectCache.invalidate(projectId);
+    }
+  }
+
+  @Override
+  public List<String> getProjectTags(String projectId) throws InvalidProtocolBufferException {
+    return projectDAO.getProjectTags(projectId);
+  }
+}
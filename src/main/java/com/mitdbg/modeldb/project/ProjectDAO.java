@@ -2,6 +2,7 @@ package com.mitdbg.modeldb.project;
 
 import java.util.List;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.mitdbg.modeldb.ContinuationToken;
 import com.mitdbg.modeldb.KeyValue;
 import com.mitdbg.modeldb.Project;
 
@@ -69,6 +70,18 @@ public interface ProjectDAO {
    */
   List<Project> getProjects() throws InvalidProtocolBufferException;
 
+  /**
+   * Keyset pagination variant of getProjects, page starts right after the last Project of given
+   * continuationToken.
+   *
+   * @param pageLimit --> page limit is per page record count.
+   * @param continuationToken --> sort of the listing and last Project of previous page.
+   * @return List<Project> projects
+   * @throws InvalidProtocolBufferException
+   */
+  List<Project> getProjectsAfter(Integer pageLimit, ContinuationToken continuationToken)
+      throws InvalidProtocolBufferException;
+
   /**
    * Update Project Tags in database using projectId.
    *
@@ -6,14 +6,14 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.bson.Document;
 import com.google.protobuf.InvalidProtocolBufferException;
-import com.google.protobuf.util.JsonFormat;
 import com.google.rpc.Code;
 import com.google.rpc.Status;
 import com.mitdbg.modeldb.App;
+import com.mitdbg.modeldb.ContinuationToken;
 import com.mitdbg.modeldb.KeyValue;
 import com.mitdbg.modeldb.ModelDBConstants;
-import com.mitdbg.modeldb.ModelDBUtils;
 import com.mitdbg.modeldb.Project;
+import com.mitdbg.modeldb.cache.ExperimentRunCreationCache;
 import com.mitdbg.modeldb.databaseServices.DocumentService;
 import io.grpc.protobuf.StatusProto;
 
@@ -23,6 +23,7 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
   private String projectEntity = null;
   private String experimentEntity = null;
   private String experimentRunEntity = null;
+  private ExperimentRunCreationCache creationCache = null;
 
   DocumentService documentService = null;
 
@@ -31,46 +32,11 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
     this.projectEntity = app.getProjectEntity();
     this.experimentEntity = app.getExperimentEntity();
     this.experimentRunEntity = app.getExperimentRunEntity();
+    this.creationCache = app.getExperimentRunCreationCache();
 
     this.documentService = documentService;
     documentService.checkCollectionAvailability(projectEntity);
   }
-  /**
-   * Convert list of MongoDB document object to list of Project entity object.
-   *
-   * @param List<Document> documents : list of MongoDB data object.
-   * @return List<Project> : project entity List
-   * @throws InvalidProtocolBufferException
-   */
-  private List<Project> getProjectFromDocuments(List<Document> documents)
-      throws InvalidProtocolBufferException {
-
-    List<Project> projectList = new ArrayList<>();
-    for (Document document : documents) {
-      Project project = convertProjectFromDocument(document);
-      projectList.add(project);
-    }
-    return projectList;
-  }
-
-  /**
-   * Convert MongoDB Document object to Project entity. Here remove MongoDB "_ID" because if _id is
-   * their then both the structure MongoDB Document and Project Entity is different and direct
-   * conversion is not possible that's why "_ID" is remove.
-   *
-   * @param Document document : MongoDB data object.
-   * @return Project project : ProtocolBuffer Object of Project entity.
-   * @throws InvalidProtocolBufferException
-   */
-  private Project convertProjectFromDocument(Document document)
-      throws InvalidProtocolBufferException {
-    Project.Builder builder = Project.newBuilder();
-
-    document.remove("_id");
-
-    JsonFormat.parser().merge(document.toJson(), builder);
-    return builder.build();
-  }
 
   private void checkEntityAlreadyExist(Project project) {
     Document queryDoc = new Document();
@@ -98,8 +64,7 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
     checkEntityAlreadyExist(project);
 
     documentService.insertOne(project);
-    Document document = (Document) documentService.findByKey(ModelDBConstants.ID, project.getId());
-    return convertProjectFromDocument(document);
+    return documentService.findByKey(ModelDBConstants.ID, project.getId(), Project.class);
   }
 
   /**
@@ -113,11 +78,10 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
    */
   public Project updateProject(String projectId, Project project)
       throws InvalidProtocolBufferException {
-    long updatedCount = documentService.updateOne(ModelDBConstants.ID, projectId, project);
-    if (updatedCount > 0) {
-      Document document =
-          (Document) documentService.findByKey(ModelDBConstants.ID, project.getId());
-      return convertProjectFromDocument(document);
+    Project savedProject =
+        documentService.findOneAndUpdate(ModelDBConstants.ID, projectId, project, Project.class);
+    if (savedProject != null) {
+      return savedProject;
     } else {
       String errorMessage = "Updated value is already present in Project";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -134,19 +98,13 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
     queryProject.append(ModelDBConstants.ID, projectId);
 
     Document updatedProject = new Document();
-    List<Document> attributeDocList = new ArrayList<>();
-    for (KeyValue attribute : attributesList) {
-      String json = ModelDBUtils.getStringFromProtoObject(attribute);
-      Document documentAttributes = Document.parse(json);
-      attributeDocList.add(documentAttributes);
-    }
-    updatedProject.append(ModelDBConstants.ATTRIBUTES, new Document("$each", attributeDocList));
+    updatedProject.append(ModelDBConstants.ATTRIBUTES, new Document("$each", attributesList));
 
-    long updatedCount =
-        documentService.updateOne(queryProject, new Document("$push", updatedProject));
-    if (updatedCount > 0) {
-      Document document = (Document) documentService.findByKey(ModelDBConstants.ID, projectId);
-      return convertProjectFromDocument(document);
+    Project savedProject =
+        documentService.findOneAndUpdate(
+            queryProject, new Document("$push", updatedProject), null, Project.class);
+    if (savedProject != null) {
+      return savedProject;
     } else {
       String errorMessage = "Added attributes is already present in Project";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -171,17 +129,17 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
     queryProject.append(ModelDBConstants.ID, projectId);
     queryProject.append(
         ModelDBConstants.ATTRIBUTES + "." + ModelDBConstants.KEY, attribute.getKey());
+    // Skip the update when same attribute is already stored, like updateOne reports no change
+    queryProject.append(ModelDBConstants.ATTRIBUTES, new Document("$ne", attribute));
 
     Document updatedProject = new Document();
-    String json = ModelDBUtils.getStringFromProtoObject(attribute);
-    Document documentAttributes = Document.parse(json);
-    updatedProject.append(ModelDBConstants.ATTRIBUTES + ".$", documentAttributes);
-
-    long updatedCount =
-        documentService.updateOne(queryProject, new Document("$set", updatedProject));
-    if (updatedCount > 0) {
-      Document document = (Document) documentService.findByKey(ModelDBConstants.ID, projectId);
-      return convertProjectFromDocument(document);
+    updatedProject.append(ModelDBConstants.ATTRIBUTES + ".$", attribute);
+
+    Project savedProject =
+        documentService.findOneAndUpdate(
+            queryProject, new Document("$set", updatedProject), null, Project.class);
+    if (savedProject != null) {
+      return savedProject;
     } else {
       String errorMessage = "Updated value is already present in Project";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -210,12 +168,11 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
     Document projectionDoc = new Document();
     projectionDoc.append(ModelDBConstants.ATTRIBUTES, 1);
 
-    List<Document> documentList =
-        (List<Document>) documentService.findListByObject(queryDoc, projectionDoc, null, null);
+    List<Project> projectList =
+        documentService.findListByObject(queryDoc, projectionDoc, null, null, Project.class);
 
-    if (documentList != null) {
-      Document document = documentList.get(0);
-      Project project = convertProjectFromDocument(document);
+    if (projectList != null) {
+      Project project = projectList.get(0);
       if (!getAll) {
         List<KeyValue> attributes = new ArrayList<>();
         project
@@ -250,18 +207,22 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
     Document updatedProject = new Document();
     if (deleteAll) {
       updatedProject.append(ModelDBConstants.ATTRIBUTES, 1);
+      queryProject.append(ModelDBConstants.ATTRIBUTES, new Document("$exists", true));
       updateQueryDoc = new Document("$unset", updatedProject);
     } else {
       updatedProject.append(
           ModelDBConstants.ATTRIBUTES,
           new Document(ModelDBConstants.KEY, new Document("$in", attributeKeyList)));
+      queryProject.append(
+          ModelDBConstants.ATTRIBUTES + "." + ModelDBConstants.KEY,
+          new Document("$in", attributeKeyList));
       updateQueryDoc = new Document("$pull", updatedProject);
     }
 
-    long updatedCount = documentService.updateOne(queryProject, updateQueryDoc);
-    if (updatedCount > 0) {
-      Document document = (Document) documentService.findByKey(ModelDBConstants.ID, projectId);
-      return convertProjectFromDocument(document);
+    Project savedProject =
+        documentService.findOneAndUpdate(queryProject, updateQueryDoc, null, Project.class);
+    if (savedProject != null) {
+      return savedProject;
     } else {
       String errorMessage =
           "The attributes field of Project is already deleted Or attributes not found in the Project";
@@ -283,7 +244,11 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
   public Boolean deleteProject(String projectId) {
     documentService.deleteOne(experimentRunEntity, ModelDBConstants.PROJECT_ID, projectId);
     documentService.deleteOne(experimentEntity, ModelDBConstants.PROJECT_ID, projectId);
-    return documentService.deleteOne(projectEntity, ModelDBConstants.ID, projectId);
+    Boolean deleted = documentService.deleteOne(projectEntity, ModelDBConstants.ID, projectId);
+    if (creationCache != null) {
+      creationCache.invalidateProject(projectId);
+    }
+    return deleted;
   }
 
   /**
@@ -295,14 +260,28 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
   public List<Project> getProjects() throws InvalidProtocolBufferException {
     List<Project> projects = new ArrayList<>();
 
-    List<Document> documentList = (List<Document>) documentService.find();
-    if (!documentList.isEmpty()) {
-      projects = getProjectFromDocuments(documentList);
+    List<Project> projectList = documentService.find(Project.class);
+    if (!projectList.isEmpty()) {
+      projects = projectList;
     }
 
     return projects;
   }
 
+  @Override
+  public List<Project> getProjectsAfter(Integer pageLimit, ContinuationToken continuationToken)
+      throws InvalidProtocolBufferException {
+    return documentService.findListByKeyAfter(
+        null,
+        null,
+        pageLimit,
+        continuationToken.getOrder(),
+        continuationToken.getSortBy(),
+        continuationToken.getLastStoredSortValue(),
+        continuationToken.getLastId(),
+        Project.class);
+  }
+
   /**
    * Update Project Tags in database using projectId.
    *
@@ -314,15 +293,17 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
       throws InvalidProtocolBufferException {
     Document queryProject = new Document();
     queryProject.append(ModelDBConstants.ID, projectId);
+    queryProject.append(
+        ModelDBConstants.TAGS, new Document("$not", new Document("$all", tagsList)));
 
     Document updatedProject = new Document();
     updatedProject.append(ModelDBConstants.TAGS, new Document("$each", tagsList));
 
-    long updatedCount =
-        documentService.updateOne(queryProject, new Document("$addToSet", updatedProject));
-    if (updatedCount > 0) {
-      Document document = (Document) documentService.findByKey(ModelDBConstants.ID, projectId);
-      return convertProjectFromDocument(document);
+    Project savedProject =
+        documentService.findOneAndUpdate(
+            queryProject, new Document("$addToSet", updatedProject), null, Project.class);
+    if (savedProject != null) {
+      return savedProject;
     } else {
       String errorMessage = "Added value is already present in Project";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -339,12 +320,11 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
     Document projectionDoc = new Document();
     projectionDoc.append(ModelDBConstants.TAGS, 1);
 
-    List<Document> documentList =
-        (List<Document>) documentService.findListByObject(queryObj, projectionDoc, null, null);
+    List<Project> projectList =
+        documentService.findListByObject(queryObj, projectionDoc, null, null, Project.class);
 
-    if (!documentList.isEmpty()) {
-      Document document = documentList.get(0);
-      Project project = convertProjectFromDocument(document);
+    if (!projectList.isEmpty()) {
+      Project project = projectList.get(0);
       return project.getTagsList();
     } else {
       String errorMessage = "Project tags not found in database";
@@ -373,16 +353,18 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
     Document updatedProject = new Document();
     if (deleteAll) {
       updatedProject.append(ModelDBConstants.TAGS, 1);
+      queryProject.append(ModelDBConstants.TAGS, new Document("$exists", true));
       updateQueryDoc = new Document("$unset", updatedProject);
     } else {
       updatedProject.append(ModelDBConstants.TAGS, projectTagList);
+      queryProject.append(ModelDBConstants.TAGS, new Document("$in", projectTagList));
       updateQueryDoc = new Document("$pullAll", updatedProject);
     }
 
-    long updatedCount = documentService.updateOne(queryProject, updateQueryDoc);
-    if (updatedCount > 0) {
-      Document document = (Document) documentService.findByKey(ModelDBConstants.ID, projectId);
-      return convertProjectFromDocument(document);
+    Project savedProject =
+        documentService.findOneAndUpdate(queryProject, updateQueryDoc, null, Project.class);
+    if (savedProject != null) {
+      return savedProject;
     } else {
       String errorMessage =
           "The tags field of Project is already deleted Or tags not found in the Project";
@@ -407,10 +389,10 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
     Document queryObj = new Document();
     queryObj.put(key, value);
 
-    List<Document> documents =
-        (List<Document>) documentService.findListByObject(queryObj, null, null, null);
-    if (!documents.isEmpty()) {
-      return getProjectFromDocuments(documents);
+    List<Project> projects =
+        documentService.findListByObject(queryObj, null, null, null, Project.class);
+    if (!projects.isEmpty()) {
+      return projects;
     } else {
       String errorMessage = "Project not found in database";
       LOGGER.log(Level.WARNING, errorMessage);
@@ -426,8 +408,6 @@ public class ProjectDAOMongoImpl implements ProjectDAO {
     Document queryProject = new Document();
     queryProject.append(ModelDBConstants.ID, new Document("$in", sharedProjectIds));
 
-    List<Document> projectDocumentList =
-        (List<Document>) documentService.findListByObject(queryProject, null, null, null);
-    return getProjectFromDocuments(projectDocumentList);
+    return documentService.findListByObject(queryProject, null, null, null, Project.class);
   }
 }
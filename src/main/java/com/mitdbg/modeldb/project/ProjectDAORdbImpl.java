@@ -10,11 +10,14 @@ import org.hibernate.query.Query;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.rpc.Code;
 import com.google.rpc.Status;
+import com.mitdbg.modeldb.App;
+import com.mitdbg.modeldb.ContinuationToken;
 import com.mitdbg.modeldb.KeyValue;
 import com.mitdbg.modeldb.ModelDBConstants;
 import com.mitdbg.modeldb.ModelDBHibernateUtil;
 import com.mitdbg.modeldb.Project;
 import com.mitdbg.modeldb.RdbmsUtils;
+import com.mitdbg.modeldb.cache.ExperimentRunCreationCache;
 import com.mitdbg.modeldb.entities.KeyValueEntity;
 import com.mitdbg.modeldb.entities.ProjectEntity;
 import com.mitdbg.modeldb.entities.TagsMapping;
@@ -23,6 +26,11 @@ import io.grpc.protobuf.StatusProto;
 public class ProjectDAORdbImpl implements ProjectDAO {
 
   private static final Logger LOGGER = Logger.getLogger(ProjectDAORdbImpl.class.getName());
+  private ExperimentRunCreationCache creationCache = null;
+
+  public ProjectDAORdbImpl() {
+    this.creationCache = App.getInstance().getExperimentRunCreationCache();
+  }
 
   @Transactional
   public void checkIfEntityAlreadyExists(Project project, Boolean isInsert) {
@@ -41,7 +49,10 @@ public class ProjectDAORdbImpl implements ProjectDAO {
       } else {
         query.setParameter("projectId", project.getId());
       }
-      Boolean existStatus = (query.uniqueResult() != null);
+      Boolean existStatus =
+          (RdbmsUtils.uniqueResultWithSlowOperationLog(
+                  query, "ProjectEntity", "checkIfEntityAlreadyExists")
+              != null);
       transaction.commit();
 
       // Throw error if it is an insert request and project with same name already exists
@@ -156,7 +167,8 @@ public class ProjectDAORdbImpl implements ProjectDAO {
         Query query = session.createQuery(stringQueryBuilder.toString());
         query.setParameterList("keys", attributeKeyList);
         query.setParameter("projectId", projectId);
-        List<KeyValueEntity> keyValueEntities = query.list();
+        List<KeyValueEntity> keyValueEntities =
+            RdbmsUtils.listWithSlowOperationLog(query, "KeyValueEntity", "getProjectAttributes");
         transaction.commit();
         return RdbmsUtils.convertFromKeyValueEntityListToKeyValues(keyValueEntities);
       }
@@ -169,13 +181,43 @@ public class ProjectDAORdbImpl implements ProjectDAO {
   public List<Project> getProjects() throws InvalidProtocolBufferException {
     try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
       Transaction transaction = session.beginTransaction();
-      List<ProjectEntity> projectEntities = session.createQuery("FROM ProjectEntity").list();
+      List<ProjectEntity> projectEntities =
+          RdbmsUtils.listWithSlowOperationLog(
+              session.createQuery("FROM ProjectEntity"), "ProjectEntity", "getProjects");
       transaction.commit();
       LOGGER.log(Level.INFO, "Project getting successfully");
       return RdbmsUtils.convertFromProjectsToProjectEntityList(projectEntities);
     }
   }
 
+  @Override
+  @Transactional
+  public List<Project> getProjectsAfter(Integer pageLimit, ContinuationToken continuationToken)
+      throws InvalidProtocolBufferException {
+    try (Session session = ModelDBHibernateUtil.getSessionFactory().openSession()) {
+      Transaction transaction = session.beginTransaction();
+
+      StringBuilder stringQueryBuilder = new StringBuilder("FROM ProjectEntity pe ");
+      if (continuationToken.getLastId() != null) {
+        stringQueryBuilder.append(
+            " WHERE " + RdbmsUtils.getKeysetPredicate("pe", continuationToken));
+      }
+      stringQueryBuilder.append(RdbmsUtils.getKeysetOrderBy("pe", continuationToken));
+
+      Query query = session.createQuery(stringQueryBuilder.toString());
+      if (continuationToken.getLastId() != null) {
+        RdbmsUtils.setKeysetParameters(query, continuationToken);
+      }
+      if (pageLimit != null && pageLimit > 0) {
+        query.setMaxResults(pageLimit);
+      }
+      List<ProjectEntity> projectEntities =
+          RdbmsUtils.listWithSlowOperationLog(query, "ProjectEntity", "getProjectsAfter");
+      transaction.commit();
+      return RdbmsUtils.convertFromProjectsToProjectEntityList(projectEntities);
+    }
+  }
+
   @Override
   @Transactional
   public Project addProjectTags(String projectId, List<String> tagsList)
@@ -205,14 +247,14 @@ public class ProjectDAORdbImpl implements ProjectDAO {
         stringQueryBuilder.append(" tm.projectEntity." + ModelDBConstants.ID + " = :projectId");
         Query query = session.createQuery(stringQueryBuilder.toString());
         query.setParameter("projectId", projectId);
-        query.executeUpdate();
+        RdbmsUtils.executeUpdateWithSlowOperationLog(query, "TagsMapping", "deleteProjectTags");
       } else {
         stringQueryBuilder.append(" tm." + ModelDBConstants.TAGS + " in (:tags)");
         stringQueryBuilder.append(" AND tm.projectEntity." + ModelDBConstants.ID + " = :projectId");
         Query query = session.createQuery(stringQueryBuilder.toString());
         query.setParameter("tags", projectTagList);
         query.setParameter("projectId", projectId);
-        query.executeUpdate();
+        RdbmsUtils.executeUpdateWithSlowOperationLog(query, "TagsMapping", "deleteProjectTags");
       }
 
       ProjectEntity projectObj = session.get(ProjectEntity.class, projectId);
@@ -232,7 +274,8 @@ public class ProjectDAORdbImpl implements ProjectDAO {
 
       Query query = session.createQuery(stringQueryBuilder.toString());
       query.setParameter("value", value);
-      List<ProjectEntity> projectEntities = query.list();
+      List<ProjectEntity> projectEntities =
+          RdbmsUtils.listWithSlowOperationLog(query, "ProjectEntity", "getProjects");
       transaction.commit();
       return RdbmsUtils.convertFromProjectsToProjectEntityList(projectEntities);
     }
@@ -247,7 +290,8 @@ public class ProjectDAORdbImpl implements ProjectDAO {
       String queryString = "From ProjectEntity p where p.id in (:ids)";
       Query query = session.createQuery(queryString);
       query.setParameterList("ids", sharedProjectIds);
-      List<ProjectEntity> projectEntities = query.list();
+      List<ProjectEntity> projectEntities =
+          RdbmsUtils.listWithSlowOperationLog(query, "ProjectEntity", "getProjectByIds");
       transaction.commit();
       LOGGER.log(Level.INFO, "Project by Ids getting successfully");
       return RdbmsUtils.convertFromProjectsToProjectEntityList(projectEntities);
@@ -286,14 +330,16 @@ public class ProjectDAORdbImpl implements ProjectDAO {
         stringQueryBuilder.append(" kv.projectEntity." + ModelDBConstants.ID + " = :projectId");
         Query query = session.createQuery(stringQueryBuilder.toString());
         query.setParameter("projectId", projectId);
-        query.executeUpdate();
+        RdbmsUtils.executeUpdateWithSlowOperationLog(
+            query, "KeyValueEntity", "deleteProjectAttributes");
       } else {
         stringQueryBuilder.append(" kv." + ModelDBConstants.KEY + " in (:keys)");
         stringQueryBuilder.append(" AND kv.projectEntity." + ModelDBConstants.ID + " = :projectId");
         Query query = session.createQuery(stringQueryBuilder.toString());
         query.setParameter("keys", attributeKeyList);
         query.setParameter("projectId", projectId);
-        query.executeUpdate();
+        RdbmsUtils.executeUpdateWithSlowOperationLog(
+            query, "KeyValueEntity", "deleteProjectAttributes");
       }
       ProjectEntity projectObj = session.get(ProjectEntity.class, projectId);
       transaction.commit();
@@ -321,6 +367,9 @@ public class ProjectDAORdbImpl implements ProjectDAO {
       // Delete the object
       session.delete(projectObj);
       transaction.commit();
+      if (creationCache != null) {
+        creationCache.invalidateProject(projectId);
+      }
       LOGGER.log(Level.INFO, "Project deleted successfully");
       return true;
     }
@@ -2,7 +2,6 @@ package com.mitdbg.modeldb.project;
 
 import java.util.Calendar;
 import java.util.List;
-import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import com.google.protobuf.Any;
@@ -10,6 +9,7 @@ import com.google.rpc.Code;
 import com.google.rpc.Status;
 import com.mitdbg.modeldb.AddProjectAttributes;
 import com.mitdbg.modeldb.AddProjectTags;
+import com.mitdbg.modeldb.App;
 import com.mitdbg.modeldb.CreateProject;
 import com.mitdbg.modeldb.DeleteProject;
 import com.mitdbg.modeldb.DeleteProjectAttributes;
@@ -66,7 +66,7 @@ public class ProjectServiceImpl extends ProjectServiceImplBase {
      */
     Project.Builder projectBuilder =
         Project.newBuilder()
-            .setId(UUID.randomUUID().toString())
+            .setId(App.getInstance().getIdGenerator().generateId())
             .setName(request.getName())
             .setDescription(request.getDescription())
             .setDateCreated(Calendar.getInstance().getTimeInMillis())
@@ -0,0 +1,150 @@
+package com.mitdbg.modeldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import org.bson.Document;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+@RunWith(JUnit4.class)
+public class ContinuationTokenTest {
+
+  private static ContinuationToken decodeProjectToken(String token, String sortBy, String order) {
+    return ContinuationToken.decode(
+        token, sortBy, order, Project.getDescriptor(), ContinuationToken.PROJECT_SORT_FIELDS);
+  }
+
+  private static String encodeRawToken(Document tokenDocument) {
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(tokenDocument.toJson().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void assertInvalidToken(String token, String sortBy, String order) {
+    try {
+      decodeProjectToken(token, sortBy, order);
+      fail("Token should have been rejected");
+    } catch (StatusRuntimeException e) {
+      assertEquals(Status.Code.INVALID_ARGUMENT, e.getStatus().getCode());
+    }
+  }
+
+  private static List<Project> getPage() {
+    return Arrays.asList(
+        Project.newBuilder().setId("p1").setName("first").setDateCreated(200L).build(),
+        Project.newBuilder().setId("p2").setName("second").setDateCreated(100L).build());
+  }
+
+  @Test
+  public void firstPageUsesDefaultSort() {
+    ContinuationToken continuationToken = decodeProjectToken(null, "", "");
+    assertEquals(ModelDBConstants.DATE_CREATED, continuationToken.getSortBy());
+    assertEquals(ModelDBConstants.ORDER_DESC, continuationToken.getOrder());
+    assertNull(continuationToken.getLastId());
+    assertNull(continuationToken.getLastSortValue());
+  }
+
+  @Test
+  public void nextTokenRoundTrip() {
+    ContinuationToken firstPageToken =
+        decodeProjectToken("", ModelDBConstants.DATE_CREATED, ModelDBConstants.ORDER_DESC);
+    String nextToken = firstPageToken.next(getPage(), 2);
+
+    ContinuationToken continuationToken =
+        decodeProjectToken(nextToken, ModelDBConstants.DATE_CREATED, "DESC");
+    assertEquals("p2", continuationToken.getLastId());
+    assertEquals(100L, continuationToken.getLastSortValue());
+    assertEquals("100", continuationToken.getLastStoredSortValue());
+    assertEquals(nextToken, continuationToken.encode());
+  }
+
+  @Test
+  public void stringSortValueRoundTrip() {
+    String nextToken =
+        decodeProjectToken(null, ModelDBConstants.NAME, ModelDBConstants.ORDER_ASC)
+            .next(getPage(), 2);
+    ContinuationToken continuationToken =
+        decodeProjectToken(nextToken, ModelDBConstants.NAME, ModelDBConstants.ORDER_ASC);
+    assertTrue(continuationToken.isAscending());
+    assertEquals("second", continuationToken.getLastSortValue());
+    assertEquals("second", continuationToken.getLastStoredSortValue());
+  }
+
+  @Test
+  public void defaultSortValueIsStoredAsMissing() {
+    List<Project> page =
+        Arrays.asList(
+            Project.newBuilder().setId("p1").build(), Project.newBuilder().setId("p2").build());
+    String nextToken = decodeProjectToken(null, null, null).next(page, 2);
+    ContinuationToken continuationToken = decodeProjectToken(nextToken, null, null);
+    assertEquals(0L, continuationToken.getLastSortValue());
+    assertNull(continuationToken.getLastStoredSortValue());
+  }
+
+  @Test
+  public void lastPageHasNoNextToken() {
+    ContinuationToken continuationToken = decodeProjectToken(null, null, null);
+    assertEquals("", continuationToken.next(getPage(), 3));
+    assertEquals("", continuationToken.next(getPage(), 0));
+    assertEquals("", continuationToken.next(getPage(), null));
+  }
+
+  @Test
+  public void rejectUnsortableField() {
+    assertInvalidToken(null, "description", null);
+    assertInvalidToken(null, "name) OR 1=1 OR (ee.name", null);
+    assertInvalidToken(null, ModelDBConstants.NAME, "sideways");
+  }
+
+  @Test
+  public void rejectTokenOfAnotherSort() {
+    String nextToken =
+        decodeProjectToken(null, ModelDBConstants.NAME, ModelDBConstants.ORDER_ASC)
+            .next(getPage(), 2);
+    assertInvalidToken(nextToken, ModelDBConstants.DATE_CREATED, ModelDBConstants.ORDER_ASC);
+    assertInvalidToken(nextToken, ModelDBConstants.NAME, ModelDBConstants.ORDER_DESC);
+  }
+
+  @Test
+  public void rejectTamperedToken() {
+    assertInvalidToken("not a token", null, null);
+    assertInvalidToken(
+        Base64.getUrlEncoder().encodeToString("{".getBytes(StandardCharsets.UTF_8)), null, null);
+
+    // Sort field of the token changed to a field which is not sortable
+    assertInvalidToken(
+        encodeRawToken(
+            new Document("sort_by", "description")
+                .append("order", "desc")
+                .append("last_value", "x")
+                .append("last_id", "p2")),
+        "description",
+        "desc");
+    // Last value of a different type than the sort field
+    assertInvalidToken(
+        encodeRawToken(
+            new Document("sort_by", ModelDBConstants.DATE_CREATED)
+                .append("order", "desc")
+                .append("last_value", "100 OR 1=1")
+                .append("last_id", "p2")),
+        null,
+        null);
+    // Missing last id
+    assertInvalidToken(
+        encodeRawToken(
+            new Document("sort_by", ModelDBConstants.DATE_CREATED)
+                .append("order", "desc")
+                .append("last_value", 100L)),
+        null,
+        null);
+  }
+}
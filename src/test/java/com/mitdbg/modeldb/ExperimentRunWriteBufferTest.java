@@ -0,0 +1,356 @@
+package com.mitdbg.modeldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.protobuf.Value;
+import com.google.rpc.Code;
+import com.mitdbg.modeldb.experimentRun.ExperimentRunDAO;
+import com.mitdbg.modeldb.experimentRun.ExperimentRunWriteBuffer;
+import com.mitdbg.modeldb.experimentRun.ExperimentRunWriteBuffer.AckMode;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.protobuf.StatusProto;
+
+@RunWith(JUnit4.class)
+public class ExperimentRunWriteBufferTest {
+
+  private static final long NO_PERIODIC_FLUSH = TimeUnit.HOURS.toMillis(1);
+  private static final long ACK_TIMEOUT_MILLIS = 10000;
+
+  /** Write of the DAO, with the values of the batch. */
+  private static class DaoCall {
+    private final String method;
+    private final String experimentRunId;
+    private final List<?> values;
+
+    private DaoCall(String method, String experimentRunId, List<?> values) {
+      this.method = method;
+      this.experimentRunId = experimentRunId;
+      this.values = values;
+    }
+  }
+
+  private final BlockingQueue<DaoCall> daoCalls = new LinkedBlockingQueue<>();
+  // Metric keys rejected with ALREADY_EXISTS by the DAO
+  private final Set<String> existingMetricKeys = new HashSet<>();
+  // Writes on this ExperimentRun wait until the latch is released
+  private volatile String blockedExperimentRunId;
+  private final CountDownLatch blockedWriteStarted = new CountDownLatch(1);
+  private final CountDownLatch releaseBlocked = new CountDownLatch(1);
+
+  private ExperimentRunDAO experimentRunDAO;
+  private ExperimentRunWriteBuffer writeBuffer;
+  private ExecutorService callers;
+
+  @Before
+  public void setUp() {
+    experimentRunDAO =
+        (ExperimentRunDAO)
+            Proxy.newProxyInstance(
+                ExperimentRunDAO.class.getClassLoader(),
+                new Class<?>[] {ExperimentRunDAO.class},
+                (proxy, method, args) -> {
+                  String experimentRunId = (String) args[0];
+                  if (experimentRunId.equals(blockedExperimentRunId)) {
+                    blockedWriteStarted.countDown();
+                    releaseBlocked.await();
+                  }
+                  List<?> values;
+                  switch (method.getName()) {
+                    case "logObservations":
+                      values = new ArrayList<>((List<?>) args[1]);
+                      break;
+                    case "logMetrics":
+                      values = new ArrayList<>((List<?>) args[1]);
+                      for (Object metric : values) {
+                        checkMetricKey((KeyValue) metric);
+                      }
+                      break;
+                    case "logMetric":
+                      checkMetricKey((KeyValue) args[1]);
+                      values = Arrays.asList(args[1]);
+                      break;
+                    default:
+                      throw new UnsupportedOperationException(method.getName());
+                  }
+                  daoCalls.add(new DaoCall(method.getName(), experimentRunId, values));
+                  return ExperimentRun.newBuilder()
+                      .setId(experimentRunId)
+                      .setName("written")
+                      .build();
+                });
+    callers = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    releaseBlocked.countDown();
+    callers.shutdownNow();
+    if (writeBuffer != null) {
+      writeBuffer.close();
+    }
+  }
+
+  private void checkMetricKey(KeyValue metric) {
+    if (existingMetricKeys.contains(metric.getKey())) {
+      com.google.rpc.Status status =
+          com.google.rpc.Status.newBuilder()
+              .setCode(Code.ALREADY_EXISTS_VALUE)
+              .setMessage("Metric being logged already exists")
+              .build();
+      throw StatusProto.toStatusRuntimeException(status);
+    }
+  }
+
+  private static Observation getObservation(int index) {
+    return Observation.newBuilder()
+        .setAttribute(
+            KeyValue.newBuilder()
+                .setKey("observation-" + index)
+                .setValue(Value.newBuilder().setNumberValue(index)))
+        .setTimestamp(index)
+        .build();
+  }
+
+  private static KeyValue getMetric(String key) {
+    return KeyValue.newBuilder()
+        .setKey(key)
+        .setValue(Value.newBuilder().setNumberValue(0.5))
+        .build();
+  }
+
+  private Future<ExperimentRun> logAsync(String experimentRunId, Observation observation) {
+    return callers.submit(() -> writeBuffer.logObservation(experimentRunId, observation));
+  }
+
+  private DaoCall nextDaoCall() throws InterruptedException {
+    DaoCall daoCall = daoCalls.poll(ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    if (daoCall == null) {
+      fail("Expected a write of the DAO");
+    }
+    return daoCall;
+  }
+
+  private static void assertStatusCode(Status.Code code, Callable<?> callable) throws Exception {
+    try {
+      callable.call();
+      fail("Expected " + code);
+    } catch (StatusRuntimeException e) {
+      assertEquals(code, e.getStatus().getCode());
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof StatusRuntimeException);
+      assertEquals(code, ((StatusRuntimeException) e.getCause()).getStatus().getCode());
+    }
+  }
+
+  @Test
+  public void fullBatchIsWrittenOnce() throws Exception {
+    writeBuffer =
+        new ExperimentRunWriteBuffer(
+            experimentRunDAO, 3, NO_PERIODIC_FLUSH, AckMode.FLUSHED, 2, ACK_TIMEOUT_MILLIS);
+    List<Future<ExperimentRun>> futures = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(logAsync("run-1", getObservation(i)));
+    }
+    // Every log request is acknowledged with the ExperimentRun returned by the write
+    for (Future<ExperimentRun> future : futures) {
+      assertEquals("written", future.get(ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getName());
+    }
+    DaoCall daoCall = nextDaoCall();
+    assertEquals("logObservations", daoCall.method);
+    assertEquals("run-1", daoCall.experimentRunId);
+    assertEquals(3, daoCall.values.size());
+    assertTrue(daoCalls.isEmpty());
+  }
+
+  @Test
+  public void bufferedValuesAreWrittenInOrderOnFlush() throws Exception {
+    writeBuffer =
+        new ExperimentRunWriteBuffer(
+            experimentRunDAO, 100, NO_PERIODIC_FLUSH, AckMode.BUFFERED, 2, ACK_TIMEOUT_MILLIS);
+    List<Observation> observations = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      observations.add(getObservation(i));
+      // Acknowledged right away, with only the id
+      assertEquals(
+          ExperimentRun.newBuilder().setId("run-1").build(),
+          writeBuffer.logObservation("run-1", observations.get(i)));
+    }
+    writeBuffer.logMetric("run-1", getMetric("accuracy"));
+    assertTrue(daoCalls.isEmpty());
+
+    writeBuffer.flush("run-1");
+    DaoCall daoCall = nextDaoCall();
+    assertEquals("logObservations", daoCall.method);
+    assertEquals(observations, daoCall.values);
+    daoCall = nextDaoCall();
+    assertEquals("logMetrics", daoCall.method);
+    assertEquals(Arrays.asList(getMetric("accuracy")), daoCall.values);
+
+    // Nothing left to write
+    writeBuffer.flush("run-1");
+    writeBuffer.flush("run-2");
+    assertTrue(daoCalls.isEmpty());
+  }
+
+  @Test
+  public void listingFlushesTheRunsItReads() throws Exception {
+    writeBuffer =
+        new ExperimentRunWriteBuffer(
+            experimentRunDAO, 100, NO_PERIODIC_FLUSH, AckMode.BUFFERED, 1, ACK_TIMEOUT_MILLIS);
+    writeBuffer.logObservation("run-1", getObservation(1));
+    writeBuffer.logObservation("run-2", getObservation(2));
+
+    // A listing of ids writes the listed runs only
+    writeBuffer.flushListing("", "", Arrays.asList("run-1", "run-3"));
+    assertEquals("run-1", nextDaoCall().experimentRunId);
+    assertTrue(daoCalls.isEmpty());
+
+    // The Project of a buffered run is unknown, a Project listing writes every run
+    writeBuffer.flushListing("project-1", "", Collections.emptyList());
+    assertEquals("run-2", nextDaoCall().experimentRunId);
+    assertTrue(daoCalls.isEmpty());
+  }
+
+  @Test
+  public void periodicFlush() throws Exception {
+    writeBuffer =
+        new ExperimentRunWriteBuffer(
+            experimentRunDAO, 100, 20, AckMode.FLUSHED, 2, ACK_TIMEOUT_MILLIS);
+    // Far from a full batch, written by the periodic flush
+    ExperimentRun experimentRun = writeBuffer.logObservation("run-1", getObservation(0));
+    assertEquals("written", experimentRun.getName());
+    assertEquals(Arrays.asList(getObservation(0)), nextDaoCall().values);
+  }
+
+  @Test
+  public void writeErrorsAreReportedToFlushedRequests() throws Exception {
+    existingMetricKeys.add("accuracy");
+    writeBuffer =
+        new ExperimentRunWriteBuffer(
+            experimentRunDAO, 2, NO_PERIODIC_FLUSH, AckMode.FLUSHED, 2, ACK_TIMEOUT_MILLIS);
+    Future<ExperimentRun> duplicate =
+        callers.submit(() -> writeBuffer.logMetric("run-1", getMetric("accuracy")));
+    Future<ExperimentRun> unique =
+        callers.submit(() -> writeBuffer.logMetric("run-1", getMetric("loss")));
+
+    // The rejected batch is written again metric by metric, only the duplicate fails
+    assertEquals("written", unique.get(ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getName());
+    assertStatusCode(
+        Status.Code.ALREADY_EXISTS, () -> duplicate.get(ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    DaoCall daoCall = nextDaoCall();
+    assertEquals("logMetric", daoCall.method);
+    assertEquals(Arrays.asList(getMetric("loss")), daoCall.values);
+    assertTrue(daoCalls.isEmpty());
+  }
+
+  @Test
+  public void runsAreWrittenInParallel() throws Exception {
+    blockedExperimentRunId = "run-1";
+    writeBuffer =
+        new ExperimentRunWriteBuffer(
+            experimentRunDAO, 1, NO_PERIODIC_FLUSH, AckMode.FLUSHED, 2, ACK_TIMEOUT_MILLIS);
+    Future<ExperimentRun> blocked = logAsync("run-1", getObservation(1));
+    assertTrue(blockedWriteStarted.await(ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    // Not held up by the write of run-1
+    assertEquals("run-2", writeBuffer.logObservation("run-2", getObservation(2)).getId());
+    assertEquals("run-2", nextDaoCall().experimentRunId);
+
+    releaseBlocked.countDown();
+    assertEquals("run-1", blocked.get(ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getId());
+    assertEquals("run-1", nextDaoCall().experimentRunId);
+  }
+
+  @Test
+  public void asyncAcknowledgementDoesNotHoldTheCaller() throws Exception {
+    blockedExperimentRunId = "run-1";
+    writeBuffer =
+        new ExperimentRunWriteBuffer(
+            experimentRunDAO, 1, NO_PERIODIC_FLUSH, AckMode.FLUSHED, 1, ACK_TIMEOUT_MILLIS);
+    CompletableFuture<ExperimentRun> acknowledgement =
+        writeBuffer.logObservationAsync("run-1", getObservation(1));
+    // Returned while the batch is being written
+    assertTrue(blockedWriteStarted.await(ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    assertFalse(acknowledgement.isDone());
+
+    releaseBlocked.countDown();
+    assertEquals(
+        "written", acknowledgement.get(ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getName());
+  }
+
+  @Test
+  public void asyncAckTimeout() throws Exception {
+    blockedExperimentRunId = "run-1";
+    writeBuffer =
+        new ExperimentRunWriteBuffer(
+            experimentRunDAO, 1, NO_PERIODIC_FLUSH, AckMode.FLUSHED, 1, 50);
+    CompletableFuture<ExperimentRun> acknowledgement =
+        writeBuffer.logObservationAsync("run-1", getObservation(1));
+    // Expires although the only flush thread is still writing
+    assertStatusCode(
+        Status.Code.DEADLINE_EXCEEDED,
+        () -> acknowledgement.get(ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+    releaseBlocked.countDown();
+    assertEquals(Arrays.asList(getObservation(1)), nextDaoCall().values);
+  }
+
+  @Test
+  public void ackTimeout() throws Exception {
+    blockedExperimentRunId = "run-1";
+    writeBuffer =
+        new ExperimentRunWriteBuffer(
+            experimentRunDAO, 1, NO_PERIODIC_FLUSH, AckMode.FLUSHED, 1, 50);
+    assertStatusCode(
+        Status.Code.DEADLINE_EXCEEDED,
+        () -> writeBuffer.logObservation("run-1", getObservation(1)));
+
+    // The value is still written once the DAO returns
+    releaseBlocked.countDown();
+    assertEquals(Arrays.asList(getObservation(1)), nextDaoCall().values);
+  }
+
+  @Test
+  public void closeWritesPendingValues() throws Exception {
+    writeBuffer =
+        new ExperimentRunWriteBuffer(
+            experimentRunDAO, 100, NO_PERIODIC_FLUSH, AckMode.BUFFERED, 1, ACK_TIMEOUT_MILLIS);
+    writeBuffer.logObservation("run-1", getObservation(1));
+    writeBuffer.logObservation("run-2", getObservation(2));
+    assertTrue(daoCalls.isEmpty());
+    writeBuffer.close();
+
+    Set<String> experimentRunIds = new HashSet<>();
+    experimentRunIds.add(nextDaoCall().experimentRunId);
+    experimentRunIds.add(nextDaoCall().experimentRunId);
+    assertEquals(new HashSet<>(Arrays.asList("run-1", "run-2")), experimentRunIds);
+
+    // Nothing is accepted after the final flush
+    assertStatusCode(
+        Status.Code.UNAVAILABLE, () -> writeBuffer.logObservation("run-3", getObservation(3)));
+  }
+}
@@ -0,0 +1,115 @@
+package com.mitdbg.modeldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class IdGeneratorTest {
+
+  private static final Pattern UUID_PATTERN =
+      Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+  private static UUID parseId(String id, int version) {
+    assertTrue("Not a UUID string " + id, UUID_PATTERN.matcher(id).matches());
+    UUID uuid = UUID.fromString(id);
+    assertEquals(version, uuid.version());
+    // RFC 4122 variant
+    assertEquals(2, uuid.variant());
+    return uuid;
+  }
+
+  private static long getTimestampMillis(UUID uuid) {
+    return uuid.getMostSignificantBits() >>> 16;
+  }
+
+  private static Map<String, Object> getPropMap(String type) {
+    return Collections.singletonMap("type", type);
+  }
+
+  @Test
+  public void createConfiguredType() throws ModelDBException {
+    parseId(IdGenerator.create(null).generateId(), 4);
+    parseId(IdGenerator.create(getPropMap("random")).generateId(), 4);
+    parseId(IdGenerator.create(getPropMap("timeOrdered")).generateId(), 7);
+    try {
+      IdGenerator.create(getPropMap("sequential"));
+      fail("Unknown id generator type should have been rejected");
+    } catch (ModelDBException e) {
+      assertTrue(e.getMessage().contains("sequential"));
+    }
+  }
+
+  @Test
+  public void timeOrderedIdsIncrease() {
+    IdGenerator idGenerator = new IdGenerator.TimeOrderedIdGenerator();
+    long beforeMillis = System.currentTimeMillis();
+    String previousId = idGenerator.generateId();
+    assertTrue(getTimestampMillis(parseId(previousId, 7)) >= beforeMillis);
+    // More than the 4096 ids of a millisecond
+    for (int i = 0; i < 20000; i++) {
+      String id = idGenerator.generateId();
+      parseId(id, 7);
+      // Compared as strings, like the id indexes do
+      assertTrue(previousId + " before " + id, previousId.compareTo(id) < 0);
+      previousId = id;
+    }
+    // Borrowed milliseconds stay close to the clock
+    long lastTimestampMillis = getTimestampMillis(UUID.fromString(previousId));
+    assertTrue(lastTimestampMillis <= System.currentTimeMillis() + 20000 / 4096 + 1);
+  }
+
+  @Test
+  public void timeOrderedIdsAreUniqueUnderConcurrency() throws Exception {
+    IdGenerator idGenerator = new IdGenerator.TimeOrderedIdGenerator();
+    int threadCount = 8;
+    int idsPerThread = 10000;
+    ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+    try {
+      Callable<List<String>> generateIds =
+          () -> {
+            List<String> ids = new ArrayList<>(idsPerThread);
+            for (int i = 0; i < idsPerThread; i++) {
+              ids.add(idGenerator.generateId());
+            }
+            return ids;
+          };
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for (int i = 0; i < threadCount; i++) {
+        futures.add(executorService.submit(generateIds));
+      }
+
+      Set<String> allIds = new HashSet<>();
+      Set<Long> allTimestampSequences = new HashSet<>();
+      for (Future<List<String>> future : futures) {
+        String previousId = null;
+        for (String id : future.get()) {
+          UUID uuid = parseId(id, 7);
+          // Ids of one thread increase, and the timestamp and sequence are never shared
+          assertTrue(previousId == null || previousId.compareTo(id) < 0);
+          assertTrue(allIds.add(id));
+          assertTrue(allTimestampSequences.add(uuid.getMostSignificantBits()));
+          previousId = id;
+        }
+      }
+      assertEquals(threadCount * idsPerThread, allIds.size());
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package com.mitdbg.modeldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mitdbg.modeldb.databaseServices.DocumentService;
+import com.mitdbg.modeldb.databaseServices.InMemoryDatabase;
+import com.mitdbg.modeldb.databaseServices.InMemoryDocumentService;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+@RunWith(JUnit4.class)
+public class InMemoryDocumentServiceTest {
+
+  private DocumentService documentService;
+
+  @Before
+  public void setUp() throws InvalidProtocolBufferException {
+    documentService = new InMemoryDocumentService(new InMemoryDatabase());
+    documentService.checkCollectionAvailability("experiment_runs");
+    documentService.insertOne(
+        Document.parse(
+            "{id: 'r1', project_id: 'p1', name: 'a', score: 5, tags: ['t1', 't2'],"
+                + " metrics: [{key: 'acc', value: 0.9}, {key: 'loss', value: 0.3}],"
+                + " metric_values: {acc: 0.9, loss: 0.3}}"));
+    documentService.insertOne(
+        Document.parse(
+            "{id: 'r2', project_id: 'p1', name: 'b', score: 10, tags: ['t2'],"
+                + " metrics: [{key: 'acc', value: 0.7}], metric_values: {acc: 0.7}}"));
+    documentService.insertOne(
+        Document.parse("{id: 'r3', project_id: 'p2', score: 'high', tags: []}"));
+  }
+
+  private List<String> findIds(String query) {
+    return findIds(query, "{id: 1}");
+  }
+
+  private List<String> findIds(String query, String sort) {
+    List<String> ids = new ArrayList<>();
+    for (Document document :
+        documentService.findListByObject(
+            Document.parse(query), null, Document.parse(sort), null)) {
+      ids.add(document.getString("id"));
+    }
+    return ids;
+  }
+
+  private Document findRun(String id) {
+    return documentService.findByKey("id", id);
+  }
+
+  private Document update(String id, String update) {
+    return documentService.findOneAndUpdate(
+        new Document("id", id), Document.parse(update), null, Document.class);
+  }
+
+  private static void assertStatusCode(Status.Code code, Runnable runnable) {
+    try {
+      runnable.run();
+      fail("Expected " + code);
+    } catch (StatusRuntimeException e) {
+      assertEquals(code, e.getStatus().getCode());
+    }
+  }
+
+  @Test
+  public void equalityMatchesArrayElementsAndMissingFields() {
+    assertEquals(Arrays.asList("r1", "r2"), findIds("{tags: 't2'}"));
+    assertEquals(Arrays.asList("r3"), findIds("{tags: []}"));
+    assertEquals(Arrays.asList("r3"), findIds("{name: null}"));
+    assertEquals(Arrays.asList("r3"), findIds("{name: {$exists: false}}"));
+    assertEquals(Arrays.asList("r2", "r3"), findIds("{name: {$ne: 'a'}}"));
+  }
+
+  @Test
+  public void insertMessageWithExtraFields() throws InvalidProtocolBufferException {
+    ExperimentRun experimentRun =
+        ExperimentRun.newBuilder().setId("r4").setProjectId("p3").setName("d").build();
+    documentService.insertOne(experimentRun, Document.parse("{metric_values: {acc: 0.5}}"));
+    assertEquals(Arrays.asList("r4"), findIds("{'metric_values.acc': 0.5}"));
+    assertEquals("d", findRun("r4").getString("name"));
+  }
+
+  @Test
+  public void indexedFields() {
+    assertEquals(Arrays.asList("r1", "r3"), findIds("{id: {$in: ['r3', 'r1', 'r9']}}"));
+    assertEquals(Arrays.asList("r1", "r2"), findIds("{project_id: 'p1'}"));
+    update("r1", "{$set: {project_id: 'p2'}}");
+    assertEquals(Arrays.asList("r2"), findIds("{project_id: 'p1'}"));
+    assertEquals(Arrays.asList("r1", "r3"), findIds("{project_id: 'p2'}"));
+  }
+
+  @Test
+  public void dottedPathsTraverseArrays() {
+    assertEquals(Arrays.asList("r1"), findIds("{'metrics.key': 'loss'}"));
+    assertEquals(Arrays.asList("r1"), findIds("{'metric_values.acc': {$gte: 0.9}}"));
+    assertEquals(Arrays.asList("r1", "r2"), findIds("{'metrics.0.key': 'acc'}"));
+    // Conditions on two paths may match different elements, $elemMatch needs one element
+    assertEquals(
+        Arrays.asList("r1"), findIds("{'metrics.key': 'loss', 'metrics.value': {$gt: 0.8}}"));
+    assertEquals(
+        Collections.emptyList(),
+        findIds("{metrics: {$elemMatch: {key: 'loss', value: {$gt: 0.8}}}}"));
+    assertEquals(
+        Arrays.asList("r1"), findIds("{metrics: {$elemMatch: {key: 'acc', value: {$gt: 0.8}}}}"));
+  }
+
+  @Test
+  public void comparisonsStayInTypeBracket() {
+    assertEquals(Arrays.asList("r1", "r2"), findIds("{score: {$gt: 1}}"));
+    assertEquals(Arrays.asList("r3"), findIds("{score: {$gt: ''}}"));
+    assertEquals(Arrays.asList("r2"), findIds("{score: {$gte: 10.0}}"));
+    assertEquals(Arrays.asList("r1"), findIds("{score: {$lt: 10}}"));
+    assertEquals(Arrays.asList("r1", "r3"), findIds("{score: {$not: {$gt: 6}}}"));
+  }
+
+  @Test
+  public void arrayAndLogicalOperators() {
+    assertEquals(Arrays.asList("r1"), findIds("{tags: {$in: ['t1', 'x']}}"));
+    assertEquals(Arrays.asList("r2", "r3"), findIds("{tags: {$nin: ['t1']}}"));
+    assertEquals(Arrays.asList("r1"), findIds("{tags: {$all: ['t2', 't1']}}"));
+    assertEquals(Arrays.asList("r3"), findIds("{tags: {$size: 0}}"));
+    assertEquals(Arrays.asList("r1", "r3"), findIds("{$or: [{name: 'a'}, {score: 'high'}]}"));
+    assertEquals(Arrays.asList("r2"), findIds("{$nor: [{name: 'a'}, {score: 'high'}]}"));
+    assertEquals(Arrays.asList("r2"), findIds("{$and: [{tags: 't2'}, {score: {$gt: 5}}]}"));
+  }
+
+  @Test
+  public void sortUsesTypeOrder() {
+    assertEquals(Arrays.asList("r3", "r2", "r1"), findIds("{}", "{score: -1}"));
+    assertEquals(Arrays.asList("r1", "r2", "r3"), findIds("{}", "{score: 1}"));
+    // Missing names sort like null, before strings
+    assertEquals(Arrays.asList("r3", "r1", "r2"), findIds("{}", "{name: 1}"));
+  }
+
+  @Test
+  public void unsupportedOperatorFails() {
+    assertStatusCode(Status.Code.UNIMPLEMENTED, () -> findIds("{score: {$mod: [2, 0]}}"));
+    assertStatusCode(Status.Code.UNIMPLEMENTED, () -> update("r1", "{$rename: {name: 'n'}}"));
+  }
+
+  @Test
+  public void setAndUnset() {
+    Document run = update("r2", "{$set: {'metric_values.loss': 0.4, 'config.depth': 3}}");
+    assertEquals(0.4, run.get("metric_values", Document.class).getDouble("loss"), 0);
+    assertEquals(0.7, run.get("metric_values", Document.class).getDouble("acc"), 0);
+    assertEquals(Integer.valueOf(3), run.get("config", Document.class).getInteger("depth"));
+
+    run = update("r2", "{$unset: {'metric_values.acc': '', name: '', missing: ''}}");
+    assertFalse(run.containsKey("name"));
+    assertFalse(run.get("metric_values", Document.class).containsKey("acc"));
+    assertEquals(run, findRun("r2"));
+  }
+
+  @Test
+  public void increment() {
+    assertEquals(Integer.valueOf(11), update("r2", "{$inc: {score: 1}}").get("score"));
+    assertEquals(11.5, update("r2", "{$inc: {score: 0.5}}").get("score"));
+    assertEquals(Integer.valueOf(2), update("r2", "{$inc: {runs: 2}}").get("runs"));
+    assertStatusCode(Status.Code.INVALID_ARGUMENT, () -> update("r3", "{$inc: {score: 1}}"));
+  }
+
+  @Test
+  public void arrayUpdates() {
+    assertEquals(
+        Arrays.asList("t2", "t3", "t3"),
+        update("r2", "{$push: {tags: {$each: ['t3', 't3']}}}").get("tags"));
+    assertEquals(
+        Arrays.asList("t2", "t3", "t3", "t4"),
+        update("r2", "{$addToSet: {tags: {$each: ['t2', 't4']}}}").get("tags"));
+    assertEquals(Arrays.asList("t2", "t4"), update("r2", "{$pull: {tags: 't3'}}").get("tags"));
+    assertEquals(
+        Arrays.asList("t4"), update("r2", "{$pull: {tags: {$in: ['t2', 'x']}}}").get("tags"));
+    assertEquals(
+        Arrays.asList("t1"), update("r1", "{$pullAll: {tags: ['t2', 'x']}}").get("tags"));
+
+    @SuppressWarnings("unchecked")
+    List<Document> metrics =
+        (List<Document>) update("r1", "{$pull: {metrics: {key: 'acc'}}}").get("metrics");
+    assertEquals(1, metrics.size());
+    assertEquals("loss", metrics.get(0).getString("key"));
+
+    Document labels = update("r3", "{$push: {'labels.names': 'x'}}").get("labels", Document.class);
+    assertEquals(Arrays.asList("x"), labels.get("names"));
+    assertStatusCode(Status.Code.INVALID_ARGUMENT, () -> update("r1", "{$push: {name: 'x'}}"));
+  }
+
+  @Test
+  public void updateCountsAndUpsert() throws InvalidProtocolBufferException {
+    Document setName = Document.parse("{$set: {name: 'c'}}");
+    assertEquals(1, documentService.updateOne(new Document("id", "r1"), setName));
+    // Nothing changes, nothing is counted
+    assertEquals(0, documentService.updateOne(new Document("id", "r1"), setName));
+    assertEquals(0, documentService.updateOne(new Document("id", "r9"), setName));
+    assertNull(findRun("r9"));
+
+    documentService.bulkWrite(
+        Collections.singletonList(
+            new UpdateOneModel<Document>(
+                new Document("id", "r9").append("score", new Document("$gt", 0)),
+                Document.parse("{$set: {name: 'd'}, $inc: {score: 1}}"),
+                new UpdateOptions().upsert(true))));
+    Document upserted = findRun("r9");
+    // Only the equality conditions of the filter are part of the inserted document
+    assertEquals("d", upserted.getString("name"));
+    assertEquals(Integer.valueOf(1), upserted.getInteger("score"));
+    assertEquals(Arrays.asList("r1", "r2", "r3", "r9"), findIds("{}"));
+  }
+}
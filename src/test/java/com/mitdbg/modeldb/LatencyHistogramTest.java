@@ -0,0 +1,120 @@
+package com.mitdbg.modeldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.mitdbg.modeldb.monitoring.LatencyHistogram;
+
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+
+  private static final double DELTA = 1e-9;
+
+  private static double recordOne(long micros) {
+    LatencyHistogram latencyHistogram = new LatencyHistogram();
+    latencyHistogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+    return latencyHistogram.getQuantileSeconds(1.0);
+  }
+
+  @Test
+  public void emptyHistogram() {
+    LatencyHistogram latencyHistogram = new LatencyHistogram();
+    assertEquals(0, latencyHistogram.getCount());
+    assertEquals(0, latencyHistogram.getQuantileSeconds(0.99), DELTA);
+  }
+
+  @Test
+  public void smallValuesHaveExactBuckets() {
+    for (long micros = 0; micros < 4; micros++) {
+      assertEquals((micros + 1) / 1_000_000.0, recordOne(micros), DELTA);
+    }
+    // Negative durations, e.g. from a clock adjustment, are counted as 0
+    LatencyHistogram latencyHistogram = new LatencyHistogram();
+    latencyHistogram.record(-5000);
+    assertEquals(1 / 1_000_000.0, latencyHistogram.getQuantileSeconds(0.5), DELTA);
+  }
+
+  @Test
+  public void bucketUpperBoundIsWithinQuarterOfValue() {
+    List<Long> values = new ArrayList<>();
+    for (long micros = 4; micros < 5000; micros++) {
+      values.add(micros);
+    }
+    for (int exponent = 12; exponent < 36; exponent++) {
+      long powerOfTwo = 1L << exponent;
+      values.add(powerOfTwo - 1);
+      values.add(powerOfTwo);
+      values.add(powerOfTwo + powerOfTwo / 3);
+    }
+    for (long micros : values) {
+      double upperBoundMicros = recordOne(micros) * 1_000_000.0;
+      assertTrue("Upper bound above " + micros, upperBoundMicros > micros - DELTA);
+      assertTrue("Upper bound within 25% of " + micros, upperBoundMicros <= micros * 1.25 + 1e-3);
+    }
+  }
+
+  @Test
+  public void valuesBeyondLastBucketAreCounted() {
+    LatencyHistogram latencyHistogram = new LatencyHistogram();
+    latencyHistogram.record(Long.MAX_VALUE);
+    assertEquals(1, latencyHistogram.getCount());
+    // Upper bound of the last bucket, 2^36 microseconds
+    assertEquals((1L << 36) / 1_000_000.0, latencyHistogram.getQuantileSeconds(0.5), DELTA);
+  }
+
+  @Test
+  public void quantiles() {
+    LatencyHistogram latencyHistogram = new LatencyHistogram();
+    for (int millis = 1; millis <= 100; millis++) {
+      latencyHistogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+    assertEquals(100, latencyHistogram.getCount());
+    // 50ms falls in [49152us, 57344us), 100ms in [98304us, 114688us)
+    assertEquals(0.057344, latencyHistogram.getQuantileSeconds(0.5), DELTA);
+    assertEquals(0.114688, latencyHistogram.getQuantileSeconds(1.0), DELTA);
+    // 1ms falls in [896us, 1024us)
+    assertEquals(0.001024, latencyHistogram.getQuantileSeconds(0.01), DELTA);
+    double previous = 0;
+    for (double quantile = 0.05; quantile <= 1.0; quantile += 0.05) {
+      double latency = latencyHistogram.getQuantileSeconds(quantile);
+      assertTrue(latency >= previous);
+      previous = latency;
+    }
+  }
+
+  @Test
+  public void prometheusTextFormat() {
+    LatencyHistogram latencyHistogram = new LatencyHistogram();
+    latencyHistogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+    latencyHistogram.record(TimeUnit.MICROSECONDS.toNanos(1000));
+    StringBuilder builder = new StringBuilder();
+    latencyHistogram.writeTo(builder, "test_seconds", "method=\"a/b\"");
+
+    String[] lines = builder.toString().split("\n");
+    // One bucket per power of two from 2^6 to 2^35 microseconds, +Inf, sum and count
+    assertEquals(33, lines.length);
+    long previousCount = 0;
+    for (int i = 0; i < 30; i++) {
+      assertTrue(lines[i].startsWith("test_seconds_bucket{method=\"a/b\",le=\""));
+      double bound = Double.parseDouble(lines[i].split("le=\"")[1].split("\"")[0]);
+      long bucketCount = Long.parseLong(lines[i].substring(lines[i].lastIndexOf(' ') + 1));
+      assertTrue(bucketCount >= previousCount);
+      previousCount = bucketCount;
+      if (bound < 0.000128) {
+        assertEquals(0, bucketCount);
+      } else if (bound < 0.001024) {
+        assertEquals(1, bucketCount);
+      } else {
+        assertEquals(2, bucketCount);
+      }
+    }
+    assertEquals("test_seconds_bucket{method=\"a/b\",le=\"+Inf\"} 2", lines[30]);
+    assertEquals("test_seconds_sum{method=\"a/b\"} 0.0011", lines[31]);
+    assertEquals("test_seconds_count{method=\"a/b\"} 2", lines[32]);
+  }
+}
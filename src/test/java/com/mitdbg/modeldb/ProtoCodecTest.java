@@ -0,0 +1,173 @@
+package com.mitdbg.modeldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.google.protobuf.util.JsonFormat;
+import com.mitdbg.modeldb.ArtifactTypeEnum.ArtifactType;
+import com.mitdbg.modeldb.ValueTypeEnum.ValueType;
+import com.mitdbg.modeldb.databaseServices.ProtoCodecProvider;
+
+@RunWith(JUnit4.class)
+public class ProtoCodecTest {
+
+  private static final Codec<ExperimentRun> EXPERIMENT_RUN_CODEC =
+      ProtoCodecProvider.getCodecRegistry().get(ExperimentRun.class);
+
+  private static ExperimentRun getExperimentRun() {
+    Struct struct =
+        Struct.newBuilder()
+            .putFields("layers", Value.newBuilder().setNumberValue(3).build())
+            .putFields("optimizer", Value.newBuilder().setStringValue("adam").build())
+            .putFields("nesterov", Value.newBuilder().setBoolValue(true).build())
+            .build();
+    ListValue listValue =
+        ListValue.newBuilder()
+            .addValues(Value.newBuilder().setNumberValue(0.1))
+            .addValues(Value.newBuilder().setStringValue("step"))
+            .build();
+    return ExperimentRun.newBuilder()
+        .setId("run-1")
+        .setProjectId("project-1")
+        .setExperimentId("experiment-1")
+        .setName("run")
+        .setDateCreated(1546300800000L)
+        .setDateUpdated(Long.MAX_VALUE)
+        .addTags("tag-1")
+        .addTags("tag-2")
+        .addMetrics(
+            KeyValue.newBuilder()
+                .setKey("accuracy")
+                .setValue(Value.newBuilder().setNumberValue(0.95))
+                .setValueType(ValueType.NUMBER))
+        .addHyperparameters(
+            KeyValue.newBuilder()
+                .setKey("config")
+                .setValue(Value.newBuilder().setStructValue(struct))
+                .setValueType(ValueType.BLOB))
+        .addHyperparameters(
+            KeyValue.newBuilder()
+                .setKey("schedule")
+                .setValue(Value.newBuilder().setListValue(listValue))
+                .setValueType(ValueType.LIST))
+        .addArtifacts(
+            Artifact.newBuilder()
+                .setKey("model")
+                .setPath("s3://bucket/model.pkl")
+                .setArtifactType(ArtifactType.MODEL))
+        .addObservations(
+            Observation.newBuilder()
+                .setAttribute(
+                    KeyValue.newBuilder()
+                        .setKey("loss")
+                        .setValue(Value.newBuilder().setNumberValue(0.25))
+                        .setValueType(ValueType.NUMBER))
+                .setTimestamp(1546300800123L))
+        .build();
+  }
+
+  private static BsonDocument encode(ExperimentRun experimentRun) {
+    BsonDocument bsonDocument = new BsonDocument();
+    EXPERIMENT_RUN_CODEC.encode(
+        new BsonDocumentWriter(bsonDocument), experimentRun, EncoderContext.builder().build());
+    return bsonDocument;
+  }
+
+  private static ExperimentRun decode(BsonDocument bsonDocument) {
+    return EXPERIMENT_RUN_CODEC.decode(
+        new BsonDocumentReader(bsonDocument), DecoderContext.builder().build());
+  }
+
+  @Test
+  public void roundTrip() {
+    ExperimentRun experimentRun = getExperimentRun();
+    assertEquals(experimentRun, decode(encode(experimentRun)));
+  }
+
+  @Test
+  public void emptyMessageRoundTrip() {
+    assertEquals(new BsonDocument(), encode(ExperimentRun.getDefaultInstance()));
+    assertEquals(ExperimentRun.getDefaultInstance(), decode(new BsonDocument()));
+  }
+
+  @Test
+  public void layoutMatchesJsonFormat() throws InvalidProtocolBufferException {
+    ExperimentRun experimentRun = getExperimentRun();
+    BsonDocument jsonDocument =
+        BsonDocument.parse(
+            JsonFormat.printer().preservingProtoFieldNames().print(experimentRun));
+    BsonDocument bsonDocument = encode(experimentRun);
+    assertEquals(jsonDocument, bsonDocument);
+    // Stored layout details the queries of the DAOs rely on
+    assertEquals(new BsonString("1546300800000"), bsonDocument.get("date_created"));
+    assertEquals(
+        new BsonString("MODEL"),
+        bsonDocument.getArray("artifacts").get(0).asDocument().get("artifact_type"));
+    assertFalse(bsonDocument.containsKey("description"));
+  }
+
+  @Test
+  public void skipUnknownFieldsAndNulls() {
+    ExperimentRun experimentRun = getExperimentRun();
+    BsonDocument bsonDocument = encode(experimentRun);
+    bsonDocument.put("_id", new BsonObjectId());
+    bsonDocument.put("metric_values", new BsonDocument("accuracy", new BsonInt32(1)));
+    bsonDocument.put("code_version", BsonNull.VALUE);
+    assertEquals(experimentRun, decode(bsonDocument));
+  }
+
+  @Test
+  public void readNativeNumbers() {
+    BsonDocument bsonDocument =
+        new BsonDocument("id", new BsonString("run-1"))
+            .append("date_created", new BsonInt64(1546300800000L))
+            .append("date_updated", new BsonInt32(42));
+    ExperimentRun experimentRun = decode(bsonDocument);
+    assertEquals(1546300800000L, experimentRun.getDateCreated());
+    assertEquals(42L, experimentRun.getDateUpdated());
+
+    BsonDocument metricDocument =
+        new BsonDocument("key", new BsonString("epochs"))
+            .append("value", new BsonInt32(10))
+            .append("value_type", new BsonInt32(ValueType.NUMBER.getNumber()));
+    KeyValue metric =
+        ProtoCodecProvider.getCodecRegistry()
+            .get(KeyValue.class)
+            .decode(new BsonDocumentReader(metricDocument), DecoderContext.builder().build());
+    assertEquals(10, metric.getValue().getNumberValue(), 0);
+    assertEquals(ValueType.NUMBER, metric.getValueType());
+  }
+
+  @Test
+  public void rejectInvalidEnumName() {
+    BsonDocument bsonDocument =
+        BsonDocument.parse(
+            "{\"artifacts\": [{\"key\": \"model\", \"artifact_type\": \"NOT_A_TYPE\"}]}");
+    try {
+      decode(bsonDocument);
+      fail("Invalid enum name should have been rejected");
+    } catch (CodecConfigurationException e) {
+      assertTrue(e.getMessage().contains("NOT_A_TYPE"));
+    }
+  }
+}
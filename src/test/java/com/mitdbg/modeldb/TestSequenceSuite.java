@@ -2,6 +2,10 @@ package com.mitdbg.modeldb;
 
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
+import com.mitdbg.modeldb.cache.BloomFilterTest;
+import com.mitdbg.modeldb.cache.EntityCacheTest;
+import com.mitdbg.modeldb.cache.ExperimentRunCreationCacheTest;
+import com.mitdbg.modeldb.cache.FrequencySketchTest;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
@@ -10,6 +14,16 @@ import org.junit.runners.Suite;
   ExperimentTest.class,
   ExperimentRunTest.class,
   ArtifactStoreTest.class,
-  MongoInitTest.class
+  MongoInitTest.class,
+  ContinuationTokenTest.class,
+  ProtoCodecTest.class,
+  LatencyHistogramTest.class,
+  InMemoryDocumentServiceTest.class,
+  ExperimentRunWriteBufferTest.class,
+  EntityCacheTest.class,
+  FrequencySketchTest.class,
+  BloomFilterTest.class,
+  IdGeneratorTest.class,
+  ExperimentRunCreationCacheTest.class
 })
 public class TestSequenceSuite {}
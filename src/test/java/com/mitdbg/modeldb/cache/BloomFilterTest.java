@@ -0,0 +1,65 @@
+package com.mitdbg.modeldb.cache;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BloomFilterTest {
+
+  private static final int SAMPLE_SIZE = 100000;
+
+  /** Fill a filter with its expected insertions and return its false positive rate. */
+  private static double measureFalsePositiveRate(int expectedInsertions, double rate) {
+    BloomFilter bloomFilter = new BloomFilter(expectedInsertions, rate);
+    for (int i = 0; i < expectedInsertions; i++) {
+      bloomFilter.add("run-" + i);
+    }
+    for (int i = 0; i < expectedInsertions; i++) {
+      assertTrue("No false negative for run-" + i, bloomFilter.mightContain("run-" + i));
+    }
+    int falsePositiveCount = 0;
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      if (bloomFilter.mightContain("other-run-" + i)) {
+        falsePositiveCount++;
+      }
+    }
+    return (double) falsePositiveCount / SAMPLE_SIZE;
+  }
+
+  @Test
+  public void falsePositiveRateMatchesSizing() {
+    double falsePositiveRate = measureFalsePositiveRate(10000, 0.01);
+    assertTrue("False positive rate " + falsePositiveRate, falsePositiveRate < 0.015);
+    falsePositiveRate = measureFalsePositiveRate(1000, 0.001);
+    assertTrue("False positive rate " + falsePositiveRate, falsePositiveRate < 0.0015);
+  }
+
+  @Test
+  public void emptyFilterContainsNothing() {
+    BloomFilter bloomFilter = new BloomFilter(1000, 0.01);
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      assertFalse(bloomFilter.mightContain("run-" + i));
+    }
+  }
+
+  @Test
+  public void smallAndOverfilledFilters() {
+    // Sized for at least one string
+    BloomFilter bloomFilter = new BloomFilter(0, 0.01);
+    bloomFilter.add("run");
+    assertTrue(bloomFilter.mightContain("run"));
+    assertFalse(bloomFilter.mightContain(""));
+
+    // Beyond its expected insertions the rate degrades, but added strings are always found
+    bloomFilter = new BloomFilter(10, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      bloomFilter.add("run-" + i);
+    }
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(bloomFilter.mightContain("run-" + i));
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package com.mitdbg.modeldb.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.mitdbg.modeldb.Project;
+
+@RunWith(JUnit4.class)
+public class EntityCacheTest {
+
+  private static final long TIMEOUT_MILLIS = 10000;
+
+  private final ExecutorService loaders = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    loaders.shutdownNow();
+  }
+
+  private static Project getProject(String id, String name) {
+    return Project.newBuilder().setId(id).setName(name).build();
+  }
+
+  private static EntityCache.Loader<Project> notCalled() {
+    return () -> {
+      fail("Entity should have been cached");
+      return null;
+    };
+  }
+
+  @Test
+  public void loadIsCachedUntilInvalidated() throws Exception {
+    EntityCache<Project> cache = new EntityCache<>("test", 100, 300, false, null);
+    AtomicInteger loadCount = new AtomicInteger();
+    EntityCache.Loader<Project> loader =
+        () -> getProject("p1", "load-" + loadCount.incrementAndGet());
+
+    Project project = cache.get("p1", loader);
+    assertSame(project, cache.get("p1", loader));
+    assertEquals(1, loadCount.get());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    cache.invalidate("p1");
+    assertEquals("load-2", cache.get("p1", loader).getName());
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void missingEntityIsNotCached() throws Exception {
+    EntityCache<Project> cache = new EntityCache<>("test", 100, 300, false, null);
+    assertNull(cache.get("p1", () -> null));
+    assertEquals(0, cache.getSize());
+    assertEquals("a", cache.get("p1", () -> getProject("p1", "a")).getName());
+  }
+
+  @Test
+  public void expiredEntryIsReloaded() throws Exception {
+    EntityCache<Project> cache = new EntityCache<>("test", 100, 0, false, null);
+    cache.get("p1", () -> getProject("p1", "a"));
+    assertEquals("b", cache.get("p1", () -> getProject("p1", "b")).getName());
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Load "p1" on another thread, run given invalidation while the loader is reading, and check the
+   * value read before the invalidation is returned but not cached.
+   */
+  private void assertInvalidationDuringLoad(Consumer<EntityCache<Project>> invalidation)
+      throws Exception {
+    EntityCache<Project> cache = new EntityCache<>("test", 100, 300, false, null);
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch invalidated = new CountDownLatch(1);
+    Future<Project> staleLoad =
+        loaders.submit(
+            () ->
+                cache.get(
+                    "p1",
+                    () -> {
+                      loading.countDown();
+                      awaitUninterruptibly(invalidated);
+                      return getProject("p1", "before-update");
+                    }));
+    assertTrue(loading.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    invalidation.accept(cache);
+    invalidated.countDown();
+
+    assertEquals(
+        "before-update", staleLoad.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getName());
+    assertEquals(0, cache.getSize());
+    // The next read loads the updated entity, and caches it
+    assertEquals(
+        "after-update", cache.get("p1", () -> getProject("p1", "after-update")).getName());
+    assertEquals("after-update", cache.get("p1", notCalled()).getName());
+  }
+
+  @Test
+  public void invalidationDuringLoadIsNotCached() throws Exception {
+    assertInvalidationDuringLoad(cache -> cache.invalidate("p1"));
+  }
+
+  @Test
+  public void invalidateAllDuringLoadIsNotCached() throws Exception {
+    assertInvalidationDuringLoad(EntityCache::invalidateAll);
+  }
+
+  @Test
+  public void invalidateIfDuringLoadIsNotCached() throws Exception {
+    // The loaded entity is not cached yet, so the condition cannot match it
+    assertInvalidationDuringLoad(cache -> cache.invalidateIf(project -> false));
+  }
+
+  @Test
+  public void invalidateIfAndStoreSerialized() throws Exception {
+    EntityCache<Project> cache = new EntityCache<>("test", 100, 300, false, Project.parser());
+    Project project = getProject("p1", "a");
+    cache.get("p1", () -> project);
+    cache.get("p2", () -> getProject("p2", "b"));
+
+    // Parsed again on every hit
+    Project cachedProject = cache.get("p1", notCalled());
+    assertEquals(project, cachedProject);
+    assertNotSame(project, cachedProject);
+
+    cache.invalidateIf(cached -> cached.getName().equals("a"));
+    assertEquals(1, cache.getSize());
+    assertEquals("b", cache.get("p2", notCalled()).getName());
+    assertEquals("c", cache.get("p1", () -> getProject("p1", "c")).getName());
+  }
+
+  @Test
+  public void sizeIsBounded() throws Exception {
+    EntityCache<Project> cache = new EntityCache<>("test", 16, 300, false, null);
+    for (int i = 0; i < 100; i++) {
+      String id = "p" + i;
+      cache.get(id, () -> getProject(id, id));
+    }
+    assertTrue(cache.getSize() <= 16);
+    assertEquals(100, cache.getSize() + cache.getEvictionCount());
+  }
+}
@@ -0,0 +1,105 @@
+package com.mitdbg.modeldb.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ExperimentRunCreationCacheTest {
+
+  private static final long TIMEOUT_MILLIS = 10000;
+
+  private final ExecutorService loaders = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    loaders.shutdownNow();
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  public void namesAreLoadedOncePerPair() throws Exception {
+    ExperimentRunCreationCache cache = new ExperimentRunCreationCache(100, 1000, 0.001, 300);
+    AtomicInteger loadCount = new AtomicInteger();
+    ExperimentRunCreationCache.NameLoader nameLoader =
+        () -> {
+          loadCount.incrementAndGet();
+          return Arrays.asList("run-1", "run-2");
+        };
+
+    // Existing names must be looked up, a new name is reserved once
+    assertFalse(cache.reserveName("p1", "e1", "run-1", nameLoader));
+    assertTrue(cache.reserveName("p1", "e1", "run-3", nameLoader));
+    assertFalse(cache.reserveName("p1", "e1", "run-3", nameLoader));
+    cache.addName("p1", "e1", "run-4");
+    assertFalse(cache.reserveName("p1", "e1", "run-4", nameLoader));
+    assertEquals(1, loadCount.get());
+
+    cache.invalidateExperiment("e1");
+    assertTrue(cache.reserveName("p1", "e1", "run-5", nameLoader));
+    assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  public void loadDoesNotBlockOtherPairs() throws Exception {
+    ExperimentRunCreationCache cache = new ExperimentRunCreationCache(100, 1000, 0.001, 300);
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch releaseLoad = new CountDownLatch(1);
+    Future<Boolean> slowReservation =
+        loaders.submit(
+            () ->
+                cache.reserveName(
+                    "p1",
+                    "e1",
+                    "run-1",
+                    () -> {
+                      loading.countDown();
+                      awaitUninterruptibly(releaseLoad);
+                      return Collections.emptyList();
+                    }));
+    assertTrue(loading.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+    try {
+      // Another pair, and the parent validation of the loading one, do not wait for the load
+      Future<Boolean> otherReservation =
+          loaders.submit(
+              () -> cache.reserveName("p1", "e2", "run-1", () -> Collections.emptyList()));
+      assertTrue(otherReservation.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+      cache.setParentValidated("p1", "e1");
+      assertTrue(cache.isParentValidated("p1", "e1"));
+    } finally {
+      releaseLoad.countDown();
+    }
+    assertTrue(slowReservation.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    // Reserved by the slow load, the name filter of the pair was not loaded twice
+    assertFalse(
+        cache.reserveName(
+            "p1",
+            "e1",
+            "run-1",
+            () -> {
+              fail("Names should have been loaded");
+              return null;
+            }));
+  }
+}
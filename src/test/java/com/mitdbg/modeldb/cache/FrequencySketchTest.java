@@ -0,0 +1,78 @@
+package com.mitdbg.modeldb.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import com.mitdbg.modeldb.Project;
+
+@RunWith(JUnit4.class)
+public class FrequencySketchTest {
+
+  @Test
+  public void countsAccesses() {
+    FrequencySketch sketch = new FrequencySketch(100);
+    for (int i = 0; i < 5; i++) {
+      sketch.increment("a");
+    }
+    assertEquals(5, sketch.frequency("a"));
+    assertEquals(0, sketch.frequency("b"));
+  }
+
+  @Test
+  public void neverUnderestimates() {
+    FrequencySketch sketch = new FrequencySketch(1000);
+    for (int i = 0; i < 200; i++) {
+      for (int count = 0; count <= i % 5; count++) {
+        sketch.increment("key-" + i);
+      }
+    }
+    for (int i = 0; i < 200; i++) {
+      assertTrue(sketch.frequency("key-" + i) >= i % 5 + 1);
+    }
+  }
+
+  @Test
+  public void saturatesAndAges() {
+    // Sample size of 16 accesses
+    FrequencySketch sketch = new FrequencySketch(1);
+    for (int i = 0; i < 15; i++) {
+      sketch.increment("a");
+    }
+    assertEquals(15, sketch.frequency("a"));
+    // The 16th access is not counted above 15, and halves every counter
+    sketch.increment("a");
+    assertEquals(7, sketch.frequency("a"));
+  }
+
+  private static int countHotLoadsDuringScan(boolean frequencyAdmission) throws Exception {
+    // One entity per segment
+    EntityCache<Project> cache = new EntityCache<>("test", 1, 300, frequencyAdmission, null);
+    AtomicInteger hotLoadCount = new AtomicInteger();
+    for (int i = 0; i < 1000; i++) {
+      cache.get(
+          "hot",
+          () -> {
+            hotLoadCount.incrementAndGet();
+            return Project.newBuilder().setId("hot").build();
+          });
+      String coldId = "cold-" + i;
+      cache.get(coldId, () -> Project.newBuilder().setId(coldId).build());
+    }
+    if (frequencyAdmission) {
+      assertTrue(cache.getRejectionCount() > 0);
+    } else {
+      assertEquals(0, cache.getRejectionCount());
+    }
+    return hotLoadCount.get();
+  }
+
+  @Test
+  public void scanDoesNotEvictHotEntity() throws Exception {
+    assertEquals(1, countHotLoadsDuringScan(true));
+    // Without the admission filter the entities of the scan evict it from its segment
+    assertTrue(countHotLoadsDuringScan(false) > 1);
+  }
+}